@@ -5,6 +5,7 @@
   const query = new URLSearchParams(window.location.search);
   const wasmHeapEnabled = query.get('wasmHeap') !== '0';
   const preferWholeMethodJs = query.get('preferJs') !== '0';
+  const awtCommandBuffer = query.get('commandBuffer') === '1';
   const summary = document.getElementById('summary');
   const resultNode = document.getElementById('result');
   const phasesNode = document.getElementById('phases');
@@ -183,6 +184,7 @@
       structuredDeferredCallMaterialization: true,
     };
     debug.debugController.options.wasmHeap = wasmHeapEnabled;
+    debug.debugController.options.awtCommandBuffer = awtCommandBuffer;
     await debug.initialize();
     await debug.loadFile(file);
     let runError = null;
@@ -230,6 +232,7 @@
       phase: value('phase', 'I') | 0,
       runFinished,
       presentation: { ...(jvm._awtPresentationStats || {}) },
+      drawCommands: jvm.awtDrawCommands ? { ...jvm.awtDrawCommands.stats } : null,
       rasterJit: {
         wasmHeap: Boolean(jvm.wasmHeap),
         methodProfiling: jvm.jit.profileMethods,
@@ -1,18 +1,25 @@
 #!/usr/bin/env node
 'use strict';
 // Bulk pipeline runner: applies our deobfuscation passes to a directory
-// of .class files in a single Node.js process. Between passes we
-// serialize the AST back to bytecode and re-parse it — the round trip
-// normalizes stack-map frames / label aliases / constant pool ordering
-// that subsequent passes depend on (matches the per-pass CLI behaviour
-// exactly).
+// of .class files. Between passes we assemble the AST back to bytecode and
+// re-parse it — the round trip normalizes stack-map frames / label aliases /
+// constant pool ordering that subsequent passes depend on (matches the
+// per-pass CLI behaviour exactly). The round trip stays in memory
+// (assembleClass -> getAST, no temp file), and a pass whose output assembles
+// to the same bytes as its input skips the re-parse: re-normalizing an
+// already-normalized class is a no-op. Files are spread over worker threads
+// (--workers N|auto, default auto).
+//
+//   node scripts/bulk-pipeline.js <in-dir> <out-dir> [--skip-inline] [--workers N|auto]
 const fs = require('fs');
 const path = require('path');
+const os = require('os');
+const crypto = require('crypto');
+const { Worker, isMainThread, parentPort, workerData } = require('worker_threads');
 const JT = path.resolve(__dirname, '..');
 const { getAST } = require('jvm_parser');
 const { convertJson } = require(JT + '/src/parsing/convert_tree');
-const { writeClassAstToClassFile } = require(JT + '/src/parsing/classAstToClassFile');
-const os = require('os');
+const { assembleClass } = require(JT + '/src/parsing/classAstToClassFile');
 const { runPeepholeClean } = require(JT + '/src/passes/peepholeClean');
 const { removeTrivialRethrowHandlers } = require(JT + '/src/passes/removeTrivialRethrowHandlers');
 const { runMultiEntryLoopNormalizer } = require(JT + '/src/passes/multiEntryLoopNormalizer');
@@ -21,53 +28,147 @@ const { runDeadStaticBoolFlag } = require(JT + '/src/passes/deadStaticBoolFlag')
 const { runInlineSharedExitGoto } = require(JT + '/src/passes/inlineSharedExitGoto');
 const { runInlineSharedReturn } = require(JT + '/src/passes/inlineSharedReturn');
 
-const inDir = process.argv[2];
-const outDir = process.argv[3];
-const skipInline = process.argv.includes('--skip-inline');
-fs.mkdirSync(outDir, { recursive: true });
-
-const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'bulkpipe-'));
-const tmpFile = path.join(tmpDir, 'tmp.class');
+function buildPasses(skipInline) {
+  return [
+    { name: 'peephole', fn: (a) => runPeepholeClean(a) },
+    { name: 'strip-rethrow', fn: (a) => removeTrivialRethrowHandlers(a, { keepHandlerCode: true }) },
+    { name: 'normalizer', fn: (a) => runMultiEntryLoopNormalizer(a) },
+    { name: 'coalesce', fn: (a) => runCoalesceLoopLoad(a) },
+    { name: 'dead-flag', fn: (a) => runDeadStaticBoolFlag(a) },
+    ...(skipInline ? [] : [{ name: 'inline-exit', fn: (a) => runInlineSharedExitGoto(a, { maxBodyInsns: 50 }) }]),
+    { name: 'inline-return', fn: (a) => runInlineSharedReturn(a, { oncePerMethod: false }) },
+    { name: 'peephole2', fn: (a) => runPeepholeClean(a) },
+  ];
+}
 
-function loadAst(filePath) {
-  const buf = fs.readFileSync(filePath);
-  const parsed = getAST(new Uint8Array(buf));
+function parseBytes(bytes) {
+  const parsed = getAST(new Uint8Array(bytes));
   return { ast: convertJson(parsed.ast, parsed.constantPool), cp: parsed.constantPool };
 }
-function saveAndReload(ast, cp) {
-  writeClassAstToClassFile(ast, tmpFile, cp);
-  return loadAst(tmpFile);
+
+function assemble(ast, cp) {
+  const cls = ast.classes ? ast.classes[0] : ast;
+  return assembleClass(cls, cp);
 }
 
-const passes = [
-  { name: 'peephole', fn: (a) => runPeepholeClean(a) },
-  { name: 'strip-rethrow', fn: (a) => removeTrivialRethrowHandlers(a, { keepHandlerCode: true }) },
-  { name: 'normalizer', fn: (a) => runMultiEntryLoopNormalizer(a) },
-  { name: 'coalesce', fn: (a) => runCoalesceLoopLoad(a) },
-  { name: 'dead-flag', fn: (a) => runDeadStaticBoolFlag(a) },
-  ...(skipInline ? [] : [{ name: 'inline-exit', fn: (a) => runInlineSharedExitGoto(a, { maxBodyInsns: 50 }) }]),
-  { name: 'inline-return', fn: (a) => runInlineSharedReturn(a, { oncePerMethod: false }) },
-  { name: 'peephole2', fn: (a) => runPeepholeClean(a) },
-];
+// Change detection: a digest of the assembled class file. Every round trip
+// assembles anyway, so this costs a hash where a digest of the AST cost a
+// serialization of the whole tree per pass.
+function fingerprint(bytes) {
+  return crypto.createHash('sha1').update(bytes).digest('base64');
+}
 
-const files = fs.readdirSync(inDir).filter((f) => f.endsWith('.class'));
-let processed = 0;
-let failed = 0;
-for (const f of files) {
-  const inPath = path.join(inDir, f);
-  const outPath = path.join(outDir, f);
-  try {
-    let { ast, cp } = loadAst(inPath);
-    for (const p of passes) {
-      p.fn(ast);
-      ({ ast, cp } = saveAndReload(ast, cp));
+// Runs every pass over one class file; returns the output bytes and how many
+// round trips were taken / skipped. The input itself may not be in our
+// assembler's normal form, so the first pass always round-trips.
+function processClass(bytes, passes) {
+  let { ast, cp } = parseBytes(bytes);
+  let before = null;
+  let reparsed = 0;
+  let skipped = 0;
+  for (const p of passes) {
+    p.fn(ast);
+    const assembled = assemble(ast, cp);
+    const after = fingerprint(assembled);
+    if (after === before) {
+      skipped += 1;
+      continue;
     }
-    writeClassAstToClassFile(ast, outPath, cp);
-    processed += 1;
-  } catch (err) {
-    failed += 1;
-    fs.copyFileSync(inPath, outPath);
+    ({ ast, cp } = parseBytes(assembled));
+    before = after;
+    reparsed += 1;
+  }
+  return { bytes: assemble(ast, cp), reparsed, skipped };
+}
+
+function processFiles(files, inDir, outDir, passes, onDone) {
+  for (const f of files) {
+    const inPath = path.join(inDir, f);
+    const outPath = path.join(outDir, f);
+    let result = { ok: false, reparsed: 0, skipped: 0 };
+    try {
+      const { bytes, reparsed, skipped } = processClass(fs.readFileSync(inPath), passes);
+      fs.writeFileSync(outPath, bytes);
+      result = { ok: true, reparsed, skipped };
+    } catch (err) {
+      fs.copyFileSync(inPath, outPath);
+    }
+    onDone(f, result);
+  }
+}
+
+function workerCount(value, files) {
+  const cores = typeof os.availableParallelism === 'function'
+    ? os.availableParallelism() : os.cpus().length;
+  const requested = value === undefined || value === 'auto' ? cores : Math.floor(Number(value)) || 1;
+  return Math.max(1, Math.min(requested, files));
+}
+
+function main() {
+  const args = process.argv.slice(2);
+  const inDir = args[0];
+  const outDir = args[1];
+  const skipInline = args.includes('--skip-inline');
+  const workersAt = args.indexOf('--workers');
+  fs.mkdirSync(outDir, { recursive: true });
+
+  const files = fs.readdirSync(inDir).filter((f) => f.endsWith('.class'));
+  const workers = workerCount(workersAt >= 0 ? args[workersAt + 1] : undefined, files.length);
+  let processed = 0;
+  let failed = 0;
+  let reparsed = 0;
+  let skipped = 0;
+  const tally = (f, result) => {
+    if (result.ok) processed += 1;
+    else failed += 1;
+    reparsed += result.reparsed;
+    skipped += result.skipped;
+  };
+  const report = () => {
+    console.log(`Done: ${processed}/${files.length} processed, ${failed} failed (passthrough)`);
+    console.log(`Round trips: ${reparsed} reparsed, ${skipped} skipped as no-op passes`);
+  };
+
+  if (workers <= 1) {
+    processFiles(files, inDir, outDir, buildPasses(skipInline), tally);
+    report();
+    return;
   }
+  // Largest first, one file at a time to whichever worker is idle.
+  const queue = files.slice().sort((a, b) =>
+    fs.statSync(path.join(inDir, b)).size - fs.statSync(path.join(inDir, a)).size);
+  let running = workers;
+  for (let i = 0; i < workers; i += 1) {
+    const worker = new Worker(__filename, { workerData: { bulkPipeline: true, inDir, outDir, skipInline } });
+    const next = () => worker.postMessage(queue.length ? queue.shift() : null);
+    worker.on('message', ({ file, result }) => {
+      tally(file, result);
+      next();
+    });
+    worker.on('error', (err) => {
+      console.error(`bulk-pipeline worker failed: ${err && err.stack ? err.stack : err}`);
+      process.exitCode = 1;
+    });
+    worker.on('exit', () => {
+      running -= 1;
+      if (running === 0) report();
+    });
+    next();
+  }
+}
+
+module.exports = { buildPasses, processClass, parseBytes, assemble };
+
+if (!isMainThread && workerData && workerData.bulkPipeline) {
+  const { inDir, outDir, skipInline } = workerData;
+  const passes = buildPasses(skipInline);
+  parentPort.on('message', (file) => {
+    if (file === null) {
+      parentPort.close();
+      return;
+    }
+    processFiles([file], inDir, outDir, passes, (f, result) => parentPort.postMessage({ file: f, result }));
+  });
+} else if (require.main === module) {
+  main();
 }
-fs.rmSync(tmpDir, { recursive: true, force: true });
-console.log(`Done: ${processed}/${files.length} processed, ${failed} failed (passthrough)`);
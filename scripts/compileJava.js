@@ -3,12 +3,19 @@
 
 const path = require('path');
 const frontend = require('../src/java-frontend');
+const { compileJavaFilesIncremental } = require('../src/java-frontend/incrementalBuild');
 
 function printUsage() {
   console.log(`Usage: node scripts/compileJava.js <file.java> [file2.java ...] [--out <dir>] [--source-level <n>]
+                                  [--incremental] [--workers <n|auto>]
 
 Compiles Java source files with the repository Java frontend and internal Jasmin/classfile backend.
 No host javac backend or fallback is used. Unsupported constructs fail fast.
+
+--incremental keeps a build record in the output directory and recompiles only
+changed sources and the sources whose dependencies' API changed.
+--workers spreads an incremental build over worker threads (default: one per
+core for rounds of 8 or more files, otherwise in-process).
 `);
 }
 
@@ -34,6 +41,17 @@ function parseArgs(argv) {
       options.sourceLevel = Number.parseInt(argv[++i], 10);
       continue;
     }
+    if (arg === '--incremental') {
+      options.incremental = true;
+      continue;
+    }
+    if (arg === '--workers') {
+      if (i + 1 >= argv.length) {
+        throw new Error('--workers requires a number or auto');
+      }
+      options.workers = argv[++i];
+      continue;
+    }
     positional.push(arg);
   }
   if (positional.length === 0) {
@@ -42,25 +60,29 @@ function parseArgs(argv) {
   return { inputPaths: positional, options };
 }
 
-function main() {
+async function main() {
   const parsed = parseArgs(process.argv.slice(2));
   if (parsed.help) {
     printUsage();
     return;
   }
+  const { incremental, ...compileOptions } = parsed.options;
   const options = {
-    ...parsed.options,
+    ...compileOptions,
     sourceFileName: parsed.inputPaths.length === 1 ? path.basename(parsed.inputPaths[0]) : undefined,
   };
-  const result = frontend.compileJavaFiles(parsed.inputPaths, options);
+  const result = incremental
+    ? await compileJavaFilesIncremental(parsed.inputPaths, options)
+    : frontend.compileJavaFiles(parsed.inputPaths, options);
   for (const written of result.written) {
     console.log(`Compiled ${written.binaryName} -> ${written.outputPath}`);
   }
+  if (result.incremental) {
+    console.log(`Up to date: ${result.incremental.reused.length} reused, ${result.incremental.compiled.length} compiled`);
+  }
 }
 
-try {
-  main();
-} catch (error) {
+main().catch((error) => {
   console.error(error.message);
   process.exit(1);
-}
+});
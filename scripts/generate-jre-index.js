@@ -11,10 +11,22 @@
 
 const fs = require('fs');
 const path = require('path');
+const { jreClassParents } = require('../src/core/jreParents');
 
 const JRE_DIR = path.join(__dirname, '..', 'src', 'jre');
 const OUTPUT_FILE = path.join(JRE_DIR, 'index.js');
 
+function hierarchyOf(className, relativePath) {
+  let definition;
+  try {
+    definition = require(path.join(JRE_DIR, relativePath));
+  } catch (error) {
+    console.warn(`⚠️  ${className}: no hierarchy record (${error.message.split('\n')[0]})`);
+    return null;
+  }
+  return jreClassParents(className, definition);
+}
+
 function generateJreIndex() {
   console.log('🔍 Scanning JRE directory for class files...');
 
@@ -49,19 +61,59 @@ jreClasses[className] = relativePath;
     process.exit(1);
   }
 
-  // Generate the index.js file content
+  // Generate the index.js file content. Each entry is a getter that requires
+  // its module on first read, so constructing a JVM evaluates only the shims a
+  // program uses. The requires stay static strings for the bundler. Each
+  // entry also records the shim's superclass and interfaces, read here at
+  // build time, so the closed-world class hierarchy can place a class without
+  // evaluating it; a shim that cannot be loaded here gets no record.
   const classEntries = Object.entries(jreClasses)
     .sort(([a], [b]) => a.localeCompare(b)) // Sort for consistent output
-    .map(([className, relativePath]) => `  '${className}': require('${relativePath}')`)
-    .join(',\n');
+    .map(([className, relativePath]) => {
+      const parents = hierarchyOf(className, relativePath);
+      const extra = parents
+        ? `, ${JSON.stringify(parents.superClassName)}, ${JSON.stringify(parents.interfaces)}` : '';
+      return `lazy('${className}', () => require('${relativePath}')${extra});`;
+    })
+    .join('\n');
 
   const fileContent = `// NOTE: This file is GENERATED at build time by scripts/generate-jre-index.js
 // DO NOT EDIT MANUALLY - run \`npm run generate-jre-index\` to regenerate
 // This file is .gitignored and regenerated during builds for browser compatibility
 
-const jreClasses = {
+const jreClasses = {};
+const hierarchy = new Map();
+
+// Entries load their module on first access and then become plain data
+// properties. Object.keys() lists every class without loading any; assigning
+// an entry (JRE overrides do) replaces it.
+function lazy(className, load, superClassName, interfaces) {
+  if (superClassName !== undefined) hierarchy.set(className, { superClassName, interfaces });
+  const settle = (value) => {
+    Object.defineProperty(jreClasses, className, {
+      value,
+      writable: true,
+      enumerable: true,
+      configurable: true,
+    });
+    return value;
+  };
+  Object.defineProperty(jreClasses, className, {
+    enumerable: true,
+    configurable: true,
+    get: () => settle(load()),
+    set: settle,
+  });
+}
+
 ${classEntries}
-};
+
+// { superClassName, interfaces } of a class as generated, without loading its
+// module; null when the generator could not read it. Not enumerable, so it is
+// never mistaken for a class.
+Object.defineProperty(jreClasses, 'hierarchyOf', {
+  value: (className) => hierarchy.get(className) || null,
+});
 
 module.exports = jreClasses;
 `;
@@ -88,13 +88,99 @@ function loadArtifact(file) {
 }
 
 const workspaceCache = new Map();
+// Cached workspaces live as long as the server, so they keep at most this
+// many class ASTs in memory (KRAKATAU_AST_CACHE overrides); the rest are
+// re-parsed on demand. No tool edits an AST in place.
+const WORKSPACE_AST_LIMIT = Number(process.env.KRAKATAU_AST_CACHE) || 256;
+// Finished jit.run VMs, oldest first. Each one holds its heap, compiled code
+// and telemetry ring, so only the MCP_JIT_SESSIONS most recently used ones
+// are kept; jit.dispose drops one sooner.
+const jitSessions = new Map();
+const maxJitSessions = Math.max(1, Number(process.env.MCP_JIT_SESSIONS) || 4);
+let lastJitSession = null;
+
+function useJitSession(session) {
+  const jvm = jitSessions.get(session);
+  if (!jvm) return null;
+  jitSessions.delete(session);
+  jitSessions.set(session, jvm);
+  lastJitSession = session;
+  return jvm;
+}
+
+function disposeJitSession(session) {
+  const jvm = jitSessions.get(session);
+  if (!jvm) return false;
+  jitSessions.delete(session);
+  jvm.clearJitTelemetry();
+  if (lastJitSession === session) {
+    lastJitSession = jitSessions.size ? Array.from(jitSessions.keys()).pop() : null;
+  }
+  return true;
+}
+
+function storeJitSession(session, jvm) {
+  disposeJitSession(session);
+  jitSessions.set(session, jvm);
+  lastJitSession = session;
+  while (jitSessions.size > maxJitSessions) {
+    disposeJitSession(jitSessions.keys().next().value);
+  }
+}
+
+// Runs a class to completion with the JIT on and keeps the VM around so
+// jit.telemetry can query its event stream afterwards. process.stdout is this
+// server's JSON-RPC channel, so the VM gets its own stdout sink, and the Wasm
+// tiers and telemetry are switched on through its jit options rather than the
+// process environment.
+async function runJitSession(params) {
+  if (!params.className) throw new Error('className required');
+  const { JVM } = require('../src/core/jvm');
+  const jit = params.jit || {};
+  const output = [];
+  const jvm = new JVM({
+    classpath: normalizeClasspath(params.classpath),
+    stdout: (chunk) => output.push(String(chunk)),
+    jit: {
+      wasm: true,
+      wasmStructured: true,
+      ...jit,
+      telemetry: { enabled: true, ...(jit.telemetry || {}) },
+    },
+  });
+  const started = Date.now();
+  await jvm.run(params.className.replace(/\./g, '/'));
+  const session = params.session || params.className;
+  storeJitSession(session, jvm);
+  return { session, ms: Date.now() - started, stdout: output.join('') };
+}
 
 async function getWorkspace(classpath = ['sources']) {
   const key = classpath.join(path.delimiter);
   if (!workspaceCache.has(key)) {
-    workspaceCache.set(key, await KrakatauWorkspace.create(classpath));
+    const workspace = await KrakatauWorkspace.create(classpath, {
+      maxResidentASTs: WORKSPACE_AST_LIMIT,
+    });
+    // Keep the cached workspace in step with the classpath: a watcher when
+    // the platform supports recursive fs.watch, otherwise a stat rescan on
+    // every use.
+    try {
+      workspace.watch({
+        onError: () => {
+          workspace.close();
+          workspace.watching = false;
+        },
+      });
+      workspace.watching = true;
+    } catch (_err) {
+      workspace.watching = false;
+    }
+    workspaceCache.set(key, workspace);
+    return workspace;
   }
-  return workspaceCache.get(key);
+  const workspace = workspaceCache.get(key);
+  if (!workspace.watching) workspace.refresh();
+  return workspace;
 }
 
 function normalizeClasspath(value) {
@@ -106,13 +192,31 @@ function normalizeClasspath(value) {
   throw new Error('classpath must be a string or array');
 }
 
+// The caller and field-reference walks read only members and the member
+// instructions in method bodies, both of which the workspace index records.
+// Rebuilding that skeleton from the index leaves every class AST unloaded.
 function buildWorkspaceAst(workspace) {
-  const classes = [];
-  Object.values(workspace.workspaceASTs || {}).forEach((entry) => {
-    if (!entry || !entry.ast || !Array.isArray(entry.ast.classes)) {
-      return;
-    }
-    entry.ast.classes.forEach((cls) => classes.push(cls));
+  const classes = Object.keys(workspace.workspaceASTs).map((className) => {
+    const summary = workspace.getClassSummary(className);
+    const items = [];
+    const bodies = new Map();
+    summary.members.forEach(([kind, name, descriptor, flags, itemIndex]) => {
+      if (kind === 'field') {
+        items.push({ type: 'field', field: { name, descriptor, flags } });
+        return;
+      }
+      const codeItems = [];
+      bodies.set(itemIndex, codeItems);
+      items.push({
+        type: 'method',
+        method: { name, descriptor, flags, attributes: [{ type: 'code', code: { codeItems } }] },
+      });
+    });
+    summary.refs.forEach(([target, itemIndex, , , name, descriptor, op]) => {
+      if (!op || !bodies.has(itemIndex)) return;
+      bodies.get(itemIndex).push({ instruction: { op, arg: [null, target, [name, descriptor]] } });
+    });
+    return { className, items };
   });
   return { classes };
 }
@@ -385,6 +489,28 @@ async function handleRequest(message) {
         }));
         return jsonrpc.success(id, { references: refs });
       }
+      case 'jit.run': {
+        const result = await runJitSession(params);
+        const telemetry = jitSessions.get(result.session).getJitTelemetry({ limit: params.limit });
+        return jsonrpc.success(id, { ...result, summary: telemetry && telemetry.summary });
+      }
+      case 'jit.telemetry': {
+        const session = params.session || lastJitSession;
+        const jvm = session && useJitSession(session);
+        if (!jvm) throw new Error('no jit session; call jit.run first');
+        return jsonrpc.success(id, jvm.getJitTelemetry({
+          since: params.since,
+          kind: params.kind,
+          method: params.method,
+          methodKey: params.methodKey,
+          limit: params.limit,
+        }));
+      }
+      case 'jit.dispose': {
+        const sessions = params.session ? [params.session] : Array.from(jitSessions.keys());
+        const disposed = sessions.filter((session) => disposeJitSession(session));
+        return jsonrpc.success(id, { disposed });
+      }
       default:
         throw new Error(`Unknown method: ${method}`);
     }
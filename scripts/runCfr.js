@@ -17,6 +17,7 @@ function usage(exitCode) {
   stream.write(`  --diagnostics-json <file> Write machine-readable fallback diagnostics\n`);
   stream.write(`  --preserve-field-names <file> Preserve field names listed one per line\n`);
   stream.write(`  --detect-obfuscation-guards Report hostile overrides such as throwing toString methods\n`);
+  stream.write(`  --workers <n|auto>        Decompile directories and jars on n worker threads\n`);
   stream.write(`  --fail-on-hard-failure    Exit non-zero on invalid output markers or panics\n`);
   stream.write(`  --fail-on-fallback        Exit non-zero on hard failures or valid state-machine fallbacks\n`);
   stream.write(`  --help, -h                Show this help text\n`);
@@ -59,6 +60,9 @@ function parseArgs(argv) {
       if (i + 1 >= argv.length) throw new Error(`${arg} requires a file`);
       options.preserveFieldNames = new Set(fs.readFileSync(argv[++i], 'utf8')
         .split(/\r?\n/).map((name) => name.trim()).filter(Boolean));
+    } else if (arg === '--workers') {
+      if (i + 1 >= argv.length) throw new Error(`${arg} requires a count or auto`);
+      options.workers = argv[++i];
     } else if (arg === '--detect-obfuscation-guards') {
       options.detectObfuscationGuards = true;
     } else if (arg === '--fail-on-fallback') {
@@ -1,5 +1,35 @@
+const fs = require('fs');
 const path = require('path');
 const { JVM } = require('../src/core/jvm');
+const { encodeBootImage, decodeBootImage } = require('../src/core/bootImage');
+
+const USAGE = 'Usage: node scripts/runJvm.js [-cp <classpath>] [--verbose] ' +
+  '[--boot-image <file> | --write-boot-image <file> [--train]] <mainClass>';
+
+// A boot image replaces class loading and static initialisation up to main().
+// --write-boot-image captures one before main() runs; with --train it is
+// written after the run instead, carrying the JIT invocation counts the run
+// gathered so the restored VM compiles hot methods on first call.
+async function runProgram(jvm, mainClass, runOptions, bootOptions) {
+  if (bootOptions.readFrom) {
+    const image = await decodeBootImage(fs.readFileSync(bootOptions.readFrom));
+    if (mainClass && mainClass.replace(/\./g, '/') !== image.mainClass) {
+      throw new Error(`Boot image starts ${image.mainClass}, not ${mainClass}`);
+    }
+    await jvm.runFromBootImage(image, runOptions);
+    return;
+  }
+  await jvm.initializeMain(mainClass, runOptions);
+  const image = bootOptions.writeTo ? jvm.createBootImage() : null;
+  if (image && !bootOptions.train) {
+    fs.writeFileSync(bootOptions.writeTo, await encodeBootImage(image));
+  }
+  await jvm.startMain(runOptions);
+  if (image && bootOptions.train) {
+    image.jitProfile = jvm.exportJitProfile();
+    fs.writeFileSync(bootOptions.writeTo, await encodeBootImage(image));
+  }
+}
 
 function main() {
   const args = process.argv.slice(2);
@@ -7,6 +37,7 @@ function main() {
   let mainClass = '';
   let verbose = false;
   const mainArgs = [];
+  const bootOptions = { readFrom: null, writeTo: null, train: false };
 
   for (let i = 0; i < args.length; i++) {
     if (args[i] === '-cp' || args[i] === '-classpath') {
@@ -19,6 +50,16 @@ function main() {
       }
     } else if (args[i] === '--verbose') {
       verbose = true;
+    } else if (!mainClass && (args[i] === '--boot-image' || args[i] === '--write-boot-image')) {
+      if (i + 1 >= args.length) {
+        console.error(`Error: ${args[i]} requires a file`);
+        process.exit(1);
+      }
+      if (args[i] === '--boot-image') bootOptions.readFrom = args[i + 1];
+      else bootOptions.writeTo = args[i + 1];
+      i++;
+    } else if (!mainClass && args[i] === '--train') {
+      bootOptions.train = true;
     } else {
       if (!mainClass) {
         mainClass = args[i];
@@ -28,12 +69,13 @@ function main() {
     }
   }
 
-  if (!mainClass) {
-    console.error('Usage: node scripts/runJvm.js [-cp <classpath>] [--verbose] <mainClass>');
+  if ((!mainClass && !bootOptions.readFrom) || (bootOptions.readFrom && bootOptions.writeTo)) {
+    console.error(USAGE);
     process.exit(1);
   }
 
   const jvm = new JVM({ classpath: cp, verbose: verbose });
+  const start = (runOptions) => runProgram(jvm, mainClass, runOptions, bootOptions);
 
   let stdin = '';
   if (!process.stdin.isTTY) {
@@ -46,10 +88,10 @@ function main() {
     });
 
     process.stdin.on('end', () => {
-      jvm.run(mainClass, { args: mainArgs, stdin: stdin });
+      start({ args: mainArgs, stdin: stdin });
     });
   } else {
-    jvm.run(mainClass, { args: mainArgs });
+    start({ args: mainArgs });
   }
 }
 
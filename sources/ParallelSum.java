@@ -0,0 +1,48 @@
+// Run with JVM_PARALLEL_THREADS=ParallelSum: the first thread qualifies for a
+// worker, the second reads a static final array and stays on the scheduler.
+public class ParallelSum implements Runnable {
+    static final int SCALE = Integer.parseInt("3");
+    static final int[] TABLE = {1, 2, 3, 4};
+
+    static {
+        System.out.println("init");
+    }
+
+    private final int[] data;
+    private final long[] result;
+    private final boolean useTable;
+
+    ParallelSum(int[] data, long[] result, boolean useTable) {
+        this.data = data;
+        this.result = result;
+        this.useTable = useTable;
+    }
+
+    public void run() {
+        long sum = 0;
+        for (int i = 0; i < data.length; i++) {
+            sum += data[i] * SCALE;
+        }
+        if (useTable) {
+            for (int value : TABLE) {
+                sum += value;
+            }
+        }
+        result[0] = sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] data = {1, 2, 3, 4};
+        long[] plain = new long[1];
+        long[] withTable = new long[1];
+        TABLE[0] = 100;
+        Thread first = new Thread(new ParallelSum(data, plain, false));
+        Thread second = new Thread(new ParallelSum(data, withTable, true));
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        System.out.println(plain[0]);
+        System.out.println(withTable[0]);
+    }
+}
@@ -1,5 +1,7 @@
 'use strict';
 
+const { jreClassParents } = require('../../core/jreParents');
+
 // Closed-world class hierarchy over the classes currently registered in
 // jvm.classes. The world grows as classes load: jvm.classEpoch increments on
 // every registration and refresh() rebuilds lazily. Facts derived here are
@@ -11,19 +13,19 @@ class ClassHierarchy {
   constructor(jvm) {
     this.jvm = jvm;
     this.epoch = -1;
+    this.pendingCount = -1;
     this.subclasses = null; // className -> Set(direct subclasses/implementors)
     this.dispatchMemo = null;
   }
 
   refresh() {
+    const pending = this.jvm.pendingJreClasses;
+    const pendingCount = pending ? pending.size : 0;
     const epoch = this.jvm.classEpoch || 0;
-    if (this.epoch === epoch && this.subclasses) return;
-    this.epoch = epoch;
+    if (this.epoch === epoch && this.pendingCount === pendingCount && this.subclasses) return;
     this.subclasses = new Map();
     this.dispatchMemo = new Map();
-    for (const [name, cd] of Object.entries(this.jvm.classes)) {
-      const cls = cd && cd.ast && cd.ast.classes && cd.ast.classes[0];
-      if (!cls) continue;
+    const linkAll = (name, cls) => {
       const link = (parent) => {
         if (!parent || parent === name) return;
         let set = this.subclasses.get(parent);
@@ -32,10 +34,43 @@ class ClassHierarchy {
       };
       link(cls.superClassName);
       for (const itf of cls.interfaces || []) link(itf);
+    };
+    // JRE stubs are built on first use and are not enumerable until then, but
+    // a dispatch cone has to include them. The generated JRE index records
+    // their parents, so they are linked without evaluating the shim; only a
+    // class with no record is built.
+    if (pendingCount) {
+      for (const name of [...pending]) {
+        const parents = this._pendingParents(name);
+        const cd = parents ? null : this.jvm.classes[name];
+        const cls = parents || (cd && cd.ast && cd.ast.classes && cd.ast.classes[0]);
+        if (cls) linkAll(name, cls);
+      }
+    }
+    for (const [name, cd] of Object.entries(this.jvm.classes)) {
+      const cls = cd && cd.ast && cd.ast.classes && cd.ast.classes[0];
+      if (cls) linkAll(name, cls);
+    }
+    this.epoch = this.jvm.classEpoch || 0;
+    this.pendingCount = pending ? pending.size : 0;
+  }
+
+  // { superClassName, interfaces } of a JRE class whose stub is not built,
+  // or null when only building it would tell. An index entry that was
+  // already loaded or replaced (JRE overrides) is read directly.
+  _pendingParents(name) {
+    const jre = this.jvm.jre;
+    if (!jre) return null;
+    const entry = Object.getOwnPropertyDescriptor(jre, name);
+    if (entry && !entry.get) {
+      return jreClassParents(name, entry.value);
     }
+    return typeof jre.hierarchyOf === 'function' ? jre.hierarchyOf(name) : null;
   }
 
   _classAst(name) {
+    // A pending JRE stub would resolve to a stub anyway; do not build it.
+    if (this.jvm.pendingJreClasses && this.jvm.pendingJreClasses.has(name)) return null;
     const cd = this.jvm.classes[name];
     if (!cd || cd.isJreStub || !cd.ast || !cd.ast.classes) return null;
     return cd.ast.classes[0] || null;
@@ -117,7 +152,8 @@ class ClassHierarchy {
       const cls = this._classAst(member);
       if (!cls) {
         complete = false;
-        if (this.jvm.classes[member]) hiddenReceivers = true;
+        const pending = this.jvm.pendingJreClasses;
+        if (pending && pending.has(member) || this.jvm.classes[member]) hiddenReceivers = true;
         continue;
       }
       const flags = cls.flags || [];
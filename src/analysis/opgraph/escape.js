@@ -0,0 +1,458 @@
+'use strict';
+
+// Escape analysis + scalar replacement over the shared SSA IR (ssa.js).
+//
+// An allocation — `new`, or `newarray` of a small constant length — is
+// virtual when every use of its value sits in the allocating block and only
+// touches the object itself: getfield/putfield with it as the receiver,
+// x[a]load/x[a]store at a constant in-range index, arraylength, and its
+// constructor call (Object.<init>()V, or any <init> the caller can summarise
+// as plain field stores from arguments and constants). Nothing else can then
+// observe the object, so its fields become SSA values: one forward walk of
+// the block keeps the current value per field, reads take it, writes replace
+// it, and the allocation, the accesses and the constructor call disappear.
+//
+// The interpreter can still see it through frame state: the locals/stack
+// snapshots on throwing nodes (slotState/stackUnder), throwing terminators
+// (term.slotState) and block entry state (slotDefsIn/entryStack). Each such
+// holder gets `virtualState` (`virtualStateIn` on blocks): Map(alloc ->
+// Map(fieldKey -> IrValue)) with the field values at that point, and
+// fn.virtualObjects describes how to rebuild each one. A backend that exits
+// to the interpreter rematerialises from those before spilling. Consumers
+// that never call scalarReplace see the IR unchanged.
+//
+// Dead-slot joins: a loop-header phi for a local reassigned every iteration
+// carries (undef, alloc). The verifier types such a join TOP, so legal
+// bytecode never reads it before storing; a phi with an undef (or dead-phi)
+// arg whose only uses are other such phis is dropped to undef instead of
+// counting as an escape.
+
+const { IrValue, replaceValues, recordUses } = require('./ssa');
+const { kindFromDescriptor } = require('./ssaTypes');
+const { normalizeInstruction } = require('./stackEffects');
+
+const MAX_SCALAR_ARRAY = 8;
+
+const ARRAY_ATYPES = {
+  int: { kind: 'I', load: 'iaload', store: 'iastore', narrow: null },
+  byte: { kind: 'I', load: 'baload', store: 'bastore', narrow: 'i2b' },
+  char: { kind: 'I', load: 'caload', store: 'castore', narrow: 'i2c' },
+  short: { kind: 'I', load: 'saload', store: 'sastore', narrow: 'i2s' },
+  long: { kind: 'J', load: 'laload', store: 'lastore', narrow: null },
+  float: { kind: 'F', load: 'faload', store: 'fastore', narrow: null },
+  double: { kind: 'D', load: 'daload', store: 'dastore', narrow: null },
+};
+
+const ZERO_OP = { I: 'iconst_0', J: 'lconst_0', F: 'fconst_0', D: 'dconst_0', A: 'aconst_null' };
+const ICONST = {
+  iconst_m1: -1, iconst_0: 0, iconst_1: 1, iconst_2: 2, iconst_3: 3, iconst_4: 4, iconst_5: 5,
+};
+const CONST_SOURCE = /^([ilfd]const_(m1|\d)|aconst_null|bipush|sipush)$/;
+const LOAD_SOURCE = /^([ilfda])load(?:_(\d))?$/;
+
+function constantInt(value) {
+  if (!value) return null;
+  if (value.op in ICONST) return ICONST[value.op];
+  if (value.op === 'bipush' || value.op === 'sipush') {
+    const n = Number(value.imm);
+    return Number.isInteger(n) ? n : null;
+  }
+  return null;
+}
+
+function memberRef(node) {
+  const arg = node.imm;
+  if (!Array.isArray(arg) || !Array.isArray(arg[2])) return null;
+  return { owner: arg[1], name: arg[2][0], descriptor: arg[2][1] };
+}
+
+// Constructor as a list of field stores, or null when it does anything else.
+// Accepted shape (javac's output for plain data classes):
+//   aload_0; invokespecial <super>.<init>()V      (super summarised too)
+//   { aload_0; <param load | constant>; putfield }*
+//   return
+// `resolveInit(owner, descriptor)` returns the <init> method AST or null.
+function summarizeConstructor(method, resolveInit, depth = 0) {
+  if (!method || depth > 8) return null;
+  const codeAttr = (method.attributes || []).find((a) => a.type === 'code');
+  const items = codeAttr && codeAttr.code && codeAttr.code.codeItems;
+  if (!items || (codeAttr.code.exceptionTable || []).length) return null;
+
+  // parameter slot -> index in the invoke's argument list (receiver excluded)
+  const paramOfSlot = new Map();
+  const params = paramDescriptors(method.descriptor);
+  if (!params) return null;
+  let slot = 1;
+  params.forEach((descriptor, index) => {
+    paramOfSlot.set(slot, { index, kind: kindFromDescriptor(descriptor) });
+    slot += descriptor === 'J' || descriptor === 'D' ? 2 : 1;
+  });
+
+  const ops = [];
+  for (const item of items) {
+    const instruction = item && normalizeInstruction(item.instruction);
+    if (!instruction || !instruction.op || instruction.op === 'nop') continue;
+    ops.push(instruction);
+  }
+  let i = 0;
+  const isThis = (ins) => ins && (ins.op === 'aload_0' || (ins.op === 'aload' && Number(ins.arg) === 0));
+  if (!isThis(ops[i]) || !ops[i + 1] || ops[i + 1].op !== 'invokespecial') return null;
+  const superRef = Array.isArray(ops[i + 1].arg) ? ops[i + 1].arg : null;
+  if (!superRef || superRef[2][0] !== '<init>' || superRef[2][1] !== '()V') return null;
+  const stores = [];
+  if (superRef[1] !== 'java/lang/Object') {
+    const parent = summarizeConstructor(resolveInit(superRef[1], '()V'), resolveInit, depth + 1);
+    if (!parent) return null;
+    stores.push(...parent.stores);
+  }
+  i += 2;
+  while (i < ops.length && ops[i].op !== 'return') {
+    const [recv, source, put] = [ops[i], ops[i + 1], ops[i + 2]];
+    if (!isThis(recv) || !source || !put || put.op !== 'putfield' || !Array.isArray(put.arg)) {
+      return null;
+    }
+    const field = { owner: put.arg[1], name: put.arg[2][0], descriptor: put.arg[2][1] };
+    const load = LOAD_SOURCE.exec(source.op);
+    if (load) {
+      const param = paramOfSlot.get(Number(load[2] !== undefined ? load[2] : source.arg));
+      if (!param || param.kind !== kindFromDescriptor(field.descriptor)) return null;
+      stores.push({ field, param: param.index });
+    } else if (CONST_SOURCE.test(source.op)) {
+      stores.push({ field, constant: { op: source.op, imm: source.arg ?? null } });
+    } else {
+      return null;
+    }
+    i += 3;
+  }
+  if (i !== ops.length - 1) return null;
+  return { stores };
+}
+
+function paramDescriptors(descriptor) {
+  if (typeof descriptor !== 'string' || descriptor[0] !== '(') return null;
+  const out = [];
+  let i = 1;
+  while (i < descriptor.length && descriptor[i] !== ')') {
+    const start = i;
+    while (descriptor[i] === '[') i += 1;
+    if (descriptor[i] === 'L') i = descriptor.indexOf(';', i);
+    if (i < 0) return null;
+    i += 1;
+    out.push(descriptor.slice(start, i));
+  }
+  return out;
+}
+
+// options:
+//   canMaterialize(alloc)      backend can rebuild this allocation on exit
+//   constructorSummary(owner, descriptor)   summarizeConstructor result or null
+//   fieldKey(alloc, owner, name, descriptor) canonical field identity, or
+//                              null to give up (default: name:descriptor,
+//                              with differing owners treated as ambiguous)
+//   maxArrayLength             largest constant newarray length replaced
+// Returns { replaced, escapes: Map(allocId -> reason) }.
+function scalarReplace(fn, options = {}) {
+  const escapes = new Map();
+  if (!fn || fn.rejected) return { replaced: 0, escapes };
+  const maxArrayLength = options.maxArrayLength ?? MAX_SCALAR_ARRAY;
+  const canMaterialize = options.canMaterialize || (() => true);
+  const summaryOf = options.constructorSummary || (() => null);
+  let nextId = fn.values.reduce((max, v) => Math.max(max, v.id), -1) + 1;
+  const makeValue = (op, kind, args, imm, anchor) => {
+    const value = new IrValue(nextId++, op, kind, args, imm);
+    value.block = anchor.block;
+    value.itemIdx = anchor.itemIdx;
+    value.pc = anchor.pc;
+    fn.values.push(value);
+    return value;
+  };
+
+  const deadPhis = findDeadPhis(fn);
+
+  // ---- classification ----
+  const virtuals = new Map(); // alloc -> { kind: 'object'|'array', ... }
+  for (const block of fn.blocks) {
+    if (!fn.reachable.has(block.id)) continue;
+    for (const node of block.body) {
+      const shape = allocationShape(node, maxArrayLength);
+      if (!shape) continue;
+      const reason = escapeReason(node, shape, deadPhis, summaryOf, options.fieldKey)
+        || (canMaterialize(node) ? null : 'cannot rematerialize');
+      if (reason) escapes.set(node.id, reason);
+      else virtuals.set(node, shape);
+    }
+  }
+  if (virtuals.size === 0) return { replaced: 0, escapes };
+
+  // ---- rewrite ----
+  const replacements = new Map();
+  const removed = new Set();
+  const endStates = new Map();
+  for (const block of fn.blocks) {
+    if (![...virtuals.keys()].some((alloc) => alloc.block === block.id)) continue;
+    const states = new Map();
+    const body = [];
+    const read = (alloc, key, anchor) => {
+      const state = states.get(alloc);
+      if (!state.has(key)) {
+        const kind = virtuals.get(alloc).fieldKinds.get(key);
+        const zero = makeValue(ZERO_OP[kind], kind, [], null, anchor);
+        body.push(zero);
+        state.set(key, zero);
+      }
+      return state.get(key);
+    };
+    for (const node of block.body) {
+      if (virtuals.has(node)) {
+        states.set(node, new Map());
+        removed.add(node);
+        continue;
+      }
+      const snapshot = frameStateSnapshot(
+        [node.slotState && node.slotState.values(), node.stackUnder], states);
+      if (snapshot) node.virtualState = snapshot;
+      const alloc = node.args[0];
+      const shape = alloc && states.has(alloc) ? virtuals.get(alloc) : null;
+      if (!shape) { body.push(node); continue; }
+      const state = states.get(alloc);
+      removed.add(node);
+      if (node.op === 'getfield') {
+        replacements.set(node, read(alloc, shape.keyOf.get(node), node));
+      } else if (node.op === 'putfield') {
+        state.set(shape.keyOf.get(node), node.args[1]);
+      } else if (node.op === 'invokespecial') {
+        for (const store of shape.constructorStores || []) {
+          const value = store.constant
+            ? makeValue(store.constant.op, shape.fieldKinds.get(store.key), [], store.constant.imm, node)
+            : node.args[store.param + 1];
+          if (store.constant) body.push(value);
+          state.set(store.key, value);
+        }
+      } else if (node.op === 'arraylength') {
+        replacements.set(node, alloc.args[0]);
+      } else if (node.op === shape.load) {
+        replacements.set(node, read(alloc, constantInt(node.args[1]), node));
+      } else if (node.op === shape.store) {
+        let value = node.args[2];
+        if (shape.narrow) {
+          value = makeValue(shape.narrow, 'I', [value], null, node);
+          body.push(value);
+        }
+        state.set(constantInt(node.args[1]), value);
+      }
+    }
+    block.body = body;
+    const termSnapshot = block.term && block.term.slotState
+      ? frameStateSnapshot([block.term.slotState.values()], states) : null;
+    if (termSnapshot) block.term.virtualState = termSnapshot;
+    for (const [alloc, state] of states) endStates.set(alloc, state);
+  }
+
+  // Frame state outside the allocating block sees that block's final fields:
+  // every access sits there, and it dominates any block the value reaches
+  // without a phi.
+  const foreign = (blockId) => new Map([...endStates]
+    .filter(([alloc]) => alloc.block !== blockId));
+  for (const block of fn.blocks) {
+    if (!fn.reachable.has(block.id)) continue;
+    const states = foreign(block.id);
+    if (states.size === 0) continue;
+    const entry = frameStateSnapshot(
+      [block.slotDefsIn && block.slotDefsIn.values(), block.entryStack], states);
+    if (entry) block.virtualStateIn = entry;
+    for (const node of block.body) {
+      node.virtualState = frameStateSnapshot(
+        [node.slotState && node.slotState.values(), node.stackUnder], states,
+        node.virtualState) || undefined;
+    }
+    if (block.term && block.term.slotState) {
+      block.term.virtualState = frameStateSnapshot(
+        [block.term.slotState.values()], states, block.term.virtualState) || undefined;
+    }
+  }
+
+  // Dead-slot joins that carried a replaced allocation become undef.
+  for (const phi of deadPhisCarrying(deadPhis, virtuals)) {
+    const undef = makeValue('undef', null, [], null, phi);
+    replacements.set(phi, undef);
+  }
+
+  const map = replaceValues(fn, replacements);
+  for (const block of fn.blocks) {
+    block.body = block.body.filter((node) => !removed.has(node));
+  }
+  fn.values = fn.values.filter((value) => !removed.has(value));
+  const remap = (state) => {
+    if (!state) return;
+    for (const fields of state.values()) {
+      for (const [key, value] of fields) fields.set(key, map(value));
+    }
+  };
+  for (const value of fn.values) remap(value.virtualState);
+  for (const block of fn.blocks) {
+    remap(block.virtualStateIn);
+    if (block.term) remap(block.term.virtualState);
+  }
+  for (const state of endStates.values()) {
+    for (const [key, value] of state) state.set(key, map(value));
+  }
+  recordUses(fn);
+
+  fn.virtualObjects = new Map();
+  for (const [alloc, shape] of virtuals) {
+    fn.virtualObjects.set(alloc, shape.kind === 'object'
+      ? { kind: 'object', className: alloc.imm, fields: shape.fields }
+      : {
+        kind: 'array', atype: alloc.imm, length: shape.length,
+        elementKind: shape.elementKind, storeOp: shape.store,
+      });
+  }
+  return { replaced: virtuals.size, escapes };
+}
+
+function allocationShape(node, maxArrayLength) {
+  if (node.op === 'new' && typeof node.imm === 'string') {
+    return { kind: 'object', keyOf: new Map(), fieldKinds: new Map(), fields: new Map() };
+  }
+  if (node.op === 'newarray' && ARRAY_ATYPES[node.imm]) {
+    const length = constantInt(node.args[0]);
+    if (length === null || length < 0 || length > maxArrayLength) return null;
+    const info = ARRAY_ATYPES[node.imm];
+    const fieldKinds = new Map();
+    for (let i = 0; i < length; i += 1) fieldKinds.set(i, info.kind);
+    return {
+      kind: 'array', length, elementKind: info.kind, load: info.load,
+      store: info.store, narrow: info.narrow, fieldKinds,
+    };
+  }
+  return null;
+}
+
+function escapeReason(alloc, shape, deadPhis, summaryOf, fieldKey) {
+  const owners = new Map(); // default key -> owner, for the ambiguity check
+  const keyFor = (ref) => {
+    if (fieldKey) return fieldKey(alloc, ref.owner, ref.name, ref.descriptor);
+    const key = `${ref.name}:${ref.descriptor}`;
+    if (owners.has(key) && owners.get(key) !== ref.owner) return null;
+    owners.set(key, ref.owner);
+    return key;
+  };
+  const addField = (ref) => {
+    const key = keyFor(ref);
+    const kind = kindFromDescriptor(ref.descriptor);
+    if (key === null || key === undefined || !kind || kind === 'V') return null;
+    shape.fieldKinds.set(key, kind);
+    shape.fields.set(key, ref);
+    return key;
+  };
+  let constructed = false;
+  for (const use of alloc.uses) {
+    if (!(use instanceof IrValue)) return 'terminator operand';
+    if (use.op === 'phi') {
+      if (deadPhis.has(use)) continue;
+      return 'phi';
+    }
+    if (use.block !== alloc.block) return 'use outside allocating block';
+    const asReceiverOnly = use.args[0] === alloc && use.args.indexOf(alloc, 1) < 0;
+    if (!asReceiverOnly) return `operand of ${use.op}`;
+    if (shape.kind === 'object') {
+      if (use.op === 'getfield' || use.op === 'putfield') {
+        const key = addField(memberRef(use));
+        if (key === null) return `field ${use.op}`;
+        shape.keyOf.set(use, key);
+        continue;
+      }
+      if (use.op === 'invokespecial') {
+        const ref = memberRef(use);
+        if (!ref || ref.name !== '<init>' || constructed) return 'invokespecial';
+        constructed = true;
+        if (ref.owner === 'java/lang/Object' && ref.descriptor === '()V') continue;
+        if (ref.owner !== alloc.imm) return 'foreign constructor';
+        const summary = summaryOf(ref.owner, ref.descriptor);
+        if (!summary) return `constructor ${ref.owner}${ref.descriptor}`;
+        shape.constructorStores = [];
+        for (const store of summary.stores) {
+          const key = addField(store.field);
+          if (key === null) return 'constructor field';
+          shape.constructorStores.push({ ...store, key });
+        }
+        continue;
+      }
+      return `operand of ${use.op}`;
+    }
+    if (use.op === 'arraylength') continue;
+    if (use.op === shape.load || use.op === shape.store) {
+      const index = constantInt(use.args[1]);
+      if (index === null || index < 0 || index >= shape.length) return 'non-constant index';
+      continue;
+    }
+    return `operand of ${use.op}`;
+  }
+  return null;
+}
+
+// Map(alloc -> Map(key -> value)) for the virtual allocations referenced by
+// any of `sources` (iterables of IrValues), copying their current fields;
+// merges into `into` when given, leaving entries it already has.
+function frameStateSnapshot(sources, states, into = null) {
+  let snapshot = into || null;
+  for (const source of sources) {
+    if (!source) continue;
+    for (const value of source) {
+      if (!value || !states.has(value) || (snapshot && snapshot.has(value))) continue;
+      if (!snapshot) snapshot = new Map();
+      snapshot.set(value, new Map(states.get(value)));
+    }
+  }
+  return snapshot;
+}
+
+function findDeadPhis(fn) {
+  const phis = [];
+  for (const block of fn.blocks) {
+    if (fn.reachable.has(block.id)) phis.push(...block.phis);
+  }
+  // only other phis may use it ...
+  const candidates = new Set(phis.filter((phi) => phi.origin && phi.origin.slot !== undefined));
+  let changed = true;
+  while (changed) {
+    changed = false;
+    for (const phi of candidates) {
+      if (phi.uses.some((use) => !candidates.has(use))) {
+        candidates.delete(phi);
+        changed = true;
+      }
+    }
+  }
+  // ... and it must be TOP: an undef arm, or an arm that is itself dead
+  const dead = new Set();
+  changed = true;
+  while (changed) {
+    changed = false;
+    for (const phi of candidates) {
+      if (dead.has(phi)) continue;
+      if (phi.args.some((arg) => !arg || arg.op === 'undef' || dead.has(arg))) {
+        dead.add(phi);
+        changed = true;
+      }
+    }
+  }
+  return dead;
+}
+
+function deadPhisCarrying(deadPhis, virtuals) {
+  const out = new Set();
+  const work = [];
+  for (const alloc of virtuals.keys()) {
+    for (const use of alloc.uses) if (deadPhis.has(use)) work.push(use);
+  }
+  while (work.length) {
+    const phi = work.pop();
+    if (out.has(phi)) continue;
+    out.add(phi);
+    for (const use of phi.uses) if (deadPhis.has(use)) work.push(use);
+  }
+  return out;
+}
+
+module.exports = { scalarReplace, summarizeConstructor, MAX_SCALAR_ARRAY };
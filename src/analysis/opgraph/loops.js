@@ -0,0 +1,213 @@
+'use strict';
+
+// Loop structure and array-index ranges over the shared SSA IR (ssa.js).
+//
+// findCountedLoops: natural loops (back edges by dominance, via the
+// structurer's dominator tree) whose header ends in the loop's only exit
+// test, comparing a basic induction variable against a loop-invariant bound:
+//
+//   header: i = phi(init, i + step)        step a positive constant
+//           if (i <  bound) stay  else exit  (or <=, or either operand order)
+//
+// Every other block of such a loop runs only after the test held in the same
+// iteration, so the header phi is in [init, max] there (max = bound - 1, or
+// bound for <=), provided i + step cannot wrap — a condition the backend
+// checks with the rest of the guard.
+//
+// analyzeArrayRanges: for each innermost counted loop, the array accesses
+// whose array is loop-invariant and whose index is i + k for a constant k.
+// All of them are in bounds for the whole loop exactly when
+//   init + minK >= 0  and  max + maxK < length(array)
+// for each array, a predicate over values available before the loop starts.
+// A backend hoists that one guard to the preheader and emits a second,
+// unchecked copy of the loop behind it; the original, checked loop stays as
+// the fallback, so exceptions keep their precise pcs.
+
+const { reversePostorder, computeDominators, dominates } = require('../../decompiler/structurer');
+
+const ICONST = {
+  iconst_m1: -1, iconst_0: 0, iconst_1: 1, iconst_2: 2, iconst_3: 3, iconst_4: 4, iconst_5: 5,
+};
+const ARRAY_ACCESS = /^[ilfdbcsa]a(load|store)$/;
+// stay-condition relation with operands swapped / negated
+const SWAP = { if_icmplt: 'if_icmpgt', if_icmple: 'if_icmpge', if_icmpgt: 'if_icmplt', if_icmpge: 'if_icmple' };
+const NEGATE = { if_icmplt: 'if_icmpge', if_icmpge: 'if_icmplt', if_icmple: 'if_icmpgt', if_icmpgt: 'if_icmple' };
+
+function constantInt(value) {
+  if (!value) return null;
+  if (value.op in ICONST) return ICONST[value.op];
+  if (value.op === 'bipush' || value.op === 'sipush') {
+    const n = Number(value.imm);
+    return Number.isInteger(n) ? n : null;
+  }
+  if ((value.op === 'ldc' || value.op === 'ldc_w') && value.kind === 'I') {
+    const arg = value.imm;
+    const n = typeof arg === 'number' ? arg : arg && arg.type === 'Integer' ? Number(arg.value) : NaN;
+    return Number.isInteger(n) ? n : null;
+  }
+  return null;
+}
+
+// Natural loops of the entry-reachable CFG: Map(header -> { header, blocks,
+// latches, inner }) where `inner` marks loops that contain no other header.
+function findLoops(fn) {
+  const cfg = fn.cfg;
+  const { rpo, rpoIndex, reachable } = reversePostorder(cfg.succ, cfg.entry);
+  const { idom, preds } = computeDominators(cfg.succ, cfg.entry, rpo, rpoIndex);
+  const loops = new Map();
+  for (const u of rpo) {
+    for (const v of cfg.succ[u]) {
+      if (!reachable[v] || rpoIndex[v] > rpoIndex[u] || !dominates(idom, v, u)) continue;
+      let loop = loops.get(v);
+      if (!loop) loops.set(v, (loop = { header: v, blocks: new Set([v]), latches: [] }));
+      loop.latches.push(u);
+      const work = [u];
+      while (work.length) {
+        const x = work.pop();
+        if (loop.blocks.has(x)) continue;
+        loop.blocks.add(x);
+        for (const p of preds[x]) if (reachable[p]) work.push(p);
+      }
+    }
+  }
+  for (const loop of loops.values()) {
+    loop.inner = ![...loops.keys()].some((h) => h !== loop.header && loop.blocks.has(h));
+  }
+  return { loops, idom };
+}
+
+function invariantIn(loop, value) {
+  if (!value) return false;
+  if (value.op === 'param' || value.block === null) return true;
+  return !loop.blocks.has(value.block);
+}
+
+// { value, offset } for an int value of the form v, v + c, c + v, v - c, or
+// an iinc of v; otherwise { value, offset: 0 }.
+function affineOf(value) {
+  if (value.op === 'iinc') return { value: value.args[0], offset: value.imm.delta };
+  if (value.op === 'iadd') {
+    const right = constantInt(value.args[1]);
+    if (right !== null) return { value: value.args[0], offset: right };
+    const left = constantInt(value.args[0]);
+    if (left !== null) return { value: value.args[1], offset: left };
+  }
+  if (value.op === 'isub') {
+    const right = constantInt(value.args[1]);
+    if (right !== null) return { value: value.args[0], offset: -right };
+  }
+  return { value, offset: 0 };
+}
+
+// A loop bound usable before the loop: a constant, an invariant value, or
+// the length of an invariant array (`i < a.length` reloads it every test).
+function boundOf(loop, value) {
+  const constant = constantInt(value);
+  if (constant !== null) return { constant };
+  if (invariantIn(loop, value)) return { value };
+  if (value.op === 'arraylength' && invariantIn(loop, value.args[0])) {
+    return { lengthOf: value.args[0] };
+  }
+  return null;
+}
+
+function findCountedLoops(fn) {
+  const { loops } = findLoops(fn);
+  const counted = new Map();
+  for (const loop of loops.values()) {
+    const header = fn.blocks[loop.header];
+    const term = header.term;
+    if (!term || term.kind !== 'cond' || !NEGATE[term.insnOp]) continue;
+    const takenIn = loop.blocks.has(term.taken);
+    const fallIn = loop.blocks.has(term.fall);
+    if (takenIn === fallIn) continue;
+    // the header test must be the loop's only exit
+    const exits = [...loop.blocks].some((id) => id !== loop.header &&
+      fn.cfg.succ[id].some((s) => !loop.blocks.has(s)));
+    if (exits) continue;
+    let relation = takenIn ? term.insnOp : NEGATE[term.insnOp];
+    let [ivValue, boundValue] = term.args;
+    if (!isInductionPhi(loop, header, ivValue)) {
+      [ivValue, boundValue] = [boundValue, ivValue];
+      relation = SWAP[relation];
+    }
+    if (!isInductionPhi(loop, header, ivValue)) continue;
+    if (relation !== 'if_icmplt' && relation !== 'if_icmple') continue;
+    const bound = boundOf(loop, boundValue);
+    if (!bound) continue;
+    const induction = inductionOf(loop, header, ivValue);
+    if (!induction) continue;
+    counted.set(loop.header, {
+      ...loop,
+      iv: ivValue,
+      init: induction.init,
+      step: induction.step,
+      bound,
+      inclusive: relation === 'if_icmple',
+      stayBlock: takenIn ? term.taken : term.fall,
+      exitBlock: takenIn ? term.fall : term.taken,
+    });
+  }
+  return counted;
+}
+
+function isInductionPhi(loop, header, value) {
+  return !!value && value.op === 'phi' && value.block === loop.header && value.kind === 'I';
+}
+
+// init (constant or invariant value) and positive constant step of a header
+// phi whose in-loop args are all the same `phi + step`.
+function inductionOf(loop, header, phi) {
+  let init = null;
+  let step = null;
+  for (let i = 0; i < phi.args.length; i += 1) {
+    const predId = header.predIds[i];
+    const arg = phi.args[i];
+    if (!arg) return null;
+    if (predId !== 'entry' && loop.blocks.has(predId)) {
+      const { value, offset } = affineOf(arg);
+      if (value !== phi || offset <= 0 || (step !== null && step !== offset)) return null;
+      step = offset;
+    } else {
+      const constant = constantInt(arg);
+      const next = constant !== null ? { constant } : invariantIn(loop, arg) ? { value: arg } : null;
+      if (!next) return null;
+      if (init && (init.constant !== next.constant || init.value !== next.value)) return null;
+      init = next;
+    }
+  }
+  return init && step !== null ? { init, step } : null;
+}
+
+// Map(header -> plan) for innermost counted loops with at least one provable
+// access. plan.arrays: Map(array IrValue -> { minOffset, maxOffset }),
+// plan.accesses: Set of the access nodes the guard covers.
+function analyzeArrayRanges(fn, options = {}) {
+  const plans = new Map();
+  if (!fn || fn.rejected) return plans;
+  const maxBlocks = options.maxBlocks ?? 32;
+  for (const loop of findCountedLoops(fn).values()) {
+    if (!loop.inner || loop.blocks.size > maxBlocks) continue;
+    const arrays = new Map();
+    const accesses = new Set();
+    for (const id of loop.blocks) {
+      if (id === loop.header) continue;
+      for (const node of fn.blocks[id].body) {
+        if (!ARRAY_ACCESS.test(node.op)) continue;
+        const array = node.args[0];
+        if (!invariantIn(loop, array)) continue;
+        const { value, offset } = affineOf(node.args[1]);
+        if (value !== loop.iv) continue;
+        const range = arrays.get(array) || { minOffset: offset, maxOffset: offset };
+        range.minOffset = Math.min(range.minOffset, offset);
+        range.maxOffset = Math.max(range.maxOffset, offset);
+        arrays.set(array, range);
+        accesses.add(node);
+      }
+    }
+    if (accesses.size) plans.set(loop.header, { loop, arrays, accesses });
+  }
+  return plans;
+}
+
+module.exports = { findLoops, findCountedLoops, analyzeArrayRanges, affineOf, constantInt };
@@ -537,8 +537,21 @@ function pruneTrivialPhis(fn) {
       }
     }
   }
-  if (replacements.size === 0) return;
+  replaceValues(fn, replacements);
+}
+
+// Substitute every reference to a key of `replacements` (IrValue -> IrValue,
+// chains followed) across args, frame-state snapshots, block stacks and slot
+// maps, then drop the replaced values. Shared by phi pruning and the escape
+// pass (escape.js). Returns the resolver so callers can remap side tables.
+function replaceValues(fn, replacements) {
+  const resolve = (value) => {
+    let current = value;
+    while (replacements.has(current)) current = replacements.get(current);
+    return current;
+  };
   const map = (value) => (value ? resolve(value) : value);
+  if (replacements.size === 0) return map;
   for (const value of fn.values) {
     value.args = value.args.map(map);
     if (value.slotState) {
@@ -564,6 +577,7 @@ function pruneTrivialPhis(fn) {
   }
   fn.values = fn.values.filter((value) => !replacements.has(value));
   fn.params = fn.params.map(map);
+  return map;
 }
 
 function recordUses(fn) {
@@ -781,4 +795,6 @@ function trim(label) {
   return typeof label === 'string' ? label.replace(/:$/, '') : null;
 }
 
-module.exports = { buildSsa, IrValue, IrBlock };
+module.exports = {
+  buildSsa, IrValue, IrBlock, replaceValues, recordUses,
+};
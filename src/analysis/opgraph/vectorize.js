@@ -0,0 +1,126 @@
+'use strict';
+
+// Loop vectorisation over the shared SSA IR (ssa.js), on top of the counted
+// loops and array ranges of loops.js.
+//
+// vectorizeLoop accepts a range plan whose loop is a single body block
+// (header test + one latch block, step 1) and whose iterations are
+// independent: the only header phi is the induction variable, every array
+// access indexes exactly a[i], and each body value is consumed inside the
+// body (by lane arithmetic or an a[i] store). With offset-0 indices, lane j
+// of one vector iteration touches only element i + j, so even aliased arrays
+// keep the scalar order per element.
+//
+// Lane shapes (one per loop, from the array element types):
+//   i32 x4  int[]   add sub mul and or xor neg, shifts by an invariant count
+//   f32 x4  float[] add sub mul div neg
+//   i8 x16  byte[]  add sub and or xor neg, i2b — every op commutes with
+//                   truncation to 8 bits, and bastore truncates anyway
+//
+// The result lists the body nodes in pinned order, each tagged with how a
+// backend lowers it; the backend runs the vector loop while a full vector
+// still fits under the bound and lets the scalar loop finish the rest.
+
+const { constantInt } = require('./loops');
+
+const LANES = {
+  i32: { width: 4, kind: 'I' },
+  f32: { width: 4, kind: 'F' },
+  i8: { width: 16, kind: 'I' },
+};
+const LOAD_LANE = { iaload: 'i32', faload: 'f32', baload: 'i8' };
+const STORE_LANE = { iastore: 'i32', fastore: 'f32', bastore: 'i8' };
+const LANE_OPS = {
+  i32: new Set(['iadd', 'isub', 'imul', 'iand', 'ior', 'ixor', 'ineg', 'ishl', 'ishr', 'iushr']),
+  f32: new Set(['fadd', 'fsub', 'fmul', 'fdiv', 'fneg']),
+  i8: new Set(['iadd', 'isub', 'iand', 'ior', 'ixor', 'ineg', 'i2b']),
+};
+const SHIFTS = new Set(['ishl', 'ishr', 'iushr']);
+const FCONST = { fconst_0: 0, fconst_1: 1, fconst_2: 2 };
+
+// Scalar constant behind an IR value: { t: 'i32'|'f32', value } or null.
+function constantOf(value) {
+  const int = constantInt(value);
+  if (int !== null) return { t: 'i32', value: int };
+  if (value.op in FCONST) return { t: 'f32', value: FCONST[value.op] };
+  if ((value.op === 'ldc' || value.op === 'ldc_w') && value.kind === 'F') {
+    const arg = value.imm;
+    const n = typeof arg === 'number' ? arg : arg && arg.type === 'Float' ? Number(arg.value) : NaN;
+    return Number.isNaN(n) ? null : { t: 'f32', value: n };
+  }
+  return null;
+}
+
+function vectorizeLoop(fn, plan) {
+  const { loop } = plan;
+  if (loop.step !== 1 || loop.blocks.size !== 2) return null;
+  const header = fn.blocks[loop.header];
+  const body = fn.blocks[loop.stayBlock];
+  if (!body || body.id === loop.header || !loop.latches.includes(body.id)) return null;
+  if (header.phis.length !== 1 || header.phis[0] !== loop.iv) return null;
+  // the vector loop skips the header body; it may only feed the exit test
+  if (!header.body.every((n) => (n.op === 'arraylength' || constantOf(n)) &&
+      n.uses.every((u) => u === header.term))) return null;
+
+  const inBody = new Set(body.body);
+  let lane = null;
+  const setLane = (next) => {
+    if (lane && lane !== next) return false;
+    lane = next;
+    return true;
+  };
+  const steps = [];
+  for (const node of body.body) {
+    if (LOAD_LANE[node.op] || STORE_LANE[node.op]) {
+      if (node.args[1] !== loop.iv || !plan.accesses.has(node)) return null;
+      if (!setLane(LOAD_LANE[node.op] || STORE_LANE[node.op])) return null;
+      steps.push({ node, how: LOAD_LANE[node.op] ? 'load' : 'store' });
+      continue;
+    }
+    if (constantOf(node)) {
+      steps.push({ node, how: 'scalar' });
+      continue;
+    }
+    if (node.uses.length === 1 && node.uses[0] === loop.iv) {
+      // the latch increment; the vector loop advances i itself
+      steps.push({ node, how: 'skip' });
+      continue;
+    }
+    if (!['i32', 'f32', 'i8'].some((l) => LANE_OPS[l].has(node.op))) return null;
+    steps.push({ node, how: 'op' });
+  }
+  if (!lane || !steps.some((s) => s.how === 'store')) return null;
+
+  const width = LANES[lane].width;
+  const vectorOf = new Map(steps.map((s) => [s.node, s.how]));
+  // an operand is a lane vector (a body load/op), the iota of i, or a scalar
+  // to splat (a constant, or a value computed before the loop)
+  const operand = (value) => {
+    const how = vectorOf.get(value);
+    if (how === 'load' || how === 'op') return 'vector';
+    if (how === 'scalar') return 'scalar';
+    if (value === loop.iv) return lane === 'i32' ? 'iota' : null;
+    if (!inBody.has(value) && !loop.blocks.has(value.block)) return 'scalar';
+    return null;
+  };
+  for (const step of steps) {
+    const { node, how } = step;
+    if (how === 'op') {
+      if (!LANE_OPS[lane].has(node.op) || node.kind !== LANES[lane].kind) return null;
+      step.operands = node.args.map(operand);
+      if (step.operands.includes(null)) return null;
+      if (SHIFTS.has(node.op) && step.operands[1] !== 'scalar') return null;
+      if (step.operands.every((o) => o === 'scalar')) return null;
+    }
+    if (how === 'store') {
+      step.operands = [operand(node.args[2])];
+      if (step.operands[0] === null) return null;
+    }
+    if (how === 'scalar' || how === 'skip') continue;
+    // lane values stay inside the body
+    if (how !== 'store' && !node.uses.every((u) => inBody.has(u))) return null;
+  }
+  return { lane, width, steps };
+}
+
+module.exports = { vectorizeLoop, constantOf, LANES };
@@ -0,0 +1,112 @@
+'use strict';
+
+// Boot images: a save state taken after the JRE bootstrap and the main class's
+// static initialisers have run, so a later start skips straight to main() or
+// the applet lifecycle. The state itself is an ordinary JVM.saveState()
+// object; this module only frames it as bytes.
+//
+// Layout: the 8-byte magic "JVMBOOT\0", a version byte, a flags byte, then
+// the JSON-encoded image, gzipped when FLAG_GZIP is set. Gzip uses node:zlib
+// where it exists and CompressionStream in browsers; a host with neither
+// writes the payload uncompressed.
+
+const MAGIC = [0x4a, 0x56, 0x4d, 0x42, 0x4f, 0x4f, 0x54, 0x00]; // "JVMBOOT\0"
+const VERSION = 1;
+const FLAG_GZIP = 1;
+const HEADER_BYTES = MAGIC.length + 2;
+const IMAGE_FORMAT = 'jvmjs-boot-image';
+
+function nodeZlib() {
+  try {
+    const zlib = require('zlib');
+    return zlib && typeof zlib.gzipSync === 'function' ? zlib : null;
+  } catch (_ignored) {
+    return null;
+  }
+}
+
+async function pipeThrough(bytes, stream) {
+  const response = new Response(new Blob([bytes]).stream().pipeThrough(stream));
+  return new Uint8Array(await response.arrayBuffer());
+}
+
+async function gzip(bytes) {
+  const zlib = nodeZlib();
+  if (zlib) return new Uint8Array(zlib.gzipSync(bytes));
+  if (typeof CompressionStream === 'function') {
+    return pipeThrough(bytes, new CompressionStream('gzip'));
+  }
+  return null;
+}
+
+async function gunzip(bytes) {
+  const zlib = nodeZlib();
+  if (zlib) return new Uint8Array(zlib.gunzipSync(bytes));
+  if (typeof DecompressionStream === 'function') {
+    return pipeThrough(bytes, new DecompressionStream('gzip'));
+  }
+  throw new Error('Boot image is compressed and this host has no gzip decoder');
+}
+
+function toBytes(data) {
+  if (data instanceof Uint8Array) return data;
+  if (ArrayBuffer.isView(data)) return new Uint8Array(data.buffer, data.byteOffset, data.byteLength);
+  if (data instanceof ArrayBuffer) return new Uint8Array(data);
+  throw new TypeError('Boot image must be bytes');
+}
+
+function isBootImageBytes(data) {
+  let bytes;
+  try {
+    bytes = toBytes(data);
+  } catch (_ignored) {
+    return false;
+  }
+  return bytes.length >= HEADER_BYTES && MAGIC.every((byte, index) => bytes[index] === byte);
+}
+
+/**
+ * Serialise a boot image (see JVM.createBootImage) to bytes.
+ * @param {object} image
+ * @param {object} options - { compress: true }
+ * @returns {Promise<Uint8Array>}
+ */
+async function encodeBootImage(image, options = {}) {
+  if (!image || image.format !== IMAGE_FORMAT) {
+    throw new Error('Not a JVM boot image');
+  }
+  const json = new TextEncoder().encode(JSON.stringify(image));
+  const compressed = options.compress === false ? null : await gzip(json);
+  const payload = compressed || json;
+  const bytes = new Uint8Array(HEADER_BYTES + payload.length);
+  bytes.set(MAGIC, 0);
+  bytes[MAGIC.length] = VERSION;
+  bytes[MAGIC.length + 1] = compressed ? FLAG_GZIP : 0;
+  bytes.set(payload, HEADER_BYTES);
+  return bytes;
+}
+
+/**
+ * Parse bytes written by encodeBootImage.
+ * @param {Uint8Array|ArrayBuffer} data
+ * @returns {Promise<object>} the boot image
+ */
+async function decodeBootImage(data) {
+  const bytes = toBytes(data);
+  if (!isBootImageBytes(bytes)) throw new Error('Not a JVM boot image');
+  if (bytes[MAGIC.length] !== VERSION) {
+    throw new Error(`Unsupported JVM boot image version ${bytes[MAGIC.length]}`);
+  }
+  let payload = bytes.subarray(HEADER_BYTES);
+  if (bytes[MAGIC.length + 1] & FLAG_GZIP) payload = await gunzip(payload);
+  const image = JSON.parse(new TextDecoder().decode(payload));
+  if (!image || image.format !== IMAGE_FORMAT) throw new Error('Not a JVM boot image');
+  return image;
+}
+
+module.exports = {
+  IMAGE_FORMAT,
+  encodeBootImage,
+  decodeBootImage,
+  isBootImageBytes,
+};
@@ -386,7 +386,7 @@ async function loadClassByPath(classFilePath, options = {}) {
   const annotations = parseAnnotationsFromAst(ast);
 
   // Convert the AST
-  const convertedAst = convertJson(ast.ast, ast.constantPool);
+  const convertedAst = convertJson(ast.ast, ast.constantPool, { lazyCode: options.lazyCode });
   
   // Add annotation data to the converted AST
   enhanceAstWithAnnotations(convertedAst, annotations);
@@ -417,7 +417,7 @@ function loadClassByPathSync(classFilePath, options = {}) {
     const annotations = parseAnnotationsFromAst(ast);
 
     // Convert the AST
-    const convertedAst = convertJson(ast.ast, ast.constantPool);
+    const convertedAst = convertJson(ast.ast, ast.constantPool, { lazyCode: options.lazyCode });
     
     // Add annotation data to the converted AST
     enhanceAstWithAnnotations(convertedAst, annotations);
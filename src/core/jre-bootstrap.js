@@ -10,6 +10,7 @@
 
 // Import the generated JRE index for real class implementations
 const jreClasses = require('../jre/index');
+const { normalizeSuperClassName, jreClassParents } = require('./jreParents');
 
 // Synthesised JRE methods are public unless the model says otherwise. The
 // assumption is right almost everywhere, but not for the two protected members
@@ -22,19 +23,6 @@ function jreMethodFlags(jreClassDef, methodSig) {
   return declared ? declared.slice() : ["public"];
 }
 
-function normalizeSuperClassName(superClassName) {
-  if (!superClassName) {
-    return null;
-  }
-  if (typeof superClassName === 'string') {
-    return superClassName;
-  }
-  if (typeof superClassName === 'object' && superClassName.type) {
-    return superClassName.type;
-  }
-  return String(superClassName);
-}
-
 class JreBootstrap {
   /**
    * Preload essential JRE classes that are required for basic JVM operation
@@ -47,69 +35,18 @@ class JreBootstrap {
    * @param {JVM} jvm - The JVM instance to load classes into
    */
   static preloadAllJreClasses(jvm) {
-    // Load real implementations from generated JRE index first
-    // Sort classes to ensure superclasses are loaded before subclasses
-    const classNames = Object.keys(jreClasses);
-    const sortedClassNames = classNames.sort((a, b) => {
-      const aDepth = a.split('/').length;
-      const bDepth = b.split('/').length;
-      return aDepth - bDepth; // Load less nested classes first
-    });
-
-    for (const className of sortedClassNames) {
-      const jreClassDef = jreClasses[className];
-      this.createRuntimeClass(jvm, className, jreClassDef);
-    }
-
-    // This space is intentionally left blank.
-    // The logic has been moved into createRuntimeClass.
-
-    // Generate hierarchy dynamically from the generated JRE index
-    const jreHierarchy = {};
-
-    // Add all classes from the generated index with their proper superclasses
-    for (const className in jreClasses) {
-      const classDef = jreClasses[className];
-      jreHierarchy[className] = normalizeSuperClassName(classDef.super) || "java/lang/Object";
+    // Register every class of the generated JRE index by name only. The shim
+    // module and its stub are created on first access to jvm.classes[name]
+    // (loadClassByName, method resolution, reflection), so a console program
+    // never evaluates AWT, Swing or the networking shims.
+    for (const className of Object.keys(jreClasses)) {
+      this.defineLazyClass(jvm, className, () => this.createHierarchyStub(jvm, className));
     }
-
     // Essential root class that must be available as fallback
     // Object is the foundation that 48+ classes reference as their default superclass
-    // This ensures the hierarchy has a solid root before any other classes are processed
-    jreHierarchy["java/lang/Object"] = null;
-
-    // Create stubs for all classes in the hierarchy
-    for (const className in jreHierarchy) {
-      const superClassName = jreHierarchy[className];
-      const jreClassDef = jvm.jre[className];
-      const interfaces =
-        jreClassDef && jreClassDef.interfaces ? jreClassDef.interfaces : [];
-      const classItems = this.createClassItems(jreClassDef);
-
-      const classStub = {
-        ast: {
-          classes: [
-            {
-              className: className,
-              superClassName: superClassName,
-              items: classItems,
-              flags: ["public"],
-              interfaces: interfaces,
-            },
-          ],
-        },
-        constantPool: [],
-        staticFields: new Map(),
-        isJreStub: true,
-      methods: jreClassDef.methods || {},
-      staticMethods: jreClassDef.staticMethods || {},
-      };
-      if (jreClassDef && jreClassDef.staticFields) {
-        for (const [fieldKey, fieldValue] of Object.entries(jreClassDef.staticFields)) {
-          classStub.staticFields.set(fieldKey.replace(/'/g, ''), fieldValue);
-        }
-      }
-      jvm.classes[className] = classStub;
+    if (!('java/lang/Object' in jvm.classes)) {
+      this.defineLazyClass(jvm, 'java/lang/Object',
+        () => this.createHierarchyStub(jvm, 'java/lang/Object'));
     }
 
     // Add other JRE classes that extend Object directly - only in Node.js environment
@@ -124,7 +61,7 @@ class JreBootstrap {
             walk(fullPath, `${prefix}${file}/`);
           } else if (file.endsWith(".js")) {
             const className = `${prefix}${file.slice(0, -3)}`;
-            if (!jvm.classes[className]) {
+            if (!(className in jvm.classes)) {
               const jreClassDef = jvm.jre[className];
               const interfaces =
                 jreClassDef && jreClassDef.interfaces
@@ -705,21 +642,53 @@ class JreBootstrap {
     };
   }
 
-  static createRuntimeClass(jvm, className, jreClassDef) {
-    const interfaces = jreClassDef && jreClassDef.interfaces ? jreClassDef.interfaces : [];
-
-    // Create method items from JRE class definition (similar to original _preloadJreClasses)
-    const classItems = this.createClassItems(jreClassDef);
+  /**
+   * Install `className` in jvm.classes as a getter that builds its stub on
+   * first read. Until then the entry is present for `in` checks but not
+   * enumerable, so walks over the loaded classes (save states, class
+   * hierarchy) see only classes that were actually used; pending names are
+   * kept in jvm.pendingJreClasses. Assigning the entry replaces it like any
+   * other.
+   */
+  static defineLazyClass(jvm, className, create) {
+    if (!jvm.pendingJreClasses) jvm.pendingJreClasses = new Set();
+    jvm.pendingJreClasses.add(className);
+    const settle = (value) => {
+      jvm.pendingJreClasses.delete(className);
+      Object.defineProperty(jvm.classes, className, {
+        value,
+        writable: true,
+        enumerable: true,
+        configurable: true,
+      });
+      return value;
+    };
+    Object.defineProperty(jvm.classes, className, {
+      enumerable: false,
+      configurable: true,
+      get() {
+        const classData = settle(create());
+        // A newly visible class can be a receiver that compiled dispatch
+        // has not seen.
+        if (typeof jvm.bumpClassEpoch === 'function') jvm.bumpClassEpoch();
+        return classData;
+      },
+      set: settle,
+    });
+  }
 
+  static createHierarchyStub(jvm, className) {
+    const jreClassDef = jvm.jre[className] || {};
+    const { superClassName } = jreClassParents(className, jreClassDef);
     const classStub = {
       ast: {
         classes: [
-            {
-              className: className,
-              superClassName: jreClassDef && jreClassDef.super ? jreClassDef.super : "java/lang/Object",
-              items: classItems,
+          {
+            className: className,
+            superClassName: superClassName,
+            items: this.createClassItems(jreClassDef),
             flags: ["public"],
-            interfaces: interfaces,
+            interfaces: jreClassDef.interfaces || [],
           },
         ],
       },
@@ -729,25 +698,12 @@ class JreBootstrap {
       methods: jreClassDef.methods || {},
       staticMethods: jreClassDef.staticMethods || {},
     };
-
-    // Initialize static fields from JRE definition
-    if (jreClassDef && jreClassDef.staticFields) {
-      if (jvm.verbose) {
-        console.log(`Initializing static fields for ${className} from JRE definition`);
-      }
-
+    if (jreClassDef.staticFields) {
       for (const [fieldKey, fieldValue] of Object.entries(jreClassDef.staticFields)) {
-        // Convert field key from 'name:descriptor' format to 'name:descriptor' format
-        const normalizedFieldKey = fieldKey.replace(/'/g, '');
-        classStub.staticFields.set(normalizedFieldKey, fieldValue);
-
-        if (jvm.verbose) {
-          console.log(`  Set static field ${normalizedFieldKey}:`, fieldValue);
-        }
+        classStub.staticFields.set(fieldKey.replace(/'/g, ''), fieldValue);
       }
     }
-
-    jvm.classes[className] = classStub;
+    return classStub;
   }
 
   static createClassItems(jreClassDef) {
@@ -0,0 +1,23 @@
+'use strict';
+
+// Superclass and interfaces of a JRE class model. The generated JRE index
+// records them for every class without loading its module, the closed-world
+// hierarchy reads them for loaded models, and JreBootstrap builds stubs from
+// them; all three must agree, so they share these two functions.
+
+// A model declares `super` as a class name or as { type: name }.
+function normalizeSuperClassName(declared) {
+  const name = declared && typeof declared === 'object' ? declared.type : declared;
+  return name ? String(name) : null;
+}
+
+function jreClassParents(className, definition) {
+  return {
+    superClassName: className === 'java/lang/Object'
+      ? null
+      : normalizeSuperClassName(definition && definition.super) || 'java/lang/Object',
+    interfaces: (definition && definition.interfaces) || [],
+  };
+}
+
+module.exports = { normalizeSuperClassName, jreClassParents };
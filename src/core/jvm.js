@@ -42,6 +42,8 @@ const { JreBootstrap } = require("./jre-bootstrap");
 const JitCompiler = require("../jit/JitCompiler");
 const { encodeGraph, decodeGraph } = require("./stateCodec");
 const { createClock } = require('./fakeClock');
+const { IMAGE_FORMAT } = require('./bootImage');
+const { parseParallelThreadSelection, parallelThreadsAvailable } = require('./parallelThreads');
 const {
   newFields, loadHierarchy, makeObjectRef,
 } = require('./objectModel');
@@ -195,6 +197,8 @@ class JVM {
     this.jre = jreClasses;
     this.debugManager = new DebugManager();
     const env = (typeof process !== 'undefined' && process.env) || {};
+    this.debugManager.setFullSpeed(
+      options.debugFullSpeed ?? env.JVM_DEBUG_FULL_SPEED === '1');
     this.classpath = options.classpath
       ? Array.isArray(options.classpath)
         ? options.classpath
@@ -211,17 +215,33 @@ class JVM {
       options.maxStackDepth ?? env.JVM_MAX_STACK_DEPTH);
     this.maxStackDepth = Number.isSafeInteger(configuredMaxStackDepth) &&
       configuredMaxStackDepth > 0 ? configuredMaxStackDepth : 1024;
+    // Convert method bodies to code items on first execution rather than at
+    // class load; most loaded methods never run (see convertJson lazyCode).
+    this.lazyCode = options.lazyCode ?? env.JVM_LAZY_CODE === '1';
     // Linear heap for primitive arrays: TypedArray views over one wasm
     // memory, so compiled code can access elements without import crossings.
-    const wasmHeapEnabled = options.wasmHeap ?? env.JVM_WASM_HEAP === '1';
+    // Parallel Thread mode (core/parallelThreads.js) maps those arrays into
+    // worker threads, so it turns the heap on and puts it in shared memory.
+    this.parallelThreads = parallelThreadsAvailable()
+      ? parseParallelThreadSelection(options.parallelThreads ?? env.JVM_PARALLEL_THREADS)
+      : null;
+    const wasmHeapEnabled = options.wasmHeap ?? (env.JVM_WASM_HEAP === '1' || Boolean(this.parallelThreads));
     const wasmHeapMb = Number(options.wasmHeapMb ?? env.JVM_WASM_HEAP_MB) || 256;
     this.wasmHeap = wasmHeapEnabled
-      ? new (require('./wasmHeap').WasmHeap)(wasmHeapMb)
+      ? new (require('./wasmHeap').WasmHeap)(wasmHeapMb, {
+        reclaim: options.wasmHeapReclaim,
+        shared: Boolean(this.parallelThreads),
+      })
       : null;
     // Primitive instance fields in that same memory at static per-class
     // offsets (see core/objectModel.js). Requires the heap; off by default.
     this.wasmFields = !!this.wasmHeap &&
       (options.wasmFields ?? env.JVM_WASM_FIELDS === '1');
+    // Record Canvas draw calls and replay them once per animation frame
+    // (platform/awtCommandBuffer.js). The buffer is shared by the page.
+    this.awtDrawCommands = (options.awtCommandBuffer ?? env.JVM_AWT_COMMAND_BUFFER === '1')
+      ? require('../platform/awt.js').setDrawCommandBuffering(true)
+      : null;
     this.clock = options.clock || createClock({
       fakeTime: options.fakeTime ?? env.JVM_FAKE_TIME,
       fakeTimeStep: options.fakeTimeStep ?? env.JVM_FAKE_TIME_STEP,
@@ -268,6 +288,11 @@ class JVM {
       : null;
     this._envDebugThrow = !!env.JVM_DEBUG_THROW;
     this._envDebugThrowType = env.JVM_DEBUG_THROW_TYPE || null;
+    // Where System.out / System.err go: functions taking a string chunk. An
+    // embedder that owns process.stdout (scripts/mcp-server.js speaks
+    // JSON-RPC on it) passes its own instead of patching the process.
+    this.stdout = options.stdout || null;
+    this.stderr = options.stderr || null;
     this.jitOptions = options.jit || {};
     this.jit = new JitCompiler(this, this.jitOptions);
 
@@ -301,6 +326,18 @@ class JVM {
     throw exception;
   }
 
+  /**
+   * The writer behind System.out ('stdout') or System.err ('stderr'): the
+   * sink passed in the constructor options, else the process stream.
+   */
+  consoleWriter(stream) {
+    if (this[stream]) return this[stream];
+    if (typeof process !== 'undefined' && process[stream]) {
+      return process[stream].write.bind(process[stream]);
+    }
+    return () => {};
+  }
+
   internString(str) {
     if (str && str.type === "java/lang/String") {
       return str;
@@ -665,6 +702,16 @@ class JVM {
   }
 
   async run(mainClassName, options = {}) {
+    await this.initializeMain(mainClassName, options);
+    await this.startMain(options);
+  }
+
+  /**
+   * The first half of run(): load the main class and run its static
+   * initialisers on a fresh main thread, stopping before main() or the applet
+   * lifecycle. createBootImage() captures the VM at this point.
+   */
+  async initializeMain(mainClassName, options = {}) {
     if (options.classpath) {
       this.classpath = Array.isArray(options.classpath) ? options.classpath : [options.classpath];
     }
@@ -685,6 +732,7 @@ class JVM {
       /* HARDENED: Replaced quiet failure with an explicit error */
       throw new Error("main method not found");
     }
+    this.mainClassName = classData.ast.classes[0].className;
 
     const mainThread = {
       id: 0,
@@ -713,6 +761,18 @@ class JVM {
       }
       wasFramePushed = await this.initializeClassIfNeeded(className, mainThread);
     }
+  }
+
+  /**
+   * The second half of run(): enter main() (or the applet lifecycle) of the
+   * class prepared by initializeMain() or restored from a boot image.
+   */
+  async startMain(options = {}) {
+    const className = this.mainClassName;
+    const classData = this.classes[className] || await this.loadClassByName(className);
+    const mainMethod = this.findMainMethod(classData);
+    const isApplet = await this.isAppletClassAsync(classData);
+    const mainThread = this.threads[0];
 
     if (isApplet) {
       // Handle applet execution
@@ -1034,7 +1094,8 @@ class JVM {
           !currentThread.callStack.isEmpty()
         ) {
           const frame = currentThread.callStack.peek();
-          if (frame) {
+          // A full-speed frame holds no breakpoint; skip decoding its label.
+          if (frame && !this.debugManager.runsFullSpeed(frame)) {
             // A thread's pc can be out of bounds if it just finished.
             if (frame.pc < frame.instructions.length) {
               const instructionItem = frame.instructions[frame.pc];
@@ -1222,6 +1283,26 @@ class JVM {
     if (profile) profile.samples.clear();
   }
 
+  // JIT event stream (compiles, rejects, deopts, OSR entries). Without a
+  // methodKey: the rolled-up summary plus the buffered events matching
+  // { since, kind, method, limit }; with one: that method's row and events.
+  // Empty unless jit.telemetry.enabled or JVM_JIT_TELEMETRY=1.
+  getJitTelemetry(query = {}) {
+    const telemetry = this.jit && this.jit.telemetry;
+    if (!telemetry) return null;
+    if (query.methodKey) return telemetry.method(query.methodKey);
+    return { summary: telemetry.summary(query.limit || 20), events: telemetry.events(query) };
+  }
+
+  onJitEvent(listener) {
+    const telemetry = this.jit && this.jit.telemetry;
+    return telemetry ? telemetry.subscribe(listener) : () => {};
+  }
+
+  clearJitTelemetry() {
+    if (this.jit && this.jit.telemetry) this.jit.telemetry.clear();
+  }
+
   _prepareSchedulerTick() {
     // On each tick, check for threads that need to be woken up.
     const audioPriority = this._audioPriority;
@@ -1434,7 +1515,9 @@ class JVM {
     // Promise/microtask cost when the already prepared bytecode handlers prove
     // that the complete same-frame quantum is synchronous. Calls and returns
     // still end the quantum at exactly the existing Frame boundary.
-    if (this.debugManager.debugMode || this.verbose || this._envTrace ||
+    if ((this.debugManager.debugMode &&
+        !this.debugManager.runsFullSpeed(entryFrame)) ||
+        this.verbose || this._envTrace ||
         this._envProfileHot) return {slow: true, skipJit};
     prepareSyncInstructions(
       entryFrame.instructions, entryFrame.method, entryFrame.exceptionTable);
@@ -1623,7 +1706,9 @@ class JVM {
 
     prepareSyncInstructions(frame.instructions, frame.method, frame.exceptionTable);
 
-    const burstAllowed = options.allowBurst === true && !this.debugManager.debugMode &&
+    const debugMode = this.debugManager.debugMode;
+    const burstAllowed = options.allowBurst === true &&
+      (!debugMode || this.debugManager.runsFullSpeed(frame)) &&
       !this.verbose && !this._envTrace && !this._envProfileHot;
     const instructionInstrumentation = this._envTrace || this._envProfileHot;
     const limit = burstAllowed ? this.interpreterBurst : 1;
@@ -1665,9 +1750,15 @@ class JVM {
         }
       }
 
+      // A full-speed burst ends where a call or return reaches a frame that
+      // needs per-instruction checks; the next tick runs it one at a time.
+      if (debugMode && executed > 0 && currentFrame !== frame &&
+          !this.debugManager.runsFullSpeed(currentFrame)) break;
+
       // Never step across a debugger breakpoint inside one quantum. The
       // outer execute loop observes it immediately after this tick.
-      if (executed > 0 && this.debugManager.breakpoints.size > 0) {
+      if (executed > 0 && this.debugManager.breakpoints.size > 0 &&
+          !(debugMode && this.debugManager.runsFullSpeed(currentFrame))) {
         const nextItem = currentFrame.instructions[currentFrame.pc];
         const nextLabel = nextItem && nextItem.labelDef;
         const nextPc = nextLabel ? parseInt(nextLabel.substring(1, nextLabel.length - 1)) : -1;
@@ -1899,11 +1990,12 @@ class JVM {
   loadClassByPathSync(classFilePath) {
     const classFileContent = fs.readFileSync(classFilePath);
     const rawAst = getAST(classFileContent);
-    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool);
+    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool, { lazyCode: this.lazyCode });
     return { ast: convertedAst, constantPool: rawAst.constantPool };
   }
 
   async loadClassAsync(classFilePath, options = {}) {
+    options = { lazyCode: this.lazyCode, ...options };
     // Try async first, fall back to sync for backwards compatibility
     try {
       const classData = await loadClassByPath(classFilePath, options);
@@ -1945,7 +2037,7 @@ class JVM {
 
     const classFileContent = Buffer.from(await entry.async('uint8array'));
     const rawAst = getAST(classFileContent);
-    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool);
+    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool, { lazyCode: this.lazyCode });
     const classData = {
       ast: convertedAst,
       constantPool: rawAst.constantPool,
@@ -1956,6 +2048,47 @@ class JVM {
     return classData;
   }
 
+  /**
+   * Define a class from memory, the way ClassLoader.defineClass does: no
+   * classpath search and no file. Compile-and-run flows (JShell, the debugger
+   * evaluator, the workbench) hand their emitted classes straight to this
+   * instead of writing them out for loadClassByName to read back.
+   * @param {Uint8Array|ArrayBuffer|object} input - Class-file bytes, or a
+   *   converted class AST ({ classes: [...] }, as convertJson produces)
+   * @param {object} [options]
+   * @param {object} [options.constantPool] - Constant pool to keep with an AST
+   * @param {boolean} [options.replace] - Allow redefining a loaded class. The
+   *   old definition's Class object and initialization state are dropped;
+   *   code already running against it is not.
+   * @returns {object} The registered class data
+   */
+  defineClass(input, options = {}) {
+    let classData;
+    if (input instanceof Uint8Array || input instanceof ArrayBuffer) {
+      const rawAst = getAST(input instanceof ArrayBuffer ? new Uint8Array(input) : input);
+      classData = {
+        ast: convertJson(rawAst.ast, rawAst.constantPool, { lazyCode: this.lazyCode }),
+        constantPool: rawAst.constantPool,
+      };
+    } else if (input && Array.isArray(input.classes) && input.classes.length) {
+      classData = { ast: input, constantPool: options.constantPool || null };
+    } else {
+      throw new TypeError('defineClass expects class-file bytes or a class AST');
+    }
+    const className = classData.ast.classes[0].className;
+    const existing = this.classes[className];
+    if (existing && !existing.isJreStub) {
+      if (!options.replace) throw new Error(`Duplicate class definition: ${className}`);
+      this.classObjectCache.delete(className);
+      this.classInitializationState.delete(className);
+    }
+    classData.staticFields = new Map();
+    this.classes[className] = classData;
+    this.bumpClassEpoch();
+    this._notifyClassLoaded(className, classData);
+    return classData;
+  }
+
   // Every class registration goes through here so world-baked compiled code
   // can be notified synchronously: speculative monomorphic wasm links read a
   // per-module "specok" flag that must drop before a receiver of the new
@@ -2491,15 +2624,15 @@ class JVM {
 
   findStaticInitializer(classData) {
     const clinitMethod = classData.ast.classes[0].items.find((item) => {
-      const codeAttr = item.method && item.method.attributes &&
+      if (item.type !== "method" || item.method.name !== "<clinit>" ||
+          item.method.descriptor !== "()V") {
+        return false;
+      }
+      // Checked after the name so lazily converted bodies of other methods
+      // stay unconverted.
+      const codeAttr = item.method.attributes &&
         item.method.attributes.find((attr) => attr.type === "code" && attr.code);
-      return (
-        item.type === "method" &&
-        item.method.name === "<clinit>" &&
-        item.method.descriptor === "()V" &&
-        codeAttr &&
-        Array.isArray(codeAttr.code.codeItems)
-      );
+      return Boolean(codeAttr && Array.isArray(codeAttr.code.codeItems));
     });
     return clinitMethod ? clinitMethod.method : null;
   }
@@ -3221,6 +3354,74 @@ class JVM {
     };
   }
 
+  /**
+   * Capture a boot image: the VM after the JRE bootstrap and initializeMain(),
+   * ready for runFromBootImage() to skip straight to startMain(). Pass
+   * `jitProfile` (see exportJitProfile) to ship warmed invocation counts with
+   * it; encodeBootImage() in ./bootImage turns the result into bytes.
+   */
+  createBootImage(options = {}) {
+    if (!this.mainClassName) {
+      throw new Error('createBootImage requires initializeMain() first');
+    }
+    const state = this.saveState();
+    // Breakpoints belong to a debugging session, not to the image.
+    delete state.debugManager;
+    return {
+      format: IMAGE_FORMAT,
+      version: 1,
+      mainClass: this.mainClassName,
+      state,
+      jitProfile: options.jitProfile || null,
+    };
+  }
+
+  /**
+   * Restore a boot image from createBootImage() and run the program from
+   * main() (or the applet lifecycle) without re-running static initialisers.
+   */
+  async runFromBootImage(image, options = {}) {
+    if (!image || image.format !== IMAGE_FORMAT) {
+      throw new Error('Not a JVM boot image');
+    }
+    await this.loadState(image.state);
+    this.mainClassName = image.mainClass;
+    if (image.jitProfile) this.importJitProfile(image.jitProfile);
+    await this.startMain(options);
+  }
+
+  /**
+   * Invocation counts the JIT has observed, as
+   * [className, methodName, descriptor, count] rows keyed by name so they
+   * survive into another VM.
+   */
+  exportJitProfile() {
+    const profile = [];
+    for (const [className, classData] of Object.entries(this.classes)) {
+      const classAst = classData && classData.ast && classData.ast.classes && classData.ast.classes[0];
+      if (!classAst || !Array.isArray(classAst.items)) continue;
+      for (const item of classAst.items) {
+        if (item.type !== 'method' || !item.method) continue;
+        const count = this.jit.invocationCounts.get(item.method) || 0;
+        if (count > 0) profile.push([className, item.method.name, item.method.descriptor, count]);
+      }
+    }
+    return profile;
+  }
+
+  importJitProfile(profile) {
+    for (const [className, name, descriptor, count] of profile || []) {
+      const classData = this.classes[className];
+      const classAst = classData && classData.ast && classData.ast.classes && classData.ast.classes[0];
+      if (!classAst || !Array.isArray(classAst.items)) continue;
+      const item = classAst.items.find((candidate) => candidate.type === 'method' &&
+        candidate.method && candidate.method.name === name && candidate.method.descriptor === descriptor);
+      if (!item) continue;
+      const current = this.jit.invocationCounts.get(item.method) || 0;
+      if (count > current) this.jit.invocationCounts.set(item.method, count);
+    }
+  }
+
   // Node 26 raises ERR_INVALID_STATE when a FileHandle is closed by garbage
   // collection; harnesses that restore several save states in one process
   // must close rehydrated handles before dropping the JVM.
@@ -3251,9 +3452,8 @@ class JVM {
         }
         if (value.fileHandle) (this._saveStateFileHandles ||= []).push(value.fileHandle);
       }
-      if (value.type === 'java/io/ConsoleOutputStream' && !value.writer &&
-        typeof process !== 'undefined' && process.stdout) {
-        value.writer = process.stdout.write.bind(process.stdout);
+      if (value.type === 'java/io/ConsoleOutputStream' && !value.writer) {
+        value.writer = this.consoleWriter('stdout');
       }
       if (value instanceof Map) {
         for (const [key, item] of value) pending.push(key, item);
@@ -3268,11 +3468,11 @@ class JVM {
       }
     }
     const systemClass = this.classes['java/lang/System'];
-    if (systemClass && systemClass.staticFields instanceof Map && typeof process !== 'undefined') {
+    if (systemClass && systemClass.staticFields instanceof Map) {
       const out = systemClass.staticFields.get('out:Ljava/io/PrintStream;');
       const err = systemClass.staticFields.get('err:Ljava/io/PrintStream;');
-      if (out && out.out && process.stdout) out.out.writer = process.stdout.write.bind(process.stdout);
-      if (err && err.out && process.stderr) err.out.writer = process.stderr.write.bind(process.stderr);
+      if (out && out.out) out.out.writer = this.consoleWriter('stdout');
+      if (err && err.out) err.out.writer = this.consoleWriter('stderr');
     }
   }
 
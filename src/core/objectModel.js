@@ -268,9 +268,10 @@ function slabLayoutFor(jvm, className) {
 // Build the `fields` object for a slab-backed class, or null when the class is
 // not eligible or the heap is spent (callers then fall back to a plain map).
 function makeSlabFields(jvm, layout) {
-  const base = jvm.wasmHeap.allocObject(layout.size);
-  if (base < 0) return null;
   const fields = Object.create(layout.proto);
+  // the slab lives as long as this map: clones share it, never the base alone
+  const base = jvm.wasmHeap.allocObject(layout.size, fields);
+  if (base < 0) return null;
   fields[BASE_KEY] = base;
   for (const key of layout.refKeys) fields[key] = null;
   return fields;
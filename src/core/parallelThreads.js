@@ -0,0 +1,460 @@
+'use strict';
+
+// Parallel Thread mode (options.parallelThreads or JVM_PARALLEL_THREADS: a
+// list of Runnable/Thread subclass names, comma separated in the environment,
+// or '*' for any). Java threads are otherwise multiplexed onto one host
+// thread (see JVM._advanceSchedulerThread); a selected thread whose run() is
+// provably self-contained instead runs to completion in its own Node worker
+// with its own JVM, and its guest Thread stays in the PARALLEL status until
+// the worker exits.
+//
+// Only the restricted case is handled: the thread may share primitive arrays
+// and immutable values with the rest of the program, nothing else.
+//   - The parallel mode puts the wasm heap (core/wasmHeap.js) on a shared
+//     WebAssembly.Memory, so every primitive array is a view over a
+//     SharedArrayBuffer. The worker gets views over the same bytes: stores on
+//     either side are visible to the other, as for unsynchronized Java code.
+//   - Everything else reachable from the Runnable (guest objects, reference
+//     arrays, strings and boxed primitives) is copied across once with the
+//     save-state codec. Copies are only sound while nobody writes them, so
+//     code reachable from run() may not putfield into a captured class, may
+//     not aastore when reference arrays were captured, and may only read
+//     static final primitives and Strings of guest classes (no putstatic).
+//   - Static initializers never run in the worker. The guest classes run()
+//     touches ship with those static values and start out initialized, and a
+//     class the main thread has not initialized yet keeps the thread on the
+//     scheduler unless neither it nor a guest superclass has a <clinit>.
+//   - There are no shared monitors: monitorenter, synchronized methods and
+//     wait/notify keep the thread on the scheduler, as do lambdas (their
+//     captured arguments are not inspected) and reflection.
+// A thread that does not qualify runs on the scheduler as before, and
+// JVM_DEBUG_PARALLEL=1 says why. Browsers have no worker entry point for the
+// JVM yet, so there every thread stays on the scheduler.
+
+const { encodeGraph, decodeGraph } = require('./stateCodec');
+const { ARRAY_CONSTRUCTORS } = require('./wasmHeap');
+
+let workerThreads = null;
+try {
+  workerThreads = require('worker_threads');
+} catch (_ignored) {
+  workerThreads = null;
+}
+
+const DEBUG = typeof process !== 'undefined' && process.env && process.env.JVM_DEBUG_PARALLEL === '1';
+
+const IMMUTABLE_JRE_TYPES = new Set([
+  'java/lang/String', 'java/lang/Integer', 'java/lang/Long', 'java/lang/Short',
+  'java/lang/Byte', 'java/lang/Character', 'java/lang/Boolean', 'java/lang/Float',
+  'java/lang/Double',
+]);
+const SHAREABLE_STATIC_DESCRIPTORS = new Set(['Z', 'B', 'C', 'S', 'I', 'J', 'F', 'D', 'Ljava/lang/String;']);
+const MONITOR_METHODS = new Set(['wait', 'notify', 'notifyAll']);
+const THREAD_SAFE_THREAD_METHODS = new Set(['currentThread', 'sleep', 'getName']);
+
+/**
+ * Parse the parallelThreads option: null when the mode is off, otherwise
+ * { all, classes } with class names in internal form.
+ */
+function parseParallelThreadSelection(value) {
+  if (value === undefined || value === null || value === false || value === '') return null;
+  const names = Array.isArray(value) ? value : String(value).split(',');
+  const classes = new Set(names.map((name) => String(name).trim().replace(/\./g, '/')).filter(Boolean));
+  if (!classes.size) return null;
+  return { all: classes.has('*'), classes };
+}
+
+function parallelThreadsAvailable() {
+  return Boolean(workerThreads && workerThreads.Worker &&
+    typeof SharedArrayBuffer === 'function');
+}
+
+function opOf(instruction) {
+  return typeof instruction === 'string' ? instruction : instruction && instruction.op;
+}
+
+function userClass(jvm, className) {
+  const classData = jvm.classes[className];
+  if (!classData || classData.isJreStub || jvm.jre[className]) return null;
+  return classData.ast && classData.ast.classes[0] ? classData : null;
+}
+
+function superChain(jvm, className) {
+  const chain = [];
+  for (let current = className; current; ) {
+    const classData = userClass(jvm, current);
+    if (!classData) break;
+    chain.push(current);
+    current = classData.ast.classes[0].superClassName;
+  }
+  return chain;
+}
+
+// Walk the captured object graph. Records the guest classes whose instances
+// are shared by copy and the shared primitive arrays; returns a reason when
+// something reachable cannot cross to a worker.
+function inspectCapture(jvm, root, capture) {
+  const sharedBuffer = jvm.wasmHeap && jvm.wasmHeap.memory.buffer;
+  const seen = new Set();
+  const pending = [root];
+  while (pending.length) {
+    const value = pending.pop();
+    if (value === null || value === undefined || typeof value !== 'object' || seen.has(value)) continue;
+    seen.add(value);
+    if (ArrayBuffer.isView(value)) {
+      if (!sharedBuffer || value.buffer !== sharedBuffer) {
+        return 'captures a primitive array outside the shared heap';
+      }
+      capture.sharedArrays.add(value);
+      continue;
+    }
+    if (Array.isArray(value)) {
+      if (typeof value.type === 'string' && /^\[[ZBCSIJFD]$/.test(value.type)) {
+        return 'captures a primitive array outside the shared heap';
+      }
+      capture.referenceArrays = true;
+      pending.push(...value);
+      continue;
+    }
+    if (value instanceof String || IMMUTABLE_JRE_TYPES.has(value.type)) continue;
+    if (!userClass(jvm, value.type)) return `captures a ${value.type || 'host'} object`;
+    const fields = value.fields;
+    if (!fields || Object.getPrototypeOf(fields) !== Object.prototype) {
+      return `captures a ${value.type} with slab-backed fields`;
+    }
+    for (const className of superChain(jvm, value.type)) capture.classes.add(className);
+    pending.push(...Object.values(fields));
+  }
+  return null;
+}
+
+// Collect the guest methods run() can reach and check each against the
+// restrictions above. Classes named by `new` and invokes are loaded so their
+// code can be inspected; virtual calls include every loaded override.
+async function inspectReachableCode(jvm, entryClass, capture) {
+  const visited = new Set();
+  const queue = [[entryClass, 'run', '()V']];
+
+  const enqueueDispatch = async (owner, name, descriptor, virtual) => {
+    if (!userClass(jvm, owner) && !jvm.jre[owner] && !(jvm.classes[owner] && jvm.classes[owner].isJreStub)) {
+      await jvm.loadClassByName(owner).catch(() => null);
+    }
+    const guestOwner = Boolean(userClass(jvm, owner));
+    if (guestOwner) {
+      capture.touched.add(owner);
+      queue.push([owner, name, descriptor]);
+    }
+    if (!virtual) return;
+    // Any loaded guest override may be the receiver. Walking jvm.classes by
+    // key leaves the lazily built JRE stubs unbuilt.
+    for (const className of Object.keys(jvm.classes)) {
+      if (className === owner || !userClass(jvm, className)) continue;
+      if (guestOwner ? extendsClass(jvm, className, owner) : declaresMethod(jvm, className, name, descriptor)) {
+        queue.push([className, name, descriptor]);
+      }
+    }
+  };
+
+  while (queue.length) {
+    const [className, name, descriptor] = queue.pop();
+    // Methods inherited from the JRE are shims: the call-site checks above
+    // already cover the ones that block or share state.
+    const method = resolveGuestMethod(jvm, className, name, descriptor);
+    if (!method || visited.has(method)) continue;
+    visited.add(method);
+    const where = `${className}.${name}${descriptor}`;
+    const flags = method.flags || [];
+    if (flags.includes('synchronized')) return `${where} is synchronized`;
+    if (flags.includes('native')) return `${where} is native`;
+    const codeAttr = (method.attributes || []).find((attr) => attr.type === 'code');
+    if (!codeAttr) {
+      if (flags.includes('abstract')) continue;
+      return `${where} has no code`;
+    }
+    let lambdas = false;
+    for (const item of codeAttr.code.codeItems || []) {
+      const instruction = item && item.instruction;
+      const op = opOf(instruction);
+      if (!op) continue;
+      if (op === 'monitorenter' || op === 'monitorexit') return `${where} enters a monitor`;
+      if (op === 'putstatic') return `${where} writes a static field`;
+      if (op === 'aastore' && capture.referenceArrays) return `${where} stores into a reference array`;
+      if (op === 'invokedynamic') lambdas = true;
+      if (op === 'putfield' || op === 'getstatic') {
+        const [, owner, [fieldName]] = instruction.arg;
+        if (op === 'putfield' && capture.classes.has(owner)) {
+          return `${where} writes ${owner}.${fieldName} of a shared object`;
+        }
+        if (op === 'getstatic' && userClass(jvm, owner)) {
+          if (!isShareableStatic(jvm, owner, fieldName)) {
+            return `${where} reads ${owner}.${fieldName}, which is not a static final primitive or String`;
+          }
+          capture.touched.add(owner);
+        }
+        continue;
+      }
+      if (op === 'new') {
+        await jvm.loadClassByName(instruction.arg).catch(() => null);
+        if (userClass(jvm, instruction.arg)) capture.touched.add(instruction.arg);
+        continue;
+      }
+      if (!op.startsWith('invoke') || op === 'invokedynamic') continue;
+      const [, owner, [methodName, methodDescriptor]] = instruction.arg;
+      if (MONITOR_METHODS.has(methodName)) return `${where} calls ${methodName}()`;
+      if (owner === 'java/lang/Thread' && !THREAD_SAFE_THREAD_METHODS.has(methodName)) {
+        return `${where} calls Thread.${methodName}`;
+      }
+      if (owner.startsWith('java/lang/reflect/') ||
+          (owner === 'java/lang/Class' && (methodName === 'forName' || methodName === 'newInstance'))) {
+        return `${where} uses reflection`;
+      }
+      await enqueueDispatch(owner, methodName, methodDescriptor,
+        op === 'invokevirtual' || op === 'invokeinterface');
+    }
+    if (lambdas) return `${where} creates a lambda`;
+  }
+  return null;
+}
+
+function declaresMethod(jvm, className, name, descriptor) {
+  return jvm.classes[className].ast.classes[0].items.some((item) => item.type === 'method' &&
+    item.method.name === name && item.method.descriptor === descriptor);
+}
+
+function resolveGuestMethod(jvm, className, name, descriptor) {
+  for (const owner of superChain(jvm, className)) {
+    const item = jvm.classes[owner].ast.classes[0].items.find((candidate) => candidate.type === 'method' &&
+      candidate.method.name === name && candidate.method.descriptor === descriptor);
+    if (item) return item.method;
+  }
+  return null;
+}
+
+function extendsClass(jvm, className, ancestor) {
+  const pending = [className];
+  const seen = new Set();
+  while (pending.length) {
+    const current = pending.pop();
+    if (current === ancestor) return true;
+    if (seen.has(current)) continue;
+    seen.add(current);
+    const classData = userClass(jvm, current);
+    if (!classData) continue;
+    const cls = classData.ast.classes[0];
+    if (cls.superClassName) pending.push(cls.superClassName);
+    pending.push(...(cls.interfaces || []));
+  }
+  return false;
+}
+
+// A static the worker may read from its shipped copy: final, and a value a
+// copy cannot diverge from (a final int[] is still a mutable array).
+function isShareableStatic(jvm, className, fieldName) {
+  for (const owner of superChain(jvm, className)) {
+    const item = jvm.classes[owner].ast.classes[0].items.find((candidate) =>
+      candidate.type === 'field' && candidate.field.name === fieldName);
+    if (item) {
+      const flags = item.field.flags || [];
+      return flags.includes('static') && flags.includes('final') &&
+        SHAREABLE_STATIC_DESCRIPTORS.has(item.field.descriptor);
+    }
+  }
+  return false;
+}
+
+// The shareable statics of every touched guest class the main thread has
+// initialized, as [className, [[fieldKey, value]]] with Strings as plain JS
+// strings. Returns a reason when a touched class would need its <clinit> run
+// in the worker.
+function collectStatics(jvm, capture) {
+  const classes = new Set();
+  for (const className of [...capture.classes, ...capture.touched]) {
+    for (const owner of superChain(jvm, className)) classes.add(owner);
+  }
+  const statics = [];
+  for (const className of classes) {
+    const classData = jvm.classes[className];
+    if (jvm.classInitializationState.get(className) !== 'INITIALIZED') {
+      if (jvm.findStaticInitializer(classData)) return `${className} is not initialized yet`;
+      continue;
+    }
+    const values = [];
+    for (const item of classData.ast.classes[0].items) {
+      if (item.type !== 'field') continue;
+      const { name, descriptor, flags = [] } = item.field;
+      if (!flags.includes('static') || !flags.includes('final') || !SHAREABLE_STATIC_DESCRIPTORS.has(descriptor)) {
+        continue;
+      }
+      const key = `${name}:${descriptor}`;
+      const value = classData.staticFields instanceof Map ? classData.staticFields.get(key) : undefined;
+      if (value === undefined) continue;
+      values.push([key, value !== null && descriptor === 'Ljava/lang/String;' ? String(value) : value]);
+    }
+    statics.push([className, values]);
+  }
+  capture.statics = statics;
+  return null;
+}
+
+/**
+ * Decide whether the thread started for `threadObject` can run in a worker.
+ * Returns the message that starts one, or null (the scheduler runs it).
+ */
+async function planParallelThread(jvm, threadObject, target) {
+  const selection = jvm.parallelThreads;
+  if (!selection || !target || !target.type) return null;
+  if (!selection.all && !selection.classes.has(target.type)) return null;
+  const reject = (reason) => {
+    if (DEBUG) console.error(`[parallel] ${threadObject.name || target.type} stays on the scheduler: ${reason}`);
+    return null;
+  };
+  if (!parallelThreadsAvailable()) return reject('worker threads are unavailable');
+  if (target.methodHandle) return reject('lambda Runnables are not inspected');
+  const capture = {
+    classes: new Set(), touched: new Set(), sharedArrays: new Set(), referenceArrays: false, statics: [],
+  };
+  const captureProblem = inspectCapture(jvm, target, capture);
+  if (captureProblem) return reject(captureProblem);
+  const codeProblem = await inspectReachableCode(jvm, target.type, capture);
+  if (codeProblem) return reject(codeProblem);
+  const staticsProblem = collectStatics(jvm, capture);
+  if (staticsProblem) return reject(staticsProblem);
+
+  // The thread object's group links every other thread; the worker builds
+  // its own.
+  const replacements = new Map();
+  if (target.threadGroup) replacements.set(target.threadGroup, null);
+  for (const array of capture.sharedArrays) {
+    replacements.set(array, {
+      $sharedArray: array.type,
+      base: array.byteOffset,
+      length: array.length,
+      elementType: array.elementType,
+      hashCode: array.hashCode,
+    });
+  }
+  const graph = encodeGraph(target, { replacements });
+  if (graph.omitted.length) return reject(`cannot copy ${graph.omitted[0].path}`);
+  return {
+    jvmParallelThread: true,
+    name: threadObject.name ? String(threadObject.name) : null,
+    classpath: jvm.classpath,
+    classes: [...new Set([...capture.classes, ...capture.touched])],
+    statics: capture.statics,
+    memory: jvm.wasmHeap.memory,
+    graph,
+    nextHashCode: jvm.nextHashCode,
+    // Keeps the shared arrays reachable on this side while the worker uses
+    // them, so the heap cannot reclaim their blocks underneath it.
+    retained: capture.sharedArrays,
+  };
+}
+
+/**
+ * Start `plan` in a worker on behalf of the guest thread `thread`, which
+ * stays PARALLEL until the worker exits.
+ */
+function startParallelThread(jvm, thread, plan) {
+  const { retained, ...workerData } = plan;
+  thread.status = 'PARALLEL';
+  const worker = new workerThreads.Worker(__filename, { workerData });
+  thread.parallelWorker = worker;
+  worker.on('error', (error) => {
+    console.error(`Exception in parallel thread "${plan.name || thread.id}": ${error && error.stack || error}`);
+  });
+  worker.on('exit', () => {
+    retained.clear();
+    delete thread.parallelWorker;
+    thread.status = 'terminated';
+  });
+}
+
+// Worker side: rebuild the captured graph over the shared memory.
+function reviveCapture(jvm, root, memory) {
+  const { classIndexOf } = require('./objectModel');
+  const views = new Map();
+  const revive = (value) => {
+    if (!value || typeof value !== 'object') return value;
+    if (value.$sharedArray) {
+      let view = views.get(value);
+      if (!view) {
+        view = new ARRAY_CONSTRUCTORS[value.$sharedArray](memory.buffer, value.base, value.length);
+        view.type = value.$sharedArray;
+        view.elementType = value.elementType;
+        view.hashCode = value.hashCode;
+        views.set(value, view);
+      }
+      return view;
+    }
+    if (value instanceof String && value.type === 'java/lang/String') return jvm.internString(String(value));
+    return value;
+  };
+  const seen = new Set();
+  const pending = [root];
+  while (pending.length) {
+    const value = pending.pop();
+    if (!value || typeof value !== 'object' || seen.has(value) || ArrayBuffer.isView(value) ||
+        value instanceof String) continue;
+    seen.add(value);
+    if (Array.isArray(value)) {
+      for (let i = 0; i < value.length; i++) pending.push(value[i] = revive(value[i]));
+      continue;
+    }
+    if (typeof value._className === 'string') value.cidx = classIndexOf(jvm, value._className);
+    const fields = value.fields;
+    if (fields && typeof fields === 'object') {
+      for (const key of Object.keys(fields)) pending.push(fields[key] = revive(fields[key]));
+    }
+  }
+  return root;
+}
+
+async function runParallelThread() {
+  const { JVM } = require('./jvm');
+  const CallStack = require('./callStack');
+  const Frame = require('./frame');
+  const { name, classpath, classes, statics, memory, graph, nextHashCode } = workerThreads.workerData;
+  const jvm = new JVM({ classpath, parallelThreads: null });
+  jvm.nextHashCode = nextHashCode;
+  for (const className of classes) await jvm.loadClassByName(className);
+  // The main thread already ran these initializers; start from their values.
+  for (const [className, values] of statics) {
+    const classData = await jvm.loadClassByName(className);
+    classData.staticFields = new Map(values.map(([key, value]) =>
+      [key, typeof value === 'string' ? jvm.internString(value) : value]));
+    classData.staticFieldsInitialized = true;
+    jvm._markClassInitialized(className);
+  }
+  const target = reviveCapture(jvm, decodeGraph(graph), memory);
+  const runMethod = await jvm.findMethodInHierarchy(target.type, 'run', '()V');
+  const frame = new Frame(runMethod);
+  frame.className = target.type;
+  frame.locals[0] = target;
+  const thread = {
+    id: 0,
+    name: name || 'parallel',
+    callStack: new CallStack(),
+    status: 'runnable',
+    pendingException: null,
+  };
+  thread.callStack.push(frame);
+  jvm.threads = [thread];
+  jvm.currentThreadIndex = 0;
+  await jvm.execute();
+}
+
+module.exports = {
+  parseParallelThreadSelection,
+  parallelThreadsAvailable,
+  planParallelThread,
+  startParallelThread,
+  reviveCapture,
+};
+
+if (workerThreads && !workerThreads.isMainThread && workerThreads.workerData &&
+    workerThreads.workerData.jvmParallelThread) {
+  runParallelThread().catch((error) => {
+    console.error(error && error.stack || error);
+    process.exitCode = 1;
+  });
+}
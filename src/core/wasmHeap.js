@@ -1,69 +1,156 @@
 'use strict';
 
 // Linear heap for primitive Java arrays (JVM_WASM_HEAP=1): each array is a
-// TypedArray view over one fixed-size WebAssembly.Memory, bump-allocated and
-// never freed. JS/interpreter code indexes the view exactly like the plain
-// arrays it replaces (TypedArray coercion matches Java element semantics),
-// while compiled wasm can read `view.wasmBase` once per run and then access
-// elements with raw loads/stores. The memory never grows, so views never
-// detach; when the bump pointer runs out, allocation falls back to ordinary
-// TypedArrays (wasmBase undefined) and compiled code takes the import path —
-// exhaustion degrades performance, never correctness.
+// TypedArray view over one fixed-size WebAssembly.Memory. JS/interpreter code
+// indexes the view exactly like the plain arrays it replaces (TypedArray
+// coercion matches Java element semantics), while compiled wasm can read
+// `view.wasmBase` once per run and then access elements with raw
+// loads/stores. The memory never grows, so views never detach; when no block
+// is free, allocation falls back to ordinary TypedArrays (wasmBase undefined)
+// and compiled code takes the import path — exhaustion degrades performance,
+// never correctness.
+//
+// Blocks are rounded up to size classes (16-byte steps up to 256 bytes, then
+// quarter powers of two, so at most 25% slack). Each array view and each
+// object slab's owner is registered with a FinalizationRegistry; once the
+// guest drops it, its block goes on the free list of its class and the next
+// allocation of that class reuses it (zeroed first). A block freed at the top
+// lowers the bump pointer instead. Finalizers only run between tasks, never
+// inside a synchronous compiled run, so a base a wasm frame still holds cannot
+// be handed out again underneath it. JVM_WASM_HEAP_RECLAIM=0 restores the
+// bump-only heap.
+//
+// With options.shared the memory is a shared WebAssembly.Memory, so the views
+// sit on a SharedArrayBuffer that worker threads can map too (see
+// core/parallelThreads.js).
 
 const CTOR = {
   '[Z': Int8Array, '[B': Int8Array, '[C': Uint16Array, '[S': Int16Array,
   '[I': Int32Array, '[J': BigInt64Array, '[F': Float32Array, '[D': Float64Array,
 };
 
+const SMALL_CLASS_MAX = 256;
+
+// Block size for a request of `bytes` (> 0): a multiple of 16 up to 256 bytes,
+// then one of four evenly spaced steps per power of two.
+function sizeClass(bytes) {
+  if (bytes <= SMALL_CLASS_MAX) return (bytes + 15) & ~15;
+  const granule = 2 ** (29 - Math.clz32(bytes - 1));
+  return Math.ceil(bytes / granule) * granule;
+}
+
 class WasmHeap {
-  constructor(mb) {
+  constructor(mb, options = {}) {
     const pages = Math.ceil((mb * 1024 * 1024) / 65536);
-    this.memory = new WebAssembly.Memory({ initial: pages, maximum: pages });
+    this.shared = Boolean(options.shared);
+    this.memory = new WebAssembly.Memory({ initial: pages, maximum: pages, shared: this.shared });
     this.limit = pages * 65536;
-    this.top = 8; // offset 0 stays unused; fresh memory is already zeroed
+    this.top = 16; // offset 0 stays unused; fresh memory is already zeroed
     this.exhausted = false;
     // Typed views for object-field access. The memory never grows, so these
     // are created once and never detach.
+    this.u8 = new Uint8Array(this.memory.buffer);
     this.i32 = new Int32Array(this.memory.buffer);
     this.f64 = new Float64Array(this.memory.buffer);
     this.i64 = new BigInt64Array(this.memory.buffer);
+    const reclaim = options.reclaim ?? process.env.JVM_WASM_HEAP_RECLAIM !== '0';
+    this.free = new Map(); // block bytes -> [base]
+    this.freeBytes = 0;
+    this.reclaimed = 0;
+    this.reused = 0;
+    this.lastBlock = 0;
+    this.registry = reclaim && typeof FinalizationRegistry === 'function'
+      ? new FinalizationRegistry((block) => this.release(block.base, block.bytes))
+      : null;
   }
 
-  // Bump-allocate `bytes` of 8-aligned slab for one object's primitive
-  // instance fields. Returns the base offset, or -1 when the heap is spent —
-  // callers then keep the object's fields in a plain JS map.
-  allocObject(bytes) {
-    const base = (this.top + 7) & ~7;
-    if (base + bytes > this.limit) {
+  // Base offset of a zeroed, 16-aligned block of at least `bytes`, or -1.
+  // The block's real size is left in `lastBlock` for track().
+  allocBlock(bytes) {
+    const size = sizeClass(bytes);
+    let block = size;
+    let base = -1;
+    const list = this.free.get(size);
+    if (list && list.length) {
+      base = list.pop();
+      this.freeBytes -= size;
+      this.reused += 1;
+    } else if (this.top + size <= this.limit) {
+      base = this.top;
+      this.top += size;
+    } else if (this.freeBytes) {
+      // Spent: take the smallest larger free block whole rather than fail.
+      for (const [candidate, blocks] of this.free) {
+        if (candidate > size && blocks.length && (base < 0 || candidate < block)) {
+          block = candidate;
+          base = 0;
+        }
+      }
+      if (base === 0) {
+        base = this.free.get(block).pop();
+        this.freeBytes -= block;
+        this.reused += 1;
+      }
+    }
+    if (base < 0) {
       if (!this.exhausted) {
         this.exhausted = true;
-        process.stderr.write(`[wasmheap] exhausted at ${this.limit} bytes; falling back to plain typed arrays\n`);
+        process.stderr.write(`[wasmheap] exhausted at ${this.limit} bytes; falling back to plain typed arrays` +
+          `${this.registry ? ' until collected blocks are reused' : ''}\n`);
       }
       return -1;
     }
-    this.top = base + bytes;
+    this.lastBlock = block;
+    return base;
+  }
+
+  // Release the block just allocated at `base` once `owner` is collected.
+  track(owner, base) {
+    if (this.registry) this.registry.register(owner, { base, bytes: this.lastBlock });
+  }
+
+  // Finalizer side: zero the block so every free byte (free lists and the
+  // space above `top`) is already clean when it is handed out again.
+  release(base, bytes) {
+    this.u8.fill(0, base, base + bytes);
+    this.reclaimed += 1;
+    if (base + bytes === this.top) {
+      this.top = base;
+      return;
+    }
+    let list = this.free.get(bytes);
+    if (!list) this.free.set(bytes, (list = []));
+    list.push(base);
+    this.freeBytes += bytes;
+  }
+
+  // Allocate a `bytes` slab for one object's primitive instance fields.
+  // Returns the base offset, or -1 when no block is free — callers then keep
+  // the object's fields in a plain JS map. `owner` is the object that holds
+  // the base; its collection frees the slab.
+  allocObject(bytes, owner) {
+    if (bytes <= 0) return this.top;
+    const base = this.allocBlock(bytes);
+    if (base >= 0 && owner) this.track(owner, base);
     return base;
   }
 
   // TypedArray view for `desc` ('[I', '[B', ...) or null when desc is not a
-  // primitive array descriptor. Zero-filled by construction (memory is fresh
-  // and never reused).
+  // primitive array descriptor. Always zero-filled.
   alloc(desc, count) {
     const Ctor = CTOR[desc];
     if (!Ctor) return null;
-    const align = Ctor.BYTES_PER_ELEMENT;
-    const base = (this.top + align - 1) & ~(align - 1);
-    const bytes = count * align;
-    if (base + bytes > this.limit) {
-      if (!this.exhausted) {
-        this.exhausted = true;
-        process.stderr.write(`[wasmheap] exhausted at ${this.limit} bytes; falling back to plain typed arrays\n`);
-      }
-      return new Ctor(count);
+    const bytes = count * Ctor.BYTES_PER_ELEMENT;
+    if (bytes === 0) {
+      const view = new Ctor(this.memory.buffer, this.top, 0);
+      view.wasmBase = this.top;
+      return view;
     }
-    this.top = base + bytes;
+    const base = this.allocBlock(bytes);
+    if (base < 0) return new Ctor(count);
     const view = new Ctor(this.memory.buffer, base, count);
     view.wasmBase = base;
+    this.track(view, base);
     return view;
   }
 }
@@ -74,4 +161,4 @@ function isJavaArray(v) {
   return Array.isArray(v) || (ArrayBuffer.isView(v) && !(v instanceof DataView));
 }
 
-module.exports = { WasmHeap, isJavaArray };
+module.exports = { WasmHeap, isJavaArray, sizeClass, ARRAY_CONSTRUCTORS: CTOR };
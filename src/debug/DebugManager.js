@@ -13,6 +13,15 @@ class DebugManager {
     // in any method, so existing callers are unaffected.
     this.strictBreakpointLocations = new Map();
     this.jitDeoptedClasses = new Set();
+    // Full-speed mode: while continuing, code that cannot hit a breakpoint
+    // keeps running in the burst interpreter and the compiled tiers instead of
+    // one instruction per tick. Only frames of breakpointed methods (and of
+    // classes with class-wide breakpoints) are checked instruction by
+    // instruction. A breakpoint on a bare offset can fire anywhere, so while
+    // one exists every frame is checked, as before.
+    this.fullSpeed = false;
+    this.deoptedLocations = new Set(); // strict location keys, see locationKey
+    this.unlocatedBreakpoints = false;
   }
 
   enable() {
@@ -23,6 +32,10 @@ class DebugManager {
     this.debugMode = false;
   }
 
+  setFullSpeed(enabled) {
+    this.fullSpeed = Boolean(enabled);
+  }
+
   setSteppingMode(mode) {
     this.steppingMode = mode;
   }
@@ -64,6 +77,7 @@ class DebugManager {
     const keys = this.strictBreakpointLocations.get(pc) || new Set();
     keys.add(key);
     this.strictBreakpointLocations.set(pc, keys);
+    this.rebuildDeoptedLocations();
     return { pc, location: key };
   }
 
@@ -88,6 +102,7 @@ class DebugManager {
       this.breakpointLocations.set(pc, classNames);
       this.jitDeoptedClasses.add(location.className);
     }
+    this.rebuildDeoptedLocations();
   }
 
   removeBreakpoint(pc, location = null) {
@@ -105,6 +120,7 @@ class DebugManager {
       this.breakpointLocations.delete(pc);
     }
     this.rebuildJitDeoptedClasses();
+    this.rebuildDeoptedLocations();
   }
 
   clearBreakpoints() {
@@ -112,6 +128,61 @@ class DebugManager {
     this.breakpointLocations.clear();
     this.strictBreakpointLocations.clear();
     this.jitDeoptedClasses.clear();
+    this.rebuildDeoptedLocations();
+  }
+
+  rebuildDeoptedLocations() {
+    this.deoptedLocations.clear();
+    this.unlocatedBreakpoints = false;
+    for (const pc of this.breakpoints) {
+      const keys = this.strictBreakpointLocations.get(pc);
+      if (!keys || keys.size === 0) {
+        this.unlocatedBreakpoints = true;
+        continue;
+      }
+      for (const key of keys) this.deoptedLocations.add(key);
+    }
+  }
+
+  /**
+   * Whether full-speed execution is in effect: the mode is on, the program is
+   * continuing (not paused or stepping), and no breakpoint matches anywhere.
+   */
+  fullSpeedActive() {
+    return this.fullSpeed && this.runMode === 'continuing' && !this.unlocatedBreakpoints;
+  }
+
+  /**
+   * Whether a frame can run without per-instruction breakpoint checks: full
+   * speed is active and no breakpoint is located in the frame's method.
+   */
+  runsFullSpeed(frame) {
+    if (!this.fullSpeedActive()) return false;
+    if (this.deoptedLocations.size === 0) return true;
+    const className = frame && frame.className;
+    if (!className) return false;
+    if (this.deoptedLocations.has(className)) return false;
+    const method = frame.method;
+    return !(method && this.deoptedLocations.has(
+      `${className}.${method.name}${method.descriptor || ''}`));
+  }
+
+  /**
+   * Whether generated code that may hold several methods' bytecode (inlined
+   * callees, fused and call-graph regions, Wasm modules) can run unobserved.
+   * Such code cannot tell which method a breakpoint sits in, so under a
+   * debugger it runs only in full-speed mode. A caller that names the classes
+   * whose code it holds may run while breakpoints are located elsewhere;
+   * without `classNames`, any breakpoint keeps it off.
+   */
+  allowsCompiledRegions(classNames = null) {
+    if (this.breakpoints.size > 0) {
+      if (!classNames || this.unlocatedBreakpoints) return false;
+      for (const className of classNames) {
+        if (this.jitDeoptedClasses.has(className)) return false;
+      }
+    }
+    return !this.debugMode || this.fullSpeedActive();
   }
 
   rebuildJitDeoptedClasses() {
@@ -160,6 +231,7 @@ class DebugManager {
       (state.breakpointLocations || []).map(([pc, classNames]) => [pc, new Set(classNames)]),
     );
     this.rebuildJitDeoptedClasses();
+    this.rebuildDeoptedLocations();
   }
 }
 
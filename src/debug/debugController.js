@@ -1,5 +1,6 @@
 const { JVM } = require('../core/jvm');
 const Frame = require('../core/frame');
+const { RewindJournal } = require('./rewindJournal');
 
 class DebugController {
   constructor(options = {}) {
@@ -9,7 +10,9 @@ class DebugController {
     };
     this.jvm = new JVM(this.options);
     this.executionState = 'stopped'; // stopped, running, paused
-    this.history = [];
+    // Steps available to rewind(); see rewindJournal.js. Created on start()
+    // when rewindHistorySize > 0.
+    this.journal = null;
     // Store last known state for display purposes when execution completes
     this.lastKnownState = {
       pc: null,
@@ -27,6 +30,7 @@ class DebugController {
       this.jvm.debugManager.pause();
       await this.jvm.run(classFilePath, options);
       this.executionState = 'paused';
+      this.journal = this._createJournal();
 
       return {
         status: 'started',
@@ -64,7 +68,9 @@ class DebugController {
     }
     this.executionState = 'running';
     this.jvm.debugManager.setRunMode('continuing');
-    const result = await this.jvm.execute();
+    const result = this.journal
+      ? await this.journal.recordBarrier(() => this.jvm.execute())
+      : await this.jvm.execute();
     if (result.paused) {
       this.executionState = 'paused';
     } else {
@@ -107,16 +113,7 @@ class DebugController {
       throw new Error('Cannot step: execution is not paused');
     }
 
-    if (this.options.rewindHistorySize > 0) {
-      this.history.push(this.serialize());
-      if (this.history.length > this.options.rewindHistorySize) {
-        this.history.shift();
-      }
-    }
-
-    this.jvm.debugManager.setRunMode('stepping');
-    const result = await this.jvm.executeTick();
-    this.jvm.debugManager.setRunMode('paused');
+    const result = await this._tick();
     if (result.completed) {
       this.executionState = 'stopped';
     }
@@ -131,7 +128,7 @@ class DebugController {
     const targetThreadId = this.jvm.debugManager.selectedThreadId;
 
     // Step one tick first
-    let result = await this.jvm.executeTick();
+    let result = await this._tick();
     if (result.completed) {
         this.executionState = 'stopped';
         return { status: this.executionState, state: this.getCurrentState() };
@@ -139,7 +136,7 @@ class DebugController {
 
     // Keep ticking until the selected thread is the current one again
     while (this.jvm.currentThreadIndex !== targetThreadId && !result.completed) {
-        result = await this.jvm.executeTick();
+        result = await this._tick();
         if (result.completed) {
             break;
         }
@@ -152,6 +149,33 @@ class DebugController {
     return { status: this.executionState, state: this.getCurrentState() };
   }
 
+  // One interpreter step, journaled when rewinding is enabled. Replays during
+  // a rewind go through _executeStep directly.
+  async _tick() {
+    if (!this.journal) return this._executeStep();
+    return this.journal.recordTick(() => this._executeStep());
+  }
+
+  async _executeStep() {
+    this.jvm.debugManager.setRunMode('stepping');
+    try {
+      return await this.jvm.executeTick();
+    } finally {
+      this.jvm.debugManager.setRunMode('paused');
+    }
+  }
+
+  _createJournal() {
+    const { rewindHistorySize, rewindCheckpointInterval, rewindMaxCheckpoints } = this.options;
+    if (!(rewindHistorySize > 0)) return null;
+    return new RewindJournal(this.jvm, {
+      limit: rewindHistorySize,
+      checkpointInterval: rewindCheckpointInterval,
+      maxCheckpoints: rewindMaxCheckpoints,
+      tick: () => this._executeStep(),
+    });
+  }
+
   selectThread(threadId) {
     this.jvm.debugManager.selectThread(threadId);
     return { status: 'thread_selected', threadId: threadId };
@@ -161,7 +185,19 @@ class DebugController {
     return this.jvm.threads.map(t => ({ id: t.id, status: t.status }));
   }
 
-  setBreakpoint(pc) {
+  /**
+   * Set a breakpoint at `pc`. With a `location` ({ className, methodName,
+   * descriptor }) it fires only in that method, and code elsewhere keeps
+   * running at full speed; without one it fires at that offset anywhere.
+   */
+  setBreakpoint(pc, location = null) {
+    if (location && location.className) {
+      this.jvm.addLocatedBreakpoint(pc, location);
+      return {
+        status: 'breakpoint_set', pc: pc,
+        className: location.className, methodName: location.methodName, descriptor: location.descriptor,
+      };
+    }
     this.jvm.addBreakpoint(pc);
     return { status: 'breakpoint_set', pc: pc };
   }
@@ -463,6 +499,7 @@ class DebugController {
   reset() {
     this.jvm = new JVM(this.options);
     this.executionState = 'stopped';
+    this.journal = null;
     return { status: 'reset' };
   }
 
@@ -488,6 +525,7 @@ class DebugController {
   async deserialize(state) {
     await this.jvm.deserialize(state.jvmState);
     this.executionState = state.executionState || 'stopped';
+    if (this.journal) this.journal.clear();
     return { status: 'restored' };
   }
 
@@ -531,6 +569,7 @@ class DebugController {
    */
   async evaluate(source, options = {}) {
     const { evaluateInLiveJvm } = require('./evaluator');
+    if (this.journal) this.journal.invalidateUndo();
     return evaluateInLiveJvm(this.jvm, source, options);
   }
 
@@ -551,20 +590,17 @@ class DebugController {
     }
   }
 
+  /**
+   * Go back `steps` debugger steps. Steps whose effects were journaled are
+   * undone in place; otherwise the nearest checkpoint is restored and the
+   * remaining steps are replayed with console output suppressed.
+   */
   async rewind(steps = 1) {
-    if (steps > this.history.length) {
+    if (!this.journal || steps > this.journal.length) {
       throw new Error('Cannot rewind: not enough history');
     }
-
-    let stateToRestore = null;
-    for (let i = 0; i < steps; i++) {
-      stateToRestore = this.history.pop();
-    }
-
-    if (stateToRestore) {
-      await this.deserialize(stateToRestore);
-    }
-
+    await this.journal.rewind(steps);
+    this.executionState = 'paused';
     return { status: 'rewound', state: this.getCurrentState() };
   }
 }
@@ -14,9 +14,7 @@
 
 const Frame = require('../core/frame');
 const Stack = require('../core/stack');
-const { convertJson } = require('../parsing/convert_tree');
 const { assembleJasminBytes } = require('../utils/jasminAssembly');
-const { getAST } = require('jvm_parser');
 
 const RESULT_FIELD = 'jvmEvalResult';
 const ENTRY_METHOD = 'jvmEvalRun';
@@ -185,15 +183,8 @@ function verifyAll(jvm, compiled) {
 
 function installClass(jvm, classModel, assemblyOptions) {
   const bytes = assembleJasminBytes(classModel.jasmin, assemblyOptions || {});
-  const raw = getAST(bytes);
-  const classData = {
-    ast: convertJson(raw.ast, raw.constantPool),
-    constantPool: raw.constantPool,
-    staticFields: new Map(),
-  };
-  const name = classData.ast.classes[0].className;
-  jvm.classes[name] = classData;
-  return { name, classData };
+  const classData = jvm.defineClass(bytes);
+  return { name: classData.ast.classes[0].className, classData };
 }
 
 // Guest code must run without advancing the program being debugged.  The
@@ -0,0 +1,466 @@
+'use strict';
+
+// Time-travel history for the debugger.
+//
+// Snapshotting the whole VM before every step made each step cost a full heap
+// walk and kept only as many states as fit in memory. The journal records
+// instead what a single interpreter step can change: the frames and operand
+// stacks of each thread, the scheduler cursor, and the one heap slot the
+// thread's next instruction writes (putfield, putstatic, xastore). Undoing a
+// step restores exactly those.
+//
+// Some steps do more than that -- invokes into natives, monitor operations,
+// class initialization, thread creation -- and are marked opaque. Rewinding
+// across an opaque step restores the nearest saveState() checkpoint at or
+// before the target and replays the remaining steps with console output
+// suppressed. Checkpoints are taken every `checkpointInterval` steps; when
+// more than `maxCheckpoints` accumulate, every other one is dropped and the
+// interval doubles, so a long session keeps O(maxCheckpoints) full copies.
+//
+// A replayed step must reproduce the original one, which holds for
+// interpreter steps under a deterministic clock. Resuming with continue() is
+// recorded as a single barrier entry that cannot be replayed, followed by a
+// checkpoint, so targets on either side of it stay reachable.
+
+const DEFAULT_CHECKPOINT_INTERVAL = 1000;
+const DEFAULT_MAX_CHECKPOINTS = 32;
+const COMPACT_THRESHOLD = 1024;
+
+const CONSOLE_STREAMS = ['out:Ljava/io/PrintStream;', 'err:Ljava/io/PrintStream;'];
+
+function opName(instruction) {
+  if (!instruction) return null;
+  return typeof instruction === 'string' ? instruction : instruction.op || null;
+}
+
+function isOpaqueOp(op) {
+  return op === 'monitorenter' || op === 'monitorexit' ||
+    (typeof op === 'string' && op.startsWith('invoke'));
+}
+
+function replaceContents(target, values) {
+  target.length = values.length;
+  for (let i = 0; i < values.length; i++) target[i] = values[i];
+}
+
+function isPlainFields(fields) {
+  const proto = Object.getPrototypeOf(fields);
+  return proto === Object.prototype || proto === null;
+}
+
+// The heap slot the thread's next instruction would write, read before the
+// step so it can be put back. Returns false when the write cannot be undone.
+function predictWrite(jvm, frame, op, writes) {
+  const instructionItem = frame.instructions[frame.pc];
+  const items = frame.stack.items;
+  if (op === 'putfield') {
+    const objRef = items[items.length - 2];
+    if (!objRef || typeof objRef !== 'object') return true;
+    const fields = objRef.fields;
+    if (fields && !isPlainFields(fields)) return false;
+    writes.push({ kind: 'fields', objRef, fields: fields ? { ...fields } : null });
+    return true;
+  }
+  if (op === 'putstatic') {
+    const [, className, [fieldName, descriptor]] = instructionItem.instruction.arg;
+    const fieldKey = `${fieldName}:${descriptor}`;
+    let currentClassName = className;
+    while (currentClassName) {
+      const classData = jvm.classes[currentClassName];
+      if (classData && classData.staticFields instanceof Map) {
+        const map = classData.staticFields;
+        writes.push({ kind: 'static', map, key: fieldKey, had: map.has(fieldKey), value: map.get(fieldKey) });
+      }
+      currentClassName = classData && classData.ast && classData.ast.classes[0]
+        ? classData.ast.classes[0].superClassName
+        : null;
+    }
+    return true;
+  }
+  if (op && op.length === 7 && op.endsWith('astore')) {
+    const arrayRef = items[items.length - 3];
+    const index = items[items.length - 2];
+    if (!arrayRef || typeof arrayRef !== 'object' || !(index >= 0 && index < arrayRef.length)) return true;
+    const elements = arrayRef.elements || arrayRef;
+    writes.push({ kind: 'element', elements, index, value: elements[index] });
+  }
+  return true;
+}
+
+function captureThread(jvm, thread, writes) {
+  const frames = thread.callStack.items.slice();
+  const top = frames[frames.length - 1] || null;
+  const caller = frames[frames.length - 2] || null;
+  const record = { thread, props: { ...thread }, frames, top, opaque: false };
+  if (top) {
+    record.pc = top.pc;
+    record.stackItems = top.stack.items;
+    record.stack = top.stack.items.slice();
+    record.localsRef = top.locals;
+    record.locals = top.locals.slice();
+    record.monitorEntered = top.monitorEntered;
+    if (top.pc >= top.instructions.length) {
+      // Falling off the end completes class initialization or a reflective
+      // call; neither is captured here.
+      record.opaque = true;
+    } else {
+      const op = opName(top.instructions[top.pc].instruction);
+      record.opaque = isOpaqueOp(op) || !predictWrite(jvm, top, op, writes);
+    }
+  }
+  if (caller) {
+    record.caller = caller;
+    record.callerPc = caller.pc;
+    record.callerStackItems = caller.stack.items;
+    record.callerStack = caller.stack.items.slice();
+  }
+  return record;
+}
+
+function captureStep(jvm) {
+  const entry = {
+    opaque: false,
+    barrier: false,
+    currentThreadIndex: jvm.currentThreadIndex,
+    threadList: jvm.threads.slice(),
+    initEpoch: jvm.classInitializationEpoch,
+    threads: [],
+    writes: [],
+  };
+  for (const thread of entry.threadList) {
+    entry.threads.push(captureThread(jvm, thread, entry.writes));
+  }
+  return entry;
+}
+
+// A thread that did not move cannot have performed its predicted write, so
+// only the threads whose frames changed decide whether the step is opaque.
+function threadChanged(record) {
+  const items = record.thread.callStack.items;
+  if (items.length !== record.frames.length) return true;
+  if (!record.top) return false;
+  return items[items.length - 1] !== record.top || record.top.pc !== record.pc ||
+    record.top.stack.items !== record.stackItems || record.top.stack.items.length !== record.stack.length;
+}
+
+function undoableShape(record) {
+  const items = record.thread.callStack.items;
+  const before = record.frames.length;
+  if (record.top && record.top.monitorEntered !== record.monitorEntered) return false;
+  if (items.length === before) return items[before - 1] === record.top;
+  if (items.length === before + 1) return items[before - 1] === record.top;
+  if (items.length === before - 1) {
+    if (record.top.monitorEntered) return false;
+    return before === 1 || items[before - 2] === record.caller;
+  }
+  return false;
+}
+
+function finishStep(jvm, entry) {
+  if (jvm.classInitializationEpoch !== entry.initEpoch ||
+      jvm.threads.length !== entry.threadList.length ||
+      jvm.threads.some((thread, index) => thread !== entry.threadList[index])) {
+    entry.opaque = true;
+  }
+  for (const record of entry.threads) {
+    if (!threadChanged(record)) continue;
+    if (record.opaque || !undoableShape(record)) entry.opaque = true;
+  }
+  if (entry.opaque) {
+    // Nothing in an opaque entry is ever applied; drop the references.
+    entry.threads = null;
+    entry.writes = null;
+    entry.threadList = null;
+  }
+}
+
+function undoStep(jvm, entry) {
+  for (let i = entry.writes.length - 1; i >= 0; i--) {
+    const write = entry.writes[i];
+    if (write.kind === 'fields') {
+      if (!write.fields) {
+        delete write.objRef.fields;
+      } else {
+        const fields = write.objRef.fields;
+        for (const key of Object.keys(fields)) {
+          if (!(key in write.fields)) delete fields[key];
+        }
+        Object.assign(fields, write.fields);
+      }
+    } else if (write.kind === 'static') {
+      if (write.had) write.map.set(write.key, write.value);
+      else write.map.delete(write.key);
+      jvm.jit?.markStaticLocationChanged(write.map, write.key);
+    } else {
+      write.elements[write.index] = write.value;
+    }
+  }
+  replaceContents(jvm.threads, entry.threadList);
+  for (const record of entry.threads) {
+    const { thread } = record;
+    for (const key of Object.keys(thread)) {
+      if (!(key in record.props)) delete thread[key];
+    }
+    Object.assign(thread, record.props);
+    replaceContents(thread.callStack.items, record.frames);
+    if (record.top) {
+      record.top.pc = record.pc;
+      record.top.stack.items = record.stackItems;
+      replaceContents(record.stackItems, record.stack);
+      record.top.locals = record.localsRef;
+      replaceContents(record.localsRef, record.locals);
+    }
+    if (record.caller) {
+      record.caller.pc = record.callerPc;
+      record.caller.stack.items = record.callerStackItems;
+      replaceContents(record.callerStackItems, record.callerStack);
+    }
+  }
+  jvm.currentThreadIndex = entry.currentThreadIndex;
+}
+
+// loadState rebinds System.out/err to process streams; the session keeps the
+// writers it was started with (the browser console, a test capture).
+function consoleWriters(jvm) {
+  const systemClass = jvm.classes['java/lang/System'];
+  const statics = systemClass && systemClass.staticFields;
+  if (!(statics instanceof Map)) return [];
+  return CONSOLE_STREAMS.map((key) => {
+    const stream = statics.get(key);
+    return stream && stream.out ? stream.out.writer : undefined;
+  });
+}
+
+function restoreConsoleWriters(jvm, writers) {
+  const systemClass = jvm.classes['java/lang/System'];
+  const statics = systemClass && systemClass.staticFields;
+  if (!(statics instanceof Map)) return;
+  CONSOLE_STREAMS.forEach((key, index) => {
+    const stream = statics.get(key);
+    if (stream && stream.out && writers[index]) stream.out.writer = writers[index];
+  });
+}
+
+class RewindJournal {
+  /**
+   * @param {JVM} jvm
+   * @param {object} options - { limit, checkpointInterval, maxCheckpoints, tick }
+   *   `limit` bounds how many steps can be rewound (0 = unbounded); `tick`
+   *   runs one step during replay and defaults to jvm.executeTick().
+   */
+  constructor(jvm, options = {}) {
+    this.jvm = jvm;
+    this.limit = Math.max(0, Number(options.limit) || 0);
+    this.initialCheckpointInterval = Math.max(1,
+      Number(options.checkpointInterval) || DEFAULT_CHECKPOINT_INTERVAL);
+    this.maxCheckpoints = Math.max(2, Number(options.maxCheckpoints) || DEFAULT_MAX_CHECKPOINTS);
+    this.tick = options.tick || (() => jvm.executeTick());
+    this.clear();
+  }
+
+  clear() {
+    // entries[offset + i] leads from step `first + i` to `first + i + 1`.
+    this.entries = [];
+    this.offset = 0;
+    this.first = 0;
+    this.position = 0;
+    this.checkpoints = [];
+    // Steps that are barriers, kept while a checkpoint before them remains:
+    // trimming to `limit` drops entries but a replay base may predate them.
+    this.barriers = [];
+    this.checkpointInterval = this.initialCheckpointInterval;
+  }
+
+  /** Number of steps that can currently be rewound. */
+  get length() {
+    return this.position - this.first;
+  }
+
+  /** Run one step through `run` and journal what it changed. */
+  async recordTick(run) {
+    this._checkpointIfDue();
+    const entry = captureStep(this.jvm);
+    try {
+      return await run();
+    } finally {
+      finishStep(this.jvm, entry);
+      this._push(entry);
+    }
+  }
+
+  /**
+   * Run something the journal cannot replay (continue(), a JIT-speed run) as
+   * one history entry, then checkpoint so later steps have a base to replay
+   * from.
+   */
+  async recordBarrier(run) {
+    this._checkpointIfDue();
+    try {
+      return await run();
+    } finally {
+      this._push({ opaque: true, barrier: true });
+      this._takeCheckpoint(true);
+    }
+  }
+
+  /**
+   * The live heap changed outside any recorded step (an evaluated
+   * expression). Undo records written against the old heap would be wrong,
+   * so reaching an earlier state goes through a checkpoint from now on.
+   */
+  invalidateUndo() {
+    for (let i = this.offset; i < this.entries.length; i++) this._makeOpaque(this.entries[i]);
+  }
+
+  async rewind(steps = 1) {
+    const target = this.position - steps;
+    if (steps < 0 || target < this.first) {
+      throw new Error('Cannot rewind: not enough history');
+    }
+    let undoable = true;
+    for (let step = this.position - 1; step >= target; step--) {
+      if (this._entry(step).opaque) {
+        undoable = false;
+        break;
+      }
+    }
+    if (undoable) {
+      for (let step = this.position - 1; step >= target; step--) {
+        undoStep(this.jvm, this._entry(step));
+      }
+      this._truncate(target);
+      return { replayed: 0 };
+    }
+
+    let checkpoint = null;
+    for (const candidate of this.checkpoints) {
+      if (candidate.position <= target) checkpoint = candidate;
+    }
+    if (!checkpoint) throw new Error('Cannot rewind: not enough history');
+    if (this.barriers.some((step) => step >= checkpoint.position && step < target)) {
+      throw new Error('Cannot rewind: history is not replayable');
+    }
+
+    await this._restore(checkpoint);
+    if (checkpoint.position < this.first) {
+      // The base predates the trimmed history: restart the journal there and
+      // let the replay record the steps up to the target again.
+      this.entries = [];
+      this.offset = 0;
+      this.first = checkpoint.position;
+    } else {
+      // Undo records before the checkpoint refer to objects the restore replaced.
+      for (let step = this.first; step < checkpoint.position; step++) {
+        this._makeOpaque(this._entry(step));
+      }
+    }
+    this._truncate(checkpoint.position);
+    const replayed = target - checkpoint.position;
+    this.jvm.replayingHistory = true;
+    try {
+      for (let i = 0; i < replayed; i++) {
+        await this.recordTick(this.tick);
+      }
+    } finally {
+      this.jvm.replayingHistory = false;
+    }
+    return { replayed };
+  }
+
+  _entry(step) {
+    return this.entries[this.offset + step - this.first];
+  }
+
+  _makeOpaque(entry) {
+    entry.opaque = true;
+    entry.threads = null;
+    entry.writes = null;
+    entry.threadList = null;
+  }
+
+  _push(entry) {
+    if (entry.barrier) this.barriers.push(this.position);
+    this.entries.push(entry);
+    this.position++;
+    if (this.limit > 0 && this.length > this.limit) {
+      this._discardBefore(this.position - this.limit);
+    }
+  }
+
+  _discardBefore(step) {
+    const drop = step - this.first;
+    if (drop <= 0) return;
+    for (let i = this.offset; i < this.offset + drop; i++) this.entries[i] = null;
+    this.offset += drop;
+    this.first = step;
+    if (this.offset > COMPACT_THRESHOLD && this.offset * 2 > this.entries.length) {
+      this.entries = this.entries.slice(this.offset);
+      this.offset = 0;
+    }
+    // Keep the newest checkpoint at or before the oldest reachable step; the
+    // ones before it can no longer be a replay base.
+    let keepFrom = 0;
+    for (let i = 0; i < this.checkpoints.length; i++) {
+      if (this.checkpoints[i].position <= this.first) keepFrom = i;
+    }
+    this.checkpoints.splice(0, keepFrom);
+    const base = this.checkpoints.length ? this.checkpoints[0].position : this.first;
+    while (this.barriers.length && this.barriers[0] < base) this.barriers.shift();
+  }
+
+  _truncate(step) {
+    this.entries.length = this.offset + step - this.first;
+    this.position = step;
+    this.checkpoints = this.checkpoints.filter((checkpoint) => checkpoint.position <= step);
+    this.barriers = this.barriers.filter((barrier) => barrier < step);
+  }
+
+  _checkpointIfDue() {
+    const last = this.checkpoints[this.checkpoints.length - 1];
+    if (!last || this.position - last.position >= this.checkpointInterval) {
+      this._takeCheckpoint(false);
+    }
+  }
+
+  _takeCheckpoint(pinned) {
+    const last = this.checkpoints[this.checkpoints.length - 1];
+    if (last && last.position === this.position) {
+      last.pinned = last.pinned || pinned;
+      return;
+    }
+    const state = this.jvm.saveState();
+    // Breakpoints belong to the session, not to the point in history.
+    delete state.debugManager;
+    this.checkpoints.push({ position: this.position, state, pinned });
+    this._thinCheckpoints();
+  }
+
+  _thinCheckpoints() {
+    while (this.checkpoints.length > this.maxCheckpoints) {
+      const last = this.checkpoints[this.checkpoints.length - 1];
+      const kept = this.checkpoints.filter((checkpoint, index) =>
+        index === 0 || index % 2 === 0 || checkpoint.pinned || checkpoint === last);
+      if (kept.length < this.checkpoints.length) {
+        this.checkpoints = kept;
+        this.checkpointInterval *= 2;
+      } else {
+        // Only barrier checkpoints remain; give up the oldest stretch of
+        // history rather than replay across a barrier.
+        this.checkpoints.shift();
+        this._discardBefore(this.checkpoints[0].position);
+      }
+    }
+  }
+
+  async _restore(checkpoint) {
+    const writers = consoleWriters(this.jvm);
+    await this.jvm.loadState(checkpoint.state);
+    restoreConsoleWriters(this.jvm, writers);
+  }
+}
+
+module.exports = {
+  RewindJournal,
+  DEFAULT_CHECKPOINT_INTERVAL,
+  DEFAULT_MAX_CHECKPOINTS,
+};
@@ -14,6 +14,7 @@ const { listRegionSplitCandidates, applyRegionSplit } = require('../passes/regio
 const { jreClassInfo, jreMethodCandidates } = require('../java-frontend/jreMetadata');
 const { JavaParser } = require('../java-frontend/parser');
 const { tokenizeJava } = require('../java-frontend/lexer');
+const { decompileWorkerCount, decompileInWorkers } = require('./decompilePool');
 
 const VERSION = 'CFR-JS 0.4.0';
 const javaStatementParser = new JavaParser();
@@ -160,6 +161,15 @@ function registerNestedSourceNames(classFileAst, pool) {
 
 // Outer$Mid$Leaf needs every link resolved, and the outer entry may itself be
 // nested. Bail out on a cycle rather than spinning on a hand-written class file.
+// The registry crosses threads as plain entries (see decompilePool.js).
+function nestedSourceNameEntries() {
+  return [...nestedSourceNames];
+}
+
+function registerNestedSourceNameEntries(entries) {
+  for (const [name, entry] of entries) nestedSourceNames.set(name, entry);
+}
+
 function nestedSourceName(dottedBinaryName) {
   let entry = nestedSourceNames.get(dottedBinaryName);
   if (!entry) return null;
@@ -176,9 +186,12 @@ function nestedSourceName(dottedBinaryName) {
   return `${current}.${parts.join('.')}`;
 }
 
-function convertParsedClass(parsed) {
+// options.lazyCode (or CFR_JS_LAZY_CODE=1) defers converting method bodies
+// until the decompiler reads them; see convertJson.
+function convertParsedClass(parsed, options = {}) {
   registerNestedSourceNames(parsed.ast, parsed.constantPool);
-  const converted = convertJson(parsed.ast, parsed.constantPool);
+  const lazyCode = options.lazyCode ?? process.env.CFR_JS_LAZY_CODE === '1';
+  const converted = convertJson(parsed.ast, parsed.constantPool, { lazyCode });
   const cls = (converted.classes || [])[0];
   if (!cls) return converted;
   cls.annotations = runtimeVisibleAnnotations(parsed.ast.attributes, parsed.constantPool);
@@ -211,7 +224,7 @@ function decompileClassFile(classFilePath, options = {}) {
 
 function decompileClassBytes(bytes, options = {}) {
   const parsed = getAST(new Uint8Array(normalizeLegacyClassFile(bytes)));
-  const astRoot = convertParsedClass(parsed);
+  const astRoot = convertParsedClass(parsed, options);
   return decompileAstRoot(astRoot, options);
 }
 
@@ -366,33 +379,44 @@ async function decompilePath(inputPath, options = {}) {
     // Parse every class once, build one exception model across all of them, then
     // decompile from the parsed ASTs so cross-class throws resolve.
     const parsed = files.map((file) => {
-      const result = getAST(new Uint8Array(fs.readFileSync(file)));
-      return { file, astRoot: convertParsedClass(result) };
+      const bytes = fs.readFileSync(file);
+      return { file, bytes, astRoot: convertParsedClass(getAST(new Uint8Array(bytes)), options) };
     });
     if (profileBulk) console.error(`[cfr-phase] parse ${Date.now() - bulkStarted}ms`);
     const exceptionModel = buildExceptionModel(parsed.flatMap((entry) => entry.astRoot.classes || []));
     if (profileBulk) console.error(`[cfr-phase] model ${Date.now() - bulkStarted}ms`);
+    const tasks = [];
+    parsed.forEach(({ file, astRoot }, slot) => {
+      if (!isEnumConstantBodyClass((astRoot.classes || [])[0], exceptionModel)) {
+        tasks.push({ slot, name: javaOutputName(file, inputPath) });
+      }
+    });
+    const workers = decompileWorkerCount(options, tasks.length);
+    if (workers > 1) {
+      return decompileInWorkers(parsed, tasks, exceptionModel, options, { workers, collectFailures: true });
+    }
     // Decompile every class even when some panic: a DecompilationFallbackError
     // means "no valid Java for this class — emit nothing for it", not "abort the
     // whole input". Failures are collected on the returned array (`.failures`)
     // so the CLI can report all of them and still exit non-zero.
     const outputs = [];
     const failures = [];
-    for (const { file, astRoot } of parsed) {
-      const primaryClass = (astRoot.classes || [])[0];
-      if (isEnumConstantBodyClass(primaryClass, exceptionModel)) continue;
+    for (const { slot, name } of tasks) {
+      const { file, astRoot } = parsed[slot];
       const started = Date.now();
       const diagnostics = [];
       if (process.env.CFR_JS_PROFILE_CLASSES === '1') console.error(`[cfr-class-start] ${file}`);
       try {
-        outputs.push({
-          name: javaOutputName(file, inputPath),
+        const output = {
+          name,
           source: decompileAstRoot(astRoot, { ...options, exceptionModel, diagnostics }),
           diagnostics,
-        });
+        };
+        outputs.push(output);
+        if (options.onOutput) options.onOutput(output, outputs.length - 1);
       } catch (err) {
         if (!(err instanceof DecompilationFallbackError)) throw err;
-        failures.push({ name: javaOutputName(file, inputPath), reason: err.message, context: err.context });
+        failures.push({ name, reason: err.message, context: err.context });
       }
       if (process.env.CFR_JS_PROFILE_CLASSES === '1') {
         console.error(`[cfr-class-done] ${Date.now() - started}ms ${file}`);
@@ -411,17 +435,28 @@ async function decompilePath(inputPath, options = {}) {
     for (const name of entries) {
       const bytes = await zip.files[name].async('nodebuffer');
       const result = getAST(new Uint8Array(bytes));
-      parsed.push({ name, astRoot: convertParsedClass(result) });
+      parsed.push({ name, bytes, astRoot: convertParsedClass(result, options) });
     }
     const exceptionModel = buildExceptionModel(parsed.flatMap((entry) => entry.astRoot.classes || []));
-    return parsed.filter(({ astRoot }) =>
-      !isEnumConstantBodyClass((astRoot.classes || [])[0], exceptionModel)).map(({ name, astRoot }) => {
+    const tasks = [];
+    parsed.forEach(({ name, astRoot }, slot) => {
+      if (!isEnumConstantBodyClass((astRoot.classes || [])[0], exceptionModel)) {
+        tasks.push({ slot, name: name.replace(/\.class$/i, '.java') });
+      }
+    });
+    const workers = decompileWorkerCount(options, tasks.length);
+    if (workers > 1) {
+      return decompileInWorkers(parsed, tasks, exceptionModel, options, { workers, collectFailures: false });
+    }
+    return tasks.map(({ slot, name }, index) => {
       const diagnostics = [];
-      return {
-        name: name.replace(/\.class$/i, '.java'),
-        source: decompileAstRoot(astRoot, { ...options, exceptionModel, diagnostics }),
+      const output = {
+        name,
+        source: decompileAstRoot(parsed[slot].astRoot, { ...options, exceptionModel, diagnostics }),
         diagnostics,
       };
+      if (options.onOutput) options.onOutput(output, index);
+      return output;
     });
   }
 
@@ -9828,6 +9863,9 @@ module.exports = {
   buildExceptionModel,
   _internals: {
     binaryExpr,
+    convertParsedClass,
+    nestedSourceNameEntries,
+    registerNestedSourceNameEntries,
     coerceExpressionForType,
     negateBooleanExpression,
     isBracketBalanced,
@@ -0,0 +1,255 @@
+'use strict';
+
+// Worker-pool mode for decompilePath (options.workers, CFR_JS_WORKERS, or
+// `--workers` on the CLI; 'auto' means one per core). The main thread still
+// parses every class once and builds the one cross-class exception model;
+// the workers only run decompileAstRoot.
+//
+// What a worker receives, once, at startup:
+//   - every class file's bytes in one SharedArrayBuffer plus an offset index
+//     (no per-worker copies);
+//   - the exception model as a compact summary: the small maps as entry
+//     lists, and classInfo as class names only. Workers rebuild classInfo
+//     as a map that parses a class from the shared bytes the first time a
+//     lookup needs it, so sibling ASTs never cross the thread boundary;
+//   - the nested-class source names registered while the main thread parsed.
+//
+// Tasks go out largest class first, one at a time to whichever worker is
+// idle, so a few huge classes cannot pile up behind each other. Results are
+// reassembled in input order and handed to options.onOutput as soon as every
+// earlier class is done, so the output is identical to the serial path
+// whatever the worker count. A DecompilationFallbackError is collected per
+// class exactly as the serial path does; any other error rejects the run at
+// the position the serial path would have thrown it.
+
+const os = require('os');
+const { Worker, isMainThread, parentPort, workerData } = require('worker_threads');
+
+function decompileWorkerCount(options, taskCount) {
+  const requested = options.workers ?? process.env.CFR_JS_WORKERS;
+  if (requested === undefined || requested === null || requested === '') return 1;
+  const cores = typeof os.availableParallelism === 'function'
+    ? os.availableParallelism() : os.cpus().length;
+  const count = requested === 'auto' ? cores : Math.floor(Number(requested)) || 1;
+  return Math.max(1, Math.min(count, taskCount));
+}
+
+function summarizeExceptionModel(model) {
+  return {
+    methodThrows: [...model.methodThrows],
+    superOf: [...model.superOf],
+    interfacesOf: [...model.interfacesOf],
+    sourceNameToInternal: [...model.sourceNameToInternal],
+    instantiatedTypes: [...model.instantiatedTypes],
+  };
+}
+
+// Read-only Map stand-in for exceptionModel.classInfo: class name -> parsed
+// class, parsed from the shared bytes on first use.
+class LazyClassInfo {
+  constructor(slotOf, parseSlot) {
+    this.slotOf = slotOf; // class name -> slot
+    this.parseSlot = parseSlot; // slot -> astRoot (cached by the caller)
+  }
+
+  get size() {
+    return this.slotOf.size;
+  }
+
+  has(name) {
+    return this.slotOf.has(name);
+  }
+
+  get(name) {
+    const slot = this.slotOf.get(name);
+    if (slot === undefined) return undefined;
+    return (this.parseSlot(slot).classes || []).find((cls) => cls.className === name);
+  }
+
+  keys() {
+    return this.slotOf.keys();
+  }
+
+  * entries() {
+    for (const name of this.slotOf.keys()) yield [name, this.get(name)];
+  }
+
+  * values() {
+    for (const name of this.slotOf.keys()) yield this.get(name);
+  }
+
+  [Symbol.iterator]() {
+    return this.entries();
+  }
+
+  forEach(callback, thisArg) {
+    for (const [name, cls] of this.entries()) callback.call(thisArg, cls, name, this);
+  }
+}
+
+// Options a worker can receive: callbacks and per-run state stay behind.
+function transferableOptions(options) {
+  const out = {};
+  for (const [key, value] of Object.entries(options)) {
+    if (typeof value === 'function') continue;
+    if (key === 'exceptionModel' || key === 'diagnostics' || key === 'workers') continue;
+    out[key] = value;
+  }
+  return out;
+}
+
+// classes: every parsed input [{ bytes, astRoot }] (the classInfo universe);
+// tasks: [{ slot, name }] to decompile, in output order. Resolves to the
+// outputs array (with `.failures` when collectFailures), ordered exactly like
+// the serial path.
+function decompileInWorkers(classes, tasks, exceptionModel, options, settings) {
+  const { workers: workerCount, collectFailures } = settings;
+  const { _internals: { nestedSourceNameEntries }, DecompilationFallbackError } = require('./cfr');
+
+  const offsets = new Float64Array(classes.length + 1);
+  classes.forEach((entry, i) => { offsets[i + 1] = offsets[i] + entry.bytes.length; });
+  const shared = new SharedArrayBuffer(offsets[classes.length]);
+  const sharedBytes = new Uint8Array(shared);
+  classes.forEach((entry, i) => sharedBytes.set(entry.bytes, offsets[i]));
+  const slotOf = [];
+  classes.forEach((entry, slot) => {
+    for (const cls of entry.astRoot.classes || []) slotOf.push([cls.className, slot]);
+  });
+
+  const init = {
+    cfrDecompileWorker: true,
+    shared,
+    offsets: [...offsets],
+    slotOf,
+    summary: summarizeExceptionModel(exceptionModel),
+    nestedSourceNames: nestedSourceNameEntries(),
+    options: transferableOptions(options),
+  };
+  const sizeOf = (index) => classes[tasks[index].slot].bytes.length;
+  const queue = tasks.map((task, index) => index).sort((a, b) => sizeOf(b) - sizeOf(a) || a - b);
+  const results = new Array(tasks.length);
+  const outputs = [];
+  const failures = [];
+
+  return new Promise((resolve, reject) => {
+    const pool = [];
+    let emitted = 0;
+    let settled = false;
+    const finish = (error) => {
+      if (settled) return;
+      settled = true;
+      for (const worker of pool) worker.terminate();
+      if (error) {
+        reject(error);
+        return;
+      }
+      if (collectFailures) outputs.failures = failures;
+      resolve(outputs);
+    };
+    // Emit the completed prefix in input order.
+    const drain = () => {
+      while (emitted < tasks.length && results[emitted]) {
+        const result = results[emitted];
+        const { name } = tasks[emitted];
+        emitted += 1;
+        if (result.error) {
+          const error = new Error(result.error.message);
+          error.stack = result.error.stack;
+          finish(error);
+          return;
+        }
+        if (result.failure) {
+          const error = new DecompilationFallbackError(result.failure.reason, result.failure.context);
+          if (!collectFailures) {
+            finish(error);
+            return;
+          }
+          failures.push({ name, reason: error.message, context: error.context });
+          continue;
+        }
+        const output = { name, source: result.source, diagnostics: result.diagnostics };
+        outputs.push(output);
+        if (options.onOutput) options.onOutput(output, outputs.length - 1);
+      }
+      if (emitted === tasks.length) finish(null);
+    };
+    const dispatch = (worker) => {
+      if (!queue.length) return;
+      const index = queue.shift();
+      worker.postMessage({ index, slot: tasks[index].slot });
+    };
+    for (let i = 0; i < workerCount; i += 1) {
+      const worker = new Worker(__filename, { workerData: init });
+      worker.on('message', (message) => {
+        results[message.index] = message;
+        dispatch(worker);
+        try {
+          drain();
+        } catch (err) {
+          finish(err);
+        }
+      });
+      worker.on('error', finish);
+      worker.on('exit', (code) => {
+        if (code !== 0 && !settled) finish(new Error(`decompile worker exited with code ${code}`));
+      });
+      pool.push(worker);
+      dispatch(worker);
+    }
+  });
+}
+
+function runWorker() {
+  const { getAST } = require('jvm_parser');
+  const cfr = require('./cfr');
+  const { convertParsedClass, registerNestedSourceNameEntries } = cfr._internals;
+  const { shared, offsets, slotOf, summary, nestedSourceNames, options } = workerData;
+  registerNestedSourceNameEntries(nestedSourceNames);
+  const bytes = new Uint8Array(shared);
+  const parsedSlots = new Map();
+  const parseSlot = (slot) => {
+    let astRoot = parsedSlots.get(slot);
+    if (!astRoot) {
+      // copy out of shared memory: decoders reject SharedArrayBuffer views
+      const classBytes = bytes.slice(offsets[slot], offsets[slot + 1]);
+      // Most slots are parsed only to answer hierarchy lookups for another
+      // class, so their method bodies are converted only if something reads them.
+      astRoot = convertParsedClass(getAST(classBytes), { lazyCode: true });
+      parsedSlots.set(slot, astRoot);
+    }
+    return astRoot;
+  };
+  const exceptionModel = {
+    methodThrows: new Map(summary.methodThrows),
+    superOf: new Map(summary.superOf),
+    interfacesOf: new Map(summary.interfacesOf),
+    sourceNameToInternal: new Map(summary.sourceNameToInternal),
+    instantiatedTypes: new Set(summary.instantiatedTypes),
+    classInfo: new LazyClassInfo(new Map(slotOf), parseSlot),
+  };
+  const post = (message) => {
+    try {
+      parentPort.postMessage(message);
+    } catch (_cloneError) {
+      parentPort.postMessage(JSON.parse(JSON.stringify(message)));
+    }
+  };
+  parentPort.on('message', ({ index, slot }) => {
+    const diagnostics = [];
+    try {
+      const source = cfr.decompileAstRoot(parseSlot(slot), { ...options, exceptionModel, diagnostics });
+      post({ index, source, diagnostics });
+    } catch (err) {
+      if (err instanceof cfr.DecompilationFallbackError) {
+        post({ index, failure: { reason: err.message, context: err.context } });
+      } else {
+        post({ index, error: { message: err && err.message, stack: err && err.stack } });
+      }
+    }
+  });
+}
+
+module.exports = { decompileWorkerCount, decompileInWorkers, LazyClassInfo, summarizeExceptionModel };
+
+// after the exports: cfr.js requires this module back
+if (!isMainThread && workerData && workerData.cfrDecompileWorker) runWorker();
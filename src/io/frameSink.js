@@ -0,0 +1,240 @@
+'use strict';
+
+// Streaming output for headless frame dumps (java/awt/Graphics.js dumpFrame).
+// The main thread only copies each frame; a worker_threads worker encodes
+// and writes it, so PNG/zlib time no longer lands between guest frames.
+//
+//   JVM_FRAME_FORMAT=png   frame-NNNNN.png files in JVM_FRAME_DIR (default)
+//   JVM_FRAME_FORMAT=apng  one animated PNG, JVM_FRAME_OUT or
+//                          JVM_FRAME_DIR/frames.png, at JVM_FRAME_FPS (30)
+//   JVM_FRAME_FORMAT=rgba  raw RGBA frames to JVM_FRAME_OUT ('-' is stdout),
+//                          e.g. for `ffmpeg -f rawvideo -pix_fmt rgba
+//                          -s WxH -r 30 -i -`
+//
+// JVM_FRAME_WORKER=0 encodes inline instead. The first frame fixes the size
+// of apng and rgba streams; frames of another size are skipped.
+
+const fs = require('fs');
+const path = require('path');
+
+let workerThreads = null;
+try {
+  workerThreads = require('worker_threads');
+} catch (_) {
+  workerThreads = null;
+}
+
+const FORMATS = ['png', 'apng', 'rgba'];
+
+function frameSinkOptionsFromEnv(env) {
+  const format = (env.JVM_FRAME_FORMAT || 'png').toLowerCase();
+  if (!FORMATS.includes(format)) {
+    throw new Error(`JVM_FRAME_FORMAT must be one of ${FORMATS.join(', ')}, not "${env.JVM_FRAME_FORMAT}"`);
+  }
+  const directory = env.JVM_FRAME_DIR || null;
+  let output = env.JVM_FRAME_OUT || null;
+  if (!output && format !== 'png') {
+    if (!directory) throw new Error(`JVM_FRAME_FORMAT=${format} needs JVM_FRAME_OUT or JVM_FRAME_DIR`);
+    output = path.join(directory, format === 'apng' ? 'frames.png' : 'frames.rgba');
+  }
+  return {
+    format,
+    directory: directory || output,
+    output,
+    fps: Number(env.JVM_FRAME_FPS) || 30,
+    worker: env.JVM_FRAME_WORKER !== '0',
+  };
+}
+
+function frameLabel(options, index) {
+  return options.format === 'png'
+    ? path.join(options.directory, `frame-${String(index).padStart(5, '0')}.png`)
+    : `${options.output} #${index}`;
+}
+
+// fs.writeSync on a pipe can write part of the buffer, or fail with EAGAIN
+// when the reader (ffmpeg) falls behind.
+function writeFully(fd, buffer, position) {
+  const pause = new Int32Array(new SharedArrayBuffer(4));
+  let offset = 0;
+  while (offset < buffer.length) {
+    try {
+      offset += fs.writeSync(fd, buffer, offset, buffer.length - offset,
+        position === undefined ? null : position + offset);
+    } catch (error) {
+      if (error.code !== 'EAGAIN') throw error;
+      Atomics.wait(pause, 0, 0, 1);
+    }
+  }
+}
+
+// Encodes and writes frames; runs in the worker, or inline without one.
+function createFrameWriter(options) {
+  const { encodePng, ApngEncoder, ACTL_OFFSET } = require('./pngEncoder');
+  let fd = null;
+  let size = null;
+  let warned = false;
+  let apng = null;
+  let position = 0;
+  const sameSize = (width, height) => {
+    if (!size) {
+      size = [width, height];
+      return true;
+    }
+    if (size[0] === width && size[1] === height) return true;
+    if (!warned) {
+      warned = true;
+      console.error(`[frame] ${options.output}: skipping ${width}x${height} frames in a ${size[0]}x${size[1]} stream`);
+    }
+    return false;
+  };
+  const open = () => {
+    if (options.output === '-') return 1;
+    fs.mkdirSync(path.dirname(options.output), { recursive: true });
+    return fs.openSync(options.output, 'w');
+  };
+  return {
+    frame(pixels, width, height, index) {
+      if (options.format === 'png') {
+        fs.mkdirSync(options.directory, { recursive: true });
+        fs.writeFileSync(frameLabel(options, index), encodePng(pixels, width, height));
+        return;
+      }
+      if (!sameSize(width, height)) return;
+      if (fd === null) fd = open();
+      if (options.format === 'rgba') {
+        const rgba = Buffer.allocUnsafe(width * height * 4);
+        for (let idx = 0, o = 0, count = width * height; idx < count; idx++) {
+          const p = pixels[idx];
+          rgba[o++] = (p >> 16) & 0xff;
+          rgba[o++] = (p >> 8) & 0xff;
+          rgba[o++] = p & 0xff;
+          rgba[o++] = 0xff;
+        }
+        writeFully(fd, rgba);
+        return;
+      }
+      // APNG: the frame goes where the previous IEND was, followed by a new
+      // IEND, and the acTL frame count is rewritten, so the file is complete
+      // after every frame.
+      if (!apng) {
+        apng = new ApngEncoder(width, height, { fps: options.fps });
+        const header = apng.header();
+        writeFully(fd, header, 0);
+        position = header.length;
+      }
+      const chunks = apng.frame(pixels);
+      writeFully(fd, Buffer.concat([chunks, apng.trailer()]), position);
+      position += chunks.length;
+      writeFully(fd, apng.actlChunk(), ACTL_OFFSET);
+    },
+    close() {
+      if (fd !== null && fd !== 1) fs.closeSync(fd);
+      fd = null;
+    },
+  };
+}
+
+class FrameSink {
+  /**
+   * @param {object} options - frameSinkOptionsFromEnv() shape
+   */
+  constructor(options) {
+    if (options.format === 'apng' && options.output === '-') {
+      throw new Error('JVM_FRAME_FORMAT=apng needs a file for JVM_FRAME_OUT, not stdout');
+    }
+    this.options = options;
+    this.pending = 0;
+    this.closed = null;
+    this.worker = null;
+    this.writer = null;
+    this.stats = { frames: 0, copyMs: 0 };
+    if (options.worker && workerThreads) {
+      this.worker = new workerThreads.Worker(__filename, { workerData: { jvmFrameSink: options } });
+      this.worker.on('message', (message) => {
+        if (message.error) console.error(`frame dump failed: ${message.error}`);
+        this.pending -= 1;
+        if (!this.pending && !this.closed) this.worker.unref();
+      });
+      this.worker.on('error', (error) => {
+        console.error(`frame writer failed: ${error && error.stack || error}`);
+      });
+      // Idle, the worker does not keep the process alive; a queued frame does.
+      this.worker.unref();
+    } else {
+      this.writer = createFrameWriter(options);
+    }
+  }
+
+  /**
+   * Queue one frame of packed 0xRRGGBB ints. The pixels are copied, so the
+   * caller may keep drawing into them. Returns a label for logging.
+   */
+  write(pixels, width, height, index) {
+    const label = frameLabel(this.options, index);
+    if (this.closed) return label;
+    this.stats.frames += 1;
+    if (!this.worker) {
+      this.writer.frame(pixels, width, height, index);
+      return label;
+    }
+    const started = Date.now();
+    const count = width * height;
+    const copy = new Int32Array(count);
+    if (ArrayBuffer.isView(pixels) && pixels.length >= count) {
+      copy.set(pixels.length === count ? pixels : pixels.subarray(0, count));
+    } else {
+      for (let idx = 0; idx < count; idx++) copy[idx] = pixels[idx] | 0;
+    }
+    this.stats.copyMs += Date.now() - started;
+    if (!this.pending++) this.worker.ref();
+    this.worker.postMessage({ pixels: copy, width, height, index }, [copy.buffer]);
+    return label;
+  }
+
+  /** Resolves once every queued frame is written and the output closed. */
+  close() {
+    if (this.closed) return this.closed;
+    if (!this.worker) {
+      this.writer.close();
+      this.closed = Promise.resolve();
+      return this.closed;
+    }
+    const worker = this.worker;
+    this.closed = new Promise((resolve) => {
+      worker.once('exit', () => resolve());
+      worker.ref();
+      worker.postMessage({ close: true });
+    });
+    return this.closed;
+  }
+}
+
+function createFrameSink(options) {
+  return new FrameSink(options);
+}
+
+function runWorker() {
+  const { parentPort, workerData } = workerThreads;
+  const writer = createFrameWriter(workerData.jvmFrameSink);
+  parentPort.on('message', (message) => {
+    if (message.close) {
+      writer.close();
+      parentPort.close();
+      return;
+    }
+    try {
+      writer.frame(message.pixels, message.width, message.height, message.index);
+      parentPort.postMessage({ index: message.index });
+    } catch (error) {
+      parentPort.postMessage({ index: message.index, error: error && error.message });
+    }
+  });
+}
+
+module.exports = { createFrameSink, frameSinkOptionsFromEnv, createFrameWriter };
+
+if (workerThreads && !workerThreads.isMainThread && workerThreads.workerData &&
+    workerThreads.workerData.jvmFrameSink) {
+  runWorker();
+}
@@ -2,9 +2,16 @@
 
 // Minimal PNG encoder (Node only) for dumping framebuffers: 8-bit RGB,
 // no interlace. Input is an array of packed 0xRRGGBB / 0xAARRGGBB ints.
+// Rows use the Up filter, which turns the flat areas and repeated rows of a
+// game frame into zero runs, so the default fastest zlib level still
+// compresses them well. ApngEncoder builds animated PNGs from the same
+// scanlines for io/frameSink.js.
 
 const zlib = require('zlib');
 
+const SIGNATURE = Buffer.from([0x89, 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a]);
+const DEFAULT_LEVEL = 1; // Z_BEST_SPEED
+
 const CRC_TABLE = (() => {
   const table = new Int32Array(256);
   for (let n = 0; n < 256; n++) {
@@ -17,7 +24,7 @@ const CRC_TABLE = (() => {
   return table;
 })();
 
-function crc32(buf) {
+function tableCrc32(buf) {
   let c = 0xffffffff;
   for (let i = 0; i < buf.length; i++) {
     c = CRC_TABLE[(c ^ buf[i]) & 0xff] ^ (c >>> 8);
@@ -25,6 +32,9 @@ function crc32(buf) {
   return (c ^ 0xffffffff) >>> 0;
 }
 
+// zlib.crc32 (Node 20.15+) is the native zlib implementation.
+const crc32 = typeof zlib.crc32 === 'function' ? (buf) => zlib.crc32(buf) : tableCrc32;
+
 function chunk(type, data) {
   const out = Buffer.alloc(12 + data.length);
   out.writeUInt32BE(data.length, 0);
@@ -34,33 +44,156 @@ function chunk(type, data) {
   return out;
 }
 
-function encodePng(pixels, width, height) {
+function ihdrChunk(width, height) {
   const ihdr = Buffer.alloc(13);
   ihdr.writeUInt32BE(width, 0);
   ihdr.writeUInt32BE(height, 4);
   ihdr[8] = 8; // bit depth
   ihdr[9] = 2; // color type: truecolor RGB
   ihdr[10] = 0; ihdr[11] = 0; ihdr[12] = 0;
+  return chunk('IHDR', ihdr);
+}
 
-  const raw = Buffer.alloc(height * (1 + width * 3));
+// Up-filtered RGB scanlines of the `width` x `height` rectangle at (x, y)
+// of a framebuffer `stride` pixels wide.
+function scanlines(pixels, stride, x, y, width, height) {
+  const rowBytes = 1 + width * 3;
+  const raw = Buffer.allocUnsafe(height * rowBytes);
   let o = 0;
-  for (let y = 0; y < height; y++) {
-    raw[o++] = 0; // filter: none
-    let idx = y * width;
-    for (let x = 0; x < width; x++, idx++) {
+  for (let row = 0; row < height; row++) {
+    raw[o++] = 2; // filter: up
+    let idx = (y + row) * stride + x;
+    for (let col = 0; col < width; col++, idx++) {
       const p = pixels[idx] | 0;
       raw[o++] = (p >> 16) & 0xff;
       raw[o++] = (p >> 8) & 0xff;
       raw[o++] = p & 0xff;
     }
   }
+  // Bottom-up so every row is still unfiltered when the one below reads it.
+  for (let row = height - 1; row > 0; row--) {
+    const start = row * rowBytes;
+    for (let i = start + 1, end = start + rowBytes; i < end; i++) raw[i] -= raw[i - rowBytes];
+  }
+  return raw;
+}
 
+/**
+ * @param {ArrayLike<number>} pixels
+ * @param {number} width
+ * @param {number} height
+ * @param {object} [options] - { level: zlib compression level }
+ * @returns {Buffer}
+ */
+function encodePng(pixels, width, height, options = {}) {
+  const level = options.level ?? DEFAULT_LEVEL;
   return Buffer.concat([
-    Buffer.from([0x89, 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a]),
-    chunk('IHDR', ihdr),
-    chunk('IDAT', zlib.deflateSync(raw)),
+    SIGNATURE,
+    ihdrChunk(width, height),
+    chunk('IDAT', zlib.deflateSync(scanlines(pixels, width, 0, 0, width, height), { level })),
     chunk('IEND', Buffer.alloc(0)),
   ]);
 }
 
-module.exports = { encodePng };
+// Animated PNG, produced as a byte stream. The acTL frame count sits at a
+// fixed offset (ACTL_OFFSET) so a writer can rewrite that chunk in place
+// after each frame and leave a valid file at every point. Frames after the
+// first store only the rectangle that differs from the previous frame; the
+// previous frame is kept (APNG_DISPOSE_OP_NONE) underneath it.
+const ACTL_OFFSET = SIGNATURE.length + 25;
+
+class ApngEncoder {
+  /**
+   * @param {number} width
+   * @param {number} height
+   * @param {object} [options] - { fps: 30, level }
+   */
+  constructor(width, height, options = {}) {
+    this.width = width;
+    this.height = height;
+    this.fps = Math.max(1, Math.min(65535, Math.round(options.fps || 30)));
+    this.level = options.level ?? DEFAULT_LEVEL;
+    this.frames = 0;
+    this.sequence = 0;
+    this.previous = null;
+  }
+
+  header() {
+    return Buffer.concat([SIGNATURE, ihdrChunk(this.width, this.height), this.actlChunk()]);
+  }
+
+  actlChunk() {
+    const data = Buffer.alloc(8);
+    data.writeUInt32BE(this.frames, 0);
+    data.writeUInt32BE(0, 4); // loop forever
+    return chunk('acTL', data);
+  }
+
+  // The chunks for one more frame (fcTL plus IDAT or fdAT).
+  frame(pixels) {
+    const { width, height } = this;
+    const count = width * height;
+    let x0 = 0, y0 = 0, x1 = width, y1 = height;
+    if (this.previous) {
+      const rect = changedRect(pixels, this.previous, width, height);
+      // An unchanged frame still needs a frame for its display time.
+      [x0, y0, x1, y1] = rect || [0, 0, 1, 1];
+    } else {
+      this.previous = new Int32Array(count);
+    }
+    for (let row = y0; row < y1; row++) {
+      for (let idx = row * width + x0, end = row * width + x1; idx < end; idx++) {
+        this.previous[idx] = pixels[idx] | 0;
+      }
+    }
+    const fctl = Buffer.alloc(26);
+    fctl.writeUInt32BE(this.sequence++, 0);
+    fctl.writeUInt32BE(x1 - x0, 4);
+    fctl.writeUInt32BE(y1 - y0, 8);
+    fctl.writeUInt32BE(x0, 12);
+    fctl.writeUInt32BE(y0, 16);
+    fctl.writeUInt16BE(1, 20); // delay 1 / fps seconds
+    fctl.writeUInt16BE(this.fps, 22);
+    fctl[24] = 0; // dispose: none
+    fctl[25] = 0; // blend: source
+    const data = zlib.deflateSync(scanlines(pixels, width, x0, y0, x1 - x0, y1 - y0), { level: this.level });
+    let image;
+    if (this.frames === 0) {
+      image = chunk('IDAT', data);
+    } else {
+      const fdat = Buffer.allocUnsafe(4 + data.length);
+      fdat.writeUInt32BE(this.sequence++, 0);
+      data.copy(fdat, 4);
+      image = chunk('fdAT', fdat);
+    }
+    this.frames += 1;
+    return Buffer.concat([chunk('fcTL', fctl), image]);
+  }
+
+  trailer() {
+    return chunk('IEND', Buffer.alloc(0));
+  }
+}
+
+// Bounding box [x0, y0, x1, y1) of the pixels that differ, or null.
+function changedRect(pixels, previous, width, height) {
+  let top = -1, bottom = -1, left = width, right = 0;
+  for (let row = 0; row < height; row++) {
+    const start = row * width;
+    let first = -1, last = -1;
+    for (let col = 0; col < width; col++) {
+      if ((pixels[start + col] | 0) !== previous[start + col]) {
+        if (first < 0) first = col;
+        last = col;
+      }
+    }
+    if (first < 0) continue;
+    if (top < 0) top = row;
+    bottom = row + 1;
+    if (first < left) left = first;
+    if (last + 1 > right) right = last + 1;
+  }
+  return top < 0 ? null : [left, top, right, bottom];
+}
+
+module.exports = { encodePng, ApngEncoder, ACTL_OFFSET };
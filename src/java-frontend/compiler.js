@@ -1111,6 +1111,27 @@ function classAttributesFromIr(classIr) {
   return attributes;
 }
 
+// Jasmin text is for people and for the JAVA_FRONTEND_ASSEMBLER=text diff
+// path; class files are assembled from the IR. Rendering every class eagerly
+// made string building the bulk of a large compile, so the text is produced on
+// first read and kept. The property stays enumerable, so JSON and deepEqual
+// still see it; assigning replaces it.
+function defineLazyJasmin(target, render) {
+  let text = null;
+  Object.defineProperty(target, 'jasmin', {
+    enumerable: true,
+    configurable: true,
+    get() {
+      if (text === null) text = render();
+      return text;
+    },
+    set(value) {
+      text = value;
+    },
+  });
+  return target;
+}
+
 function buildClassFileModelFromIr(bytecodeIr, options = {}) {
   const classes = (bytecodeIr.classes || []).map((classIr) => {
     const model = {
@@ -1138,8 +1159,8 @@ function buildClassFileModelFromIr(bytecodeIr, options = {}) {
         instructionCount: (method.instructions || []).length,
         attributes: Array.isArray(method.attributes) ? method.attributes.map((attribute) => ({ ...attribute })) : [],
       })),
-      jasmin: jasminFromClassIr(classIr),
     };
+    defineLazyJasmin(model, () => jasminFromClassIr(classIr));
     Object.defineProperty(model, 'bytecodeClass', { value: classIr, enumerable: false });
     return model;
   });
@@ -1425,6 +1446,15 @@ function usesTextAssembler() {
   return process.env.JAVA_FRONTEND_ASSEMBLER === 'text';
 }
 
+// Class-file bytes for a class model or a compile result's class entry.
+function assembleClassModel(classModel, options = {}) {
+  // A model that lost its IR - a JSON round-trip drops the non-enumerable
+  // bytecodeClass - has nothing but the text to assemble from.
+  return classModel.bytecodeClass && !usesTextAssembler()
+    ? assembleClass(directClassAst(classModel.bytecodeClass), options.assembly || {})
+    : assembleJasminBytes(classModel.jasmin, options.assembly || {});
+}
+
 function writeClassFilesFromModel(classFileModel, outputDir, options = {}) {
   if (!outputDir) {
     throw new TypeError('outputDir is required to write class files');
@@ -1436,12 +1466,7 @@ function writeClassFilesFromModel(classFileModel, outputDir, options = {}) {
   for (const classModel of classFileModel.classes || []) {
     const outputPath = outputPathForClass(outputDir, classModel.internalName, pathModule);
     fileSystem.mkdirSync(pathModule.dirname(outputPath), { recursive: true });
-    // A model that lost its IR - a JSON round-trip drops the non-enumerable
-    // bytecodeClass - has nothing but the text to assemble from.
-    const classBytes = classModel.bytecodeClass && !usesTextAssembler()
-      ? assembleClass(directClassAst(classModel.bytecodeClass), options.assembly || {})
-      : assembleJasminBytes(classModel.jasmin, options.assembly || {});
-    fileSystem.writeFileSync(outputPath, classBytes);
+    fileSystem.writeFileSync(outputPath, assembleClassModel(classModel, options));
     written.push({
       internalName: classModel.internalName,
       binaryName: classModel.binaryName,
@@ -1462,13 +1487,16 @@ function compileJavaAst(document, options = {}) {
     throw new UnsupportedJavaSyntaxError(`minimal compiler does not support ${reason}`, { phase: 'compile' });
   }
   const classFileModel = buildClassFileModelFromIr(bytecodeIr, options);
-  const classes = classFileModel.classes.map((classModel) => ({
-    internalName: classModel.internalName,
-    binaryName: classModel.binaryName,
-    sourceFile: classModel.sourceFile,
-    jasmin: classModel.jasmin,
-    methods: classModel.methods,
-  }));
+  const classes = classFileModel.classes.map((classModel) => {
+    const classEntry = defineLazyJasmin({
+      internalName: classModel.internalName,
+      binaryName: classModel.binaryName,
+      sourceFile: classModel.sourceFile,
+      methods: classModel.methods,
+    }, () => classModel.jasmin);
+    Object.defineProperty(classEntry, 'bytecodeClass', { value: classModel.bytecodeClass, enumerable: false });
+    return classEntry;
+  });
   let written = [];
   if (options.outputDir) {
     written = writeClassFilesFromModel(classFileModel, options.outputDir, options);
@@ -1560,7 +1588,9 @@ function createValidateClassFileModelPass(options = {}) {
         if (typeof classModel.internalName !== 'string' || !classModel.internalName) {
           throw new JavaFrontendError('Invalid classfile model: class internalName is required', { phase: 'validate' });
         }
-        if (typeof classModel.jasmin !== 'string' || !classModel.jasmin.includes('.end class')) {
+        // A live model assembles from its IR; only a deserialized one needs text.
+        if (!classModel.bytecodeClass
+            && (typeof classModel.jasmin !== 'string' || !classModel.jasmin.includes('.end class'))) {
           throw new JavaFrontendError(`Invalid classfile model for ${classModel.internalName}: Jasmin source is missing`, { phase: 'validate' });
         }
       }
@@ -1656,15 +1686,10 @@ function duplicateOutputIndexes(inputPaths, outputDir, options = {}) {
   return duplicateIndexes;
 }
 
-function compileJavaFiles(inputPaths, options = {}) {
-  if (!Array.isArray(inputPaths)) {
-    throw new TypeError('compileJavaFiles expects an array of .java input paths');
-  }
-  if (inputPaths.length === 0) {
-    throw new TypeError('compileJavaFiles requires at least one .java input path');
-  }
+// The deepest directory containing every input: where sibling sources are
+// looked up when options.sourceRoot is not given.
+function sourceRootForInputs(inputPaths, options = {}) {
   const pathModule = pathModuleFor(options);
-  const duplicateIndexes = duplicateOutputIndexes(inputPaths, options.outputDir, options);
   const resolvedDirectories = inputPaths.map((inputPath) => pathModule.dirname(pathModule.resolve(inputPath)));
   let sourceRoot = resolvedDirectories[0];
   for (const directory of resolvedDirectories.slice(1)) {
@@ -1674,6 +1699,19 @@ function compileJavaFiles(inputPaths, options = {}) {
       sourceRoot = parent;
     }
   }
+  return sourceRoot;
+}
+
+function compileJavaFiles(inputPaths, options = {}) {
+  if (!Array.isArray(inputPaths)) {
+    throw new TypeError('compileJavaFiles expects an array of .java input paths');
+  }
+  if (inputPaths.length === 0) {
+    throw new TypeError('compileJavaFiles requires at least one .java input path');
+  }
+  const pathModule = pathModuleFor(options);
+  const duplicateIndexes = duplicateOutputIndexes(inputPaths, options.outputDir, options);
+  const sourceRoot = sourceRootForInputs(inputPaths, options);
   const results = [];
   const classes = [];
   const written = [];
@@ -1742,10 +1780,14 @@ module.exports = {
   buildBytecodeIr,
   buildClassFileModelFromIr,
   jasminFromClassIr,
+  assembleClassModel,
   writeClassFilesFromModel,
   compileJavaAst,
   compileJavaSource,
   compileJavaFile,
+  collectDeclaredInternalNames,
+  conflictOutputDir,
+  sourceRootForInputs,
   compileJavaFiles,
   createEmitBytecodeIrPass,
   createEmitClassFileModelPass,
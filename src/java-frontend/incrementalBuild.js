@@ -0,0 +1,433 @@
+'use strict';
+
+// Incremental mode for compileJavaFiles (`--incremental` on the CLI).
+// Node only: it keeps a build record next to the output and compiles on
+// worker_threads, so it is not part of the browser-facing index.
+//
+// The record (<outputDir>/.java-frontend-incremental.json) holds, per source
+// file:
+//   hash      sha1 of the source text
+//   classes   the internal names it declares, and the class files written
+//   api       per emitted class, a digest of what other units can observe of
+//             it: supertypes, access, and field and method names, descriptors,
+//             signatures and constant values
+//   consumed  the digests, at compile time, of the other units' classes it
+//             depends on: every workspace class its bytecode names, closed over
+//             their supertypes (inherited members resolve through them)
+//
+// A rebuild recompiles files whose text changed, whose outputs went missing,
+// or whose output directory moved (duplicate-class handling), then every
+// unchanged file whose consumed digests no longer match, until nothing
+// changes. Any class added to or removed from the build, and any change to the
+// options that shape code generation, recompiles everything: simple-name
+// resolution may pick a different class.
+//
+// Files that need compiling in the same round are independent of each other's
+// outputs (units read sibling sources, never sibling class files), so a round
+// is spread over a worker pool, largest file first (options.workers,
+// JAVA_FRONTEND_WORKERS, or `--workers`; 'auto' means one per core, 1 compiles
+// in-process). By default a round of MIN_PARALLEL_ROUND files or more uses
+// one worker per core and a smaller one compiles in-process: every worker
+// loads the parser and compiler itself, which costs more than a handful of
+// files takes to compile.
+
+const crypto = require('crypto');
+const hostFs = require('fs');
+const hostPath = require('path');
+const os = require('os');
+const { Worker, isMainThread, parentPort, workerData } = require('worker_threads');
+const { parseJava } = require('./parser');
+const {
+  COMPILE_RESULT_SCHEMA_ID,
+  COMPILE_RESULT_SCHEMA_VERSION,
+  compileJavaFile,
+  compileJavaFiles,
+  collectDeclaredInternalNames,
+  conflictOutputDir,
+  sourceRootForInputs,
+} = require('./compiler');
+
+const BUILD_RECORD_VERSION = 1;
+const BUILD_RECORD_FILE = '.java-frontend-incremental.json';
+
+function sha1(text) {
+  return crypto.createHash('sha1').update(text).digest('hex');
+}
+
+const MIN_PARALLEL_ROUND = 8;
+
+function compileWorkerCount(options, taskCount) {
+  const requested = options.workers ?? process.env.JAVA_FRONTEND_WORKERS;
+  const unset = requested === undefined || requested === null || requested === '';
+  if (unset && taskCount < MIN_PARALLEL_ROUND) return 1;
+  const cores = typeof os.availableParallelism === 'function'
+    ? os.availableParallelism() : os.cpus().length;
+  const count = unset || requested === 'auto' ? cores : Math.floor(Number(requested)) || 1;
+  return Math.max(1, Math.min(count, taskCount));
+}
+
+// Everything another unit can learn about a class, digested.
+function classApiDigest(classIr) {
+  const methodMeta = (method) => (method.meta && method.meta.signature) || null;
+  return sha1(JSON.stringify([
+    classIr.internalName,
+    classIr.superName || null,
+    classIr.interfaces || [],
+    classIr.access || [],
+    (classIr.fields || []).map((field) => [
+      field.name,
+      field.descriptor,
+      field.access || [],
+      (field.meta && field.meta.signature) || null,
+      (field.meta && field.meta.constantValue) ?? null,
+    ]).sort(),
+    (classIr.methods || []).map((method) => [
+      method.name,
+      method.descriptor,
+      method.access || [],
+      methodMeta(method),
+    ]).sort(),
+  ], (key, value) => (typeof value === 'bigint' ? `${value}n` : value)));
+}
+
+function supertypesFromIr(classIr) {
+  return [classIr.superName, ...(classIr.interfaces || [])].filter(Boolean);
+}
+
+// Candidate internal names mentioned anywhere in the emitted bytecode IR:
+// bare operands (`p/B`) and descriptor types (`Lp/B;`). Anything that is not
+// a workspace class is ignored later.
+function referencedNames(bytecodeClasses) {
+  const text = JSON.stringify(bytecodeClasses, (key, value) => (typeof value === 'bigint' ? `${value}n` : value));
+  const names = new Set();
+  for (const match of text.matchAll(/L([\w$/]+);/g)) names.add(match[1]);
+  for (const match of text.matchAll(/[A-Za-z_$][\w$]*(?:\/[\w$]+)*/g)) names.add(match[0]);
+  return [...names];
+}
+
+// Compiles one file and reduces the result to what the build record and the
+// caller need (plain data, so it can come back from a worker).
+function compileOne(task) {
+  const result = compileJavaFile(task.inputPath, task.fileOptions);
+  const bytecodeClasses = (result.bytecodeIr && result.bytecodeIr.classes) || [];
+  return {
+    inputPath: task.inputPath,
+    outputDir: task.fileOptions.outputDir,
+    status: result.bytecodeIr && result.bytecodeIr.status ? result.bytecodeIr.status : 'complete',
+    classes: result.classes,
+    written: result.written,
+    unsupported: result.bytecodeIr && Array.isArray(result.bytecodeIr.unsupported) ? result.bytecodeIr.unsupported : [],
+    api: Object.fromEntries(bytecodeClasses.map((classIr) => [classIr.internalName, classApiDigest(classIr)])),
+    supertypes: Object.fromEntries(bytecodeClasses.map((classIr) => [classIr.internalName, supertypesFromIr(classIr)])),
+    references: referencedNames(bytecodeClasses),
+  };
+}
+
+function runCompileRound(tasks, options) {
+  const workerCount = compileWorkerCount(options, tasks.length);
+  if (workerCount <= 1) {
+    return Promise.resolve(tasks.map((task) => {
+      try {
+        return compileOne(task);
+      } catch (error) {
+        error.message = `${task.inputPath}: ${error.message}`;
+        throw error;
+      }
+    }));
+  }
+  const queue = tasks.map((task, index) => index)
+    .sort((a, b) => tasks[b].size - tasks[a].size || a - b);
+  const results = new Array(tasks.length);
+  let remaining = tasks.length;
+  return new Promise((resolve, reject) => {
+    const pool = [];
+    let settled = false;
+    const finish = (error) => {
+      if (settled) return;
+      settled = true;
+      for (const worker of pool) worker.terminate();
+      if (error) reject(error);
+      else resolve(results);
+    };
+    const dispatch = (worker) => {
+      if (queue.length) {
+        const index = queue.shift();
+        worker.postMessage({ index, task: tasks[index] });
+      }
+    };
+    for (let i = 0; i < workerCount; i += 1) {
+      const worker = new Worker(__filename, { workerData: { javaFrontendCompileWorker: true } });
+      worker.on('message', ({ index, result, error }) => {
+        if (error) {
+          const failure = new Error(`${tasks[index].inputPath}: ${error.message}`);
+          failure.stack = error.stack;
+          finish(failure);
+          return;
+        }
+        results[index] = result;
+        remaining -= 1;
+        if (remaining === 0) finish(null);
+        else dispatch(worker);
+      });
+      worker.on('error', finish);
+      worker.on('exit', (code) => {
+        if (code !== 0 && !settled) finish(new Error(`java-frontend compile worker exited with code ${code}`));
+      });
+      pool.push(worker);
+      dispatch(worker);
+    }
+  });
+}
+
+// What a build record is only valid for.
+function optionsFingerprint(options, sourceRoot) {
+  return sha1(JSON.stringify([
+    options.sourceLevel || null,
+    options.classpath || null,
+    options.sourceRoot || sourceRoot,
+    options.assembly || null,
+    process.env.JAVA_FRONTEND_ASSEMBLER || null,
+  ]));
+}
+
+function loadBuildRecord(recordPath, fingerprint) {
+  try {
+    const record = JSON.parse(hostFs.readFileSync(recordPath, 'utf8'));
+    if (record.version === BUILD_RECORD_VERSION && record.fingerprint === fingerprint) return record.files;
+  } catch (_) {
+    // no record yet, or unreadable: build from scratch
+  }
+  return {};
+}
+
+function saveBuildRecord(recordPath, fingerprint, files) {
+  const tmp = `${recordPath}.${process.pid}.tmp`;
+  hostFs.writeFileSync(tmp, JSON.stringify({ version: BUILD_RECORD_VERSION, fingerprint, files }));
+  hostFs.renameSync(tmp, recordPath);
+}
+
+function sameNames(a, b) {
+  return a.length === b.length && a.every((name, i) => name === b[i]);
+}
+
+async function compileJavaFilesIncremental(inputPaths, options = {}) {
+  if (!options.outputDir || options.fileSystem || options.fs) {
+    // Nothing to persist the record next to (or not the host file system).
+    return compileJavaFiles(inputPaths, options);
+  }
+  if (!Array.isArray(inputPaths) || inputPaths.length === 0) {
+    return compileJavaFiles(inputPaths, options);
+  }
+  const sourceRoot = sourceRootForInputs(inputPaths, options);
+  const fingerprint = optionsFingerprint(options, sourceRoot);
+  hostFs.mkdirSync(options.outputDir, { recursive: true });
+  const recordPath = hostPath.join(options.outputDir, BUILD_RECORD_FILE);
+  const previous = loadBuildRecord(recordPath, fingerprint);
+  const keyOf = (inputPath) => hostPath.resolve(inputPath);
+
+  // Hash every source; only changed ones are parsed for their declared names.
+  const files = inputPaths.map((inputPath, index) => {
+    const source = hostFs.readFileSync(inputPath, 'utf8');
+    const key = keyOf(inputPath);
+    const hash = sha1(source);
+    const recorded = previous[key];
+    const declared = recorded && recorded.hash === hash
+      ? recorded.declared
+      : collectDeclaredInternalNames(parseJava(source, {
+        ...options,
+        sourcePath: inputPath,
+        sourceFileName: hostPath.basename(inputPath),
+      }));
+    return { index, inputPath, key, hash, size: source.length, declared, recorded };
+  });
+
+  // Duplicate declarations go to per-file conflict directories, as in
+  // compileJavaFiles.
+  const owners = new Map();
+  for (const file of files) {
+    for (const internalName of file.declared) {
+      if (!owners.has(internalName)) owners.set(internalName, []);
+      owners.get(internalName).push(file.index);
+    }
+  }
+  const duplicateIndexes = new Set([...owners.values()].filter((list) => list.length > 1).flat());
+  for (const file of files) {
+    file.outputDir = duplicateIndexes.has(file.index)
+      ? conflictOutputDir(options.outputDir, file.inputPath, file.index, options)
+      : options.outputDir;
+  }
+
+  // A class appearing or disappearing anywhere can change how any unit
+  // resolves a simple name.
+  const inputKeys = new Set(files.map((file) => file.key));
+  const removedKeys = Object.keys(previous).filter((key) => !inputKeys.has(key));
+  const declaredBefore = Object.values(previous).flatMap((entry) => entry.declared).sort();
+  const declaredNow = files.flatMap((file) => file.declared).sort();
+  const rebuildAll = !sameNames(declaredBefore, declaredNow);
+
+  const entries = {};
+  let dirty = files.filter((file) => {
+    const { recorded } = file;
+    if (rebuildAll || !recorded || recorded.hash !== file.hash || recorded.outputDir !== file.outputDir) return true;
+    if (recorded.written.some((item) => !hostFs.existsSync(item.outputPath))) return true;
+    entries[file.key] = recorded;
+    return false;
+  });
+
+  // Outputs of sources that left the build, unless someone still writes them.
+  const stillWritten = new Set(files.flatMap((file) => (file.recorded ? file.recorded.written : []))
+    .map((item) => item.outputPath));
+  const removed = [];
+  for (const key of removedKeys) {
+    for (const item of previous[key].written || []) {
+      if (!stillWritten.has(item.outputPath)) hostFs.rmSync(item.outputPath, { force: true });
+    }
+    removed.push(key);
+  }
+
+  const compiledResults = new Map();
+  const declaringFile = new Map();
+  for (const file of files) {
+    for (const internalName of file.declared) declaringFile.set(internalName, file.key);
+  }
+  const currentApi = (internalName) => {
+    const entry = entries[declaringFile.get(internalName)];
+    return entry && entry.api[internalName];
+  };
+
+  try {
+    while (dirty.length) {
+      const tasks = dirty.map((file) => ({
+        inputPath: file.inputPath,
+        size: file.size,
+        fileOptions: {
+          ...options,
+          sourceRoot: options.sourceRoot || sourceRoot,
+          outputDir: file.outputDir,
+          sourcePath: file.inputPath,
+          sourceFileName: hostPath.basename(file.inputPath),
+        },
+      }));
+      const round = await runCompileRound(tasks, options);
+      round.forEach((result, i) => {
+        const file = dirty[i];
+        compiledResults.set(file.key, result);
+        entries[file.key] = {
+          hash: file.hash,
+          declared: file.declared,
+          outputDir: file.outputDir,
+          status: result.status,
+          unsupported: result.unsupported,
+          written: result.written,
+          api: result.api,
+          supertypes: result.supertypes,
+          references: result.references,
+        };
+      });
+      // What each freshly compiled unit consumed, now that every digest of
+      // this round is known: named workspace classes, closed over supertypes.
+      for (const file of dirty) {
+        const entry = entries[file.key];
+        const consumed = {};
+        const visit = (internalName) => {
+          if (internalName in consumed || !declaringFile.has(internalName)) return;
+          if (declaringFile.get(internalName) === file.key) return;
+          consumed[internalName] = currentApi(internalName) || null;
+          const owner = entries[declaringFile.get(internalName)];
+          ((owner && owner.supertypes && owner.supertypes[internalName]) || []).forEach(visit);
+        };
+        entry.references.forEach(visit);
+        Object.values(entry.supertypes).flat().forEach(visit);
+        entry.consumed = consumed;
+        delete entry.references;
+      }
+      const compiledKeys = new Set(dirty.map((file) => file.key));
+      dirty = files.filter((file) => {
+        if (compiledKeys.has(file.key) || compiledResults.has(file.key)) return false;
+        const { consumed } = entries[file.key];
+        return Object.entries(consumed || {}).some(([internalName, digest]) => currentApi(internalName) !== digest);
+      });
+    }
+  } finally {
+    // Keep what did compile. A file that did not gets a placeholder that
+    // never matches its source hash, so it (alone) compiles next time.
+    for (const file of files) {
+      if (entries[file.key]) continue;
+      entries[file.key] = {
+        hash: null,
+        declared: file.declared,
+        outputDir: file.outputDir,
+        status: 'failed',
+        unsupported: [],
+        written: file.recorded ? file.recorded.written : [],
+        api: {},
+        supertypes: {},
+        consumed: {},
+      };
+    }
+    saveBuildRecord(recordPath, fingerprint, entries);
+  }
+
+  const results = [];
+  const classes = [];
+  const written = [];
+  const unsupported = [];
+  const reused = [];
+  for (const file of files) {
+    const entry = entries[file.key];
+    const compiled = compiledResults.get(file.key);
+    if (!compiled) reused.push(file.inputPath);
+    const fileClasses = compiled
+      ? compiled.classes
+      : entry.written.map((item) => ({ ...item, cached: true }));
+    results.push({
+      inputPath: file.inputPath,
+      sourceFileName: hostPath.basename(file.inputPath),
+      outputDir: file.outputDir,
+      status: entry.status,
+      classes: fileClasses,
+      written: compiled ? entry.written : [],
+      cached: !compiled,
+      unsupported: entry.unsupported,
+    });
+    classes.push(...fileClasses);
+    if (compiled) written.push(...entry.written);
+    unsupported.push(...entry.unsupported.map((item) => ({ ...item, sourcePath: file.inputPath })));
+  }
+  return {
+    schema: COMPILE_RESULT_SCHEMA_ID,
+    version: COMPILE_RESULT_SCHEMA_VERSION,
+    sourceLevel: options.sourceLevel || null,
+    status: unsupported.length ? 'partial' : 'complete',
+    backend: 'java-frontend',
+    classes,
+    written,
+    unsupported,
+    results,
+    incremental: {
+      compiled: files.filter((file) => compiledResults.has(file.key)).map((file) => file.inputPath),
+      reused,
+      removed,
+      rebuiltAll: rebuildAll,
+    },
+  };
+}
+
+function runWorker() {
+  parentPort.on('message', ({ index, task }) => {
+    try {
+      parentPort.postMessage({ index, result: compileOne(task) });
+    } catch (err) {
+      parentPort.postMessage({ index, error: { message: err && err.message, stack: err && err.stack } });
+    }
+  });
+}
+
+module.exports = {
+  BUILD_RECORD_FILE,
+  classApiDigest,
+  compileJavaFilesIncremental,
+  compileWorkerCount,
+};
+
+if (!isMainThread && workerData && workerData.javaFrontendCompileWorker) runWorker();
@@ -497,6 +497,8 @@ class FusedRegionCompiler {
       raster,
       scanlineOwner: scanlineRef.owner,
       scanlineMethod,
+      // Classes whose code the region runs, for the debugger's breakpoint check.
+      owners: [...new Set([wrapperOwner, rasterRef.owner, scanlineRef.owner])],
       staticTargets: [],
       staticSiteIds: [],
       staticOwners: [],
@@ -803,8 +805,7 @@ class FusedRegionCompiler {
     if (!thread || thread.status !== "runnable" || !thread.callStack ||
         thread.callStack.isEmpty() || thread.callStack.peek() !== frame) return false;
     const debug = this.jvm.debugManager;
-    if (!debug || debug.debugMode || debug.breakpoints.size > 0 ||
-        debug.hasLocatedBreakpoints && debug.hasLocatedBreakpoints()) return false;
+    if (!debug || !debug.allowsCompiledRegions(region.owners)) return false;
     if (typeof process !== "undefined" && process.env &&
         (process.env.JVM_TRACE || process.env.JVM_PROFILE_HOT_METHODS === "1" ||
          process.env.JVM_PROFILE_HOT_METHODS_WITH_JIT === "1")) return false;
@@ -3216,6 +3216,11 @@ class HotCallGraphRegionCompiler {
           generated: node.canonicalGenerated,
           owner: node.owner,
         })),
+        // Every class whose bytecode the region runs, inlined code included,
+        // so a breakpoint elsewhere leaves the region compiled.
+        owners: [...new Set(nodes.flatMap((node) => this.jit.codeOwners(
+          node.method,
+          node.owner || this.jvm.findClassNameForMethod?.(node.method))))],
         entryCount: 0,
         deoptCount: 0,
         deoptReasons: new Map(),
@@ -3224,11 +3229,11 @@ class HotCallGraphRegionCompiler {
       };
       plan.guard = (thread = null, helpers = this.jit) => {
         const debug = this.jvm.debugManager;
-        if (debug?.debugMode || debug?.breakpoints?.size > 0 ||
+        if (debug && !debug.allowsCompiledRegions(plan.owners) ||
             this.jit.profileMethods || this.jit.profileTimings ||
             this.jit._envInstrumented ||
             thread && thread.status !== "runnable" ||
-            helpers?.needsBytecodeChecks?.()) return false;
+            helpers?.needsBytecodeChecksFor?.(plan.owners)) return false;
         // Loaded classes cannot become uninitialized, and generated Method/PIC
         // identities change only through the publication/feedback hooks above.
         // A continuation may enter this guard millions of times; one epoch
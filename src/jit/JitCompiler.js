@@ -5,6 +5,7 @@ const {
   resolveInstanceFieldKey, allocPrimitiveArray, allocReferenceArray,
 } = require("../instructions/object");
 const WasmJit = require("./WasmJit");
+const { JitTelemetry } = require("./jitTelemetry");
 const FusedRegionCompiler = require("./FusedRegionCompiler");
 const JvmSsaBlockRenderer = require("./JvmSsaBlockRenderer");
 const HotCallGraphRegionCompiler = require("./HotCallGraphRegionCompiler");
@@ -284,6 +285,11 @@ class JitCompiler {
       Number(options.adaptiveFramelessBudgetMultiplier ??
         (typeof process !== "undefined" && process.env &&
           process.env.JVM_ADAPTIVE_FRAMELESS_BUDGET_MULTIPLIER) ?? 8) || 8));
+    // Classes whose bytecode a method's generated code carries besides its
+    // own: inlined integer leaves and direct static callees. A breakpoint in
+    // any of them has to hold that code back.
+    this.inlinedCodeOwners = new WeakMap();
+    this.codeOwnerLists = new WeakMap();
     this.inlineIntegerRegionCache = new WeakMap();
     this.directInlineIntegerRegionCache = new WeakMap();
     this.inlineIntegerPlanCache = new WeakMap();
@@ -369,7 +375,7 @@ class JitCompiler {
         ? null : Number(jitEnvironment.JVM_TRACE_FRAME_MATERIALIZE_PC);
     const envPreferWholeMethodJs = jitEnvironment.JVM_PREFER_WHOLE_METHOD_JS;
     const generatedBodyDefault =
-      jitEnvironment.JVM_WASM_JIT === "0" ||
+      (options.wasm ?? jitEnvironment.JVM_WASM_JIT !== "0") === false ||
       typeof navigator !== "undefined" &&
         /Firefox\//.test(navigator.userAgent || "");
     // Keep one generated JavaScript body as the normal cross-runtime policy.
@@ -470,6 +476,10 @@ class JitCompiler {
     // so latch the instrumentation flags once.
     this._envInstrumented = Boolean(typeof process !== "undefined" && process.env &&
       (process.env.JVM_TRACE || process.env.JVM_PROFILE_HOT_METHODS === "1"));
+    // One event stream for every tier: compiles, rejects, deopts, OSR
+    // entries (see jitTelemetry.js). Options: { enabled, capacity,
+    // importCounts }.
+    this.telemetry = new JitTelemetry(options.telemetry || {});
     this.wasmJit = new WasmJit(jvm, this);
     const regionOptions = this.rendererPipelineEnabled
       ? { ...options, structuredSsa: true }
@@ -1063,6 +1073,14 @@ class JitCompiler {
 
   finishTryRunFrame(frame, thread, methodKey, result) {
     if (result && result.deopt) {
+      if (this.telemetry.enabled) {
+        this.telemetry.record("deopt", {
+          method: methodKey ||
+            `${this.getFrameClassName(frame)}.${frame.method.name}${frame.method.descriptor}`,
+          tier: "js", pc: frame.pc,
+          reason: result.reason || "unspecified", transient: !!result.transient,
+        });
+      }
       if (this.profileMethods) {
         this.lastDeoptReason = result.reason;
         this.methodDeoptCounts.set(
@@ -1145,6 +1163,7 @@ class JitCompiler {
     }
     if (this.lastDeoptReason) console.error(`  last deopt: ${this.lastDeoptReason}`);
     if (this.wasmJit.enabled) this.wasmJit.dumpStats();
+    if (this.telemetry.enabled) console.error(this.telemetry.format(limit));
   }
 
   getGeneratedFunction(method) {
@@ -1184,9 +1203,24 @@ class JitCompiler {
     }
     if (this.codegenCompiling.has(method)) return null;
     this.codegenCompiling.add(method);
+    const methodKey = `${method.className || "?"}.${method.name}${method.descriptor}`;
+    const startedAt = this.telemetry.now();
+    this.telemetry.record("compile-start", { method: methodKey, tier: "js" });
     try {
       const generated = this.compileMethod(method);
       this.codegenCache.set(method, generated);
+      if (generated) {
+        this.telemetry.record("compile-end", {
+          method: methodKey,
+          tier: generated.jvmStructuredSsa ? "js-structured" : "js",
+          ms: this.telemetry.now() - startedAt,
+        });
+      } else {
+        this.telemetry.record("reject", {
+          method: methodKey, tier: "js", ms: this.telemetry.now() - startedAt,
+          reason: "unsupported", deferred: false,
+        });
+      }
       if (generated?.jvmHotCallGraphFramedSource &&
           this.shouldCompileHotCallGraphRegion(method)) {
         this.compileHotCallGraphRegion(method);
@@ -1194,6 +1228,10 @@ class JitCompiler {
       return generated;
     } catch (err) {
       this.codegenCompileErrors.set(method, err);
+      this.telemetry.record("reject", {
+        method: methodKey, tier: "js", ms: this.telemetry.now() - startedAt,
+        reason: err && err.message ? err.message : String(err), deferred: false,
+      });
       return null;
     } finally {
       this.codegenCompiling.delete(method);
@@ -2160,9 +2198,53 @@ class JitCompiler {
     return debug.breakpoints.has(numericPc);
   }
 
-  needsBytecodeChecks() {
+  noteInlinedCodeOwners(method, classNames) {
+    if (!method || !classNames) return;
+    let inlined = this.inlinedCodeOwners.get(method);
+    if (!inlined) {
+      inlined = new Set();
+      this.inlinedCodeOwners.set(method, inlined);
+    }
+    for (const className of classNames) {
+      if (className) inlined.add(className);
+    }
+    this.codeOwnerLists.delete(method);
+  }
+
+  // The classes whose bytecode runs inside `method`'s generated code: the
+  // declaring class plus everything noted as inlined into it.
+  codeOwners(method, className) {
+    if (!method) return className ? [className] : [];
+    let owners = this.codeOwnerLists.get(method);
+    if (!owners) {
+      owners = [...new Set([className, ...(this.inlinedCodeOwners.get(method) || [])])]
+        .filter(Boolean);
+      this.codeOwnerLists.set(method, owners);
+    }
+    return owners;
+  }
+
+  frameCodeOwners(frame) {
+    return frame ? this.codeOwners(frame.method, this.getFrameClassName(frame)) : null;
+  }
+
+  // A breakpoint only holds back code that carries its class. Without a
+  // frame the owners are unknown and any breakpoint does.
+  needsBytecodeChecks(frame = null) {
+    if (!frame) return this.needsBytecodeChecksFor(null);
+    return this.methodNeedsBytecodeChecks(frame.method, this.getFrameClassName(frame));
+  }
+
+  methodNeedsBytecodeChecks(method, className) {
     const debug = this.jvm.debugManager;
-    return Boolean(debug && (debug.debugMode || debug.breakpoints.size > 0));
+    if (!debug) return false;
+    return !debug.allowsCompiledRegions(
+      debug.breakpoints.size > 0 ? this.codeOwners(method, className) : null);
+  }
+
+  needsBytecodeChecksFor(classNames) {
+    const debug = this.jvm.debugManager;
+    return Boolean(debug && !debug.allowsCompiledRegions(classNames));
   }
 
   // A generated region's safe-point budget is a fairness heuristic, not a JVM
@@ -2170,11 +2252,11 @@ class JitCompiler {
   // nothing can observe the difference: no debugger, no deterministic clock,
   // no other runnable thread, no expired sleep/wait deadline, and the
   // wall-clock event-loop yield deadline has not passed.
-  continueQuantum(thread) {
+  continueQuantum(thread, owners = null) {
     const jvm = this.jvm;
     if (!jvm || !thread || thread.status !== "runnable") return false;
     const debug = jvm.debugManager;
-    if (debug && (debug.debugMode || debug.breakpoints.size > 0)) return false;
+    if (debug && !debug.allowsCompiledRegions(owners)) return false;
     if (jvm.clock && jvm.clock.enabled && !jvm.clock.realtime) return false;
     const wallNow = Date.now();
     if (!(wallNow < jvm._nextEventLoopYieldAt)) return false;
@@ -2233,11 +2315,11 @@ class JitCompiler {
       + seen.join(" ") + ` || ${stackShape}`);
   }
 
-  continueStructuredQuantum(thread) {
+  continueStructuredQuantum(thread, owners = null) {
     const jvm = this.jvm;
     if (!jvm || !thread || thread.status !== "runnable") return false;
     const debug = jvm.debugManager;
-    if (debug && (debug.debugMode || debug.breakpoints.size > 0)) return false;
+    if (debug && !debug.allowsCompiledRegions(owners)) return false;
     if (jvm.clock && jvm.clock.enabled && !jvm.clock.realtime) return false;
     const wallNow = Date.now();
     if (!(wallNow < jvm._nextEventLoopYieldAt)) return false;
@@ -2913,8 +2995,7 @@ class JitCompiler {
     const region = regionsByPc.get(frame.pc);
     if (!region || !this.canRunInlineLoopRegion(region.id, frame)) return false;
     const debug = this.jvm.debugManager;
-    if (debug && (debug.debugMode || debug.breakpoints.size > 0 ||
-        debug.isClassJitDeopted(this.getFrameClassName(frame)))) return false;
+    if (debug && !debug.allowsCompiledRegions(this.frameCodeOwners(frame))) return false;
     const result = this.runInlineLoopRegion(region.id, frame, thread);
     if ((result && typeof result.then === "function") ||
         (result && result.deopt)) return false;
@@ -3013,7 +3094,10 @@ class JitCompiler {
       if (op === "invokestatic" && instruction && Array.isArray(instruction.arg) &&
           Array.isArray(instruction.arg[2])) {
         const plan = this.getCompileTimeIntegerLeaf(instruction);
-        if (plan) inlinePlans.set(index, plan);
+        if (plan) {
+          inlinePlans.set(index, plan);
+          this.noteInlinedCodeOwners(method, plan.owners);
+        }
         else callSites.set(index, {
           id: this.registerSyncCallSite(op, instruction, method, index),
           op,
@@ -3105,7 +3189,7 @@ class JitCompiler {
         `let scalarJoin${index} = stack[${index}];`),
       ...(ssaOptimizations ? Array.from({ length: maxStackDepth }, (_unused, index) =>
         `let scalarJoin${index}ArrayData = helpers.arrayData(stack[${index}]);`) : []),
-      "if ((initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks() : initialBytecodeChecks)) return { deopt: true, transient: true, reason: 'scalar loop debug entry' };",
+      "if ((initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks(frame) : initialBytecodeChecks)) return { deopt: true, transient: true, reason: 'scalar loop debug entry' };",
       "helpers.scalarLoopRunCount += 1;",
       ...(ssaOptimizations ? ["helpers.scalarSsaRunCount += 1;"] : []),
       "while (true) {",
@@ -3133,7 +3217,7 @@ class JitCompiler {
       const lines = [];
       if (target <= source) {
         lines.push("if (--backedgesUntilSafePoint === 0) {");
-        lines.push("if (helpers.continueQuantum(thread)) { backedgesUntilSafePoint = 10000; } else {");
+        lines.push("if (helpers.continueQuantum(thread, helpers.frameCodeOwners(frame))) { backedgesUntilSafePoint = 10000; } else {");
         lines.push(...materialize(expressions, target));
         lines.push("helpers.scalarLoopSafePointCount += 1;");
         lines.push("helpers.skipJitOnce(frame);");
@@ -3639,7 +3723,7 @@ class JitCompiler {
       "let sp = stack.length;",
       "let pc = frame.pc;",
       "let bytecodesUntilYield = 10000;",
-      "let bytecodeChecks = initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks() : initialBytecodeChecks;",
+      "let bytecodeChecks = initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks(frame) : initialBytecodeChecks;",
       // Prime stride, as in the runner, so successive probes land on different
       // pcs of a loop body. It must stay below bytecodesUntilYield: the quantum
       // check below can end the activation, so a larger stride would make the
@@ -3653,8 +3737,8 @@ class JitCompiler {
         // runnable Java thread need not force a costly spill/re-entry every
         // 10k bytecodes; run until the existing wall-clock/timer/debug
         // deadline, then materialize the exact PC before yielding.
-        ? "if (--bytecodesUntilYield === 0) { if (helpers.continueStructuredQuantum(thread)) { bytecodesUntilYield = 10000; } else { helpers.materializeCached(frame, locals, stack, sp, pc); helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'synchronous generated quantum' }; } }"
-        : "if (--bytecodesUntilYield === 0) { if (helpers.continueQuantum(thread)) { bytecodesUntilYield = 10000; } else { helpers.materializeCached(frame, locals, stack, sp, pc); await helpers.cooperativeYield(); bytecodesUntilYield = 10000; bytecodeChecks = helpers.needsBytecodeChecks(); } }",
+        ? "if (--bytecodesUntilYield === 0) { if (helpers.continueStructuredQuantum(thread, helpers.frameCodeOwners(frame))) { bytecodesUntilYield = 10000; } else { helpers.materializeCached(frame, locals, stack, sp, pc); helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'synchronous generated quantum' }; } }"
+        : "if (--bytecodesUntilYield === 0) { if (helpers.continueQuantum(thread, helpers.frameCodeOwners(frame))) { bytecodesUntilYield = 10000; } else { helpers.materializeCached(frame, locals, stack, sp, pc); await helpers.cooperativeYield(); bytecodesUntilYield = 10000; bytecodeChecks = helpers.needsBytecodeChecks(frame); } }",
       "if (bytecodeChecks && helpers.shouldDeopt(frame, pc)) { helpers.materializeCached(frame, locals, stack, sp, pc); return { deopt: true }; }",
       "switch (pc) {",
     ];
@@ -3831,9 +3915,9 @@ class JitCompiler {
       "const stack = frame.stack.items;",
       "let pc = frame.pc;",
       "let blocksUntilYield = 10000;",
-      "if ((initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks() : initialBytecodeChecks)) return { deopt: true, transient: true, reason: 'stackless raster debug entry' };",
+      "if ((initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks(frame) : initialBytecodeChecks)) return { deopt: true, transient: true, reason: 'stackless raster debug entry' };",
       "while (true) {",
-      "if (--blocksUntilYield === 0) { if (helpers.continueQuantum(thread)) { blocksUntilYield = 10000; } else { helpers.materialize(frame, locals, stack, pc); helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'stackless raster quantum' }; } }",
+      "if (--blocksUntilYield === 0) { if (helpers.continueQuantum(thread, helpers.frameCodeOwners(frame))) { blocksUntilYield = 10000; } else { helpers.materialize(frame, locals, stack, pc); helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'stackless raster quantum' }; } }",
       "switch (pc) {",
     ];
 
@@ -4541,6 +4625,7 @@ class JitCompiler {
             ? this.getCompileTimeIntegerLeaf(instruction)
             : null;
           if (directInline) {
+            this.noteInlinedCodeOwners(method, directInline.owners);
             this.compileDirectInlineCount += 1;
             const base = `inlineBase${this.compileDirectInlineCount}`;
             const substituteBase = (source) => source.split("base").join(base);
@@ -7044,7 +7129,9 @@ class JitCompiler {
     const receiver = receiverSlots
       ? frame.stack.items[availableOperands - params.length - 1]
       : null;
-    if (this.jvm.debugManager.isClassJitDeopted(lookupClass)) return ASYNC_INVOKE;
+    const debug = this.jvm.debugManager;
+    if (debug.breakpoints.size > 0 && this.codeOwners(method, lookupClass)
+      .some((owner) => debug.isClassJitDeopted(owner))) return ASYNC_INVOKE;
     if (this.fusedRegions.enabled) {
       const fused = this.fusedRegions.tryInvoke(site, target, frame, thread);
       if (fused.matched && fused.handled) return RETURN_VOID;
@@ -7065,7 +7152,8 @@ class JitCompiler {
       return value;
     }
     if (inlineIntegerRegion) {
-      if (inlineIntegerRegion.jvmNested && this.needsBytecodeChecks()) return ASYNC_INVOKE;
+      if (inlineIntegerRegion.jvmNested &&
+          this.needsBytecodeChecksFor(inlineIntegerRegion.jvmPlan.owners)) return ASYNC_INVOKE;
       const receiverSlots = op === "invokestatic" ? 0 : 1;
       const base = frame.stack.items.length - params.length - receiverSlots;
       const value = inlineIntegerRegion(frame.stack.items, base);
@@ -7083,7 +7171,7 @@ class JitCompiler {
 
     const argumentBase = frame.stack.items.length - params.length;
     let memoKey = NO_MEMO_KEY;
-    if (memoizedIntegralLeaf && !this.needsBytecodeChecks()) {
+    if (memoizedIntegralLeaf && !this.methodNeedsBytecodeChecks(method, lookupClass)) {
       memoKey = this.memoizedIntegralKey(
         memoizedIntegralLeaf, frame.stack.items, argumentBase);
       if (memoKey !== NO_MEMO_KEY && memoizedIntegralLeaf.values.has(memoKey)) {
@@ -7105,7 +7193,7 @@ class JitCompiler {
     // normal execution does not need to erase every slot in a recycled frame.
     // Keep the clear when debugger/breakpoint checks are active so a suspended
     // frame never exposes values left by its previous invocation.
-    if (this.needsBytecodeChecks()) child.locals.fill(undefined);
+    if (this.methodNeedsBytecodeChecks(method, lookupClass)) child.locals.fill(undefined);
     child.stack.items.length = 0;
     // Assign undefined rather than deleting. Every consumer of these five
     // fields tests them for truthiness or identity, so undefined and absent are
@@ -8637,7 +8725,7 @@ class JitCompiler {
     const receiverSlots = (method.flags || []).includes("static") ? 0 : 1;
     const state = {
       active: new Set(), declarations: [], statements: [], nextTemp: 0,
-      instructionCount: 0, methodCount: 0, guards: [],
+      instructionCount: 0, methodCount: 0, guards: [], owners: new Set(),
     };
     const result = this.emitInlineIntegerMethod(method, params, returnType, args, state, 0);
     if (result === null) return null;
@@ -8648,6 +8736,7 @@ class JitCompiler {
       inputCount: args.length,
       methodCount: state.methodCount,
       guards: state.guards,
+      owners: [...state.owners],
     };
     return plan;
   }
@@ -8782,6 +8871,8 @@ class JitCompiler {
     state.active.add(method);
     state.instructionCount += instructions.length;
     state.methodCount += 1;
+    const owner = method.className || this.jvm.findClassNameForMethod?.(method);
+    if (owner) state.owners.add(owner);
     try {
       for (let index = 0; index < instructions.length; index += 1) {
         const instruction = instructions[index];
@@ -9013,6 +9104,7 @@ class JitCompiler {
       guards: plan.guards,
       paramCount: params.length,
       className,
+      owners: plan.owners,
     };
   }
 
@@ -9104,6 +9196,7 @@ class JitCompiler {
       captures: typeof capturedBody === "function" &&
         Array.isArray(capturedPlan?.captures)
         ? capturedPlan.captures : [],
+      owners: this.codeOwners(method, className),
       admissionPlan,
     };
   }
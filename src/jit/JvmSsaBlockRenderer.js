@@ -741,11 +741,20 @@ class JvmSsaBlockRenderer {
     // transfers. Keeping slot layouts out of generated source avoids either
     // a closure over every hot scalar or repeated Frame reconstruction code.
     this.restoringFrameLayouts = [];
+    // Debugger gates in generated bodies name the classes whose code they
+    // carry by an index into this table.
+    this.codeOwnerSets = [];
     this.lastCompileError = null;
     this.lastRejectionReason = null;
     this.lastFailedSource = null;
   }
 
+  registerCodeOwners(owners) {
+    const id = this.codeOwnerSets.length;
+    this.codeOwnerSets.push([...new Set(owners)].filter(Boolean));
+    return id;
+  }
+
   registerClassInitializationGuard(owners) {
     const guard = {
       owners: [...new Set(owners)],
@@ -1096,6 +1105,7 @@ class JvmSsaBlockRenderer {
     const directStaticSites = new Map();
     const lazyStaticSites = new Map();
     const directStaticOwners = new Set();
+    const inlinedCodeOwners = new Set();
     const loopInvariantStaticArrayViewsByItem = new Map();
     const loopInvariantStaticArrayViewsByHeader = new Map();
     const directStaticEmissionsByItem = new Map();
@@ -1177,6 +1187,7 @@ class JvmSsaBlockRenderer {
         const inline = directJre || !isStatic
           ? null : this.jit.getCompileTimeIntegerLeaf(instruction);
         if (inline?.className) directStaticOwners.add(inline.className);
+        for (const owner of inline?.owners || []) inlinedCodeOwners.add(owner);
         const directIntrinsic = directJre || !isStatic || inline
           ? null : this.jit.getCompileTimeSynchronousIntrinsic(instruction);
         const directCheckedLeaf = directJre || !isStatic || inline ||
@@ -1193,6 +1204,7 @@ class JvmSsaBlockRenderer {
           for (const capture of directCheckedLeaf.captures || []) {
             if (capture.className) directStaticOwners.add(capture.className);
           }
+          for (const owner of directCheckedLeaf.owners || []) inlinedCodeOwners.add(owner);
         }
         const directFused = directJre || !isStatic || inline || directIntrinsic ||
           directCheckedLeaf
@@ -1241,6 +1253,14 @@ class JvmSsaBlockRenderer {
         }
       }
     }
+    const codeOwners = [
+      method.className || this.jit.jvm.findClassNameForMethod?.(method),
+      ...directStaticOwners, ...inlinedCodeOwners,
+    ];
+    this.jit.noteInlinedCodeOwners(method, codeOwners);
+    const codeOwnersId = this.registerCodeOwners(codeOwners);
+    const codeOwnerList = this.codeOwnerSets[codeOwnersId];
+    const codeOwnersExpression = `helpers.structuredSsa.codeOwnerSets[${codeOwnersId}]`;
     // A protected non-void call can suspend after consuming its arguments.
     // Record that requirement here. A generator continuation can retain the
     // exact post-invoke lexical state and feed the child's returned operand
@@ -8919,7 +8939,7 @@ class JvmSsaBlockRenderer {
           // deopt would discard the shared region path and resume the child
           // through generic JVM dispatch.  Keep precise throwing-operation
           // restoration in the node, but charge/yield at the root boundary.
-          `if (${directPositional ? "nestedEntryGuarded === 2 || " : ""}helpers.continueStructuredQuantum(thread)) { safePointBudget = ${currentLoopSafePointBudget}; } else {`,
+          `if (${directPositional ? "nestedEntryGuarded === 2 || " : ""}helpers.continueStructuredQuantum(thread, ${codeOwnersExpression})) { safePointBudget = ${currentLoopSafePointBudget}; } else {`,
           ...indent([
             "spillLocals();",
             ...restoreLines,
@@ -10522,7 +10542,7 @@ class JvmSsaBlockRenderer {
       tree, entrySafePointBudget = safePointInitialBudget,
     ) => ["'use strict';",
       "const locals = frame.locals;", "const stack = frame.stack.items;",
-      "if ((!framelessEntry && frame.pc !== 0) || (initialBytecodeChecks === undefined ? helpers.needsBytecodeChecks() : initialBytecodeChecks)) { helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'structured SSA entry' }; }",
+      `if ((!framelessEntry && frame.pc !== 0) || (initialBytecodeChecks === undefined ? helpers.needsBytecodeChecksFor(${codeOwnersExpression}) : initialBytecodeChecks)) { helpers.skipJitOnce(frame); return { deopt: true, transient: true, reason: 'structured SSA entry' }; }`,
       staticInitializationGuardDeclaration,
       staticEntryGuard,
       ...directStaticDeclarations,
@@ -10616,7 +10636,7 @@ class JvmSsaBlockRenderer {
           "!helpers.structuredSsa.verifyClassInitializationGuard(" +
           "ssaDirectClassInitializationGuard))";
         const directGuardConditions = [
-          "(!nestedEntryGuarded && helpers.needsBytecodeChecks())",
+          `(!nestedEntryGuarded && helpers.needsBytecodeChecksFor(${codeOwnersExpression}))`,
           `(nestedEntryGuarded !== 2 && ${directInitializationCondition})`,
         ];
         const directGuard = directGuardConditions.length
@@ -10772,7 +10792,7 @@ class JvmSsaBlockRenderer {
           "ssaRestoringClassInitializationGuard))";
         const directGuardConditions = [
           "(!nestedEntryGuarded && (helpers.profileMethods || " +
-            "helpers.needsBytecodeChecks() || thread.status !== 'runnable'))",
+            `helpers.needsBytecodeChecksFor(${codeOwnersExpression}) || thread.status !== 'runnable'))`,
           `(nestedEntryGuarded !== 2 && ${restoringInitializationCondition})`,
         ];
         const directGuard =
@@ -12008,7 +12028,7 @@ class JvmSsaBlockRenderer {
             let continuation = frame[STRUCTURED_CONTINUATION];
             if (continuation) {
               const bytecodeChecks = initialBytecodeChecks === undefined
-                ? helpers.needsBytecodeChecks() : initialBytecodeChecks;
+                ? helpers.needsBytecodeChecksFor(codeOwnerList) : initialBytecodeChecks;
               const guardedStaticChanged =
                 !guardedStaticBooleanStateMatches();
               const fieldBackedArrayChanged =
@@ -12077,7 +12097,7 @@ class JvmSsaBlockRenderer {
           }
           if (continuation) {
             const bytecodeChecks = initialBytecodeChecks === undefined
-              ? helpers.needsBytecodeChecks() : initialBytecodeChecks;
+              ? helpers.needsBytecodeChecksFor(codeOwnerList) : initialBytecodeChecks;
             const guardedStaticChanged =
               !guardedStaticBooleanStateMatches();
             const fieldBackedArrayChanged =
@@ -12153,7 +12173,7 @@ class JvmSsaBlockRenderer {
           let continuation = frame[STRUCTURED_CONTINUATION];
           if (continuation) {
             const bytecodeChecks = initialBytecodeChecks === undefined
-              ? helpers.needsBytecodeChecks() : initialBytecodeChecks;
+              ? helpers.needsBytecodeChecksFor(codeOwnerList) : initialBytecodeChecks;
             const guardedStaticChanged = !guardedStaticBooleanStateMatches();
             const fieldBackedArrayChanged = !fieldBackedArrayStateMatches(
               continuation.fieldBackedArrayState);
@@ -25,9 +25,12 @@
 
 const { buildCfgFromCode, structure, IrreducibleError } = require('../decompiler/structurer');
 const { buildSsa } = require('../analysis/opgraph/ssa');
+const { scalarReplace, summarizeConstructor } = require('../analysis/opgraph/escape');
+const { analyzeArrayRanges } = require('../analysis/opgraph/loops');
+const { vectorizeLoop, constantOf } = require('../analysis/opgraph/vectorize');
 const {
   T, OP, TRUNC_SAT, uleb, sleb, f32bytes, f64bytes,
-  emitTryTableCatchAll,
+  emitTryTableCatchAll, simd, supportsWasmSimd,
   wasmProfilerName, parseMethodDescriptor, descToWasm,
   BRANCH_COND, BRANCH_ZERO, ICONST, BIN_OPS, ARRAY_LOAD, ARRAY_STORE,
   Unsupported, NestedDeopt, isGuestThrow, sig, assembleModule, liveExceptionRanges,
@@ -41,7 +44,7 @@ const {
 const { inlineCalls, GUARD_OWNER } = require('./wasmInline');
 const { runtimeClassName } = require('../instructions/object');
 const {
-  slabSlotFor, BASE_KEY: SLAB_BASE_KEY,
+  slabSlotFor, instanceFieldTemplate, BASE_KEY: SLAB_BASE_KEY,
 } = require('../core/objectModel');
 const Frame = require('../core/frame');
 
@@ -71,6 +74,23 @@ const HEAP_STORE = {
   castore: { op: 'i32_store16', shift: 1, t: T.i32 },
   sastore: { op: 'i32_store16', shift: 1, t: T.i32 },
 };
+// IR nodes a versioned loop may hold; both copies are emitted in full.
+const MAX_VERSIONED_LOOP_NODES = 200;
+// SSA op -> 0xFD sub-op per vector lane shape (vectorize.js)
+const VECTOR_OPS = {
+  i32: {
+    iadd: 'i32x4_add', isub: 'i32x4_sub', imul: 'i32x4_mul', ineg: 'i32x4_neg',
+    iand: 'v128_and', ior: 'v128_or', ixor: 'v128_xor',
+    ishl: 'i32x4_shl', ishr: 'i32x4_shr_s', iushr: 'i32x4_shr_u',
+  },
+  f32: {
+    fadd: 'f32x4_add', fsub: 'f32x4_sub', fmul: 'f32x4_mul', fdiv: 'f32x4_div', fneg: 'f32x4_neg',
+  },
+  i8: {
+    iadd: 'i8x16_add', isub: 'i8x16_sub', ineg: 'i8x16_neg',
+    iand: 'v128_and', ior: 'v128_or', ixor: 'v128_xor',
+  },
+};
 // Guest throwables are plain objects (or guest instances) carrying a string
 // `type`; host errors (Unsupported, NestedDeopt, TypeError...) are Error
 // instances or lack the tag. The EH catch path must never swallow the latter.
@@ -158,7 +178,10 @@ class StructuredWasmCompiler {
     if (this.importIndexByName.has(name)) return this.importIndexByName.get(name);
     const idx = this.importDecls.length;
     let wrapped = fn;
-    if (process.env.JVM_WASM_IMPORT_STATS === '1') {
+    // per-import call counters for the telemetry dashboard (opt-in: a
+    // wrapper per call); JVM_WASM_IMPORT_STATS=1 turns them on too
+    const telemetry = this.wasmJit && this.wasmJit.telemetry;
+    if (telemetry ? telemetry.importCounts : process.env.JVM_WASM_IMPORT_STATS === '1') {
       if (!this.importStats) this.importStats = new Map();
       const stats = this.importStats;
       const inner = wrapped;
@@ -227,6 +250,7 @@ class StructuredWasmCompiler {
         speculations = expanded.speculations;
         specSites = expanded.specSites;
         elidedThisGuards = expanded.elidedThisGuards;
+        if (this.wasmJit) this.wasmJit.noteCodeOwners(expanded.owners);
       }
     }
 
@@ -245,6 +269,10 @@ class StructuredWasmCompiler {
       { cfg },
     );
     if (fn.rejected) throw new Unsupported(`ssa: ${fn.rejected}`);
+    // Non-escaping `new`/small `newarray` become SSA values (escape.js); every
+    // exit below rebuilds the ones its frame state still names.
+    this.scalarReplaced = process.env.JVM_WASM_SCALAR_REPLACE !== '0'
+      ? scalarReplace(fn, this.escapeOptions()).replaced : 0;
     this.fn = fn;
     this.cfg = cfg;
     this.items = items;
@@ -321,6 +349,19 @@ class StructuredWasmCompiler {
     this.heap = (process.env.JVM_WASM_HEAP_ARRAYS !== '0' && this.jvm.wasmHeap) || null;
     this.arrayCaches = new Map();
     this.usedHeap = false;
+    // Bounds-check elimination (loops.js): innermost counted loops whose
+    // heap accesses are all provably i + k of invariant arrays lower twice
+    // behind one preheader guard — an unchecked copy when every range fits,
+    // the ordinary checked loop otherwise. JVM_WASM_BCE=0 disables.
+    this.rangePlans = this.heap && process.env.JVM_WASM_BCE !== '0'
+      ? analyzeArrayRanges(fn) : new Map();
+    this.uncheckedAccesses = null;
+    this.boundsChecksHoisted = 0;
+    // Single-block loops among those with independent a[i] iterations also
+    // get a v128 loop ahead of the unchecked copy (vectorize.js), which then
+    // serves as the scalar epilogue. JVM_WASM_SIMD=0 disables.
+    this.simd = process.env.JVM_WASM_SIMD !== '0' && supportsWasmSimd();
+    this.vectorizedLoops = 0;
 
     // Field-value caches (ported from the dispatcher tier, SSA-keyed).
     // Instance caches key on the receiver's SSA value id: an SSA value is
@@ -442,6 +483,7 @@ class StructuredWasmCompiler {
       body,
       profilerName: wasmProfilerName(this.className, this.method),
       importMemory: this.usedHeap,
+      sharedMemory: this.usedHeap && Boolean(this.heap && this.heap.shared),
       retvType: parseMethodDescriptor(this.method.descriptor).ret === 'V'
         ? null : descToWasm(parseMethodDescriptor(this.method.descriptor).ret),
       runvWrapper: true,
@@ -540,10 +582,94 @@ class StructuredWasmCompiler {
       specEpoch: this.jvm.classEpoch || 0,
       deoptStubCount: this.deoptBlocks.size,
       arrayCacheCount: this.arrayCaches.size,
+      scalarReplaced: this.scalarReplaced,
+      boundsChecksHoisted: this.boundsChecksHoisted,
+      vectorizedLoops: this.vectorizedLoops,
       importStats: this.importStats || null,
     };
   }
 
+  // Backend side of scalar replacement: only allocations an exit can rebuild
+  // through the same imports the unreplaced code would call (initialized
+  // class, primitive array), field identity by declaring class, and
+  // constructors summarised from the loaded class ASTs.
+  escapeOptions() {
+    const jvm = this.jvm;
+    const hierarchy = this.wasmJit && this.wasmJit.hierarchy;
+    const summaries = new Map();
+    const resolveInit = (owner, descriptor) => {
+      const init = hierarchy && hierarchy.resolveInit(owner, descriptor);
+      return init ? init.method : null;
+    };
+    return {
+      canMaterialize: (alloc) => alloc.op === 'newarray' || (
+        jvm.classInitializationState.get(alloc.imm) === 'INITIALIZED' &&
+        !!jvm.classes[alloc.imm]),
+      fieldKey: (alloc, owner, name) => {
+        const template = instanceFieldTemplate(jvm, alloc.imm);
+        let current = owner;
+        while (current) {
+          if (Object.prototype.hasOwnProperty.call(template, `${current}.${name}`)) {
+            return `${current}.${name}`;
+          }
+          const cd = jvm.classes[current];
+          current = cd && cd.ast && cd.ast.classes[0] ? cd.ast.classes[0].superClassName : null;
+        }
+        return null;
+      },
+      constructorSummary: (owner, descriptor) => {
+        const key = `${owner}.${descriptor}`;
+        if (!summaries.has(key)) {
+          summaries.set(key, summarizeConstructor(resolveInit(owner, descriptor), resolveInit));
+        }
+        return summaries.get(key);
+      },
+    };
+  }
+
+  // Allocate every scalar-replaced object named by an exit's frame state and
+  // store its fields as of that point; returns Map(alloc -> wasm local) for
+  // the spill to read instead of the (nonexistent) allocation local.
+  emitRematerialize(virtualState, out) {
+    const locals = new Map();
+    if (!virtualState) return locals;
+    const virtuals = this.fn.virtualObjects;
+    for (const [alloc, fields] of virtualState) {
+      const shape = virtuals.get(alloc);
+      const local = this.nextLocal++;
+      this.declared.push(T.ref);
+      if (shape.kind === 'object') {
+        out.push(OP.call, ...uleb(addNewImport(this, this.jvm, shape.className)),
+          OP.local_set, ...uleb(local));
+        for (const [key, value] of fields) {
+          const { owner, name, descriptor } = shape.fields.get(key);
+          const put = addFieldImport(this, this.jvm,
+            { arg: ['Field', owner, [name, descriptor]] }, false, false);
+          out.push(OP.local_get, ...uleb(local), ...this.useOf(value), OP.call, ...uleb(put.idx));
+        }
+      } else {
+        out.push(OP.i32_const, ...sleb(shape.length),
+          OP.call, ...uleb(addNewArrayImport(this, this.jvm, shape.atype)),
+          OP.local_set, ...uleb(local));
+        const aset = this.importIndexByName.get(this.wasmJit.typedArrayStoresEnabled
+          ? `aset_${shape.storeOp}` : `aset_${sig(KIND_T[shape.elementKind])}`);
+        for (const [index, value] of fields) {
+          out.push(OP.local_get, ...uleb(local), OP.i32_const, ...sleb(index),
+            ...this.useOf(value), OP.call, ...uleb(aset));
+        }
+      }
+      locals.set(alloc, local);
+    }
+    return locals;
+  }
+
+  // useOf for frame-state consumers: rematerialised objects read their scratch
+  // local.
+  frameUseOf(value, remat) {
+    const local = remat.get(value);
+    return local === undefined ? this.useOf(value) : [OP.local_get, ...uleb(local)];
+  }
+
   // Validates a block's terminator lowering without emitting into the real
   // body — mirrors what lowerNode will ask of this block later.
   dryRunTerm(id, out) {
@@ -556,6 +682,163 @@ class StructuredWasmCompiler {
 
   // ---- tree lowering ----
 
+  emitLoop(node, header, out, env) {
+    out.push(OP.loop, 0x40);
+    this.frames.push({ label: node.label });
+    this.emitFuelCheck(header, out);
+    this.lowerNode(node.body, out, env);
+    this.frames.pop();
+    out.push(OP.end);
+  }
+
+  // The range plan for a loop node when versioning it is worthwhile and
+  // safe to duplicate: small, call-free, every block compiled (no exit
+  // stubs), and at least one covered access that reaches the linear heap.
+  versionPlanFor(node, header) {
+    const plan = this.rangePlans.get(header);
+    if (!plan || this.uncheckedAccesses) return null;
+    if (plan.heapAccesses === undefined) {
+      plan.heapAccesses = null;
+      const blocks = collectTreeBlocks(node.body);
+      const compiled = [...blocks].every((id) => !this.demoted.has(id) && !this.deoptBlocks.has(id));
+      const callFree = [...blocks].every((id) => this.fn.blocks[id].body
+        .every((n) => !n.op.startsWith('invoke') && n.op !== 'athrow'));
+      const size = [...blocks].reduce((sum, id) => sum + this.fn.blocks[id].body.length, 0);
+      const heapAccesses = new Set([...plan.accesses]
+        .filter((n) => (HEAP_LOAD[n.op] && !this.rematLoads.has(n)) || HEAP_STORE[n.op]));
+      if (compiled && callFree && size <= MAX_VERSIONED_LOOP_NODES && heapAccesses.size) {
+        plan.heapAccesses = heapAccesses;
+        const vector = this.simd ? vectorizeLoop(this.fn, plan) : null;
+        if (vector && vector.steps.every((step) => (step.how !== 'load' && step.how !== 'store') ||
+            heapAccesses.has(step.node))) {
+          plan.vector = vector;
+        }
+      }
+    }
+    return plan.heapAccesses ? plan : null;
+  }
+
+  // Pushes i32 1 when every covered access of the plan is in bounds for the
+  // whole loop: each array heap-backed, init + minK >= 0, max + maxK < len,
+  // and max + step not wrapping (i64 arithmetic, so no guard term overflows).
+  emitRangeGuard(plan, out) {
+    const { loop, arrays } = plan;
+    this.heapImports();
+    this.usedHeap = true;
+    const i64Of = (operand) => this.loopOperandI64(operand);
+    const plus = (seq, k) => (k ? [...seq, OP.i64_const, ...sleb(k), OP.i64_add] : seq);
+    const covered = [...arrays].filter(([array]) => [...plan.heapAccesses].some((n) => n.args[0] === array));
+    if (loop.bound.lengthOf) this.emitArrayCacheFill(loop.bound.lengthOf, out);
+    const max = this.loopMaxI64(loop);
+    out.push(...plus(max, loop.step), OP.i64_const, ...sleb(0x7fffffff), OP.i64_le_s);
+    for (const [array, range] of covered) {
+      const c = this.arrayCacheFor(array);
+      this.emitArrayCacheFill(array, out);
+      out.push(
+        OP.local_get, ...uleb(c.base), OP.i32_const, ...sleb(0), OP.i32_ge_s, OP.i32_and,
+        ...plus(i64Of(loop.init), range.minOffset), OP.i64_const, ...sleb(0), OP.i64_ge_s, OP.i32_and,
+        ...plus(max, range.maxOffset),
+        OP.local_get, ...uleb(c.len), OP.i64_extend_i32_s, OP.i64_lt_s, OP.i32_and);
+    }
+  }
+
+  // loop bound / init operand (loops.js shape) widened to i64
+  loopOperandI64(operand) {
+    if (operand.constant !== undefined) return [OP.i64_const, ...sleb(operand.constant)];
+    if (operand.lengthOf) {
+      return [OP.local_get, ...uleb(this.arrayCacheFor(operand.lengthOf).len), OP.i64_extend_i32_s];
+    }
+    return [...this.useOf(operand.value), OP.i64_extend_i32_s];
+  }
+
+  // largest induction value the loop body sees, as i64
+  loopMaxI64(loop) {
+    const bound = this.loopOperandI64(loop.bound);
+    return loop.inclusive ? bound : [...bound, OP.i64_const, ...sleb(-1), OP.i64_add];
+  }
+
+  // v128 prefix of a versioned loop: while i + width - 1 still passes the
+  // exit test, run one lane-parallel iteration and advance i by the width.
+  // It writes only the induction phi's local, so the unchecked scalar loop
+  // that follows picks up at the first unprocessed element; the fuel check
+  // at its head resumes at the loop header like the scalar one.
+  emitVectorLoop(plan, out) {
+    const { loop, vector } = plan;
+    const { lane, width } = vector;
+    const iv = this.mustLocal(loop.iv);
+    const shift = { i32: 2, f32: 2, i8: 0 }[lane];
+    const splat = simd(`${lane === 'i8' ? 'i8x16' : lane === 'f32' ? 'f32x4' : 'i32x4'}_splat`);
+    const header = loop.header;
+    const vlocals = new Map();
+    const vlocal = () => {
+      const local = this.nextLocal++;
+      this.declared.push(T.v128);
+      return local;
+    };
+    const scalarOf = (value) => {
+      const constant = constantOf(value);
+      if (!constant) return this.useOf(value);
+      return constant.t === 'f32'
+        ? [OP.f32_const, ...f32bytes(constant.value)]
+        : [OP.i32_const, ...sleb(constant.value)];
+    };
+    const operandOf = (value, how) => {
+      if (how === 'vector') return [OP.local_get, ...uleb(vlocals.get(value))];
+      if (how === 'iota') {
+        return [OP.local_get, ...uleb(iv), ...splat,
+          ...simd('v128_const'), ...[0, 1, 2, 3].flatMap((k) => [k, 0, 0, 0]),
+          ...simd('i32x4_add')];
+      }
+      return [...scalarOf(value), ...splat];
+    };
+    const addrOf = (array) => [
+      OP.local_get, ...uleb(this.arrayCacheFor(array).base),
+      OP.local_get, ...uleb(iv), ...(shift ? [OP.i32_const, shift, OP.i32_shl] : []),
+      OP.i32_add,
+    ];
+    const laneOp = VECTOR_OPS[lane];
+
+    out.push(OP.block, 0x40, OP.loop, 0x40);
+    this.frames.push({ label: null }, { label: null });
+    this.emitFuelCheck(header, out);
+    out.push(OP.local_get, ...uleb(iv), OP.i64_extend_i32_s,
+      OP.i64_const, ...sleb(width - 1), OP.i64_add,
+      ...this.loopMaxI64(loop), OP.i64_gt_s, OP.br_if, 1);
+    for (const step of vector.steps) {
+      const { node, how } = step;
+      if (how === 'load') {
+        vlocals.set(node, vlocal());
+        out.push(...addrOf(node.args[0]), ...simd('v128_load'), 0, 0,
+          OP.local_set, ...uleb(vlocals.get(node)));
+      } else if (how === 'store') {
+        out.push(...addrOf(node.args[0]), ...operandOf(node.args[2], step.operands[0]),
+          ...simd('v128_store'), 0, 0);
+      } else if (how === 'op') {
+        if (node.op === 'i2b') {
+          // bytes lanes are already 8 bits wide
+          vlocals.set(node, vlocals.get(node.args[0]) ?? vlocal());
+          if (step.operands[0] !== 'vector') {
+            out.push(...operandOf(node.args[0], step.operands[0]), OP.local_set, ...uleb(vlocals.get(node)));
+          }
+          continue;
+        }
+        vlocals.set(node, vlocal());
+        if (node.op === 'ishl' || node.op === 'ishr' || node.op === 'iushr') {
+          out.push(...operandOf(node.args[0], step.operands[0]), ...scalarOf(node.args[1]));
+        } else {
+          node.args.forEach((arg, i) => out.push(...operandOf(arg, step.operands[i])));
+        }
+        out.push(...simd(laneOp[node.op]), OP.local_set, ...uleb(vlocals.get(node)));
+      }
+    }
+    out.push(OP.local_get, ...uleb(iv), OP.i32_const, ...sleb(width), OP.i32_add,
+      OP.local_set, ...uleb(iv), OP.br, 0);
+    this.frames.pop();
+    this.frames.pop();
+    out.push(OP.end, OP.end);
+    this.vectorizedLoops += 1;
+  }
+
   lowerNode(node, out, env) {
     if (!node) return;
     switch (node.t) {
@@ -594,12 +877,24 @@ class StructuredWasmCompiler {
       }
       case 'loop': {
         const header = headerOfLabel(node.label);
-        out.push(OP.loop, 0x40);
-        this.frames.push({ label: node.label });
-        this.emitFuelCheck(header, out);
-        this.lowerNode(node.body, out, env);
+        const plan = this.versionPlanFor(node, header);
+        if (!plan) {
+          this.emitLoop(node, header, out, env);
+          return;
+        }
+        // if (all ranges fit) { unchecked copy } else { checked loop }
+        this.emitRangeGuard(plan, out);
+        out.push(OP.if, 0x40);
+        this.frames.push({ label: null });
+        this.uncheckedAccesses = plan.heapAccesses;
+        if (plan.vector) this.emitVectorLoop(plan, out);
+        this.emitLoop(node, header, out, env);
+        this.uncheckedAccesses = null;
+        out.push(OP.else);
+        this.emitLoop(node, header, out, env);
         this.frames.pop();
         out.push(OP.end);
+        this.boundsChecksHoisted += plan.heapAccesses.size;
         return;
       }
       case 'if': {
@@ -848,6 +1143,7 @@ class StructuredWasmCompiler {
   // the original call-site pc so the interpreter re-executes the invoke.
   emitSpillResume(blockId, out, stub = null) {
     const block = this.blockOf(blockId);
+    const remat = this.emitRematerialize(block.virtualStateIn, out);
     const spills = [];
     const dropped = [];
     const droppedSlots = [];
@@ -876,13 +1172,13 @@ class StructuredWasmCompiler {
           if (clear) for (let i = 0; i < clear.length; i += 1) locals[clear[i]] = undefined;
         },
       );
-      for (const { value } of spills) out.push(...this.useOf(value));
+      for (const { value } of spills) out.push(...this.frameUseOf(value, remat));
       out.push(OP.call, ...uleb(idx));
     }
     for (const value of block.entryStack) {
       const t = KIND_T[value.kind];
       if (t === undefined) throw new Unsupported('unkinded entry stack at exit');
-      out.push(...this.useOf(value), OP.call, ...uleb(pushImportFor(this, t)));
+      out.push(...this.frameUseOf(value, remat), OP.call, ...uleb(pushImportFor(this, t)));
     }
     if (stub) {
       const defs = block.slotDefsIn || new Map();
@@ -890,7 +1186,7 @@ class StructuredWasmCompiler {
         const def = defs.get(slot);
         const t = def && def.op !== 'undef' ? KIND_T[def.kind] : undefined;
         if (t === undefined) throw new Unsupported('deopt stub operand unavailable');
-        out.push(...this.useOf(def), OP.call, ...uleb(pushImportFor(this, t)));
+        out.push(...this.frameUseOf(def, remat), OP.call, ...uleb(pushImportFor(this, t)));
       }
       out.push(OP.i32_const, ...sleb(stub.resumeIdx), OP.return);
       return;
@@ -959,7 +1255,7 @@ class StructuredWasmCompiler {
         emitTryTableCatchAll(
           out,
           body => body.push(...this.useOf(value), OP.call, ...uleb(idx)),
-          handler => this.emitEhCatch(term.slotState, site, handler),
+          handler => this.emitEhCatch(term.slotState, site, handler, term.virtualState),
         );
       } else {
         out.push(...this.useOf(value), OP.call, ...uleb(idx));
@@ -1003,7 +1299,7 @@ class StructuredWasmCompiler {
     emitTryTableCatchAll(
       out,
       body => this.emitNode(node, body),
-      handler => this.emitEhCatch(node.slotState, site, handler),
+      handler => this.emitEhCatch(node.slotState, site, handler, node.virtualState),
     );
   }
 
@@ -1016,12 +1312,13 @@ class StructuredWasmCompiler {
     return { resumeIdx: orig, pc: parseInt(label.slice(1, -1), 10) };
   }
 
-  emitEhCatch(slotState, site, out) {
+  emitEhCatch(slotState, site, out, virtualState = null) {
     this.usedEh = true;
     const box = this.box;
     out.push(OP.call, ...uleb(this.addImport('eh_pending', [], [T.i32],
       () => (box.pendingException !== null ? 1 : 0))));
     out.push(OP.if, 0x40);
+    const remat = this.emitRematerialize(virtualState, out);
     const spills = [];
     for (const [slot, value] of slotState || []) {
       const t = KIND_T[value.kind];
@@ -1039,7 +1336,7 @@ class StructuredWasmCompiler {
         box.throwPc = pc;
       },
     );
-    for (const { value } of spills) out.push(...this.useOf(value));
+    for (const { value } of spills) out.push(...this.frameUseOf(value, remat));
     out.push(OP.call, ...uleb(idx));
     out.push(OP.i32_const, ...sleb(-3), OP.return);
     out.push(OP.end);
@@ -1439,6 +1736,17 @@ class StructuredWasmCompiler {
     return entry;
   }
 
+  // fill once per run: base (-1 for null/non-heap) and length
+  emitArrayCacheFill(arrValue, out) {
+    const c = this.arrayCacheFor(arrValue);
+    const arr = this.useOf(arrValue);
+    out.push(
+      OP.local_get, ...uleb(c.filled), OP.i32_eqz, OP.if, 0x40,
+      ...arr, OP.call, ...uleb(this.abaseIdx), OP.local_set, ...uleb(c.base),
+      ...arr, OP.call, ...uleb(this.alen0Idx), OP.local_set, ...uleb(c.len),
+      OP.i32_const, ...sleb(1), OP.local_set, ...uleb(c.filled), OP.end);
+  }
+
   heapImports() {
     if (this.abaseIdx === undefined) {
       this.abaseIdx = this.addImport('abase', [T.ref], [T.i32], (a) => (
@@ -1488,12 +1796,15 @@ class StructuredWasmCompiler {
       : [...arr, ...idx, OP.call,
         ...uleb(this.importIndexByName.get(`aget_${sig(importT)}`))];
     const heapOp = [OP[acc.op], ...uleb(acc.shift), ...uleb(0)];
+    // inside a versioned loop's unchecked copy the preheader guard already
+    // filled the cache and proved base >= 0 and the index in range
+    if (this.uncheckedAccesses && this.uncheckedAccesses.has(node)) {
+      return [...addr, ...(storeSeq || []), ...heapOp];
+    }
+    const fill = [];
+    this.emitArrayCacheFill(node.args[0], fill);
     return [
-      // fill once per run: base (-1 for null/non-heap) and length
-      OP.local_get, ...uleb(c.filled), OP.i32_eqz, OP.if, 0x40,
-      ...arr, OP.call, ...uleb(this.abaseIdx), OP.local_set, ...uleb(c.base),
-      ...arr, OP.call, ...uleb(this.alen0Idx), OP.local_set, ...uleb(c.len),
-      OP.i32_const, ...sleb(1), OP.local_set, ...uleb(c.filled), OP.end,
+      ...fill,
       OP.local_get, ...uleb(c.base), OP.i32_const, ...sleb(0), OP.i32_ge_s,
       OP.if, storeSeq ? 0x40 : acc.t,
       ...bounds, ...addr, ...(storeSeq || []), ...heapOp,
@@ -2023,7 +2334,7 @@ class StructuredWasmCompiler {
         if (lateMissEpoch.get(receiverClass) !== epoch) {
           lateMissEpoch.set(receiverClass, epoch);
           calleeSt = this.wasmJit.resolveLateInstanceTarget(
-            owner, name, descriptor, receiverClass, writes,
+            owner, name, descriptor, receiverClass, writes, this.method,
           );
           if (calleeSt) {
             dispatch.set(receiverClass, calleeSt);
@@ -2262,6 +2573,7 @@ class StructuredWasmCompiler {
   }
 
   emitCallExitStub(node, site, unders, reexecute, out) {
+    const remat = this.emitRematerialize(node.virtualState, out);
     // locals as of the call, from the SSA snapshot (same filter as EH spill)
     const spills = [];
     const droppedSlots = [];
@@ -2285,13 +2597,14 @@ class StructuredWasmCompiler {
           if (clear) for (let i = 0; i < clear.length; i += 1) locals[clear[i]] = undefined;
         },
       );
-      for (const { value } of spills) out.push(...this.useOf(value));
+      for (const { value } of spills) out.push(...this.frameUseOf(value, remat));
       out.push(OP.call, ...uleb(idx));
     }
     // interpreter operand stack, bottom-up: values under the call's args,
     // then — only when the invoke re-executes — the operands themselves
     for (const value of unders) {
-      out.push(...this.useOf(value), OP.call, ...uleb(pushImportFor(this, KIND_T[value.kind])));
+      out.push(...this.frameUseOf(value, remat),
+        OP.call, ...uleb(pushImportFor(this, KIND_T[value.kind])));
     }
     if (reexecute) {
       for (const value of node.args) {
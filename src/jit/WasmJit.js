@@ -70,6 +70,7 @@ const {
 const { ClassHierarchy } = require('../analysis/closedWorld/classHierarchy');
 const { revalidateSpeculations } = require('./wasmInline');
 const Frame = require('../core/frame');
+const { JitTelemetry } = require('./jitTelemetry');
 const {
   T, CAT2, OP, TRUNC_SAT,
   uleb, sleb, f32bytes, f64bytes,
@@ -900,7 +901,7 @@ class MethodTranslator {
         if (lateMissEpoch.get(receiverClass) !== epoch) {
           lateMissEpoch.set(receiverClass, epoch);
           calleeSt = this.wasmJit.resolveLateInstanceTarget(
-            owner, name, descriptor, receiverClass, writes,
+            owner, name, descriptor, receiverClass, writes, this.method,
           );
           if (calleeSt) {
             dispatch.set(receiverClass, calleeSt);
@@ -2301,7 +2302,11 @@ class WasmJit {
     this.jit = jit;
     const env = (typeof process !== 'undefined' && process.env) || {};
     const browserDefault = typeof window !== 'undefined' && typeof document !== 'undefined';
-    this.enabled = (env.JVM_WASM_JIT === '1' || browserDefault) && typeof WebAssembly !== 'undefined' &&
+    // jit options { wasm, wasmStructured } override JVM_WASM_JIT and
+    // JVM_WASM_STRUCTURED for one VM.
+    const jitOptions = (jvm && jvm.jitOptions) || {};
+    this.enabled = (jitOptions.wasm ?? (env.JVM_WASM_JIT === '1' || browserDefault)) &&
+      typeof WebAssembly !== 'undefined' &&
       !env.JVM_TRACE && env.JVM_PROFILE_HOT_METHODS !== '1';
     this.debug = env.JVM_DEBUG_WASMJIT === '1';
     this.traceMethodPattern = env.JVM_TRACE_WASM_METHOD || '';
@@ -2316,7 +2321,7 @@ class WasmJit {
     // never fires for methods invoked once with a multi-minute loop (va.d).
     this.warmupThreshold = Number(env.JVM_WASM_JIT_WARMUP || 1);
     this.retryBackoffMax = Math.max(1, Number(env.JVM_WASM_JIT_RETRY_BACKOFF_MAX || 4096));
-    this.structuredEnabled = env.JVM_WASM_STRUCTURED === '1';
+    this.structuredEnabled = jitOptions.wasmStructured ?? env.JVM_WASM_STRUCTURED === '1';
     this.instanceLinkEnabled = env.JVM_WASM_DEVIRT !== '0';
     // Direct wasm->wasm static links: eligible fully-compiled callees are
     // called through their runv export with no JS bridge on the path.
@@ -2339,6 +2344,13 @@ class WasmJit {
     // default.
     this.relaxedRefReturn = env.JVM_WASM_RELAXED_REF_RETURN === '1';
     this.hierarchy = new ClassHierarchy(jvm);
+    // Compile/reject/deopt/OSR events for the JIT dashboard (jitTelemetry.js);
+    // shared with the owning JitCompiler when there is one.
+    this.telemetry = (jit && jit.telemetry) || new JitTelemetry();
+    // One set per compile in progress: the classes whose bytecode its module
+    // runs, its own plus spliced and directly linked callees. A ready module
+    // keeps the set as st.codeOwners for the debugger gate in prepare().
+    this.codeOwnerStack = [];
     this.structuredCompiles = 0;
     this.runCount = 0;
     this.compileEpoch = 0;
@@ -2505,7 +2517,8 @@ class WasmJit {
       return null;
     }
     const debug = this.jvm.debugManager;
-    if (debug && debug.debugMode) return null;
+    const frameOwners = [this.jit.getFrameClassName(frame)];
+    if (debug && debug.debugMode && !debug.allowsCompiledRegions(frameOwners)) return null;
     // JVM_JIT_DENY has to remove every compiled copy of a class's methods, or
     // a bisect over classes reports the wrong owner. This tier consulted no
     // deny list, so denying a class silently left its Wasm module compiled and
@@ -2548,6 +2561,8 @@ class WasmJit {
       if (this.census) this._censusNote(frame, `not-ready:${st.status}`);
       return null;
     }
+    if (debug && debug.debugMode &&
+        !debug.allowsCompiledRegions(st.codeOwners || frameOwners)) return null;
 
     // A module built while a dependency was merely pending keeps the loss for
     // good: blocks stay exit stubs, and — more expensively — call sites that
@@ -2789,6 +2804,10 @@ class WasmJit {
     if (this.jit.jitDenied(frame.method)) {
       st.status = 'failed';
       st.failReason = 'jit-denied';
+      this.telemetry.record('reject', {
+        method: `${frame.className || frame.method.className || '?'}.${frame.method.name}${frame.method.descriptor}`,
+        tier: 'wasm', ms: 0, reason: 'jit-denied', deferred: false,
+      });
       return;
     }
     const asCallee = options.asCallee === true;
@@ -2802,12 +2821,19 @@ class WasmJit {
     // Prevent recursive static call graphs from trying to compile the same
     // method again while its translator is still discovering callees.
     st.status = 'compiling';
+    const startedAt = this.telemetry.now();
+    this.telemetry.record('compile-start', {
+      method: st.key, tier: 'wasm', recompile: isRecompile, asCallee,
+    });
+    const codeOwners = new Set([className]);
+    this.codeOwnerStack.push(codeOwners);
     let validatingBytes = null; // last bytes handed to WebAssembly.Module, for reject dumps
     let primaryMeta = null; // census-only: the meta a partial-module reject saw
     try {
       let structuredMeta = null;
       let structuredDeferred = false;
       let structuredBlockers = [];
+      let structuredFallback = null;
       if (this.structuredEnabled) {
         try {
           const StructuredWasmCompiler = require('./StructuredWasmCompiler');
@@ -2821,6 +2847,7 @@ class WasmJit {
           // built below cannot say why the better tier declined.
           structuredDeferred = DEFERRABLE_DEMOTE.test(err.message);
           if (structuredDeferred) structuredBlockers = blockedNames(err);
+          structuredFallback = err.message;
           if (this.debug) console.error(`[wasmjit] structured fallback ${st.key}: ${err.message}`);
         }
       }
@@ -2997,12 +3024,25 @@ class WasmJit {
       const blockers = new Set(primary.demoteBlockers || []);
       for (const name of structuredBlockers) blockers.add(name);
       st.blockers = [...blockers].sort();
+      st.codeOwners = [...codeOwners];
       this.compileEpoch += 1;
       // Stamped after the bump this compile itself contributes, so a module
       // never triggers its own rebuild.
       st.depWorld = this.depWorldVersion();
       st.blockerSig = this.blockerSignature(st.blockers, startEpoch);
       if (!st.listed) { st.listed = true; this.compiled.push(st); }
+      this.telemetry.record('compile-end', {
+        method: st.key,
+        tier: structuredMeta ? 'structured' : 'dispatcher',
+        ms: this.telemetry.now() - startedAt,
+        bytes: primary.bytes.length,
+        blocks: primary.blockCount,
+        supportedBlocks: primary.supportedBlocks.size,
+        demoted: [...primary.demoteReasons.values()],
+        structuredFallback,
+        osr: !!st.osr,
+      });
+      this.telemetry.registerImportStats(st.key, primary.importStats);
       // JVM_WASM_DUMP_ACCEPT=<dir> writes each accepted module so its wat can
       // be diffed against hand-written wasm for the same Java method. The
       // reject dump next to it only ever sees modules that failed to validate.
@@ -3024,6 +3064,16 @@ class WasmJit {
           (primary.demoteReasons.size ? ` (exits: ${[...primary.demoteReasons.values()].join('; ')})` : ''));
       }
     } catch (err) {
+      this.telemetry.record('reject', {
+        method: st.key,
+        tier: 'wasm',
+        ms: this.telemetry.now() - startedAt,
+        reason: err.message,
+        // kept module, callee-link deferral, or transient: retried later
+        deferred: isRecompile || (err instanceof Unsupported &&
+          (asCallee || err.message === 'no compiled loop')),
+        invalidModule: !!validatingBytes && /WebAssembly/.test(err.message),
+      });
       if (process.env.JVM_WASM_DUMP_REJECT && validatingBytes &&
           /WebAssembly/.test(err.message)) {
         const file = `${process.env.JVM_WASM_DUMP_REJECT}/${st.key.replace(/[^\w.]/g, '_')}.wasm`;
@@ -3080,6 +3130,17 @@ class WasmJit {
         }
       }
       if (this.debug) console.error(`[wasmjit] rejected ${st.key}: ${err.message}`);
+    } finally {
+      this.codeOwnerStack.pop();
+    }
+  }
+
+  // Records classes whose bytecode the module being compiled now carries.
+  noteCodeOwners(classNames) {
+    const current = this.codeOwnerStack[this.codeOwnerStack.length - 1];
+    if (!current || !classNames) return;
+    for (const className of classNames) {
+      if (className) current.add(className);
     }
   }
 
@@ -3113,6 +3174,7 @@ class WasmJit {
   execute(frame, thread, st, blk, nested = false, osr = false) {
     const mod = osr && st.osr ? st.osr : st;
     const meta = mod.meta;
+    if (osr && this.telemetry.enabled) this.telemetry.record('osr-entry', { method: st.key, tier: 'wasm', block: blk });
     // Diagnostic: a structured fuel/deopt exit writes back only the slots its
     // block's SSA state defines; the dispatcher OSR module's paramSlots is
     // EVERY typed slot, so it reads slots that exit never wrote. Log the
@@ -3171,6 +3233,11 @@ class WasmJit {
         // post-invoke resume point; materialize the nested chain (frames are
         // innermost-first) and let the scheduler run it interpreted.
         st.exits += 1;
+        if (this.telemetry.enabled) {
+          this.telemetry.record('deopt', {
+            method: st.key, tier: 'wasm', pc: frame.pc, reason: 'linked callee exit',
+          });
+        }
         for (let i = err.frames.length - 1; i >= 0; i--) {
           thread.callStack.push(err.frames[i]);
         }
@@ -3211,6 +3278,11 @@ class WasmJit {
       // reaching the throw and frame.pc; dispatch through the interpreter's
       // handler search (same-frame handler, or pop-and-propagate).
       st.exits += 1;
+      if (this.telemetry.enabled) {
+        this.telemetry.record('deopt', {
+          method: st.key, tier: 'wasm', pc: meta.box.throwPc, reason: 'exception',
+        });
+      }
       const exn = meta.box.pendingException;
       meta.box.pendingException = null;
       this.jvm.handleException(exn, meta.box.throwPc, thread);
@@ -3226,6 +3298,14 @@ class WasmJit {
     // transient exit: locals already spilled by the stub; resume interpreter here
     st.exits += 1;
     if (status === frame.pc) st.fuelExits += 1; // fuel exit at entry pc is possible but rare
+    if (this.telemetry.enabled) {
+      // exits resume at a block start; a demoted block names its reason
+      const exitBlock = meta.blockOfItem && meta.blockOfItem.get(status);
+      this.telemetry.record('deopt', {
+        method: st.key, tier: 'wasm', pc: status,
+        reason: (exitBlock !== undefined && meta.demoteReasons.get(exitBlock)) || 'fuel or call exit',
+      });
+    }
     if (this.traceResumePattern && !osr && meta.spillSlots) {
       const rec = meta.spillSlots.get(status);
       st.lastExitSpill = {
@@ -3384,10 +3464,13 @@ class WasmJit {
     // check invalidates them; a captured link would outlive that check
     // (guard-elided `this` sites are speculative with speculations === 0)
     if (cm.speculations || (cm.specSites && cm.specSites.length)) return null;
-    if (cm.fullyCompiled || cm.normalFlowFullyCompiled) return st;
     // partial callees deopt on demoted blocks; the entry block at least must
     // run in wasm or every call would deopt immediately
-    return allowPartial && cm.externalEntry.has(0) ? st : null;
+    if (!(cm.fullyCompiled || cm.normalFlowFullyCompiled) &&
+        !(allowPartial && cm.externalEntry.has(0))) return null;
+    // A linked callee runs inside the caller's module, unseen by prepare().
+    this.noteCodeOwners(st.codeOwners);
+    return st;
   }
 
   // Instance-method counterpart of findReadyStatic for devirtualized sites.
@@ -3421,8 +3504,10 @@ class WasmJit {
     // (revalidateNestedCallee) and has a miss/deopt path when the baked
     // world grew, while raw direct links exclude them at eligibility.
     if (cm.speculations) return null;
-    if (cm.fullyCompiled || cm.normalFlowFullyCompiled) return st;
-    return cm.externalEntry.has(0) ? st : null;
+    if (!(cm.fullyCompiled || cm.normalFlowFullyCompiled) &&
+        !cm.externalEntry.has(0)) return null;
+    this.noteCodeOwners(st.codeOwners);
+    return st;
   }
 
   // Captured nested-dispatch targets bypass prepare()'s speculation gate.
@@ -3458,7 +3543,8 @@ class WasmJit {
   // transitive field writes are covered by the cache kills already emitted
   // in the caller; otherwise retain the original deopt-before-side-effects
   // behavior. `null` means the caller already kills every field cache.
-  resolveLateInstanceTarget(owner, name, descriptor, runtimeClass, allowedWrites) {
+  resolveLateInstanceTarget(owner, name, descriptor, runtimeClass, allowedWrites,
+    callerMethod = null) {
     if (!this.lateInstanceTargetsEnabled) return null;
     this.lateInstanceTargetAttempts += 1;
     const resolved = this.hierarchy.resolveDispatch(owner, name, descriptor);
@@ -3478,11 +3564,21 @@ class WasmJit {
       this.lateInstanceTargetNotReady += 1;
       return null;
     }
+    // Installed after the caller compiled, so the callee's classes join the
+    // caller's owners here; a breakpoint in one of them keeps it out now.
+    const debug = this.jvm.debugManager;
+    if (debug && debug.debugMode && !debug.allowsCompiledRegions(st.codeOwners)) {
+      return null;
+    }
     const meta = (st.callee || st).meta;
     if (st.linkVetoed && !meta.fullyCompiled) {
       this.lateInstanceTargetNotReady += 1;
       return null;
     }
+    const caller = callerMethod && this.state.get(callerMethod);
+    if (caller && caller.codeOwners && st.codeOwners) {
+      caller.codeOwners = [...new Set([...caller.codeOwners, ...st.codeOwners])];
+    }
     this.lateInstanceTargetInstalls += 1;
     return st;
   }
@@ -0,0 +1,198 @@
+'use strict';
+
+// Structured JIT event stream. Every tier reports what it did to one
+// fixed-size ring buffer instead of printing to stderr behind its own
+// environment switch:
+//
+//   compile-start   { method, tier, recompile, asCallee }
+//   compile-end     { method, tier, ms, bytes, blocks, supportedBlocks,
+//                     demoted: [reason], structuredFallback }
+//   reject          { method, tier, ms, reason, deferred }
+//   deopt           { method, tier, pc, reason }
+//   osr-entry       { method, tier, block }
+//
+// Events carry a monotonically increasing `seq` and a `time` in ms, so a
+// poller can ask for everything since the last seq it saw. Recording is one
+// object and one array store; the per-method summary is folded in at record
+// time so a dashboard never has to rescan the buffer.
+//
+// Telemetry is off unless `enabled` (or JVM_JIT_TELEMETRY=1) turns it on:
+// osr-entry and deopt fire on every Wasm/JS-tier exit, and the call sites
+// skip building the event when it is off. Import-call counts are the one
+// costly signal even then (a wrapper per import call) and stay opt-in via
+// `importCounts` (JVM_WASM_IMPORT_STATS=1 implies it).
+
+const DEFAULT_CAPACITY = 4096;
+
+function nowMs() {
+  return typeof performance !== 'undefined' && performance.now
+    ? performance.now() : Date.now();
+}
+
+class JitTelemetry {
+  constructor(options = {}) {
+    const env = (typeof process !== 'undefined' && process.env) || {};
+    this.enabled = options.enabled ?? env.JVM_JIT_TELEMETRY === '1';
+    this.capacity = Math.max(16, Number(options.capacity ?? env.JVM_JIT_TELEMETRY_CAPACITY) ||
+      DEFAULT_CAPACITY);
+    this.importCounts = options.importCounts ?? env.JVM_WASM_IMPORT_STATS === '1';
+    this.ring = new Array(this.capacity);
+    this.head = 0; // next write index
+    this.size = 0;
+    this.seq = 0;
+    this.kindCounts = new Map();
+    this.methods = new Map(); // method key -> summary row
+    this.importStats = new Map(); // method key -> Map(import name -> calls)
+    this.listeners = new Set();
+  }
+
+  now() {
+    return nowMs();
+  }
+
+  record(kind, fields) {
+    if (!this.enabled) return null;
+    const event = { seq: ++this.seq, time: nowMs(), kind, ...fields };
+    this.ring[this.head] = event;
+    this.head = (this.head + 1) % this.capacity;
+    if (this.size < this.capacity) this.size += 1;
+    this.kindCounts.set(kind, (this.kindCounts.get(kind) || 0) + 1);
+    if (event.method) this.fold(event);
+    for (const listener of this.listeners) {
+      try {
+        listener(event);
+      } catch { /* a dashboard must never break the jit */ }
+    }
+    return event;
+  }
+
+  fold(event) {
+    let row = this.methods.get(event.method);
+    if (!row) {
+      row = {
+        method: event.method, tier: null, compiles: 0, rejects: 0, compileMs: 0,
+        deopts: 0, osrEntries: 0, lastReason: null, lastDeoptPc: null,
+      };
+      this.methods.set(event.method, row);
+    }
+    switch (event.kind) {
+      case 'compile-end':
+        row.compiles += 1;
+        row.compileMs += event.ms || 0;
+        row.tier = event.tier;
+        if (event.demoted && event.demoted.length) row.lastReason = event.demoted[0];
+        break;
+      case 'reject':
+        row.rejects += 1;
+        row.compileMs += event.ms || 0;
+        row.lastReason = event.reason;
+        if (!event.deferred && row.tier === null) row.tier = 'interpreter';
+        break;
+      case 'deopt':
+        row.deopts += 1;
+        row.lastDeoptPc = event.pc ?? null;
+        if (event.reason) row.lastReason = event.reason;
+        break;
+      case 'osr-entry':
+        row.osrEntries += 1;
+        break;
+      default:
+        break;
+    }
+  }
+
+  // A module's per-import call counters (live Map, shared with the module's
+  // wrappers), so the counts stay current without re-registration.
+  registerImportStats(method, stats) {
+    if (stats) this.importStats.set(method, stats);
+  }
+
+  // Oldest-first events matching the query: { since: seq, kind, method
+  // (substring), limit (newest N) }.
+  events(query = {}) {
+    const out = [];
+    const start = (this.head - this.size + this.capacity) % this.capacity;
+    for (let i = 0; i < this.size; i += 1) {
+      const event = this.ring[(start + i) % this.capacity];
+      if (query.since !== undefined && event.seq <= query.since) continue;
+      if (query.kind && event.kind !== query.kind) continue;
+      if (query.method && !(event.method || '').includes(query.method)) continue;
+      out.push(event);
+    }
+    return query.limit ? out.slice(-query.limit) : out;
+  }
+
+  importCallCounts(limit = 20) {
+    const totals = new Map();
+    for (const stats of this.importStats.values()) {
+      for (const [name, calls] of stats) totals.set(name, (totals.get(name) || 0) + calls);
+    }
+    return [...totals].filter(([, calls]) => calls > 0).sort((a, b) => b[1] - a[1]).slice(0, limit)
+      .map(([name, calls]) => ({ name, calls }));
+  }
+
+  summary(limit = 20) {
+    const rows = [...this.methods.values()];
+    const by = (key) => rows.filter((row) => row[key]).sort((a, b) => b[key] - a[key])
+      .slice(0, limit);
+    const tiers = {};
+    for (const row of rows) if (row.tier) tiers[row.tier] = (tiers[row.tier] || 0) + 1;
+    return {
+      seq: this.seq,
+      buffered: this.size,
+      capacity: this.capacity,
+      counts: Object.fromEntries(this.kindCounts),
+      tiers,
+      slowestCompiles: by('compileMs'),
+      mostDeopts: by('deopts'),
+      rejected: rows.filter((row) => row.rejects && row.tier !== 'structured' &&
+        row.tier !== 'dispatcher').slice(0, limit),
+      imports: this.importCounts ? this.importCallCounts(limit) : null,
+    };
+  }
+
+  method(key) {
+    return {
+      summary: this.methods.get(key) || null,
+      events: this.events({ method: key }),
+      imports: this.importStats.has(key)
+        ? [...this.importStats.get(key)].map(([name, calls]) => ({ name, calls })) : null,
+    };
+  }
+
+  subscribe(listener) {
+    this.listeners.add(listener);
+    return () => this.listeners.delete(listener);
+  }
+
+  clear() {
+    this.ring = new Array(this.capacity);
+    this.head = 0;
+    this.size = 0;
+    this.kindCounts.clear();
+    this.methods.clear();
+    // The Maps are shared with live module wrappers; zero them in place.
+    for (const stats of this.importStats.values()) {
+      for (const name of stats.keys()) stats.set(name, 0);
+    }
+  }
+
+  // stderr report for JitCompiler.dumpStats
+  format(limit = 10) {
+    const s = this.summary(limit);
+    const lines = [`JIT telemetry: ${Object.entries(s.counts).map(([k, v]) => `${k}=${v}`).join(' ')}` +
+      ` tiers: ${Object.entries(s.tiers).map(([k, v]) => `${k}=${v}`).join(' ')}`];
+    for (const row of s.slowestCompiles) {
+      lines.push(`  ${row.compileMs.toFixed(1)}ms ${row.tier || '?'} ${row.method}` +
+        `${row.lastReason ? ` (${row.lastReason})` : ''}`);
+    }
+    for (const row of s.mostDeopts) {
+      lines.push(`  ${row.deopts} deopt ${row.method} last@${row.lastDeoptPc}` +
+        `${row.lastReason ? `: ${row.lastReason}` : ''}`);
+    }
+    for (const entry of s.imports || []) lines.push(`  ${entry.calls} calls ${entry.name}`);
+    return lines.join('\n');
+  }
+}
+
+module.exports = { JitTelemetry };
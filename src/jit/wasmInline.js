@@ -228,6 +228,7 @@ function planStaticInline(ctx, ins, base, maxItems) {
   }));
   const localsSize = Number(codeAttr.code.localsSize) ||
     paramSlotsOf(params, 0).end;
+  ctx.owners.add(className);
   return { stores, body, prefix, localsSize };
 }
 
@@ -471,6 +472,7 @@ function buildCalleeBody(ctx, impl, alloc, retLabel, depth) {
       instruction: renumberInstruction(item, base, prefix, reachable.has(idx), retLabel),
     });
   }
+  ctx.owners.add(className);
   return { items: out, hasHeapWrite: heapWrite };
 }
 
@@ -493,6 +495,8 @@ function inlineCalls(jvm, codeAttr, options = {}) {
     specSites: [],
     guardSites: [],
     elidedThisGuards: 0,
+    // Classes whose bytecode was spliced in, for the debugger gate.
+    owners: new Set(),
   };
   // Slot 0 holds `this` for the whole method only when nothing ever stores
   // over it (javac never does; obfuscated code may).
@@ -593,6 +597,7 @@ function inlineCalls(jvm, codeAttr, options = {}) {
     specSites: ctx.specSites,
     guardSites: ctx.guardSites,
     elidedThisGuards: ctx.elidedThisGuards,
+    owners: [...ctx.owners],
   };
 }
 
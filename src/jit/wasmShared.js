@@ -5,7 +5,7 @@
 // LEB/float encoders, descriptor mapping, boundary value coercion, and the
 // module assembler. Pure data/functions — no JVM state.
 
-const T = { i32: 0x7f, i64: 0x7e, f32: 0x7d, f64: 0x7c, ref: 0x6f };
+const T = { i32: 0x7f, i64: 0x7e, f32: 0x7d, f64: 0x7c, v128: 0x7b, ref: 0x6f };
 const CAT2 = new Set([T.i64, T.f64]);
 
 const OP = {
@@ -46,6 +46,16 @@ const TRUNC_SAT = {
   i32_f32: [0xfc, 0x00], i32_f64: [0xfc, 0x02],
   i64_f32: [0xfc, 0x04], i64_f64: [0xfc, 0x06],
 };
+// 128-bit SIMD (0xFD prefix); sub-opcodes are uleb-encoded after the prefix
+const SIMD = {
+  v128_load: 0x00, v128_store: 0x0b, v128_const: 0x0c,
+  i8x16_splat: 0x0f, i32x4_splat: 0x11, f32x4_splat: 0x13,
+  v128_and: 0x4e, v128_or: 0x50, v128_xor: 0x51,
+  i8x16_neg: 0x61, i8x16_add: 0x6e, i8x16_sub: 0x71,
+  i32x4_neg: 0xa1, i32x4_shl: 0xab, i32x4_shr_s: 0xac, i32x4_shr_u: 0xad,
+  i32x4_add: 0xae, i32x4_sub: 0xb1, i32x4_mul: 0xb5,
+  f32x4_neg: 0xe1, f32x4_add: 0xe4, f32x4_sub: 0xe5, f32x4_mul: 0xe6, f32x4_div: 0xe7,
+};
 
 function uleb(n) {
   n = Number(n);
@@ -92,6 +102,7 @@ function emitTryTableCatchAll(out, emitBody, emitCatch) {
 }
 
 let wasmTryTableSupport;
+let wasmSimdSupport;
 function supportsWasmTryTable() {
   if (wasmTryTableSupport !== undefined) return wasmTryTableSupport;
   if (typeof WebAssembly === 'undefined' ||
@@ -116,6 +127,31 @@ function supportsWasmTryTable() {
   return wasmTryTableSupport;
 }
 
+function simd(op) {
+  return [0xfd, ...uleb(SIMD[op])];
+}
+
+function supportsWasmSimd() {
+  if (wasmSimdSupport !== undefined) return wasmSimdSupport;
+  if (typeof WebAssembly === 'undefined' ||
+      typeof WebAssembly.validate !== 'function') {
+    wasmSimdSupport = false;
+    return wasmSimdSupport;
+  }
+  try {
+    wasmSimdSupport = WebAssembly.validate(assembleModule({
+      importDecls: [],
+      mainParams: [],
+      mainResults: [],
+      declared: [T.v128],
+      body: [OP.i32_const, 0, ...simd('i32x4_splat'), OP.local_set, 0, OP.end],
+    }));
+  } catch (error) {
+    wasmSimdSupport = false;
+  }
+  return wasmSimdSupport;
+}
+
 function sleb(value) {
   let n = BigInt(value);
   const out = [];
@@ -397,7 +433,7 @@ function specokGlobalEntry() {
 }
 
 function assembleModule({ importDecls, mainParams, mainResults, declared, body, profilerName,
-  importMemory, retvType, runvWrapper, specokGlobal }) {
+  importMemory, sharedMemory, retvType, runvWrapper, specokGlobal }) {
   const typeKey = (p, r) => `${p.join(',')}|${r.join(',')}`;
   const types = [];
   const typeIndex = new Map();
@@ -413,8 +449,10 @@ function assembleModule({ importDecls, mainParams, mainResults, declared, body,
   const importEntries = [];
   if (importMemory) {
     // (import "env" "mem" (memory 1)) — memories index separately from
-    // functions, so this does not shift any call target
-    importEntries.push([3, 0x65, 0x6e, 0x76, 3, 0x6d, 0x65, 0x6d, 0x02, 0x00, ...uleb(1)]);
+    // functions, so this does not shift any call target. A shared memory
+    // only matches a shared import, which must also declare a maximum.
+    const limits = sharedMemory ? [0x03, ...uleb(1), ...uleb(65536)] : [0x00, ...uleb(1)];
+    importEntries.push([3, 0x65, 0x6e, 0x76, 3, 0x6d, 0x65, 0x6d, 0x02, ...limits]);
   }
   for (const d of importDecls) {
     const ti = internType(d.params, d.results);
@@ -556,6 +594,7 @@ module.exports = {
   T, CAT2, OP, TRUNC_SAT,
   uleb, sleb, f32bytes, f64bytes,
   emitTryTableCatchAll, supportsWasmTryTable,
+  SIMD, simd, supportsWasmSimd,
   wasmProfilerName, wasmFunctionNameSection,
   getOp, descToWasm, toWasmValue, parseMethodDescriptor, sig,
   NPE, AIOOBE,
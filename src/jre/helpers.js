@@ -20,4 +20,27 @@ function withThrows(fn, exceptions, declaredExceptions = exceptions) {
   return fn;
 }
 
-module.exports = { withThrows };
+// Wraps the slow path of a shim that is normally synchronous. The work starts
+// only when the result is awaited: the JIT's synchronous call sites probe a
+// shim's result for a thenable, drop it, and repeat the call on the canonical
+// invoke path, so a Promise that had already started would act twice.
+function deferred(fn) {
+  let promise = null;
+  return {
+    then(resolve, reject) {
+      if (!promise) promise = Promise.resolve().then(fn);
+      return promise.then(resolve, reject);
+    },
+  };
+}
+
+// Applies fn to a result that may be deferred, staying synchronous when it is
+// not. A deferred result yields another deferred, so nothing starts early.
+function whenReady(value, fn) {
+  if (value && typeof value.then === 'function') {
+    return deferred(() => value.then(fn));
+  }
+  return fn(value);
+}
+
+module.exports = { withThrows, deferred, whenReady };
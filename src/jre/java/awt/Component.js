@@ -235,6 +235,8 @@ module.exports = {
       if (obj._canvasElement) {
         obj._canvasElement.width = obj._width;
         obj._canvasElement.height = obj._height;
+        // Resizing clears the canvas: the next software present is whole.
+        obj._presentBaseline = null;
       }
       if (obj._awtElement) {
         obj._awtElement.style.width = `${obj._width}px`;
@@ -253,6 +255,8 @@ module.exports = {
       if (obj._canvasElement) {
         obj._canvasElement.width = obj._width;
         obj._canvasElement.height = obj._height;
+        // Resizing clears the canvas: the next software present is whole.
+        obj._presentBaseline = null;
       }
       if (obj._awtElement) {
         obj._awtElement.style.position = 'absolute';
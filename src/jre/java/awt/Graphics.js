@@ -1,7 +1,9 @@
 // Requires AWT framework
 const awtFramework = require('../../../platform/awt.js');
+const { HeadlessRaster } = require('../../../platform/headlessRaster');
 
 let frameCount = 0;
+let frameSink = null;
 const COLOR_SWIZZLE_WASM = new Uint8Array([
   0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00, 0x01, 0x05, 0x01, 0x60,
   0x01, 0x7f, 0x00, 0x03, 0x02, 0x01, 0x00, 0x05, 0x03, 0x01, 0x00, 0x01,
@@ -44,19 +46,21 @@ function swizzleRgbToImageData(output, pixels, count) {
   }
 }
 
+// Frames go through io/frameSink.js, which encodes them on a worker thread
+// (JVM_FRAME_FORMAT png, apng or rgba; JVM_FRAME_OUT for the stream formats).
 function dumpFrame(pixels, width, height, jvm) {
-  if (typeof process === 'undefined' || !process.env || !process.env.JVM_FRAME_DIR) return;
+  if (typeof process === 'undefined' || !process.env ||
+      !(process.env.JVM_FRAME_DIR || process.env.JVM_FRAME_OUT)) return;
   const every = Number(process.env.JVM_FRAME_EVERY) || 1;
   const limit = Number(process.env.JVM_FRAME_LIMIT) || 50;
   const n = frameCount++;
   if (n % every !== 0 || n / every >= limit) return;
   try {
-    const fs = require('fs');
-    const path = require('path');
-    const { encodePng } = require('../../../io/pngEncoder');
-    fs.mkdirSync(process.env.JVM_FRAME_DIR, { recursive: true });
-    const file = path.join(process.env.JVM_FRAME_DIR, `frame-${String(n).padStart(5, '0')}.png`);
-    fs.writeFileSync(file, encodePng(pixels, width, height));
+    if (!frameSink) {
+      const { createFrameSink, frameSinkOptionsFromEnv } = require('../../../io/frameSink');
+      frameSink = createFrameSink(frameSinkOptionsFromEnv(process.env));
+    }
+    const file = frameSink.write(pixels, width, height, n);
     console.error(`[frame] +${(process.uptime()).toFixed(1)}s ${file} (${width}x${height})`);
     if (jvm && Number(process.env.JVM_PROFILE_SCHEDULER_RESET_FRAME) === n &&
         typeof jvm.resetSchedulerTimings === 'function') {
@@ -64,12 +68,16 @@ function dumpFrame(pixels, width, height, jvm) {
     }
     if (process.env.JVM_EXIT_AFTER_FRAME_LIMIT === '1' && n / every + 1 >= limit) {
       // Profilers and repeatable boot benchmarks need a normal process exit so
-      // V8 can flush its output. Defer until the completed frame is observable.
+      // V8 can flush its output. Defer until the completed frame is observable
+      // and the frame writer has finished with it.
+      const sink = frameSink;
       setImmediate(() => {
-        if (jvm && typeof jvm.dumpSchedulerTimings === 'function') {
-          jvm.dumpSchedulerTimings(Number(process.env.JVM_PROFILE_SCHEDULER_LIMIT) || 30);
-        }
-        process.exit(0);
+        sink.close().then(() => {
+          if (jvm && typeof jvm.dumpSchedulerTimings === 'function') {
+            jvm.dumpSchedulerTimings(Number(process.env.JVM_PROFILE_SCHEDULER_LIMIT) || 30);
+          }
+          process.exit(0);
+        });
       });
     }
   } catch (e) {
@@ -126,19 +134,33 @@ function materializeProducerImage(imageObj) {
 
 // Software raster for headless components: a Graphics with a _component but
 // no native context paints into component._pixels so frames can be dumped.
+// component._pixels is the live view of a platform/headlessRaster.js surface;
+// a framebuffer assigned by the drawImage fast path is copied in the first
+// time a primitive is drawn over it.
 function softSurface(jvm, obj) {
   const comp = obj._component;
   if (!comp) return null;
   const width = comp._width || 800;
   const height = comp._height || 600;
-  if (!comp._pixels || comp._pixelsWidth !== width || comp._pixelsHeight !== height) {
-    comp._pixels = new Array(width * height).fill(0);
+  let raster = comp._softRaster;
+  if (!raster || raster.width !== width || raster.height !== height ||
+      comp._pixels !== raster.pixels) {
+    if (!raster || raster.width !== width || raster.height !== height) {
+      raster = new HeadlessRaster(width, height);
+      comp._softRaster = raster;
+    }
+    const previous = comp._pixels;
+    if (previous && previous !== raster.pixels && previous.length === width * height &&
+        comp._pixelsWidth === width) {
+      raster.pixels.set(previous);
+    }
+    comp._pixels = raster.pixels;
     comp._pixelsWidth = width;
     comp._pixelsHeight = height;
   }
   if (jvm && !jvm._softCanvases) jvm._softCanvases = new Set();
   if (jvm) jvm._softCanvases.add(comp);
-  return { pixels: comp._pixels, width, height };
+  return { raster, pixels: comp._pixels, width, height };
 }
 
 function presentationStats(jvm) {
@@ -157,11 +179,58 @@ function presentationStats(jvm) {
       wasmSwizzles: 0,
       jsSwizzles: 0,
       presentationFallbacks: 0,
+      partialUploads: 0,
+      unchangedFrames: 0,
+      uploadedPixels: 0,
     };
   }
   return jvm._awtPresentationStats;
 }
 
+// Compare the framebuffer with the copy taken at the last upload, update that
+// copy, and return the bounding rectangle of the changed pixels as
+// [x0, y0, x1, y1] (exclusive ends), or null when nothing changed. Each row
+// is scanned from both ends, so a row that changed in a few pixels costs
+// little more than the compare.
+function diffFramebuffer(pixels, baseline, width, count) {
+  let x0 = width, y0 = -1, x1 = 0, y1 = 0;
+  for (let row = 0, start = 0; start < count; row += 1, start += width) {
+    const end = Math.min(start + width, count);
+    let first = start;
+    while (first < end && (pixels[first] | 0) === baseline[first]) first += 1;
+    if (first === end) continue;
+    let last = end - 1;
+    while ((pixels[last] | 0) === baseline[last]) last -= 1;
+    for (let index = first; index <= last; index += 1) baseline[index] = pixels[index] | 0;
+    if (y0 < 0) y0 = row;
+    y1 = row + 1;
+    if (first - start < x0) x0 = first - start;
+    if (last - start + 1 > x1) x1 = last - start + 1;
+  }
+  return y0 < 0 ? null : [x0, y0, x1, y1];
+}
+
+function swizzleRect(output, pixels, width, count, rect) {
+  const [x0, y0, x1, y1] = rect;
+  for (let row = y0; row < y1; row += 1) {
+    const rowStart = row * width;
+    const end = Math.min(rowStart + x1, count);
+    for (let index = rowStart + x0; index < end; index += 1) {
+      const rgb = Number(pixels[index]) >>> 0;
+      // ImageData is RGBA bytes. On little-endian browser platforms its
+      // Uint32 representation is AABBGGRR.
+      output[index] = (0xff000000 | (rgb & 0xff) << 16 |
+        rgb & 0xff00 | rgb >>> 16 & 0xff) >>> 0;
+    }
+  }
+}
+
+// Upload the software framebuffer to the component's canvas. Only the
+// rectangle that changed since the previous upload is swizzled and passed to
+// putImageData, so a static background costs a compare per frame instead of
+// a full conversion and texture upload. The previous frame stays valid only
+// while nothing else draws into the canvas (awt.js canvasWriteCount); a
+// resize or any CanvasGraphics draw forces the next upload to be whole.
 function presentSoftSurface(jvm, comp) {
   const canvas = comp && comp._canvasElement;
   const width = comp && comp._pixelsWidth;
@@ -181,26 +250,51 @@ function presentSoftSurface(jvm, comp) {
       comp._presentImageData.height !== height) {
     comp._presentImageData = context.createImageData(width, height);
     comp._presentPixels32 = new Uint32Array(comp._presentImageData.data.buffer);
+    comp._presentBaseline = null;
   }
+  // Buffered draw calls (awtCommandBuffer.js) issued before this frame
+  // belong underneath it.
+  awtFramework.flushDrawCommands();
   const started = typeof performance !== 'undefined' && performance.now
     ? performance.now() : Date.now();
   const output = comp._presentPixels32;
   const count = Math.min(width * height, pixels.length);
   const stats = presentationStats(jvm);
-  const usedWasmSwizzle = swizzleRgbToImageData(output, pixels, count);
-  if (usedWasmSwizzle) {
-    if (stats) stats.wasmSwizzles += 1;
+  const canvasWrites = awtFramework.canvasWriteCount();
+  let rect = [0, 0, width, Math.ceil(count / width)];
+  if (comp._presentBaseline && comp._presentBaseline.length === count &&
+      comp._presentCanvasWrites === canvasWrites) {
+    rect = diffFramebuffer(pixels, comp._presentBaseline, width, count);
   } else {
-    if (stats) stats.jsSwizzles += 1;
-    for (let index = 0; index < count; index += 1) {
-      const rgb = Number(pixels[index]) >>> 0;
-      // ImageData is RGBA bytes. On little-endian browser platforms its
-      // Uint32 representation is AABBGGRR.
-      output[index] = (0xff000000 | (rgb & 0xff) << 16 |
-        rgb & 0xff00 | rgb >>> 16 & 0xff) >>> 0;
+    if (!comp._presentBaseline || comp._presentBaseline.length !== count) {
+      comp._presentBaseline = new Int32Array(count);
+    }
+    for (let index = 0; index < count; index += 1) comp._presentBaseline[index] = pixels[index] | 0;
+  }
+  if (rect) {
+    const [x0, y0, x1, y1] = rect;
+    const fullRows = x0 === 0 && x1 === width;
+    const first = y0 * width;
+    const last = Math.min(y1 * width, count);
+    const usedWasmSwizzle = fullRows && typeof pixels.subarray === 'function' &&
+      swizzleRgbToImageData(output.subarray(first, last), pixels.subarray(first, last), last - first);
+    if (usedWasmSwizzle) {
+      if (stats) stats.wasmSwizzles += 1;
+    } else {
+      if (stats) stats.jsSwizzles += 1;
+      swizzleRect(output, pixels, width, count, rect);
     }
+    if (x0 === 0 && y0 === 0 && x1 === width && y1 === height) {
+      context.putImageData(comp._presentImageData, 0, 0);
+    } else {
+      context.putImageData(comp._presentImageData, 0, 0, x0, y0, x1 - x0, y1 - y0);
+      if (stats) stats.partialUploads += 1;
+    }
+    if (stats) stats.uploadedPixels += (x1 - x0) * (y1 - y0);
+  } else if (stats) {
+    stats.unchangedFrames += 1;
   }
-  context.putImageData(comp._presentImageData, 0, 0);
+  comp._presentCanvasWrites = awtFramework.canvasWriteCount();
   comp._presentedVersion = comp._pixelsVersion;
   if (stats) {
     const ended = typeof performance !== 'undefined' && performance.now
@@ -273,19 +367,18 @@ function colorToRgb(colorObj) {
   return 0;
 }
 
-function softFillRect(jvm, obj, x, y, w, h) {
+// Draw one primitive into the software raster, in the current colour.
+function softDraw(jvm, obj, draw) {
   const surface = softSurface(jvm, obj);
   if (!surface) return;
-  const rgb = obj._softColor || 0;
-  const x0 = Math.max(0, x | 0), y0 = Math.max(0, y | 0);
-  const x1 = Math.min(surface.width, (x + w) | 0), y1 = Math.min(surface.height, (y + h) | 0);
-  for (let yy = y0; yy < y1; yy++) {
-    const row = yy * surface.width;
-    for (let xx = x0; xx < x1; xx++) surface.pixels[row + xx] = rgb;
-  }
+  draw(surface.raster, obj._softColor || 0);
   markSoftSurfaceDirty(jvm, obj._component);
 }
 
+function softFillRect(jvm, obj, x, y, w, h) {
+  softDraw(jvm, obj, (raster, rgb) => raster.fillRect(x, y, w, h, rgb));
+}
+
 module.exports = {
   super: 'java/lang/Object',
   isAbstract: true,
@@ -326,39 +419,43 @@ module.exports = {
         graphicsContext.drawRect(args[0], args[1], args[2], args[3]);
         return;
       }
-      const [x, y, w, h] = args;
-      softFillRect(jvm, obj, x, y, w, 1);
-      softFillRect(jvm, obj, x, y + h, w + 1, 1);
-      softFillRect(jvm, obj, x, y, 1, h);
-      softFillRect(jvm, obj, x + w, y, 1, h);
+      softDraw(jvm, obj, (raster, rgb) => raster.drawRect(args[0], args[1], args[2], args[3], rgb));
     },
 
     'drawLine(IIII)V': (jvm, obj, args) => {
       const graphicsContext = obj._awtGraphics;
       if (graphicsContext && graphicsContext.drawLine) {
         graphicsContext.drawLine(args[0], args[1], args[2], args[3]);
+        return;
       }
+      softDraw(jvm, obj, (raster, rgb) => raster.drawLine(args[0], args[1], args[2], args[3], rgb));
     },
 
     'fillOval(IIII)V': (jvm, obj, args) => {
       const graphicsContext = obj._awtGraphics;
       if (graphicsContext && graphicsContext.fillOval) {
         graphicsContext.fillOval(args[0], args[1], args[2], args[3]);
+        return;
       }
+      softDraw(jvm, obj, (raster, rgb) => raster.fillOval(args[0], args[1], args[2], args[3], rgb));
     },
 
     'fillArc(IIIIII)V': (jvm, obj, args) => {
       const graphicsContext = obj._awtGraphics;
       if (graphicsContext && graphicsContext.fillArc) {
         graphicsContext.fillArc(args[0], args[1], args[2], args[3], args[4], args[5]);
+        return;
       }
+      softDraw(jvm, obj, (raster, rgb) => raster.fillArc(args[0], args[1], args[2], args[3], args[4], args[5], rgb));
     },
 
     'drawOval(IIII)V': (jvm, obj, args) => {
       const graphicsContext = obj._awtGraphics;
       if (graphicsContext && graphicsContext.drawOval) {
         graphicsContext.drawOval(args[0], args[1], args[2], args[3]);
+        return;
       }
+      softDraw(jvm, obj, (raster, rgb) => raster.drawOval(args[0], args[1], args[2], args[3], rgb));
     },
     
     'setFont(Ljava/awt/Font;)V': (jvm, obj, args) => {
@@ -379,6 +476,10 @@ module.exports = {
       const yVals = ys && ys.array ? Array.from(ys.array) : ys;
       if (graphicsContext && graphicsContext.fillPolygon && xVals && yVals) {
         graphicsContext.fillPolygon(xVals, yVals);
+        return;
+      }
+      if (xVals && yVals) {
+        softDraw(jvm, obj, (raster, rgb) => raster.fillPolygon(xVals, yVals, args[2], rgb));
       }
     },
 
@@ -390,6 +491,10 @@ module.exports = {
       const yVals = ys && ys.array ? Array.from(ys.array) : ys;
       if (graphicsContext && graphicsContext.drawPolygon && xVals && yVals) {
         graphicsContext.drawPolygon(xVals, yVals);
+        return;
+      }
+      if (xVals && yVals) {
+        softDraw(jvm, obj, (raster, rgb) => raster.drawPolygon(xVals, yVals, args[2], rgb));
       }
     },
 
@@ -412,7 +517,7 @@ module.exports = {
 
       // Headless raster path: a BufferedImage over a DataBufferInt is the
       // game's framebuffer — record it on the target component and optionally
-      // dump PNG frames (JVM_FRAME_DIR, JVM_FRAME_EVERY, JVM_FRAME_LIMIT).
+      // dump frames (JVM_FRAME_DIR, JVM_FRAME_EVERY, JVM_FRAME_LIMIT).
       const raster = imageObj._raster;
       const pixels = raster && raster._dataBuffer && raster._dataBuffer._data;
       if (pixels && imageObj._width && imageObj._height) {
@@ -6,6 +6,8 @@ module.exports = {
       obj.writer = args[0];
     },
     'write(I)V': (jvm, obj, args) => {
+      // A debugger rewind replays steps the user already saw print.
+      if (jvm.replayingHistory) return;
       const byte = args[0];
       const char = String.fromCharCode(byte);
       if (obj.writer) {
@@ -1,24 +1,58 @@
-const { withThrows } = require('../../helpers');
+const { withThrows, deferred, whenReady } = require('../../helpers');
 
 function readOne(jvm, obj) {
   const readMethod = jvm._jreFindMethod(obj.type, 'read', '()I');
   return readMethod ? readMethod(jvm, obj, []) : -1;
 }
 
+function bufferedBytes(jvm, obj) {
+  if (!obj.in) return Infinity; // read() reports end of stream at once
+  const availableMethod = jvm._jreFindMethod(obj.in.type, 'available', '()I');
+  if (!availableMethod) return 0;
+  try {
+    const available = availableMethod(jvm, obj.in, []);
+    return typeof available === 'number' ? available : 0;
+  } catch (_) {
+    return 0; // the deferred read reports it
+  }
+}
+
+// Synchronous only when all `count` bytes are already buffered. Otherwise
+// the whole read is a deferred that takes nothing until it is awaited: the
+// JIT's synchronous JRE call sites drop a thenable result and repeat the
+// call on the canonical invoke path, so bytes taken before returning one
+// would be lost.
 function readBytes(jvm, obj, count) {
-  const bytes = [];
-  for (let index = 0; index < count; index += 1) {
-    const value = readOne(jvm, obj);
-    if (value < 0) throw { type: 'java/io/EOFException' };
-    bytes.push(value & 0xff);
+  if (bufferedBytes(jvm, obj) >= count) {
+    const bytes = [];
+    while (bytes.length < count) pushByte(bytes, readOne(jvm, obj));
+    return bytes;
   }
-  return bytes;
+  return deferred(async () => {
+    const bytes = [];
+    while (bytes.length < count) {
+      let value = readOne(jvm, obj);
+      if (value && typeof value.then === 'function') value = await value;
+      pushByte(bytes, value);
+    }
+    return bytes;
+  });
+}
+
+function pushByte(bytes, value) {
+  if (value < 0) throw { type: 'java/io/EOFException' };
+  bytes.push(value & 0xff);
 }
 
 function readModifiedUtf(jvm, obj) {
-  const lengthBytes = readBytes(jvm, obj, 2);
-  const byteLength = (lengthBytes[0] << 8) | lengthBytes[1];
-  const bytes = readBytes(jvm, obj, byteLength);
+  return whenReady(readBytes(jvm, obj, 2), (lengthBytes) => {
+    const byteLength = (lengthBytes[0] << 8) | lengthBytes[1];
+    return whenReady(readBytes(jvm, obj, byteLength),
+      (bytes) => decodeModifiedUtf(jvm, bytes));
+  });
+}
+
+function decodeModifiedUtf(jvm, bytes) {
   const chars = [];
   for (let index = 0; index < bytes.length;) {
     const first = bytes[index++];
@@ -87,94 +121,51 @@ module.exports = {
       return -1;
     },
     
-    'readBoolean()Z': withThrows((jvm, obj, args) => {
-      const readMethod = jvm._jreFindMethod(obj.type, 'read', '()I');
-      if (readMethod) {
-        const ch = readMethod(jvm, obj, []);
-        if (ch < 0) {
-          jvm.throwException('java/io/EOFException');
-          return;
-        }
-        return ch !== 0;
-      }
-      return false;
-    }, ['java/io/EOFException']),
-    
-    'readByte()B': withThrows((jvm, obj, args) => {
-      const readMethod = jvm._jreFindMethod(obj.type, 'read', '()I');
-      if (readMethod) {
-        const ch = readMethod(jvm, obj, []);
-        if (ch < 0) {
-          jvm.throwException('java/io/EOFException');
-          return;
-        }
-        return (ch << 24) >> 24; // Convert to signed byte
-      }
-      return 0;
-    }, ['java/io/EOFException']),
+    'readBoolean()Z': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 1),
+      (bytes) => bytes[0] !== 0), ['java/io/EOFException']),
+
+    'readByte()B': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 1),
+      (bytes) => (bytes[0] << 24) >> 24), ['java/io/EOFException']),
 
-    'readUnsignedByte()I': withThrows((jvm, obj) => readBytes(jvm, obj, 1)[0], ['java/io/EOFException']),
-    'readShort()S': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 2);
+    'readUnsignedByte()I': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 1),
+      (bytes) => bytes[0]), ['java/io/EOFException']),
+    'readShort()S': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 2), (bytes) => {
       const value = (bytes[0] << 8) | bytes[1];
       return (value << 16) >> 16;
-    }, ['java/io/EOFException']),
-    'readUnsignedShort()I': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 2);
-      return (bytes[0] << 8) | bytes[1];
-    }, ['java/io/EOFException']),
-    'readChar()C': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 2);
-      return (bytes[0] << 8) | bytes[1];
-    }, ['java/io/EOFException']),
-    'readLong()J': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 8);
+    }), ['java/io/EOFException']),
+    'readUnsignedShort()I': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 2),
+      (bytes) => (bytes[0] << 8) | bytes[1]), ['java/io/EOFException']),
+    'readChar()C': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 2),
+      (bytes) => (bytes[0] << 8) | bytes[1]), ['java/io/EOFException']),
+    'readLong()J': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 8), (bytes) => {
       let value = 0n;
       for (const byte of bytes) value = (value << 8n) | BigInt(byte);
       return BigInt.asIntN(64, value);
-    }, ['java/io/EOFException']),
-    'readFloat()F': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 4);
+    }), ['java/io/EOFException']),
+    'readFloat()F': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 4), (bytes) => {
       const buffer = new ArrayBuffer(4);
       new Uint8Array(buffer).set(bytes);
       return new DataView(buffer).getFloat32(0, false);
-    }, ['java/io/EOFException']),
-    'readDouble()D': withThrows((jvm, obj) => {
-      const bytes = readBytes(jvm, obj, 8);
+    }), ['java/io/EOFException']),
+    'readDouble()D': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 8), (bytes) => {
       const buffer = new ArrayBuffer(8);
       new Uint8Array(buffer).set(bytes);
       return new DataView(buffer).getFloat64(0, false);
-    }, ['java/io/EOFException']),
+    }), ['java/io/EOFException']),
     'readUTF()Ljava/lang/String;': withThrows(
       (jvm, obj) => readModifiedUtf(jvm, obj),
       ['java/io/EOFException', 'java/io/UTFDataFormatException'],
     ),
-    'readFully([B)V': withThrows((jvm, obj, args) => {
-      const bytes = readBytes(jvm, obj, args[0].length);
+    'readFully([B)V': withThrows((jvm, obj, args) => whenReady(readBytes(jvm, obj, args[0].length), (bytes) => {
       for (let index = 0; index < bytes.length; index += 1) args[0][index] = bytes[index];
-    }, ['java/io/EOFException']),
-    'readFully([BII)V': withThrows((jvm, obj, args) => {
-      const bytes = readBytes(jvm, obj, args[2]);
+    }), ['java/io/EOFException']),
+    'readFully([BII)V': withThrows((jvm, obj, args) => whenReady(readBytes(jvm, obj, args[2]), (bytes) => {
       for (let index = 0; index < bytes.length; index += 1) args[0][args[1] + index] = bytes[index];
-    }, ['java/io/EOFException', 'java/lang/IndexOutOfBoundsException']),
-    
-    'readInt()I': withThrows((jvm, obj, args) => {
-      const readMethod = jvm._jreFindMethod(obj.type, 'read', '()I');
-      if (readMethod) {
-        let ch1 = readMethod(jvm, obj, []);
-        let ch2 = readMethod(jvm, obj, []);
-        let ch3 = readMethod(jvm, obj, []);
-        let ch4 = readMethod(jvm, obj, []);
-        
-        if ((ch1 | ch2 | ch3 | ch4) < 0) {
-          jvm.throwException('java/io/EOFException');
-          return;
-        }
-        
-        return ((ch1 << 24) + (ch2 << 16) + (ch3 << 8) + (ch4 << 0));
-      }
-      return 0;
-    }, ['java/io/EOFException']),
+    }), ['java/io/EOFException', 'java/lang/IndexOutOfBoundsException']),
+
+    'readInt()I': withThrows((jvm, obj) => whenReady(readBytes(jvm, obj, 4),
+      (bytes) => (bytes[0] << 24) | (bytes[1] << 16) | (bytes[2] << 8) | bytes[3]),
+    ['java/io/EOFException']),
     
     'close()V': (jvm, obj, args) => {
       if (obj.in) {
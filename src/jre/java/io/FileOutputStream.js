@@ -1,4 +1,5 @@
 const fs = require('fs');
+const { fileKey, noteFileWrite } = require('./fileWriteRegistry');
 
 module.exports = {
   super: 'java/io/OutputStream',
@@ -7,12 +8,15 @@ module.exports = {
       const file = args[0];
       const path = file.path;
       obj.fd = fs.openSync(path, 'w');
+      obj.fileKey = fileKey(path);
+      noteFileWrite(obj.fileKey);
       return obj;
     },
     'write([B)V': function(jvm, obj, args) {
       const buffer = args[0];
       const data = Buffer.from(buffer.array);
       fs.writeSync(obj.fd, data);
+      noteFileWrite(obj.fileKey);
     },
     'close()V': function(jvm, obj, args) {
       fs.closeSync(obj.fd);
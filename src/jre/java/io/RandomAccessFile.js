@@ -1,17 +1,59 @@
 const fs = require('fs');
-const { withThrows } = require('../../helpers');
+const { withThrows, deferred } = require('../../helpers');
+const { fileKey, noteFileWrite, fileWriteGeneration } = require('./fileWriteRegistry');
 
 const DEBUG = typeof process !== 'undefined' && process.env && process.env.JVM_DEBUG_RAF;
 
+// Reads are served from a read-ahead window so they return synchronously;
+// only a read outside it waits on the file handle. Close drops the window,
+// and a write through any RandomAccessFile or FileOutputStream on the same
+// path makes it stale (fileWriteRegistry.js).
+const READ_AHEAD_BYTES = 8192;
+
+// Copies up to len bytes at obj.position out of the window. Returns the count,
+// or null when the window does not cover the read (short only at end of file).
+function readBuffered(obj, b, off, len) {
+  const window = obj.readAhead;
+  if (!window) return null;
+  if (window.generation !== fileWriteGeneration(obj.fileKey)) {
+    obj.readAhead = null;
+    return null;
+  }
+  const offset = obj.position - window.start;
+  if (offset < 0 || offset > window.length) return null;
+  const count = Math.min(len, window.length - offset);
+  if (count < len && !window.eof) return null;
+  for (let i = 0; i < count; i++) {
+    // Java byte arrays hold signed bytes.
+    b[off + i] = (window.bytes[offset + i] << 24) >> 24;
+  }
+  obj.position += count;
+  return count;
+}
+
+async function fillReadAhead(obj, minimum) {
+  const size = Math.max(READ_AHEAD_BYTES, minimum);
+  const previous = obj.readAhead;
+  const bytes = previous && previous.bytes.length >= size ? previous.bytes : Buffer.alloc(size);
+  obj.readAhead = null;
+  const start = obj.position;
+  // Taken before the read, so a write that lands during it makes it stale.
+  const generation = fileWriteGeneration(obj.fileKey);
+  const { bytesRead } = await obj.fileHandle.read(bytes, 0, size, start);
+  obj.readAhead = { start, bytes, length: bytesRead, eof: bytesRead < size, generation };
+}
+
 // Java RandomAccessFile modes never truncate: "r" is read-only, "rw"/"rws"/"rwd"
 // read+write and CREATE the file if missing. Node's 'w+' truncates, so open
 // existing files with 'r+' and fall back to 'w+' only when the file does not
 // exist yet (where truncation is a no-op).
 async function openJavaMode(jvm, obj, filePath, modeStr) {
   obj.path = filePath;
+  obj.fileKey = fileKey(filePath);
   obj.mode = modeStr;
   obj.position = 0;
   obj.fileHandle = null;
+  obj.readAhead = null;
   const writable = modeStr.includes('w');
   try {
     obj.fileHandle = await jvm.fs.promises.open(filePath, writable ? 'r+' : 'r');
@@ -54,26 +96,27 @@ module.exports = {
       await openJavaMode(jvm, obj, filePath, modeStr);
     }, ['java/io/IOException']),
     
-    'read()I': withThrows(async (jvm, obj, args) => {
+    'read()I': withThrows((jvm, obj, args) => {
       if (!obj.fileHandle) {
         jvm.throwException('java/io/IOException', 'File not open');
         return -1;
       }
-      
-      try {
-        const buffer = Buffer.alloc(1);
-        const { bytesRead } = await obj.fileHandle.read(buffer, 0, 1, obj.position);
-        if (bytesRead === 0) {
+
+      const one = [0];
+      const finish = (count) => (count === 1 ? one[0] & 0xFF : -1);
+      const count = readBuffered(obj, one, 0, 1);
+      if (count !== null) return finish(count);
+      return deferred(async () => {
+        try {
+          await fillReadAhead(obj, 1);
+          return finish(readBuffered(obj, one, 0, 1));
+        } catch (e) {
           return -1;
         }
-        obj.position += bytesRead;
-        return buffer[0] & 0xFF;
-      } catch (e) {
-        return -1;
-      }
+      });
     }, ['java/io/IOException']),
     
-    'read([BII)I': withThrows(async (jvm, obj, args) => {
+    'read([BII)I': withThrows((jvm, obj, args) => {
       const b = args[0];
       const off = args[1];
       const len = args[2];
@@ -97,22 +140,22 @@ module.exports = {
         return 0;
       }
       
-      try {
-        const buffer = Buffer.alloc(len);
-        const { bytesRead } = await obj.fileHandle.read(buffer, 0, len, obj.position);
-
-        for (let i = 0; i < bytesRead; i++) {
-          // Java byte arrays hold signed bytes.
-          b[off + i] = (buffer[i] << 24) >> 24;
-        }
-
-        if (DEBUG) console.error(`[raf] read ${obj.path} pos=${obj.position} len=${len} got=${bytesRead}`);
-        obj.position += bytesRead;
+      const start = obj.position;
+      const finish = (bytesRead) => {
+        if (DEBUG) console.error(`[raf] read ${obj.path} pos=${start} len=${len} got=${bytesRead}`);
         return bytesRead === 0 ? -1 : bytesRead;
-      } catch (e) {
-        if (DEBUG) console.error(`[raf] read FAIL ${obj.path} pos=${obj.position} len=${len}: ${e.message}`);
-        return -1;
-      }
+      };
+      const bytesRead = readBuffered(obj, b, off, len);
+      if (bytesRead !== null) return finish(bytesRead);
+      return deferred(async () => {
+        try {
+          await fillReadAhead(obj, len);
+          return finish(readBuffered(obj, b, off, len));
+        } catch (e) {
+          if (DEBUG) console.error(`[raf] read FAIL ${obj.path} pos=${obj.position} len=${len}: ${e.message}`);
+          return -1;
+        }
+      });
     }, ['java/io/IOException', 'java/lang/NullPointerException', 'java/lang/IndexOutOfBoundsException']),
     
     'write(I)V': withThrows(async (jvm, obj, args) => {
@@ -122,6 +165,8 @@ module.exports = {
         return;
       }
       
+      obj.readAhead = null;
+      noteFileWrite(obj.fileKey);
       try {
         const buffer = Buffer.from([b & 0xFF]);
         await obj.fileHandle.write(buffer, 0, 1, obj.position);
@@ -144,6 +189,8 @@ module.exports = {
         jvm.throwException('java/io/IOException', 'File not open');
         return;
       }
+      obj.readAhead = null;
+      noteFileWrite(obj.fileKey);
       try {
         const buffer = Buffer.alloc(len);
         for (let i = 0; i < len; i++) buffer[i] = arr[off + i] & 0xff;
@@ -188,6 +235,7 @@ module.exports = {
         }
         obj.fileHandle = null;
       }
+      obj.readAhead = null;
     }
   }
 };
@@ -0,0 +1,24 @@
+'use strict';
+
+// Write generations per file, shared by RandomAccessFile.js and
+// FileOutputStream.js. A read cache (the RandomAccessFile read-ahead window)
+// remembers the generation it was filled at and is stale once another handle
+// on the same path has written. Writes from outside this JVM are not seen.
+
+const path = require('path');
+
+const Generations = new Map(); // resolved path -> write count
+
+function fileKey(filePath) {
+  return path.resolve(String(filePath));
+}
+
+function noteFileWrite(key) {
+  Generations.set(key, (Generations.get(key) || 0) + 1);
+}
+
+function fileWriteGeneration(key) {
+  return Generations.get(key) || 0;
+}
+
+module.exports = { fileKey, noteFileWrite, fileWriteGeneration };
@@ -108,7 +108,11 @@ module.exports = {
     },
     'exit(I)V': (jvm, obj, args) => {
       const status = args[0];
-      console.log(`System.exit(${status}) called.`);
+      if (jvm.stdout) {
+        jvm.stdout(`System.exit(${status}) called.\n`);
+      } else {
+        console.log(`System.exit(${status}) called.`);
+      }
       // In a real JVM, this would terminate the process.
       // Here we can just stop the JVM loop.
       jvm.exit(status);
@@ -129,8 +133,7 @@ module.exports = {
       };
       const cosInit = jvm._jreFindMethod('java/io/ConsoleOutputStream', '<init>', '(Ljava/lang/Object;)V');
       if (cosInit) {
-        const writer = typeof process !== 'undefined' && process.stdout ? process.stdout.write.bind(process.stdout) : () => {};
-        cosInit(jvm, cosOut, [writer]);
+        cosInit(jvm, cosOut, [jvm.consoleWriter('stdout')]);
       }
       const out = {
         type: 'java/io/PrintStream',
@@ -146,8 +149,7 @@ module.exports = {
         fields: {}
       };
       if (cosInit) {
-        const writer = typeof process !== 'undefined' && process.stderr ? process.stderr.write.bind(process.stderr) : () => {};
-        cosInit(jvm, cosErr, [writer]);
+        cosInit(jvm, cosErr, [jvm.consoleWriter('stderr')]);
       }
       const err = {
         type: 'java/io/PrintStream',
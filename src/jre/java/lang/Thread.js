@@ -121,6 +121,7 @@ module.exports = {
       const Stack = require('../../../core/stack');
       const CallStack = require('../../../core/callStack');
       const Frame = require('../../../core/frame');
+      const { planParallelThread, startParallelThread } = require('../../../core/parallelThreads');
       const target = threadObject.runnable || threadObject;
 
       const newThread = {
@@ -170,7 +171,13 @@ module.exports = {
         // Handle regular Runnable implementations or Thread subclasses
         const targetClassName = target.type;
         const runMethod = await jvm.findMethodInHierarchy(targetClassName, 'run', '()V');
-        if (runMethod) {
+        const parallelPlan = runMethod && jvm.parallelThreads
+          ? await planParallelThread(jvm, threadObject, target)
+          : null;
+        if (parallelPlan) {
+          jvm.threads.push(newThread);
+          startParallelThread(jvm, newThread, parallelPlan);
+        } else if (runMethod) {
           const newFrame = new Frame(runMethod);
           newFrame.className = targetClassName; // Add className to the frame
           newFrame.locals[0] = target; // 'this'
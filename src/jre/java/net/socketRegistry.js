@@ -4,7 +4,7 @@
 // Socket.js, SocketInputStream.js, and SocketOutputStream.js.
 
 const Sockets = new Map(); // socketId -> net.Socket
-const Buffers = new Map(); // socketId -> { chunks: Buffer[], size, closed, waiters: fn[] }
+const Buffers = new Map(); // socketId -> { chunks: Buffer[], head, size, closed, waiters: fn[] }
 let nextSocketId = 0;
 
 // JVM_DEBUG_SOCKET=1 logs per-socket traffic (first bytes hex) to stderr.
@@ -21,7 +21,9 @@ function allocId() {
 
 function register(socketId, nativeSocket) {
   Sockets.set(socketId, nativeSocket);
-  const state = { chunks: [], size: 0, closed: false, waiters: [] };
+  // head indexes the first unread byte of chunks[0], so byte-at-a-time reads
+  // do not slice a new view per byte.
+  const state = { chunks: [], head: 0, size: 0, closed: false, waiters: [] };
   Buffers.set(socketId, state);
   nativeSocket.on('data', (chunk) => {
     debugLog(socketId, 'recv', chunk);
@@ -44,11 +46,10 @@ function register(socketId, nativeSocket) {
 function readByte(state) {
   if (!state || state.size === 0) return -1;
   const chunk = state.chunks[0];
-  const b = chunk[0];
-  if (chunk.length === 1) {
+  const b = chunk[state.head++];
+  if (state.head === chunk.length) {
     state.chunks.shift();
-  } else {
-    state.chunks[0] = chunk.subarray(1);
+    state.head = 0;
   }
   state.size -= 1;
   return b;
@@ -59,15 +60,17 @@ function readInto(state, target, off, len) {
   let copied = 0;
   while (copied < len && state.size > 0) {
     const chunk = state.chunks[0];
-    const take = Math.min(chunk.length, len - copied);
+    const head = state.head;
+    const take = Math.min(chunk.length - head, len - copied);
     for (let i = 0; i < take; i++) {
       // Java byte arrays hold signed bytes.
-      target[off + copied + i] = (chunk[i] << 24) >> 24;
+      target[off + copied + i] = (chunk[head + i] << 24) >> 24;
     }
-    if (take === chunk.length) {
+    if (head + take === chunk.length) {
       state.chunks.shift();
+      state.head = 0;
     } else {
-      state.chunks[0] = chunk.subarray(take);
+      state.head = head + take;
     }
     state.size -= take;
     copied += take;
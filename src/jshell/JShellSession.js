@@ -5,6 +5,7 @@ const os = require('os');
 const path = require('path');
 const { JVM } = require('../core/jvm');
 const {
+  assembleClassModel,
   compileJavaSource,
   hasStatementTerminator,
   isStatementSnippet,
@@ -182,14 +183,35 @@ function sourceForCandidate(className, previousClass, imports, candidate) {
   return `${importText}public class ${className}${extendsText} {\n${members}}\n`;
 }
 
-function removeGeneratedClasses(directory, className) {
-  if (!fs.existsSync(directory)) return;
-  for (const name of fs.readdirSync(directory)) {
-    if (name === `${className}.class` ||
-        (name.startsWith(`${className}$`) && name.endsWith('.class'))) {
-      fs.rmSync(path.join(directory, name), { force: true });
-    }
-  }
+// Snippet sources never touch the disk. The compiler only lists and reads the
+// source directory, to resolve members of earlier snippets (each snippet class
+// extends the previous one), so a Map behind those two calls is enough.
+const SNIPPET_SOURCE_ROOT = path.resolve('/jshell-snippets');
+
+function snippetSourceFileSystem(sources) {
+  const missing = (filePath) => Object.assign(
+    new Error(`ENOENT: no such file or directory, '${filePath}'`), { code: 'ENOENT' });
+  return {
+    readdirSync(directory, options = {}) {
+      if (path.resolve(directory) !== SNIPPET_SOURCE_ROOT) throw missing(directory);
+      const names = [...sources.keys()];
+      return options.withFileTypes
+        ? names.map((name) => ({ name, isFile: () => true, isDirectory: () => false }))
+        : names;
+    },
+    readFileSync(filePath) {
+      const source = path.dirname(path.resolve(filePath)) === SNIPPET_SOURCE_ROOT
+        ? sources.get(path.basename(filePath))
+        : undefined;
+      if (source === undefined) throw missing(filePath);
+      return source;
+    },
+    existsSync(filePath) {
+      return path.resolve(filePath) === SNIPPET_SOURCE_ROOT ||
+        (path.dirname(path.resolve(filePath)) === SNIPPET_SOURCE_ROOT &&
+          sources.has(path.basename(filePath)));
+    },
+  };
 }
 
 function formatGuestError(error) {
@@ -204,19 +226,21 @@ function formatGuestError(error) {
   return error.stack || String(error);
 }
 
+/**
+ * Snippets are compiled in memory and defined straight into the session JVM
+ * (JVM.defineClass). A workspace directory is only used when one is given or
+ * keepWorkspace is set; accepted snippets' sources and class files are then
+ * also written there for inspection.
+ */
 class JShellSession {
   constructor(options = {}) {
     this.options = { ...options };
     this.keepWorkspace = Boolean(options.keepWorkspace);
     this.externalClasspath = normalizeClasspath(options.classpath);
     this._ownsWorkspace = !options.workspace;
-    this.workspace = options.workspace
-      ? path.resolve(options.workspace)
-      : fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-jshell-'));
-    this.sourceDir = path.join(this.workspace, 'src');
-    this.outputDir = path.join(this.workspace, 'classes');
-    fs.mkdirSync(this.sourceDir, { recursive: true });
-    fs.mkdirSync(this.outputDir, { recursive: true });
+    this.sources = new Map();
+    this._sourceFileSystem = snippetSourceFileSystem(this.sources);
+    this._openWorkspace(options.workspace);
     this.imports = [];
     this.snippets = [];
     this.previousClass = null;
@@ -224,9 +248,33 @@ class JShellSession {
     this.jvm = this._createJvm();
   }
 
+  _openWorkspace(workspace) {
+    this.workspace = null;
+    this.sourceDir = null;
+    this.outputDir = null;
+    if (!workspace && !this.keepWorkspace) return;
+    this.workspace = workspace
+      ? path.resolve(workspace)
+      : fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-jshell-'));
+    this.sourceDir = path.join(this.workspace, 'src');
+    this.outputDir = path.join(this.workspace, 'classes');
+    fs.mkdirSync(this.sourceDir, { recursive: true });
+    fs.mkdirSync(this.outputDir, { recursive: true });
+  }
+
+  _exportSnippet(fileName, source, classBytes) {
+    if (!this.workspace) return [];
+    fs.writeFileSync(path.join(this.sourceDir, fileName), source);
+    return classBytes.map(({ internalName, bytes }) => {
+      const outputPath = path.join(this.outputDir, `${internalName}.class`);
+      fs.writeFileSync(outputPath, bytes);
+      return outputPath;
+    });
+  }
+
   _createJvm() {
     return new JVM({
-      classpath: [this.outputDir, ...this.externalClasspath],
+      classpath: [...this.externalClasspath],
       verbose: Boolean(this.options.verbose),
       jit: this.options.jit === false ? { enabled: false } : this.options.jit,
     });
@@ -254,7 +302,7 @@ class JShellSession {
 
     const id = this.nextId++;
     const className = `JShellSnippet${id}`;
-    const sourcePath = path.join(this.sourceDir, `${className}.java`);
+    const fileName = `${className}.java`;
     const failures = [];
     let compiled = null;
     let candidate = null;
@@ -267,14 +315,13 @@ class JShellSession {
         this.imports,
         nextCandidate,
       );
-      fs.writeFileSync(sourcePath, nextSource);
-      removeGeneratedClasses(this.outputDir, className);
+      this.sources.set(fileName, nextSource);
       try {
         compiled = compileJavaSource(nextSource, {
-          sourcePath,
-          sourceFileName: `${className}.java`,
-          sourceRoot: this.sourceDir,
-          outputDir: this.outputDir,
+          sourcePath: path.join(SNIPPET_SOURCE_ROOT, fileName),
+          sourceFileName: fileName,
+          sourceRoot: SNIPPET_SOURCE_ROOT,
+          fileSystem: this._sourceFileSystem,
           sourceLevel: this.options.sourceLevel || 8,
           cacheSourceMetadata: false,
         });
@@ -287,18 +334,21 @@ class JShellSession {
     }
 
     if (!compiled) {
-      fs.rmSync(sourcePath, { force: true });
-      removeGeneratedClasses(this.outputDir, className);
+      this.sources.delete(fileName);
       const error = failures[failures.length - 1] || new Error('Unable to compile snippet');
       error.jshellAttempts = failures;
       throw error;
     }
 
+    const classBytes = compiled.classes.map((classEntry) => ({
+      internalName: classEntry.internalName,
+      bytes: assembleClassModel(classEntry),
+    }));
     try {
+      for (const { bytes } of classBytes) this.jvm.defineClass(bytes);
       await this.jvm.run(className);
     } catch (error) {
-      fs.rmSync(sourcePath, { force: true });
-      removeGeneratedClasses(this.outputDir, className);
+      this.sources.delete(fileName);
       throw error;
     }
 
@@ -309,7 +359,8 @@ class JShellSession {
       source,
       className,
       generatedSource,
-      written: compiled.written.map((entry) => entry.outputPath),
+      classes: classBytes.map((entry) => entry.internalName),
+      written: this._exportSnippet(fileName, generatedSource, classBytes),
     };
     this.previousClass = className;
     this.snippets.push(result);
@@ -321,17 +372,16 @@ class JShellSession {
   }
 
   async reset() {
-    if (this._ownsWorkspace && fs.existsSync(this.workspace)) {
-      fs.rmSync(this.workspace, { recursive: true, force: true });
-      this.workspace = fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-jshell-'));
-      this.sourceDir = path.join(this.workspace, 'src');
-      this.outputDir = path.join(this.workspace, 'classes');
-    } else {
-      fs.rmSync(this.sourceDir, { recursive: true, force: true });
-      fs.rmSync(this.outputDir, { recursive: true, force: true });
+    if (this.workspace) {
+      if (this._ownsWorkspace) {
+        fs.rmSync(this.workspace, { recursive: true, force: true });
+      } else {
+        fs.rmSync(this.sourceDir, { recursive: true, force: true });
+        fs.rmSync(this.outputDir, { recursive: true, force: true });
+      }
+      this._openWorkspace(this._ownsWorkspace ? null : this.workspace);
     }
-    fs.mkdirSync(this.sourceDir, { recursive: true });
-    fs.mkdirSync(this.outputDir, { recursive: true });
+    this.sources.clear();
     this.imports = [];
     this.snippets = [];
     this.previousClass = null;
@@ -340,7 +390,7 @@ class JShellSession {
   }
 
   close() {
-    if (this._ownsWorkspace && !this.keepWorkspace && fs.existsSync(this.workspace)) {
+    if (this.workspace && this._ownsWorkspace && !this.keepWorkspace && fs.existsSync(this.workspace)) {
       fs.rmSync(this.workspace, { recursive: true, force: true });
     }
   }
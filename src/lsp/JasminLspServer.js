@@ -6,6 +6,10 @@ const { fileURLToPath, pathToFileURL } = require('url');
 const { formatJasminSource, normalizeNewlines } = require('../parsing/jasminFormatter');
 const { OPCODE_NAMES } = require('./opcodeList');
 const { KrakatauWorkspace } = require('../workspace/KrakatauWorkspace');
+const { LineDocument } = require('./lineDocument');
+
+// TextDocumentSyncKind.Incremental: didChange carries ranged edits.
+const TEXT_DOCUMENT_SYNC_INCREMENTAL = 2;
 
 const LABEL_CHAR_REGEX = /[A-Za-z0-9_.$]/;
 const METHOD_SIGNATURE_REGEX =
@@ -124,7 +128,7 @@ class JasminLspServer {
     }
     return {
       capabilities: {
-        textDocumentSync: 1,
+        textDocumentSync: TEXT_DOCUMENT_SYNC_INCREMENTAL,
         documentFormattingProvider: true,
         definitionProvider: true,
         completionProvider: {
@@ -147,17 +151,23 @@ class JasminLspServer {
         const uri = params?.textDocument?.uri;
         if (!uri) break;
         const text = params.textDocument.text || '';
-        this.documents.set(uri, text);
+        this.documents.set(uri, new LineDocument(text));
         this._updateSymbolIndex(uri, text);
         break;
       }
       case 'textDocument/didChange': {
         const uri = params?.textDocument?.uri;
         if (!uri) break;
-        const change = params.contentChanges?.[0];
-        const text = typeof change?.text === 'string' ? change.text : '';
-        this.documents.set(uri, text);
-        this._updateSymbolIndex(uri, text);
+        let document = this.documents.get(uri);
+        if (!document) {
+          document = new LineDocument('');
+          this.documents.set(uri, document);
+        }
+        // Changes apply in order, each against the result of the previous one.
+        for (const change of params.contentChanges || []) {
+          const edit = document.applyChange(change);
+          this._updateSymbolIndexForChange(uri, document, edit);
+        }
         break;
       }
       case 'textDocument/didClose':
@@ -225,8 +235,7 @@ class JasminLspServer {
     if (typeof text !== 'string') {
       throw new Error(`Document not open or unreadable: ${uri}`);
     }
-    const lines = normalizeNewlines(text).split('\n');
-    const lineText = lines[position.line] || '';
+    const lineText = this._getDocumentLine(uri, text, position.line);
     const docInfo = this.symbolIndex.get(uri);
     const enclosingMethod = this._findEnclosingMethod(docInfo, position.line);
     const reference = this._extractReference(lineText, position.character, enclosingMethod);
@@ -278,8 +287,7 @@ class JasminLspServer {
     if (typeof text !== 'string') {
       return [];
     }
-    const lines = normalizeNewlines(text).split('\n');
-    const lineText = lines[position.line] || '';
+    const lineText = this._getDocumentLine(uri, text, position.line);
     const beforeCursor = lineText.slice(0, position.character);
     const commentIndex = beforeCursor.indexOf(';');
     const inComment = commentIndex !== -1;
@@ -314,7 +322,7 @@ class JasminLspServer {
 
   _getDocumentText(uri) {
     if (this.documents.has(uri)) {
-      return this.documents.get(uri);
+      return this.documents.get(uri).getText();
     }
     if (uri.startsWith('file://')) {
       try {
@@ -326,25 +334,51 @@ class JasminLspServer {
     return null;
   }
 
+  _getDocumentLine(uri, text, line) {
+    if (this.documents.has(uri)) {
+      return this.documents.get(uri).getLine(line);
+    }
+    return normalizeNewlines(text).split('\n')[line] || '';
+  }
+
   _updateSymbolIndex(uri, text) {
     if (typeof text !== 'string') {
       this.symbolIndex.delete(uri);
       return;
     }
+    const lines = this.documents.has(uri) && this.documents.get(uri).getText() === text
+      ? this.documents.get(uri).lines
+      : normalizeNewlines(text).split('\n');
+    const scan = this._scanSymbols(uri, lines, 0, Infinity, null);
     const info = {
-      className: null,
+      className: scan.className,
+      classLines: scan.classLines,
       methods: new Map(),
-      methodList: [],
+      methodList: scan.methods,
       fields: new Map(),
-      fieldList: [],
+      fieldList: scan.fields,
     };
-    const lines = normalizeNewlines(text).split('\n');
+    this._rebuildSymbolMaps(info);
+    this.symbolIndex.set(uri, info);
+  }
+
+  // Scans lines from `from` into method and field entries. A partial rescan
+  // passes `until`: scanning stops at the first line past it that is outside a
+  // method, so it always ends on a block boundary (an edit that drops an
+  // `.end method` keeps scanning until the block closes again).
+  _scanSymbols(uri, lines, from, until, className) {
+    const scan = { className, classLines: [], methods: [], fields: [], end: lines.length - 1 };
     let currentMethod = null;
-    for (let lineNumber = 0; lineNumber < lines.length; lineNumber += 1) {
+    for (let lineNumber = from; lineNumber < lines.length; lineNumber += 1) {
+      if (lineNumber > until && !currentMethod) {
+        scan.end = lineNumber - 1;
+        break;
+      }
       const line = lines[lineNumber];
-      const className = parseClassDirective(line);
-      if (className) {
-        info.className = className;
+      const classDirective = parseClassDirective(line);
+      if (classDirective) {
+        scan.className = classDirective;
+        scan.classLines.push(lineNumber);
       }
       const methodDecl = parseMethodDeclaration(line);
       if (methodDecl) {
@@ -363,16 +397,15 @@ class JasminLspServer {
           bodyRange: { startLine: lineNumber, endLine: lineNumber },
           labels: new Map(),
         };
-        info.methods.set(key, entry);
-        info.methodList.push(entry);
+        scan.methods.push(entry);
         currentMethod = entry;
         continue;
       }
       const fieldDecl = parseFieldDeclaration(line);
-      if (fieldDecl && info.className) {
+      if (fieldDecl && scan.className) {
         const key = `${fieldDecl.name}${fieldDecl.descriptor}`;
         const nameIndex = line.indexOf(fieldDecl.name);
-        const entry = {
+        scan.fields.push({
           name: fieldDecl.name,
           descriptor: fieldDecl.descriptor,
           key,
@@ -381,9 +414,7 @@ class JasminLspServer {
             start: { line: lineNumber, character: Math.max(0, nameIndex) },
             end: { line: lineNumber, character: Math.max(0, nameIndex) + fieldDecl.name.length },
           },
-        };
-        info.fields.set(key, entry);
-        info.fieldList.push(entry);
+        });
       }
       if (/^\s*\.end\s+method\b/.test(line)) {
         if (currentMethod) {
@@ -407,7 +438,82 @@ class JasminLspServer {
         }
       }
     }
-    this.symbolIndex.set(uri, info);
+    return scan;
+  }
+
+  // Later declarations win on a duplicate key, as in a top-to-bottom scan.
+  _rebuildSymbolMaps(info) {
+    info.methods = new Map(info.methodList.map((entry) => [entry.key, entry]));
+    info.fields = new Map(info.fieldList.map((entry) => [entry.key, entry]));
+  }
+
+  // Re-index after one ranged edit: rescan only the `.method` blocks the edit
+  // touched (old lines startLine..oldEndLine, now ending at newEndLine) and
+  // shift everything below. An edit near a `.class` directive re-indexes the
+  // whole document, since the class name scopes every field after it.
+  _updateSymbolIndexForChange(uri, document, edit) {
+    const info = this.symbolIndex.get(uri);
+    if (!info || !edit) {
+      this._updateSymbolIndex(uri, document.getText());
+      return;
+    }
+    const delta = edit.newEndLine - edit.oldEndLine;
+    let regionStart = edit.startLine;
+    let regionEnd = edit.oldEndLine;
+    // A method without `.end method` runs until the next `.method`, so the
+    // block just above the edit is rescanned too: the edit may have removed
+    // the header that ended it.
+    for (let grown = true; grown;) {
+      grown = false;
+      for (const method of info.methodList) {
+        const { startLine, endLine } = method.bodyRange;
+        if (startLine <= regionEnd && endLine >= regionStart - 1 &&
+            (startLine < regionStart || endLine > regionEnd)) {
+          regionStart = Math.min(regionStart, startLine);
+          regionEnd = Math.max(regionEnd, endLine);
+          grown = true;
+        }
+      }
+    }
+    if (info.classLines.some((line) => line >= regionStart && line <= regionEnd)) {
+      this._updateSymbolIndex(uri, document.getText());
+      return;
+    }
+    const classBefore = info.classLines.filter((line) => line < regionStart);
+    const scan = this._scanSymbols(
+      uri,
+      document.lines,
+      regionStart,
+      regionEnd + delta,
+      classBefore.length ? info.className : null,
+    );
+    if (scan.classLines.length) {
+      this._updateSymbolIndex(uri, document.getText());
+      return;
+    }
+    // Old lines regionStart..oldScanEnd are what the rescan replaced.
+    const oldScanEnd = scan.end - delta;
+    const shiftRange = (range) => {
+      range.start.line += delta;
+      range.end.line += delta;
+    };
+    const methodsBefore = info.methodList.filter((method) => method.bodyRange.startLine < regionStart);
+    const fieldsBefore = info.fieldList.filter((field) => field.range.start.line < regionStart);
+    const methodsAfter = info.methodList.filter((method) => method.bodyRange.startLine > oldScanEnd);
+    const fieldsAfter = info.fieldList.filter((field) => field.range.start.line > oldScanEnd);
+    if (delta !== 0) {
+      for (const method of methodsAfter) {
+        shiftRange(method.range);
+        method.bodyRange.startLine += delta;
+        method.bodyRange.endLine += delta;
+        for (const label of method.labels.values()) shiftRange(label.range);
+      }
+      for (const field of fieldsAfter) shiftRange(field.range);
+      info.classLines = info.classLines.map((line) => (line > oldScanEnd ? line + delta : line));
+    }
+    info.methodList = [...methodsBefore, ...scan.methods, ...methodsAfter];
+    info.fieldList = [...fieldsBefore, ...scan.fields, ...fieldsAfter];
+    this._rebuildSymbolMaps(info);
   }
 
   _extractReference(line, character, methodEntry) {
@@ -496,7 +602,7 @@ class JasminLspServer {
     if (resolvedUri && !this.symbolIndex.has(resolvedUri)) {
       const text = this._getDocumentText(resolvedUri);
       if (typeof text === 'string') {
-        this.documents.set(resolvedUri, text);
+        this.documents.set(resolvedUri, new LineDocument(text));
         this._updateSymbolIndex(resolvedUri, text);
         return this._findMethodDefinitions(className, methodName, descriptor, currentUri);
       }
@@ -523,7 +629,7 @@ class JasminLspServer {
     if (targetUri && !this.symbolIndex.has(targetUri)) {
       const text = this._getDocumentText(targetUri);
       if (typeof text === 'string') {
-        this.documents.set(targetUri, text);
+        this.documents.set(targetUri, new LineDocument(text));
         this._updateSymbolIndex(targetUri, text);
         return this._findClassDefinition(className, currentUri);
       }
@@ -745,7 +851,7 @@ class JasminLspServer {
       if (resolvedUri && !this.symbolIndex.has(resolvedUri)) {
         const text = this._getDocumentText(resolvedUri);
         if (typeof text === 'string') {
-          this.documents.set(resolvedUri, text);
+          this.documents.set(resolvedUri, new LineDocument(text));
           this._updateSymbolIndex(resolvedUri, text);
           return this._collectMethodsForClass(className, currentUri);
         }
@@ -756,8 +862,8 @@ class JasminLspServer {
 
   _collectConstantCandidates() {
     const set = new Set(this.workspaceConstants || []);
-    for (const text of this.documents.values()) {
-      if (typeof text !== 'string') continue;
+    for (const document of this.documents.values()) {
+      const text = document.getText();
       const normalized = normalizeNewlines(text);
       const regex = /ldc(?:2_w|_w)?\s+"([^"\r\n]+)"/g;
       let match;
@@ -794,7 +900,7 @@ class JasminLspServer {
       if (resolvedUri && !this.symbolIndex.has(resolvedUri)) {
         const text = this._getDocumentText(resolvedUri);
         if (typeof text === 'string') {
-          this.documents.set(resolvedUri, text);
+          this.documents.set(resolvedUri, new LineDocument(text));
           this._updateSymbolIndex(resolvedUri, text);
           return this._collectFieldsForClass(className, currentUri);
         }
@@ -821,32 +927,23 @@ class JasminLspServer {
 
   async _loadWorkspaceSymbols(classpaths) {
     try {
-      const workspace = await KrakatauWorkspace.create(classpaths);
+      // Only names, descriptors and constants are read, one class at a time,
+      // so a small AST cache is enough (KRAKATAU_AST_CACHE overrides).
+      const workspace = await KrakatauWorkspace.create(classpaths, {
+        maxResidentASTs: Number(process.env.KRAKATAU_AST_CACHE) || 64,
+      });
       const methodMap = new Map();
       const fieldMap = new Map();
-      Object.entries(workspace.workspaceASTs || {}).forEach(([className, entry]) => {
-        const cls = entry?.ast?.classes?.[0];
-        if (!cls || !Array.isArray(cls.items)) {
-          return;
-        }
-        const methods = [];
-        const fields = [];
-        cls.items.forEach((item) => {
-          if (!item) {
-            return;
-          }
-          if (item.type === 'method' && item.method) {
-            methods.push({
-              methodName: item.method.name,
-              descriptor: item.method.descriptor,
-            });
-          } else if (item.type === 'field' && item.field) {
-            fields.push({
-              fieldName: item.field.name,
-              descriptor: item.field.descriptor,
-            });
-          }
-        });
+      // Names and descriptors come from the workspace index; no AST is loaded.
+      workspace.listClasses().forEach(({ identifier: { className } }) => {
+        const methods = workspace.listMethods(className).map(({ identifier }) => ({
+          methodName: identifier.memberName,
+          descriptor: identifier.descriptor,
+        }));
+        const fields = workspace.listFields(className).map(({ identifier }) => ({
+          fieldName: identifier.memberName,
+          descriptor: identifier.descriptor,
+        }));
         if (methods.length) {
           methodMap.set(className, methods);
         }
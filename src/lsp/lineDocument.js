@@ -0,0 +1,93 @@
+'use strict';
+
+// Open-document model for the LSP server: the text as an array of lines plus
+// the line break that ended each one, so an incremental didChange splices only
+// the lines it touches and line lookups never re-split the whole document.
+// Lines break on \n and \r\n, as normalizeNewlines does for the rest of the
+// server. The full text is joined on demand and cached until the next edit.
+
+function splitLines(text) {
+  const parts = text.split(/(\r\n|\n)/);
+  const lines = [];
+  const breaks = [];
+  for (let i = 0; i < parts.length; i += 2) {
+    lines.push(parts[i]);
+    if (i + 1 < parts.length) breaks.push(parts[i + 1]);
+  }
+  return { lines, breaks };
+}
+
+class LineDocument {
+  constructor(text = '') {
+    this.setText(text);
+  }
+
+  setText(text) {
+    const { lines, breaks } = splitLines(String(text));
+    this.lines = lines;
+    this.breaks = breaks;
+    this._text = String(text);
+  }
+
+  getText() {
+    if (this._text === null) {
+      let text = '';
+      for (let i = 0; i < this.lines.length; i += 1) {
+        text += this.lines[i];
+        if (i < this.breaks.length) text += this.breaks[i];
+      }
+      this._text = text;
+    }
+    return this._text;
+  }
+
+  get lineCount() {
+    return this.lines.length;
+  }
+
+  getLine(line) {
+    return this.lines[line] || '';
+  }
+
+  /**
+   * Apply one LSP TextDocumentContentChangeEvent. A change without a range
+   * replaces the whole document.
+   * @returns {{startLine: number, oldEndLine: number, newEndLine: number}|null}
+   *   the old line span that was replaced and where the new text ends, or null
+   *   for a full replacement
+   */
+  applyChange(change) {
+    const text = typeof change?.text === 'string' ? change.text : '';
+    if (!change || !change.range) {
+      this.setText(text);
+      return null;
+    }
+    const lastLine = this.lines.length - 1;
+    const clamp = (position) => {
+      const line = Math.min(Math.max(0, position.line), lastLine);
+      const character = Math.min(Math.max(0, position.character), this.lines[line].length);
+      return { line, character };
+    };
+    let start = clamp(change.range.start);
+    let end = clamp(change.range.end);
+    if (end.line < start.line || (end.line === start.line && end.character < start.character)) {
+      [start, end] = [end, start];
+    }
+    const replaced = this.lines[start.line].slice(0, start.character) + text +
+      this.lines[end.line].slice(end.character);
+    const { lines, breaks } = splitLines(replaced);
+    // Rebuilt with concat rather than splice(..., ...lines): a pasted text can
+    // have more lines than a call accepts arguments.
+    this.lines = this.lines.slice(0, start.line).concat(lines, this.lines.slice(end.line + 1));
+    // The break after the last replaced line survives the edit.
+    this.breaks = this.breaks.slice(0, start.line).concat(breaks, this.breaks.slice(end.line));
+    this._text = null;
+    return {
+      startLine: start.line,
+      oldEndLine: end.line,
+      newEndLine: start.line + lines.length - 1,
+    };
+  }
+}
+
+module.exports = { LineDocument, splitLines };
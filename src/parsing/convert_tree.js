@@ -320,7 +320,455 @@ function formatConst(entry, index, constantPool, cls) {
   return line;
 }
 
-function convertJson(inputJson, constantPool) {
+/**
+ * Converts one method's parsed Code attribute into Krakatau-style code items,
+ * exception table and line/local-variable tables.
+ * @param {Object} code - method.code from the jvm_parser AST
+ * @param {Object} constantPool - The class's constant pool
+ * @returns {Object} The converted code ({stackSize, localsSize, codeItems, ...})
+ */
+function convertCode(code, constantPool) {
+  const converted = {
+    long: false, // Assuming not long, adjust if needed
+    stackSize: code.maxStack.toString(),
+    localsSize: code.maxLocals.toString(),
+    codeItems: [],
+    exceptionTable: [],
+    attributes: [],
+  };
+
+  // Build a map for labels to program counters
+  const labelMap = {};
+  //let latest;
+  code.instructions.forEach((instr, idx) => {
+    labelMap[instr.pc] = `L${instr.pc}`;
+    //latest=instr.pc;
+  });
+  labelMap[code.codeLength] = `L${code.codeLength}`;
+
+  // Convert instructions
+  code.instructions.forEach((instr) => {
+    const codeItem = {};
+    const labelDef = `L${instr.pc}:`;
+    codeItem.labelDef = labelDef;
+    codeItem.pc = instr.pc;
+
+    // Handle different opcodes
+    switch (instr.opcodeName) {
+      case "invokespecial":
+      case "invokevirtual":
+      case "invokestatic":
+      case "invokeinterface":
+        const methodRef = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: [
+            instr.opcodeName === "invokeinterface"
+              ? "InterfaceMethod"
+              : "Method",
+            methodRef.value.className.replace(/\./g, "/"),
+            [
+              methodRef.value.nameAndType.name,
+              methodRef.value.nameAndType.descriptor,
+            ],
+          ],
+          cp_index: instr.operands.index,
+        };
+        if (instr.opcodeName === "invokeinterface") {
+          codeItem.instruction.count = instr.operands.count.toString();
+        }
+        break;
+
+      case "invokedynamic":
+        const invokeDynamicRef = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: invokeDynamicRef.value,
+          cp_index: instr.operands.index,
+        };
+        break;
+
+      case "getfield":
+      case "putfield":
+      case "getstatic":
+      case "putstatic":
+        const fieldRef = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: [
+            "Field",
+            fieldRef.value.className.replace(/\./g, "/"),
+            [
+              fieldRef.value.nameAndType.name,
+              fieldRef.value.nameAndType.descriptor,
+            ],
+          ],
+        };
+        break;
+
+      case "ldc":
+      case "ldc_w":
+      case "ldc2_w":
+        const ldcConstant = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        let arg;
+        switch (ldcConstant.type) {
+          case "Class":
+            arg = ["Class", ldcConstant.value];
+            break;
+          case "String":
+            arg = ldcConstant.value;
+            break;
+          case "Long":
+            arg = ldcConstant.value;
+            break;
+          case "Float":
+            arg = { value: ldcConstant.value, type: "Float" };
+            break;
+          case "Double":
+            arg = { value: ldcConstant.value, type: "Double" };
+            break;
+          default:
+            arg = ldcConstant.value;
+        }
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: arg,
+        };
+        break;
+
+      case "goto":
+      case "goto_w":
+      case "jsr":
+      case "jsr_w":
+      case "ifnonnull":
+      case "ifne":
+      case "if_icmpge":
+      case "if_icmpgt":
+      case "ifnull":
+      case "ifeq":
+      case "if_icmpeq":
+      case "if_icmpne":
+      case "if_icmplt":
+      case "if_icmple":
+      case "if_acmpeq":
+      case "if_acmpne":
+      case "iflt":
+      case "ifle":
+      case "ifgt":
+      case "ifge":
+        const targetPc = instr.pc + instr.operands.branchoffset;
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: labelMap[targetPc],
+        };
+        break;
+
+      case "tableswitch":
+        const defaultPc = instr.pc + instr.operands.default;
+        const jumpOffsets = instr.operands.jumpOffsets.map(
+          (offset) => labelMap[instr.pc + offset],
+        );
+        codeItem.instruction = {
+          op: "tableswitch",
+          low: instr.operands.low.toString(),
+          labels: jumpOffsets,
+          defaultLbl: "L" + instr.operands.default,
+        };
+        break;
+
+      case "lookupswitch":
+        const lookupDefaultPc = instr.pc + instr.operands.default;
+        const lookupPairs = instr.operands.matchOffsetPairs.map((pair) => [
+          pair.match,
+          labelMap[instr.pc + pair.offset],
+        ]);
+        codeItem.instruction = {
+          op: "lookupswitch",
+          arg: {
+            defaultLabel: labelMap[lookupDefaultPc],
+            pairs: lookupPairs,
+          },
+        };
+        break;
+
+      case "iinc":
+        codeItem.instruction = {
+          op: "iinc",
+          varnum: instr.operands.index.toString(),
+          incr: instr.operands.const.toString(),
+        };
+        break;
+
+      case "new":
+      case "checkcast":
+      case "instanceof":
+      case "anewarray":
+        const classInfo = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: classInfo.value.replace(/\./g, "/"),
+        };
+        break;
+
+      case "newarray":
+        const atypeMap = {
+          4: "boolean",
+          5: "char",
+          6: "float",
+          7: "double",
+          8: "byte",
+          9: "short",
+          10: "int",
+          11: "long",
+        };
+        codeItem.instruction = {
+          op: "newarray",
+          arg: atypeMap[instr.operands.atype],
+        };
+        break;
+
+      case "multianewarray":
+        const mclassInfo = resolveConstant(
+          instr.operands.index,
+          constantPool,
+        );
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: [
+            mclassInfo.value.replace(/\./g, "/"),
+            instr.operands.dimensions.toString(),
+          ],
+        };
+        break;
+
+      case "astore":
+      case "aload":
+      case "istore":
+      case "iload":
+      case "lstore":
+      case "lload":
+      case "fstore":
+      case "fload":
+      case "dstore":
+      case "dload":
+      case "ret":
+        // Instructions that take a local variable index
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: instr.operands.index.toString(),
+        };
+        break;
+
+      case "bipush":
+        // Push byte value onto stack
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: instr.operands.byte.toString(),
+        };
+        break;
+
+      case "sipush":
+        // Push short value onto stack
+        codeItem.instruction = {
+          op: instr.opcodeName,
+          arg: instr.operands.value.toString(),
+        };
+        break;
+
+      default:
+        // Handle wide instructions (ending with "_w")
+        if (instr.opcodeName.endsWith("_w")) {
+          const baseInstruction = instr.opcodeName.slice(0, -2); // Remove "_w" suffix
+          if (baseInstruction === "iinc") {
+            // iinc_w has both index and const operands
+            codeItem.instruction = {
+              op: "wide",
+              arg: `${baseInstruction} ${instr.operands.index} ${instr.operands.const}`,
+            };
+          } else {
+            // Other wide instructions only have index operand
+            codeItem.instruction = {
+              op: "wide",
+              arg: `${baseInstruction} ${instr.operands.index}`,
+            };
+          }
+        } else {
+          // For simple instructions without operands
+          codeItem.instruction = instr.opcodeName;
+        }
+        break;
+    }
+
+    converted.codeItems.push(codeItem);
+  });
+
+  converted.codeItems.push({
+    labelDef: labelMap[code.codeLength] + ":",
+    instruction: null,
+  });
+
+  // Handle exception table entries
+  if (code.exceptionTable && code.exceptionTable.length > 0) {
+    converted.exceptionTable = code.exceptionTable.map((ex) => {
+      const catchTypeIndex = ex.catch_type;
+      const catchType =
+        catchTypeIndex === 0
+          ? "any"
+          : resolveConstant(catchTypeIndex, constantPool).value.replace(
+              /\./g,
+              "/",
+            );
+
+      const startLbl = labelMap[ex.start_pc] ?? `L${ex.start_pc}`;
+      const endLbl = labelMap[ex.end_pc] ?? `L${ex.end_pc}`;
+      const handlerLbl = labelMap[ex.handler_pc] ?? `L${ex.handler_pc}`;
+
+      return {
+        start_pc: ex.start_pc,
+        end_pc: ex.end_pc,
+        handler_pc: ex.handler_pc,
+        catch_type: catchType,
+        startLbl,
+        endLbl,
+        handlerLbl,
+      };
+    });
+  }
+
+  // Convert attributes
+  if (code.attributes) {
+    code.attributes.forEach((attr) => {
+      const attrName = resolveConstant(
+        attr.attribute_name_index.index,
+        constantPool,
+      ).value;
+      if (attrName === "LineNumberTable") {
+        const lineAttr = {
+          type: "linenumbertable",
+          lines: [],
+        };
+        attr.info.line_number_table.forEach((line) => {
+          const label = labelMap[line.start_pc];
+          const lineNumber = line.line_number.toString();
+          lineAttr.lines.push({
+            label,
+            lineNumber,
+          });
+        });
+        converted.attributes.push(lineAttr);
+      } else if (attrName === "LocalVariableTable") {
+        const varAttr = {
+          type: "localvariabletable",
+          vars: [],
+        };
+        attr.info.local_variable_table.forEach((varInfo) => {
+          const varName = resolveConstant(
+            varInfo.name_index,
+            constantPool,
+          ).value;
+          const varDescriptor = resolveConstant(
+            varInfo.descriptor_index,
+            constantPool,
+          ).value;
+          const varItem = {
+            index: varInfo.index.toString(),
+            name: varName,
+            descriptor: varDescriptor,
+            startLbl: labelMap[varInfo.start_pc],
+            endLbl: labelMap[varInfo.start_pc + varInfo.length],
+          };
+          varAttr.vars.push(varItem);
+        });
+        converted.attributes.push(varAttr);
+      }
+    });
+  }
+
+  return converted;
+}
+
+// Lazy mode (convertJson(..., { lazyCode: true })): the Code attribute of a
+// method is converted the first time something reads codeAttr.code, or when
+// materializeCode asks for it. A program usually runs a fraction of its
+// methods, and converting every body at class load was most of the load time.
+// The property stays enumerable, so JSON, deepEqual and AST walkers see code
+// exactly as eager conversion would produce it; assigning replaces it.
+function defineLazyCode(codeAttr, rawCode, constantPool) {
+  Object.defineProperty(codeAttr, "code", {
+    enumerable: true,
+    configurable: true,
+    get() {
+      const converted = convertCode(rawCode, constantPool);
+      Object.defineProperty(codeAttr, "code", {
+        value: converted,
+        enumerable: true,
+        configurable: true,
+        writable: true,
+      });
+      return converted;
+    },
+    set(value) {
+      Object.defineProperty(codeAttr, "code", {
+        value,
+        enumerable: true,
+        configurable: true,
+        writable: true,
+      });
+    },
+  });
+}
+
+/**
+ * Converts a method's code now if convertJson deferred it.
+ * @param {Object} method - A converted method (item.method) or method item
+ * @returns {Object|null} The converted code, or null for a method without code
+ */
+function materializeCode(method) {
+  const target = method && method.type === "method" ? method.method : method;
+  const codeAttr = target && (target.attributes || []).find((attr) => attr.type === "code");
+  return codeAttr ? codeAttr.code : null;
+}
+
+/**
+ * Returns whether a method's code is still waiting on lazy conversion.
+ * @param {Object} method - A converted method (item.method) or method item
+ * @returns {boolean}
+ */
+function isCodePending(method) {
+  const target = method && method.type === "method" ? method.method : method;
+  const codeAttr = target && (target.attributes || []).find((attr) => attr.type === "code");
+  if (!codeAttr) return false;
+  const descriptor = Object.getOwnPropertyDescriptor(codeAttr, "code");
+  return Boolean(descriptor && descriptor.get);
+}
+
+/**
+ * Converts a jvm_parser class AST into the Krakatau-style { classes: [...] }
+ * form used by the JVM, the decompiler and the workspace.
+ * @param {Object} inputJson - The parsed class (getAST(...).ast)
+ * @param {Object} constantPool - The class's constant pool
+ * @param {Object} [options]
+ * @param {boolean} [options.lazyCode] - Convert method bodies on first access
+ *   instead of up front (see materializeCode)
+ * @returns {Object} The converted AST
+ */
+function convertJson(inputJson, constantPool, options = {}) {
+  const lazyCode = Boolean(options && options.lazyCode);
   if (inputJson.classes) {
     return inputJson;
   }
@@ -402,382 +850,13 @@ function convertJson(inputJson, constantPool) {
       },
     };
 
-    // Convert code attribute if exists
     if (method.code) {
-      const codeAttr = {
-        type: "code",
-        code: {
-          long: false, // Assuming not long, adjust if needed
-          stackSize: method.code.maxStack.toString(),
-          localsSize: method.code.maxLocals.toString(),
-          codeItems: [],
-          exceptionTable: [],
-          attributes: [],
-        },
-      };
-
-      // Build a map for labels to program counters
-      const labelMap = {};
-      //let latest;
-      method.code.instructions.forEach((instr, idx) => {
-        labelMap[instr.pc] = `L${instr.pc}`;
-        //latest=instr.pc;
-      });
-      labelMap[method.code.codeLength] = `L${method.code.codeLength}`;
-
-      // Convert instructions
-      method.code.instructions.forEach((instr) => {
-        const codeItem = {};
-        const labelDef = `L${instr.pc}:`;
-        codeItem.labelDef = labelDef;
-        codeItem.pc = instr.pc;
-
-        // Handle different opcodes
-        switch (instr.opcodeName) {
-          case "invokespecial":
-          case "invokevirtual":
-          case "invokestatic":
-          case "invokeinterface":
-            const methodRef = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: [
-                instr.opcodeName === "invokeinterface"
-                  ? "InterfaceMethod"
-                  : "Method",
-                methodRef.value.className.replace(/\./g, "/"),
-                [
-                  methodRef.value.nameAndType.name,
-                  methodRef.value.nameAndType.descriptor,
-                ],
-              ],
-              cp_index: instr.operands.index,
-            };
-            if (instr.opcodeName === "invokeinterface") {
-              codeItem.instruction.count = instr.operands.count.toString();
-            }
-            break;
-
-          case "invokedynamic":
-            const invokeDynamicRef = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: invokeDynamicRef.value,
-              cp_index: instr.operands.index,
-            };
-            break;
-
-          case "getfield":
-          case "putfield":
-          case "getstatic":
-          case "putstatic":
-            const fieldRef = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: [
-                "Field",
-                fieldRef.value.className.replace(/\./g, "/"),
-                [
-                  fieldRef.value.nameAndType.name,
-                  fieldRef.value.nameAndType.descriptor,
-                ],
-              ],
-            };
-            break;
-
-          case "ldc":
-          case "ldc_w":
-          case "ldc2_w":
-            const ldcConstant = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            let arg;
-            switch (ldcConstant.type) {
-              case "Class":
-                arg = ["Class", ldcConstant.value];
-                break;
-              case "String":
-                arg = ldcConstant.value;
-                break;
-              case "Long":
-                arg = ldcConstant.value;
-                break;
-              case "Float":
-                arg = { value: ldcConstant.value, type: "Float" };
-                break;
-              case "Double":
-                arg = { value: ldcConstant.value, type: "Double" };
-                break;
-              default:
-                arg = ldcConstant.value;
-            }
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: arg,
-            };
-            break;
-
-          case "goto":
-          case "goto_w":
-          case "jsr":
-          case "jsr_w":
-          case "ifnonnull":
-          case "ifne":
-          case "if_icmpge":
-          case "if_icmpgt":
-          case "ifnull":
-          case "ifeq":
-          case "if_icmpeq":
-          case "if_icmpne":
-          case "if_icmplt":
-          case "if_icmple":
-          case "if_acmpeq":
-          case "if_acmpne":
-          case "iflt":
-          case "ifle":
-          case "ifgt":
-          case "ifge":
-            const targetPc = instr.pc + instr.operands.branchoffset;
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: labelMap[targetPc],
-            };
-            break;
-
-          case "tableswitch":
-            const defaultPc = instr.pc + instr.operands.default;
-            const jumpOffsets = instr.operands.jumpOffsets.map(
-              (offset) => labelMap[instr.pc + offset],
-            );
-            codeItem.instruction = {
-              op: "tableswitch",
-              low: instr.operands.low.toString(),
-              labels: jumpOffsets,
-              defaultLbl: "L" + instr.operands.default,
-            };
-            break;
-
-          case "lookupswitch":
-            const lookupDefaultPc = instr.pc + instr.operands.default;
-            const lookupPairs = instr.operands.matchOffsetPairs.map((pair) => [
-              pair.match,
-              labelMap[instr.pc + pair.offset],
-            ]);
-            codeItem.instruction = {
-              op: "lookupswitch",
-              arg: {
-                defaultLabel: labelMap[lookupDefaultPc],
-                pairs: lookupPairs,
-              },
-            };
-            break;
-
-          case "iinc":
-            codeItem.instruction = {
-              op: "iinc",
-              varnum: instr.operands.index.toString(),
-              incr: instr.operands.const.toString(),
-            };
-            break;
-
-          case "new":
-          case "checkcast":
-          case "instanceof":
-          case "anewarray":
-            const classInfo = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: classInfo.value.replace(/\./g, "/"),
-            };
-            break;
-
-          case "newarray":
-            const atypeMap = {
-              4: "boolean",
-              5: "char",
-              6: "float",
-              7: "double",
-              8: "byte",
-              9: "short",
-              10: "int",
-              11: "long",
-            };
-            codeItem.instruction = {
-              op: "newarray",
-              arg: atypeMap[instr.operands.atype],
-            };
-            break;
-
-          case "multianewarray":
-            const mclassInfo = resolveConstant(
-              instr.operands.index,
-              constantPool,
-            );
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: [
-                mclassInfo.value.replace(/\./g, "/"),
-                instr.operands.dimensions.toString(),
-              ],
-            };
-            break;
-
-          case "astore":
-          case "aload":
-          case "istore":
-          case "iload":
-          case "lstore":
-          case "lload":
-          case "fstore":
-          case "fload":
-          case "dstore":
-          case "dload":
-          case "ret":
-            // Instructions that take a local variable index
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: instr.operands.index.toString(),
-            };
-            break;
-
-          case "bipush":
-            // Push byte value onto stack
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: instr.operands.byte.toString(),
-            };
-            break;
-
-          case "sipush":
-            // Push short value onto stack
-            codeItem.instruction = {
-              op: instr.opcodeName,
-              arg: instr.operands.value.toString(),
-            };
-            break;
-
-          default:
-            // Handle wide instructions (ending with "_w")
-            if (instr.opcodeName.endsWith("_w")) {
-              const baseInstruction = instr.opcodeName.slice(0, -2); // Remove "_w" suffix
-              if (baseInstruction === "iinc") {
-                // iinc_w has both index and const operands
-                codeItem.instruction = {
-                  op: "wide",
-                  arg: `${baseInstruction} ${instr.operands.index} ${instr.operands.const}`,
-                };
-              } else {
-                // Other wide instructions only have index operand
-                codeItem.instruction = {
-                  op: "wide",
-                  arg: `${baseInstruction} ${instr.operands.index}`,
-                };
-              }
-            } else {
-              // For simple instructions without operands
-              codeItem.instruction = instr.opcodeName;
-            }
-            break;
-        }
-
-        codeAttr.code.codeItems.push(codeItem);
-      });
-
-      codeAttr.code.codeItems.push({
-        labelDef: labelMap[method.code.codeLength] + ":",
-        instruction: null,
-      });
-
-      // Handle exception table entries
-      if (method.code.exceptionTable && method.code.exceptionTable.length > 0) {
-        codeAttr.code.exceptionTable = method.code.exceptionTable.map((ex) => {
-          const catchTypeIndex = ex.catch_type;
-          const catchType =
-            catchTypeIndex === 0
-              ? "any"
-              : resolveConstant(catchTypeIndex, constantPool).value.replace(
-                  /\./g,
-                  "/",
-                );
-
-          const startLbl = labelMap[ex.start_pc] ?? `L${ex.start_pc}`;
-          const endLbl = labelMap[ex.end_pc] ?? `L${ex.end_pc}`;
-          const handlerLbl = labelMap[ex.handler_pc] ?? `L${ex.handler_pc}`;
-
-          return {
-            start_pc: ex.start_pc,
-            end_pc: ex.end_pc,
-            handler_pc: ex.handler_pc,
-            catch_type: catchType,
-            startLbl,
-            endLbl,
-            handlerLbl,
-          };
-        });
+      const codeAttr = { type: "code" };
+      if (lazyCode) {
+        defineLazyCode(codeAttr, method.code, constantPool);
+      } else {
+        codeAttr.code = convertCode(method.code, constantPool);
       }
-
-      // Convert attributes
-      if (method.code.attributes) {
-        method.code.attributes.forEach((attr) => {
-          const attrName = resolveConstant(
-            attr.attribute_name_index.index,
-            constantPool,
-          ).value;
-          if (attrName === "LineNumberTable") {
-            const lineAttr = {
-              type: "linenumbertable",
-              lines: [],
-            };
-            attr.info.line_number_table.forEach((line) => {
-              const label = labelMap[line.start_pc];
-              const lineNumber = line.line_number.toString();
-              lineAttr.lines.push({
-                label,
-                lineNumber,
-              });
-            });
-            codeAttr.code.attributes.push(lineAttr);
-          } else if (attrName === "LocalVariableTable") {
-            const varAttr = {
-              type: "localvariabletable",
-              vars: [],
-            };
-            attr.info.local_variable_table.forEach((varInfo) => {
-              const varName = resolveConstant(
-                varInfo.name_index,
-                constantPool,
-              ).value;
-              const varDescriptor = resolveConstant(
-                varInfo.descriptor_index,
-                constantPool,
-              ).value;
-              const varItem = {
-                index: varInfo.index.toString(),
-                name: varName,
-                descriptor: varDescriptor,
-                startLbl: labelMap[varInfo.start_pc],
-                endLbl: labelMap[varInfo.start_pc + varInfo.length],
-              };
-              varAttr.vars.push(varItem);
-            });
-            codeAttr.code.attributes.push(varAttr);
-          }
-        });
-      }
-
       methodItem.method.attributes.push(codeAttr);
     }
 
@@ -1349,4 +1428,11 @@ function unparseDataStructures(cls, constantPool, options = {}) {
   })(cls);
 }
 
-module.exports = { unparseDataStructures, convertJson, formatInstruction };
+module.exports = {
+  unparseDataStructures,
+  convertJson,
+  convertCode,
+  materializeCode,
+  isCodePending,
+  formatInstruction,
+};
@@ -517,6 +517,9 @@ class Canvas extends Component {
         this.width = width;
         this.height = height;
         if (this.canvasElement) {
+            // Resizing clears the canvas; what was drawn before it must land first.
+            flushDrawCommands();
+            canvasWrites++;
             this.canvasElement.width = width;
             this.canvasElement.height = height;
         }
@@ -699,6 +702,50 @@ class AwtEventQueue {
 }
 
 
+// --- Draw-Command Buffering ---
+
+const { DrawCommandBuffer, OP: DRAW_OP } = require('./awtCommandBuffer.js');
+
+/** @type {DrawCommandBuffer | null} */
+let drawCommands = null;
+
+/**
+ * Record CanvasGraphics created from now on into one command stream that is
+ * replayed once per animation frame (see awtCommandBuffer.js), or stop doing
+ * so. Graphics already handed out keep the mode they were created with.
+ * @param {boolean} enabled
+ * @param {object} [options] - passed to DrawCommandBuffer
+ * @returns {DrawCommandBuffer | null}
+ */
+function setDrawCommandBuffering(enabled, options) {
+    if (!enabled) {
+        flushDrawCommands();
+        drawCommands = null;
+    } else if (!drawCommands) {
+        drawCommands = new DrawCommandBuffer(CanvasGraphics.prototype, options);
+    }
+    return drawCommands;
+}
+
+/** Replay buffered draw calls now, before something reads or replaces the canvas. */
+function flushDrawCommands() {
+    if (drawCommands) drawCommands.flush();
+}
+
+/** Direct CanvasGraphics draws so far; see canvasWriteCount. */
+let canvasWrites = 0;
+
+/**
+ * A number that changes whenever a CanvasGraphics may have drawn into some
+ * canvas. Partial framebuffer uploads (Graphics.js presentSoftSurface) are
+ * only sound while nothing else has touched the canvas since the last one.
+ * @returns {number}
+ */
+function canvasWriteCount() {
+    return canvasWrites + (drawCommands ? drawCommands.stats.flushes : 0);
+}
+
+
 // --- Concrete Implementation Classes ---
 
 /**
@@ -707,29 +754,57 @@ class AwtEventQueue {
  */
 class CanvasGraphics {
     /** @private @type {CanvasRenderingContext2D} */ ctx;
+    /** @private @type {DrawCommandBuffer | null} */ commands;
+    /** @private @type {number | undefined} */ bufferedColor;
+    /** @private @type {string | undefined} */ bufferedFont;
     
     /** @param {CanvasRenderingContext2D} ctx */
     constructor(ctx) {
         this.ctx = ctx;
+        this.commands = drawCommands;
         // Set a default font for the canvas
-        this.ctx.font = '12px sans-serif';
+        if (this.commands) this.bufferedFont = '12px sans-serif';
+        else this.ctx.font = '12px sans-serif';
     }
 
     /** @override @param {AwtColor} color */
     setColor(color) {
+        if (this.commands) {
+            this.bufferedColor = (color.r & 0xff) << 16 | (color.g & 0xff) << 8 | color.b & 0xff;
+            return;
+        }
         const cssColor = `rgb(${color.r}, ${color.g}, ${color.b})`;
         this.ctx.fillStyle = cssColor;
         this.ctx.strokeStyle = cssColor;
     }
 
     /** @override @param {number} x @param {number} y @param {number} width @param {number} height */
-    fillRect(x, y, width, height) { this.ctx.fillRect(x, y, width, height); }
+    fillRect(x, y, width, height) {
+        if (this.commands) {
+            this.commands.draw4(this, DRAW_OP.FILL_RECT, x, y, width, height);
+            return;
+        }
+        canvasWrites++;
+        this.ctx.fillRect(x, y, width, height);
+    }
 
     /** @override @param {number} x @param {number} y @param {number} width @param {number} height */
-    drawRect(x, y, width, height) { this.ctx.strokeRect(x, y, width, height); }
+    drawRect(x, y, width, height) {
+        if (this.commands) {
+            this.commands.draw4(this, DRAW_OP.DRAW_RECT, x, y, width, height);
+            return;
+        }
+        canvasWrites++;
+        this.ctx.strokeRect(x, y, width, height);
+    }
 
     /** @param {number} x1 @param {number} y1 @param {number} x2 @param {number} y2 */
     drawLine(x1, y1, x2, y2) {
+        if (this.commands) {
+            this.commands.draw4(this, DRAW_OP.DRAW_LINE, x1, y1, x2, y2);
+            return;
+        }
+        canvasWrites++;
         this.ctx.beginPath();
         this.ctx.moveTo(x1, y1);
         this.ctx.lineTo(x2, y2);
@@ -738,6 +813,11 @@ class CanvasGraphics {
     
     /** @override @param {number} x @param {number} y @param {number} width @param {number} height */
     fillOval(x, y, width, height) {
+        if (this.commands) {
+            this.commands.draw4(this, DRAW_OP.FILL_OVAL, x, y, width, height);
+            return;
+        }
+        canvasWrites++;
         const rx = Math.max(0, width / 2);
         const ry = Math.max(0, height / 2);
         const cx = x + rx;
@@ -751,6 +831,11 @@ class CanvasGraphics {
      * @param {number} x @param {number} y @param {number} width @param {number} height
      * @param {number} startAngleDeg @param {number} arcAngleDeg */
     fillArc(x, y, width, height, startAngleDeg, arcAngleDeg) {
+        if (this.commands) {
+            this.commands.arc(this, x, y, width, height, startAngleDeg, arcAngleDeg);
+            return;
+        }
+        canvasWrites++;
         const rx = Math.max(0, width / 2);
         const ry = Math.max(0, height / 2);
         const cx = x + rx;
@@ -767,6 +852,11 @@ class CanvasGraphics {
     
     /** @override @param {number} x @param {number} y @param {number} width @param {number} height */
     drawOval(x, y, width, height) {
+        if (this.commands) {
+            this.commands.draw4(this, DRAW_OP.DRAW_OVAL, x, y, width, height);
+            return;
+        }
+        canvasWrites++;
         const rx = Math.max(0, width / 2);
         const ry = Math.max(0, height / 2);
         const cx = x + rx;
@@ -779,11 +869,18 @@ class CanvasGraphics {
     /** @override @param {AwtFont} font */
     setFont(font) {
         const style = font.style === 1 ? 'bold' : font.style === 2 ? 'italic' : 'normal';
-        this.ctx.font = `${style} ${font.size}px ${font.name}`;
+        const cssFont = `${style} ${font.size}px ${font.name}`;
+        if (this.commands) this.bufferedFont = cssFont;
+        else this.ctx.font = cssFont;
     }
 
     /** @override @param {string} str @param {number} x @param {number} y */
     drawString(str, x, y) {
+        if (this.commands) {
+            this.commands.string(this, str, x, y);
+            return;
+        }
+        canvasWrites++;
         if (this.ctx && this.ctx.fillText) {
             this.ctx.fillText(str, x, y);
         }
@@ -792,6 +889,12 @@ class CanvasGraphics {
     /** @override @param {AwtImage} image @param {number} x @param {number} y */
     drawImage(image, x, y) {
         if (!image) return false;
+        if (this.commands) {
+            if (!(image instanceof CanvasImage) && typeof image.getCanvasElement !== 'function') return false;
+            this.commands.image(this, image, x, y);
+            return true;
+        }
+        canvasWrites++;
         if (image instanceof CanvasImage) {
             this.ctx.drawImage(image.getCanvasElement(), x, y);
             return true;
@@ -806,6 +909,11 @@ class CanvasGraphics {
     /** @param {number[]} xs @param {number[]} ys */
     fillPolygon(xs, ys) {
         if (!xs.length || xs.length !== ys.length) return;
+        if (this.commands) {
+            this.commands.polygon(this, DRAW_OP.FILL_POLYGON, xs, ys);
+            return;
+        }
+        canvasWrites++;
         this.ctx.beginPath();
         this.ctx.moveTo(xs[0], ys[0]);
         for (let i = 1; i < xs.length; i++) {
@@ -818,6 +926,11 @@ class CanvasGraphics {
     /** @param {number[]} xs @param {number[]} ys */
     drawPolygon(xs, ys) {
         if (!xs.length || xs.length !== ys.length) return;
+        if (this.commands) {
+            this.commands.polygon(this, DRAW_OP.DRAW_POLYGON, xs, ys);
+            return;
+        }
+        canvasWrites++;
         this.ctx.beginPath();
         this.ctx.moveTo(xs[0], ys[0]);
         for (let i = 1; i < xs.length; i++) {
@@ -1011,6 +1124,11 @@ const awtModules = {
     MockGraphics,
     MockImage,
 
+    // Draw-command buffering
+    setDrawCommandBuffering,
+    flushDrawCommands,
+    canvasWriteCount,
+
     _test: { CanvasGraphics },
 };
 
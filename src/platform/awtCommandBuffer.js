@@ -0,0 +1,296 @@
+'use strict';
+
+// Draw-command buffer for CanvasGraphics (JVM option awtCommandBuffer or
+// JVM_AWT_COMMAND_BUFFER=1). Guest Graphics calls are encoded into one
+// Int32Array stream instead of reaching the Canvas 2D context one by one, and
+// the stream is replayed once per presented frame (requestAnimationFrame,
+// with a timer fallback for the same Firefox stall presentSoftSurface guards
+// against). A tile renderer issuing thousands of fillRect/drawImage calls per
+// frame then crosses into the canvas API in one tight loop, and the context
+// state calls it interleaves are coalesced away.
+//
+// Every CanvasGraphics shares the one stream, so drawing order across the
+// screen and offscreen CanvasImages is kept: drawImage of an offscreen image
+// replays after whatever was drawn into it before. Objects (contexts,
+// strings, fonts, images) go into a side table indexed from the stream.
+//
+// Colour and font are Graphics state, not context state: they are held on
+// the CanvasGraphics and written to the context only when a draw that uses
+// them finds the context (as of the end of the stream) in a different state.
+
+const OP = Object.freeze({
+  TARGET: 1,      // ref(painter)
+  COLOR: 2,       // rgb
+  FONT: 3,        // ref(css)
+  FILL_RECT: 4,   // x y w h
+  DRAW_RECT: 5,   // x y w h
+  DRAW_LINE: 6,   // x1 y1 x2 y2
+  FILL_OVAL: 7,   // x y w h
+  DRAW_OVAL: 8,   // x y w h
+  FILL_ARC: 9,    // x y w h start sweep
+  DRAW_STRING: 10, // ref(string) x y
+  DRAW_IMAGE: 11, // ref(image) x y
+  FILL_POLYGON: 12, // n xs... ys...
+  DRAW_POLYGON: 13, // n xs... ys...
+});
+
+const INITIAL_WORDS = 4096;
+
+function cssColor(rgb) {
+  return `rgb(${rgb >>> 16 & 0xff}, ${rgb >>> 8 & 0xff}, ${rgb & 0xff})`;
+}
+
+class DrawCommandBuffer {
+  /**
+   * @param {object} painter - drawing methods taking `this.ctx`
+   *   (CanvasGraphics.prototype); replay calls them on { ctx } targets.
+   * @param {object} [options]
+   * @param {function(function): void} [options.schedule] - runs the flush at
+   *   the next presentation opportunity; defaults to requestAnimationFrame.
+   */
+  constructor(painter, options = {}) {
+    this.painter = painter;
+    this.schedule = options.schedule || defaultSchedule;
+    this.words = new Int32Array(INITIAL_WORDS);
+    this.length = 0;
+    this.refs = [];
+    this.refIndex = new Map();
+    this.targets = new Map(); // ctx -> { ctx, color, font } as of the stream end
+    this.target = null;
+    this.spare = null;
+    this.scheduled = false;
+    this.stats = {
+      commands: 0,
+      stateWrites: 0,
+      stateCoalesced: 0,
+      flushes: 0,
+      replayMs: 0,
+      maxWords: 0,
+    };
+  }
+
+  reserve(words) {
+    if (this.length + words <= this.words.length) return;
+    let size = this.words.length * 2;
+    while (size < this.length + words) size *= 2;
+    const grown = new Int32Array(size);
+    grown.set(this.words.subarray(0, this.length));
+    this.words = grown;
+  }
+
+  ref(value) {
+    let index = this.refIndex.get(value);
+    if (index === undefined) {
+      index = this.refs.length;
+      this.refs.push(value);
+      this.refIndex.set(value, index);
+    }
+    return index;
+  }
+
+  // Switch the stream to `graphics`'s context and bring its colour (and font,
+  // for text) up to date. Called at the start of every draw.
+  begin(graphics, usesFont) {
+    if (!this.scheduled) {
+      this.scheduled = true;
+      this.schedule(() => this.flush());
+    }
+    let target = this.targets.get(graphics.ctx);
+    if (!target) {
+      target = { ctx: graphics.ctx, color: -1, font: null };
+      this.targets.set(graphics.ctx, target);
+    }
+    this.reserve(8);
+    const words = this.words;
+    if (this.target !== target) {
+      words[this.length++] = OP.TARGET;
+      words[this.length++] = this.ref(target);
+      this.target = target;
+    }
+    const color = graphics.bufferedColor;
+    if (color !== undefined) {
+      if (color !== target.color) {
+        words[this.length++] = OP.COLOR;
+        words[this.length++] = color;
+        target.color = color;
+        this.stats.stateWrites += 1;
+      } else {
+        this.stats.stateCoalesced += 1;
+      }
+    }
+    const font = graphics.bufferedFont;
+    if (usesFont && font !== undefined) {
+      if (font !== target.font) {
+        words[this.length++] = OP.FONT;
+        words[this.length++] = this.ref(font);
+        target.font = font;
+        this.stats.stateWrites += 1;
+      } else {
+        this.stats.stateCoalesced += 1;
+      }
+    }
+    this.stats.commands += 1;
+  }
+
+  push4(op, a, b, c, d) {
+    this.reserve(5);
+    const words = this.words;
+    let at = this.length;
+    words[at++] = op;
+    words[at++] = a;
+    words[at++] = b;
+    words[at++] = c;
+    words[at++] = d;
+    this.length = at;
+  }
+
+  // Rectangles, ovals and lines: an opcode and four ints.
+  draw4(graphics, op, a, b, c, d) {
+    this.begin(graphics, false);
+    this.push4(op, a, b, c, d);
+  }
+
+  arc(graphics, x, y, width, height, start, sweep) {
+    this.begin(graphics, false);
+    this.push4(OP.FILL_ARC, x, y, width, height);
+    this.reserve(2);
+    this.words[this.length++] = start;
+    this.words[this.length++] = sweep;
+  }
+
+  string(graphics, str, x, y) {
+    this.begin(graphics, true);
+    this.reserve(4);
+    const words = this.words;
+    words[this.length++] = OP.DRAW_STRING;
+    words[this.length++] = this.ref(String(str));
+    words[this.length++] = x;
+    words[this.length++] = y;
+  }
+
+  image(graphics, image, x, y) {
+    this.begin(graphics, false);
+    this.reserve(4);
+    const words = this.words;
+    words[this.length++] = OP.DRAW_IMAGE;
+    words[this.length++] = this.ref(image);
+    words[this.length++] = x;
+    words[this.length++] = y;
+  }
+
+  polygon(graphics, op, xs, ys) {
+    this.begin(graphics, false);
+    const count = xs.length;
+    this.reserve(2 + count * 2);
+    const words = this.words;
+    words[this.length++] = op;
+    words[this.length++] = count;
+    for (let index = 0; index < count; index++) words[this.length++] = xs[index];
+    for (let index = 0; index < count; index++) words[this.length++] = ys[index];
+  }
+
+  /** Replay and clear everything recorded since the last flush. */
+  flush() {
+    this.scheduled = false;
+    const length = this.length;
+    if (!length) return;
+    const started = typeof performance !== 'undefined' && performance.now
+      ? performance.now() : Date.now();
+    const { words, refs, painter } = this;
+    // Recording continues into the spare stream while this one replays. The
+    // context state cache is dropped because anything outside the buffer (a
+    // canvas resize, a putImageData present) may change it before the next
+    // frame.
+    this.words = this.spare || new Int32Array(words.length);
+    this.spare = null;
+    this.length = 0;
+    this.refs = [];
+    this.refIndex = new Map();
+    this.targets = new Map();
+    this.target = null;
+    let target = null;
+    let at = 0;
+    while (at < length) {
+      const op = words[at++];
+      switch (op) {
+        case OP.TARGET:
+          target = refs[words[at++]];
+          break;
+        case OP.COLOR: {
+          const css = cssColor(words[at++]);
+          target.ctx.fillStyle = css;
+          target.ctx.strokeStyle = css;
+          break;
+        }
+        case OP.FONT:
+          target.ctx.font = refs[words[at++]];
+          break;
+        case OP.FILL_RECT:
+          target.ctx.fillRect(words[at], words[at + 1], words[at + 2], words[at + 3]);
+          at += 4;
+          break;
+        case OP.DRAW_RECT:
+          target.ctx.strokeRect(words[at], words[at + 1], words[at + 2], words[at + 3]);
+          at += 4;
+          break;
+        case OP.DRAW_LINE:
+          painter.drawLine.call(target, words[at], words[at + 1], words[at + 2], words[at + 3]);
+          at += 4;
+          break;
+        case OP.FILL_OVAL:
+          painter.fillOval.call(target, words[at], words[at + 1], words[at + 2], words[at + 3]);
+          at += 4;
+          break;
+        case OP.DRAW_OVAL:
+          painter.drawOval.call(target, words[at], words[at + 1], words[at + 2], words[at + 3]);
+          at += 4;
+          break;
+        case OP.FILL_ARC:
+          painter.fillArc.call(target, words[at], words[at + 1], words[at + 2], words[at + 3],
+            words[at + 4], words[at + 5]);
+          at += 6;
+          break;
+        case OP.DRAW_STRING:
+          target.ctx.fillText(refs[words[at]], words[at + 1], words[at + 2]);
+          at += 3;
+          break;
+        case OP.DRAW_IMAGE:
+          painter.drawImage.call(target, refs[words[at]], words[at + 1], words[at + 2]);
+          at += 3;
+          break;
+        case OP.FILL_POLYGON:
+        case OP.DRAW_POLYGON: {
+          const count = words[at++];
+          const xs = words.subarray(at, at + count);
+          const ys = words.subarray(at + count, at + count * 2);
+          at += count * 2;
+          (op === OP.FILL_POLYGON ? painter.fillPolygon : painter.drawPolygon).call(target, xs, ys);
+          break;
+        }
+        default:
+          throw new Error(`Corrupt AWT command stream: opcode ${op} at word ${at - 1}`);
+      }
+    }
+    this.spare = words;
+    const stats = this.stats;
+    stats.flushes += 1;
+    if (length > stats.maxWords) stats.maxWords = length;
+    stats.replayMs += (typeof performance !== 'undefined' && performance.now
+      ? performance.now() : Date.now()) - started;
+  }
+}
+
+function defaultSchedule(flush) {
+  let done = false;
+  let fallbackTimer = null;
+  const run = () => {
+    if (done) return;
+    done = true;
+    if (fallbackTimer !== null) clearTimeout(fallbackTimer);
+    flush();
+  };
+  if (typeof requestAnimationFrame === 'function') requestAnimationFrame(run);
+  if (typeof setTimeout === 'function') fallbackTimer = setTimeout(run, 33);
+}
+
+module.exports = { DrawCommandBuffer, OP, cssColor };
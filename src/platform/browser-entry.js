@@ -13,9 +13,10 @@ const awtFramework = require('./awt');
 const audioPlatform = require('./audio');
 const legacyPlatform = require('./legacy');
 const { decompileClassBytes } = require('../decompiler/cfr');
-const { compileJavaSource, compileJavaFiles } = require('../java-frontend/compiler');
+const { compileJavaSource, compileJavaFiles, assembleClassModel } = require('../java-frontend/compiler');
 const { assembleJasminBytes } = require('../utils/jasminAssembly');
 const { getDefaultZenFSWorkspace } = require('../io/ZenFSWorkspace');
+const { encodeBootImage, decodeBootImage } = require('../core/bootImage');
 // const { getDisassembled } = require('jvm_parser'); // No longer needed - using krak2 format
 
 function thrownValueMessage(error) {
@@ -49,12 +50,12 @@ function thrownValueMessage(error) {
 function compileJavaForBrowser(source, options = {}) {
   const result = compileJavaSource(source, options);
   const artifacts = result.classes.map((classEntry) => {
-    const bytes = assembleJasminBytes(classEntry.jasmin, options.assembly || {});
+    const bytes = assembleClassModel(classEntry, options);
     return {
       internalName: classEntry.internalName,
       binaryName: classEntry.binaryName,
       sourceFile: classEntry.sourceFile,
-      jasmin: classEntry.jasmin,
+      get jasmin() { return classEntry.jasmin; },
       bytes: new Uint8Array(bytes),
     };
   });
@@ -80,13 +81,13 @@ function compileJavaFilesForBrowser(inputPaths, options = {}) {
     const written = writtenByInternalName.get(classEntry.internalName);
     const bytes = written
       ? fileSystem.readFileSync(written.outputPath)
-      : assembleJasminBytes(classEntry.jasmin, options.assembly || {});
+      : assembleClassModel(classEntry, options);
     return {
       internalName: classEntry.internalName,
       binaryName: classEntry.binaryName,
       sourceFile: classEntry.sourceFile,
       outputPath: written ? written.outputPath : null,
-      jasmin: classEntry.jasmin,
+      get jasmin() { return classEntry.jasmin; },
       bytes: new Uint8Array(bytes),
     };
   });
@@ -112,7 +113,14 @@ class BrowserJVMDebug {
     setFileProvider(this.fileProvider);
     
     // Create the real debug controller with rewind history enabled and classpath set to root
-    this.debugController = new DebugController({ rewindHistorySize: 50, classpath: ['.'] });
+    this.debugController = new DebugController({
+      rewindHistorySize: 50,
+      classpath: ['.'],
+      // Attaching to a running applet must not drop it to one bytecode per tick.
+      debugFullSpeed: true,
+      // Feeds the debugger's JIT panel; telemetry is off by default.
+      jit: { telemetry: { enabled: true } },
+    });
     this.isReady = false;
   }
 
@@ -216,7 +224,11 @@ class BrowserJVMDebug {
   /**
    * Run a class without debugging (execute to completion).
    * @param {string} classPath - Path to the class file (virtual path) or class name
-   * @param {object} options - Run options
+   * @param {object} options - Run options; `classes` is a list of class-file
+   *   bytes defined in the fresh JVM before it starts, so freshly compiled
+   *   classes are not read back through the file provider. `bootImage` is
+   *   the bytes from createBootImage(): the VM starts from that state instead
+   *   of loading and initialising the class
    * @returns {Promise<object>} - Run result
    */
   async run(classPath, options = {}) {
@@ -230,8 +242,17 @@ class BrowserJVMDebug {
         ? classPath.replace('.class', '')
         : classPath;
 
+      const { classes: definedClasses = [], bootImage, ...runOptions } = options;
+      for (const bytes of definedClasses) {
+        this.debugController.jvm.defineClass(bytes);
+      }
       this.debugController.executionState = 'running';
-      await this.debugController.jvm.run(className, options);
+      if (bootImage) {
+        const image = await decodeBootImage(bootImage);
+        await this.debugController.jvm.runFromBootImage(image, runOptions);
+      } else {
+        await this.debugController.jvm.run(className, runOptions);
+      }
       this.debugController.executionState = 'stopped';
       return { status: 'completed' };
     } catch (error) {
@@ -311,12 +332,24 @@ class BrowserJVMDebug {
   }
 
   /**
-   * Set a breakpoint
+   * Set a breakpoint in one method. The disassembly view shows the current
+   * frame's method, so that is the default location.
    * @param {number} pc - Program counter location
+   * @param {object} [location] - { className, methodName, descriptor }
+   * @returns {object} - Breakpoint result
+   */
+  setBreakpoint(pc, location = null) {
+    return this.debugController.setBreakpoint(pc,
+      location || this.debugController.jvm.getCurrentBreakpointLocation());
+  }
+
+  /**
+   * Set a breakpoint from a location such as `Class.method+6` or `File.java:12`
+   * @param {string} spec - Breakpoint location
    * @returns {object} - Breakpoint result
    */
-  setBreakpoint(pc) {
-    return this.debugController.setBreakpoint(pc);
+  setBreakpointAt(spec) {
+    return this.debugController.setBreakpointAt(spec);
   }
 
   /**
@@ -373,6 +406,30 @@ class BrowserJVMDebug {
     return this.debugController.jvm.saveState();
   }
 
+  /**
+   * Load a class and run its static initialisers, then capture the VM as a
+   * boot image for run(..., { bootImage }). The session is reset afterwards.
+   * @param {string} classPath - class name or virtual .class path
+   * @param {object} options - `classes` as for run()
+   * @returns {Promise<Uint8Array>} - encoded boot image
+   */
+  async createBootImage(classPath, options = {}) {
+    const className = classPath.endsWith('.class')
+      ? classPath.replace('.class', '')
+      : classPath;
+    this.debugController.reset();
+    const { classes: definedClasses = [], ...runOptions } = options;
+    for (const bytes of definedClasses) {
+      this.debugController.jvm.defineClass(bytes);
+    }
+    try {
+      await this.debugController.jvm.initializeMain(className, runOptions);
+      return await encodeBootImage(this.debugController.jvm.createBootImage());
+    } finally {
+      this.debugController.reset();
+    }
+  }
+
   loadState(state) {
     return this.debugController.jvm.loadState(state);
   }
@@ -565,7 +622,8 @@ class BrowserJVMDebug {
     const { convertJson } = require("../parsing/convert_tree");
 
     const ast = getAST(classData);
-    const converted = convertJson(ast.ast, ast.constantPool);
+    // Signatures only: leave the method bodies unconverted.
+    const converted = convertJson(ast.ast, ast.constantPool, { lazyCode: true });
     const items =
       (converted.classes && converted.classes[0] && converted.classes[0].items) ||
       [];
@@ -593,7 +651,7 @@ class BrowserJVMDebug {
     const { convertJson } = require("../parsing/convert_tree");
     const parseClass = (classData) => {
       const parsed = getAST(classData);
-      return convertJson(parsed.ast, parsed.constantPool).classes[0];
+      return convertJson(parsed.ast, parsed.constantPool, { lazyCode: true }).classes[0];
     };
 
     const rootClass = parseClass(await this.fileProvider.readFile(normalizedPath));
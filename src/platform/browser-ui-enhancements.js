@@ -21,6 +21,7 @@ const DOM_IDS = {
   EXECUTION_STATE: "executionState",
   CLASS_FILE_INPUT: "classFileInput",
   BREAKPOINT_INPUT: "breakpointInput",
+  JIT_TELEMETRY_DISPLAY: "jitTelemetryDisplay",
 };
 
 // Constants for step button IDs
@@ -211,6 +212,7 @@ function setupBrowserSystemOverride() {
     "java/io/ConsoleOutputStream": {
       methods: {
         "write(I)V": (jvm, obj, args) => {
+          if (jvm.replayingHistory) return;
           const byte = args[0];
           const char = String.fromCharCode(byte);
           if (obj.writer) {
@@ -552,6 +554,7 @@ function setupBrowserSystemOverrideWithXterm() {
     "java/io/ConsoleOutputStream": {
       methods: {
         "write(I)V": (jvm, obj, args) => {
+          if (jvm.replayingHistory) return;
           const byte = args[0];
           const char = String.fromCharCode(byte);
           if (obj.writer) {
@@ -1647,6 +1650,38 @@ function renderCallStackTable(frames) {
   </table>`;
 }
 
+// JIT panel: tier mix, then the methods that cost the most compile time or
+// deoptimised most often, from the VM's JIT event stream.
+function renderJitTelemetry(telemetry) {
+  if (!telemetry || !telemetry.summary) {
+    return "JIT idle";
+  }
+  const { summary } = telemetry;
+  const tiers = Object.entries(summary.tiers)
+    .map(([tier, count]) => `${tier}: ${count}`)
+    .join(", ");
+  const seen = new Set();
+  const rows = [...summary.mostDeopts, ...summary.slowestCompiles, ...summary.rejected]
+    .filter((row) => !seen.has(row.method) && seen.add(row.method))
+    .slice(0, 12)
+    .map((row) => `<tr>
+        <td class="value" title="${escapeHtml(row.lastReason || "")}">${escapeHtml(
+        row.method,
+      )}</td>
+        <td>${escapeHtml(row.tier || "?")}</td>
+        <td>${row.compileMs.toFixed(1)}ms</td>
+        <td>${row.deopts}</td>
+      </tr>`)
+    .join("");
+  return `<div class="state-item"><span class="key">Tiers:</span> <span class="value">${escapeHtml(tiers || "none")}</span></div>
+  <table class="state-table">
+    <thead>
+      <tr><th>Method</th><th>Tier</th><th>Compile</th><th>Deopts</th></tr>
+    </thead>
+    <tbody>${rows}</tbody>
+  </table>`;
+}
+
 // Debug Display Updates
 function updateDebugDisplay() {
   if (!jvmDebug) return;
@@ -1721,6 +1756,12 @@ function updateDebugDisplay() {
       callStackDiv.innerHTML = renderCallStackTable(frames);
     }
 
+    const jitDiv = document.getElementById(DOM_IDS.JIT_TELEMETRY_DISPLAY);
+    const jvm = jvmDebug.debugController && jvmDebug.debugController.jvm;
+    if (jitDiv && jvm && jvm.getJitTelemetry) {
+      jitDiv.innerHTML = renderJitTelemetry(jvm.getJitTelemetry({ limit: 12 }));
+    }
+
     // Update disassembly view with clean content and external state display
     if (
       state.executionState === "paused" ||
@@ -2077,7 +2118,9 @@ function enhanceWithRealJVM() {
     }
   };
 
-  window.runProgram = async function () {
+  // options.classes: class-file bytes to define in the fresh JVM before the
+  // run (the workbench hands over what it just compiled).
+  window.runProgram = async function (options = {}) {
     const runBtn = document.getElementById(DOM_IDS.RUN_BTN);
     try {
       const classToRun = await resolveClassToStart();
@@ -2099,7 +2142,7 @@ function enhanceWithRealJVM() {
 
       setDebugControlsVisible(false);
       updateStatus(`Running ${className}...`, "info");
-      await jvmDebug.run(className);
+      await jvmDebug.run(className, { classes: options.classes || [] });
       updateStatus(`Program ${className} completed`, "success");
     } catch (error) {
       logError("Run failed", error);
@@ -2412,21 +2455,27 @@ function deserializeState() {
 
 function setBreakpoint() {
   const input = document.getElementById(DOM_IDS.BREAKPOINT_INPUT);
-  const pc = parseInt(input.value);
+  const spec = input.value.trim();
 
   if (!jvmDebug) {
     log("JVM Debug not initialized", "error");
     return;
   }
 
-  if (isNaN(pc) || pc < 0) {
+  if (!spec) {
     log("Invalid breakpoint location", "error");
     return;
   }
 
   try {
-    jvmDebug.setBreakpoint(pc);
-    log(`Breakpoint set at PC=${pc}`, "success");
+    // A bare offset binds to the method in the disassembly view; anything
+    // else (Class.method+6, File.java:12) names its own location.
+    if (/^\d+$/.test(spec)) {
+      jvmDebug.setBreakpoint(Number(spec));
+    } else {
+      jvmDebug.setBreakpointAt(spec);
+    }
+    log(`Breakpoint set at ${spec}`, "success");
     input.value = "";
     updateDebugDisplay();
   } catch (error) {
@@ -0,0 +1,268 @@
+'use strict';
+
+// Software rasteriser behind the headless java.awt.Graphics fallback
+// (jre/java/awt/Graphics.js softSurface). A surface is an Int32Array of
+// packed 0xRRGGBB pixels over its own WebAssembly.Memory; every primitive is
+// reduced to clipped horizontal spans, and spans are filled by one small
+// hand-assembled Wasm function that stores two pixels per i64 write. Shapes
+// are scan-converted in JS (a few spans per row) so the per-pixel work all
+// happens in Wasm. Without WebAssembly the same spans go to
+// Int32Array.prototype.fill.
+//
+// The rules follow the AWT ones closely enough for visual regression frames:
+// fill* covers [x, x + w) x [y, y + h), draw* outlines are one pixel wide
+// and cover x + w and y + h, lines include both end points.
+
+const { OP, uleb } = require('../jit/wasmShared');
+
+const I32 = 0x7f;
+const I64 = 0x7e;
+const I64_EXTEND_I32_U = 0xad;
+const I32_GT_U = 0x4b;
+
+// fill(x0, y0, x1, y1, color, width, height): clip the rectangle
+// [x0, x1) x [y0, y1) to the surface and store `color` into every pixel.
+// Locals: 7 = byte address, 8 = row end address, 9 = color in both halves.
+function fillFunctionBody() {
+  const get = (index) => [OP.local_get, index];
+  const set = (index) => [OP.local_set, index];
+  const clampLow = (param) => [
+    ...get(param), OP.i32_const, 0, OP.i32_lt_s, OP.if, 0x40, OP.i32_const, 0, ...set(param), OP.end];
+  const clampHigh = (param, limit) => [
+    ...get(param), ...get(limit), OP.i32_gt_s, OP.if, 0x40, ...get(limit), ...set(param), OP.end];
+  return [
+    ...clampLow(0), ...clampLow(1), ...clampHigh(2, 5), ...clampHigh(3, 6),
+    ...get(0), ...get(2), OP.i32_ge_s, ...get(1), ...get(3), OP.i32_ge_s, OP.i32_or, OP.br_if, 0,
+    ...get(4), I64_EXTEND_I32_U, OP.local_tee, 9, ...get(9), OP.i64_const, 32, OP.i64_shl, OP.i64_or, ...set(9),
+    OP.loop, 0x40,
+    // address = (y0 * width + x0) * 4, end = (y0 * width + x1) * 4
+    ...get(1), ...get(5), OP.i32_mul, OP.local_tee, 8, ...get(0), OP.i32_add, OP.i32_const, 2, OP.i32_shl, ...set(7),
+    ...get(8), ...get(2), OP.i32_add, OP.i32_const, 2, OP.i32_shl, ...set(8),
+    OP.block, 0x40,
+    OP.loop, 0x40,
+    ...get(7), OP.i32_const, 8, OP.i32_add, ...get(8), I32_GT_U, OP.br_if, 1,
+    ...get(7), ...get(9), OP.i64_store, 2, 0,
+    ...get(7), OP.i32_const, 8, OP.i32_add, ...set(7),
+    OP.br, 0,
+    OP.end,
+    OP.end,
+    ...get(7), ...get(8), OP.i32_lt_u, OP.if, 0x40, ...get(7), ...get(4), OP.i32_store, 2, 0, OP.end,
+    ...get(1), OP.i32_const, 1, OP.i32_add, OP.local_tee, 1, ...get(3), OP.i32_lt_s, OP.br_if, 0,
+    OP.end,
+    OP.end,
+  ];
+}
+
+function rasterModuleBytes() {
+  const section = (id, content) => [id, ...uleb(content.length), ...content];
+  const name = (text) => [...uleb(text.length), ...[...text].map((char) => char.charCodeAt(0))];
+  const body = [3, 1, I32, 1, I32, 1, I64, ...fillFunctionBody()];
+  return new Uint8Array([
+    0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00,
+    ...section(1, [1, 0x60, 7, I32, I32, I32, I32, I32, I32, I32, 0]),
+    ...section(2, [1, ...name('env'), ...name('mem'), 0x02, 0x00, 1]),
+    ...section(3, [1, 0]),
+    ...section(7, [1, ...name('fill'), 0x00, 0]),
+    ...section(10, [1, ...uleb(body.length), ...body]),
+  ]);
+}
+
+let rasterModule;
+
+function compiledRasterModule() {
+  if (rasterModule === undefined) {
+    try {
+      rasterModule = typeof WebAssembly === 'object'
+        ? new WebAssembly.Module(rasterModuleBytes()) : null;
+    } catch (_) {
+      rasterModule = null;
+    }
+  }
+  return rasterModule;
+}
+
+class HeadlessRaster {
+  /**
+   * @param {number} width
+   * @param {number} height
+   * @param {object} [options] - { wasm: true }
+   */
+  constructor(width, height, options = {}) {
+    this.width = width | 0;
+    this.height = height | 0;
+    const bytes = Math.max(4, this.width * this.height * 4);
+    const module = options.wasm === false ? null : compiledRasterModule();
+    if (module) {
+      this.memory = new WebAssembly.Memory({ initial: Math.ceil(bytes / 65536) });
+      this.pixels = new Int32Array(this.memory.buffer, 0, this.width * this.height);
+      this.wasmFill = new WebAssembly.Instance(module, { env: { mem: this.memory } }).exports.fill;
+    } else {
+      this.memory = null;
+      this.pixels = new Int32Array(this.width * this.height);
+      this.wasmFill = null;
+    }
+  }
+
+  // Fill [x0, x1) x [y0, y1), clipped.
+  fill(x0, y0, x1, y1, rgb) {
+    if (this.wasmFill) {
+      this.wasmFill(x0 | 0, y0 | 0, x1 | 0, y1 | 0, rgb | 0, this.width, this.height);
+      return;
+    }
+    const width = this.width;
+    const left = Math.max(0, x0 | 0), right = Math.min(width, x1 | 0);
+    if (left >= right) return;
+    const bottom = Math.min(this.height, y1 | 0);
+    for (let row = Math.max(0, y0 | 0); row < bottom; row++) {
+      this.pixels.fill(rgb | 0, row * width + left, row * width + right);
+    }
+  }
+
+  fillRect(x, y, w, h, rgb) {
+    if (w > 0 && h > 0) this.fill(x, y, x + w, y + h, rgb);
+  }
+
+  drawRect(x, y, w, h, rgb) {
+    if (w < 0 || h < 0) return;
+    this.fill(x, y, x + w + 1, y + 1, rgb);
+    if (h > 0) this.fill(x, y + h, x + w + 1, y + h + 1, rgb);
+    this.fill(x, y + 1, x + 1, y + h, rgb);
+    if (w > 0) this.fill(x + w, y + 1, x + w + 1, y + h, rgb);
+  }
+
+  // Bresenham, emitting each run of same-row pixels as one span.
+  drawLine(x1, y1, x2, y2, rgb) {
+    let x = x1 | 0, y = y1 | 0;
+    const endX = x2 | 0, endY = y2 | 0;
+    const dx = Math.abs(endX - x), dy = -Math.abs(endY - y);
+    const stepX = x < endX ? 1 : -1, stepY = y < endY ? 1 : -1;
+    let error = dx + dy;
+    let runStart = x;
+    for (;;) {
+      if (x === endX && y === endY) break;
+      const doubled = 2 * error;
+      if (doubled <= dx) {
+        this.fill(Math.min(runStart, x), y, Math.max(runStart, x) + 1, y + 1, rgb);
+        error += dx;
+        y += stepY;
+        if (doubled >= dy) {
+          error += dy;
+          x += stepX;
+        }
+        runStart = x;
+        continue;
+      }
+      error += dy;
+      x += stepX;
+    }
+    this.fill(Math.min(runStart, x), y, Math.max(runStart, x) + 1, y + 1, rgb);
+  }
+
+  // Horizontal extent of the ellipse inscribed in (x, y, w, h) on pixel
+  // row `row`, sampled at the row centre: [left, right) or null.
+  ovalSpan(x, y, w, h, row) {
+    const rx = w / 2, ry = h / 2;
+    const dy = (row + 0.5 - (y + ry)) / ry;
+    if (dy <= -1 || dy >= 1) return null;
+    const half = rx * Math.sqrt(1 - dy * dy);
+    const left = Math.round(x + rx - half), right = Math.round(x + rx + half);
+    return left < right ? [left, right] : null;
+  }
+
+  fillOval(x, y, w, h, rgb) {
+    if (w <= 0 || h <= 0) return;
+    for (let row = Math.max(0, y | 0), end = Math.min(this.height, (y + h) | 0); row < end; row++) {
+      const span = this.ovalSpan(x, y, w, h, row);
+      if (span) this.fill(span[0], row, span[1], row + 1, rgb);
+    }
+  }
+
+  // One-pixel outline: on each row, the pixels of the filled (w + 1, h + 1)
+  // oval not covered by the rows above and below it.
+  drawOval(x, y, w, h, rgb) {
+    if (w < 0 || h < 0) return;
+    const ow = w + 1, oh = h + 1;
+    const spanAt = (row) => (row < y || row >= y + oh ? null : this.ovalSpan(x, y, ow, oh, row));
+    for (let row = Math.max(0, y | 0), end = Math.min(this.height, (y + oh) | 0); row < end; row++) {
+      const span = spanAt(row);
+      if (!span) continue;
+      const above = spanAt(row - 1), below = spanAt(row + 1);
+      // The interior is where both neighbours also cover, shrunk by one.
+      const innerLeft = Math.max(above ? above[0] : Infinity, below ? below[0] : Infinity, span[0] + 1);
+      const innerRight = Math.min(above ? above[1] : -Infinity, below ? below[1] : -Infinity, span[1] - 1);
+      if (innerLeft >= innerRight) {
+        this.fill(span[0], row, span[1], row + 1, rgb);
+      } else {
+        this.fill(span[0], row, innerLeft, row + 1, rgb);
+        this.fill(innerRight, row, span[1], row + 1, rgb);
+      }
+    }
+  }
+
+  // Even-odd scanline fill sampled at pixel centres, as java.awt does for
+  // fillPolygon.
+  fillPolygon(xs, ys, count, rgb) {
+    const n = Math.min(count | 0, xs.length, ys.length);
+    if (n < 3) return;
+    let top = Infinity, bottom = -Infinity;
+    for (let i = 0; i < n; i++) {
+      if (ys[i] < top) top = ys[i];
+      if (ys[i] > bottom) bottom = ys[i];
+    }
+    const crossings = [];
+    for (let row = Math.max(0, top | 0), end = Math.min(this.height, bottom | 0); row < end; row++) {
+      const sampleY = row + 0.5;
+      crossings.length = 0;
+      for (let i = 0, j = n - 1; i < n; j = i++) {
+        const yi = ys[i], yj = ys[j];
+        if ((yi <= sampleY) === (yj <= sampleY)) continue;
+        crossings.push(xs[i] + (sampleY - yi) * (xs[j] - xs[i]) / (yj - yi));
+      }
+      crossings.sort((a, b) => a - b);
+      for (let k = 0; k + 1 < crossings.length; k += 2) {
+        this.fill(Math.ceil(crossings[k] - 0.5), row, Math.ceil(crossings[k + 1] - 0.5), row + 1, rgb);
+      }
+    }
+  }
+
+  drawPolygon(xs, ys, count, rgb) {
+    const n = Math.min(count | 0, xs.length, ys.length);
+    for (let i = 0; i < n; i++) {
+      const j = (i + 1) % n;
+      this.drawLine(xs[i], ys[i], xs[j], ys[j], rgb);
+    }
+  }
+
+  // Pie slice: the oval rows clipped to the angular sector, by testing each
+  // span's pixels against the two bounding rays. Angles are AWT degrees,
+  // counter-clockwise from three o'clock, scaled to the oval's aspect.
+  fillArc(x, y, w, h, startAngle, arcAngle, rgb) {
+    if (w <= 0 || h <= 0 || arcAngle === 0) return;
+    if (Math.abs(arcAngle) >= 360) {
+      this.fillOval(x, y, w, h, rgb);
+      return;
+    }
+    const start = arcAngle > 0 ? startAngle : startAngle + arcAngle;
+    const sweep = Math.abs(arcAngle);
+    const cx = x + w / 2, cy = y + h / 2;
+    const normalise = (degrees) => ((degrees % 360) + 360) % 360;
+    const from = normalise(start);
+    for (let row = Math.max(0, y | 0), end = Math.min(this.height, (y + h) | 0); row < end; row++) {
+      const span = this.ovalSpan(x, y, w, h, row);
+      if (!span) continue;
+      const dy = (cy - (row + 0.5)) / h;
+      let runStart = -1;
+      for (let col = span[0]; col <= span[1]; col++) {
+        const inside = col < span[1] &&
+          normalise(Math.atan2(dy, (col + 0.5 - cx) / w) * 180 / Math.PI - from) <= sweep;
+        if (inside && runStart < 0) runStart = col;
+        if (!inside && runStart >= 0) {
+          this.fill(runStart, row, col, row + 1, rgb);
+          runStart = -1;
+        }
+      }
+    }
+  }
+}
+
+module.exports = { HeadlessRaster, rasterModuleBytes };
@@ -25,6 +25,16 @@
   const forceMonoByQuery = Boolean(global.location &&
     typeof global.location.search === "string" &&
     new URLSearchParams(global.location.search).get("audio") === "mono");
+  // With cross-origin isolation the line and its processor share one ring of
+  // decoded frames: a SharedArrayBuffer holding two free-running Int32 frame
+  // counters (RING_READ, owned by the processor, and RING_WRITE, owned by the
+  // line) followed by the Float32 samples. The line decodes guest writes
+  // straight into it and the processor reads it in process() without
+  // messages or allocation. Without isolation, decoded regions are posted as
+  // transferred "pcm" messages instead.
+  const RING_READ = 0;
+  const RING_WRITE = 1;
+  const RING_HEADER_BYTES = 8;
   const WORKLET_SOURCE = `
 class JVMSourceDataLineProcessor extends AudioWorkletProcessor {
   constructor(options) {
@@ -37,9 +47,19 @@ class JVMSourceDataLineProcessor extends AudioWorkletProcessor {
     this.chunks = [];
     this.chunkOffset = 0;
     this.queuedFrames = 0;
+    this.ringHeader = null;
+    this.ringSamples = null;
+    this.ringMask = 0;
+    if (config.ring) {
+      this.ringHeader = new Int32Array(config.ring, 0, 2);
+      this.ringSamples = new Float32Array(config.ring, ${RING_HEADER_BYTES},
+        config.ringFrames * this.channels);
+      this.ringMask = config.ringFrames - 1;
+    }
+    this.reportedEmpty = true;
     this.phase = 0;
-    this.current = null;
-    this.next = null;
+    this.current = new Float32Array(this.channels);
+    this.next = new Float32Array(this.channels);
     this.started = false;
     this.generation = 0;
     this.reportCountdown = 0;
@@ -53,17 +73,39 @@ class JVMSourceDataLineProcessor extends AudioWorkletProcessor {
         this.chunks.length = 0;
         this.chunkOffset = 0;
         this.queuedFrames = 0;
-        this.current = this.next = null;
+        if (this.ringHeader && typeof message.ringWrite === "number") {
+          // Skip what was queued when the line flushed, but not frames it
+          // wrote after that and this processor may already have reached.
+          const read = Atomics.load(this.ringHeader, ${RING_READ});
+          const queued =
+            (Atomics.load(this.ringHeader, ${RING_WRITE}) - read) >>> 0;
+          if (((message.ringWrite - read) >>> 0) <= queued) {
+            Atomics.store(this.ringHeader, ${RING_READ}, message.ringWrite);
+          }
+        }
         this.started = false;
         this.phase = 0;
       }
     };
   }
-  readFrame() {
+  queued() {
+    if (!this.ringHeader) return this.queuedFrames;
+    return (Atomics.load(this.ringHeader, ${RING_WRITE}) -
+      Atomics.load(this.ringHeader, ${RING_READ})) >>> 0;
+  }
+  readFrame(frame) {
+    if (this.ringHeader) {
+      const read = Atomics.load(this.ringHeader, ${RING_READ});
+      if (Atomics.load(this.ringHeader, ${RING_WRITE}) === read) return false;
+      const offset = (read & this.ringMask) * this.channels;
+      for (let channel = 0; channel < this.channels; channel++)
+        frame[channel] = this.ringSamples[offset + channel];
+      Atomics.store(this.ringHeader, ${RING_READ}, (read + 1) | 0);
+      return true;
+    }
     while (this.chunks.length) {
       const chunk = this.chunks[0];
       if (this.chunkOffset + this.channels <= chunk.length) {
-        const frame = new Float32Array(this.channels);
         for (let channel = 0; channel < this.channels; channel++)
           frame[channel] = chunk[this.chunkOffset + channel];
         this.chunkOffset += this.channels;
@@ -72,22 +114,20 @@ class JVMSourceDataLineProcessor extends AudioWorkletProcessor {
           this.chunks.shift();
           this.chunkOffset = 0;
         }
-        return frame;
+        return true;
       }
       this.chunks.shift();
       this.chunkOffset = 0;
     }
-    return null;
+    return false;
   }
   process(inputs, outputs) {
     const output = outputs[0];
-    if (!this.started && this.queuedFrames >= this.startFrames) {
-      this.current = this.readFrame();
-      this.next = this.readFrame();
-      this.started = Boolean(this.current && this.next);
+    if (!this.started && this.queued() >= this.startFrames) {
+      this.started = this.readFrame(this.current) && this.readFrame(this.next);
     }
     for (let frame = 0; frame < output[0].length; frame++) {
-      if (!this.started || !this.current || !this.next) break;
+      if (!this.started) break;
       for (let channel = 0; channel < output.length; channel++) {
         const sourceChannel = Math.min(channel, this.channels - 1);
         output[channel][frame] = this.current[sourceChannel] +
@@ -96,17 +136,25 @@ class JVMSourceDataLineProcessor extends AudioWorkletProcessor {
       this.phase += this.ratio;
       while (this.phase >= 1) {
         this.phase -= 1;
+        const previous = this.current;
         this.current = this.next;
-        this.next = this.readFrame();
-        if (!this.next) {
+        this.next = previous;
+        if (!this.readFrame(this.next)) {
           this.port.postMessage({type: "underrun"});
           this.started = false;
-          this.current = null;
           break;
         }
       }
     }
-    if (--this.reportCountdown <= 0) {
+    if (this.ringHeader) {
+      // The line reads the ring's fill level itself; it only needs telling
+      // when the ring empties so pending drain callbacks can run.
+      const empty = this.queued() === 0;
+      if (empty && !this.reportedEmpty) {
+        this.port.postMessage({type: "queue", frames: 0});
+      }
+      this.reportedEmpty = empty;
+    } else if (--this.reportCountdown <= 0) {
       this.reportCountdown = 16;
       this.port.postMessage({type: "queue", frames: this.queuedFrames});
     }
@@ -157,6 +205,26 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
     return sharedAudioContext;
   }
 
+  function sharedRingAvailable() {
+    return global.crossOriginIsolated === true &&
+      typeof global.SharedArrayBuffer === "function" &&
+      typeof global.Atomics === "object";
+  }
+
+  function createSampleRing(minimumFrames, channels) {
+    let frames = 1;
+    while (frames < minimumFrames) frames *= 2;
+    const buffer = new global.SharedArrayBuffer(
+      RING_HEADER_BYTES + frames * channels * 4);
+    return {
+      buffer,
+      frames,
+      channels,
+      header: new Int32Array(buffer, 0, 2),
+      samples: new Float32Array(buffer, RING_HEADER_BYTES, frames * channels),
+    };
+  }
+
   class WebAudioOutput {
     constructor(options) {
       this.options = options;
@@ -210,6 +278,10 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
       this.workletNode = null;
       this.workletQueuedFrames = 0;
       this.workletGeneration = 0;
+      this.ring = null;
+      this.ringBacklog = [];
+      this.ringBacklogFrames = 0;
+      this.ringTimer = null;
       // Long-lived music benefits from an ~80 ms cushion, but short-lived
       // effect lines often contain only one coalesced region. Requiring the
       // music-sized cushion there means valid transient PCM is queued but the
@@ -226,21 +298,34 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
           const playbackChannels =
             this.forceMono && (this.options.channels || 1) > 1
               ? 1 : Math.max(1, this.options.channels || 1);
+          const processorOptions = {
+            channels: playbackChannels,
+            sampleRate: this.options.sampleRate,
+            startFrames: this.workletStartFrames,
+          };
+          if (sharedRingAvailable()) {
+            // Half a second of input, and never less than a few times the
+            // line's own buffer so a guest honouring available() never
+            // outruns the processor.
+            this.ring = createSampleRing(Math.max(4 * capacityFrames,
+              Math.ceil((this.options.sampleRate || 44100) / 2)),
+            playbackChannels);
+            processorOptions.ring = this.ring.buffer;
+            processorOptions.ringFrames = this.ring.frames;
+          }
           this.workletNode = new global.AudioWorkletNode(
             this.context, "jvm-source-data-line", {
               numberOfInputs: 0,
               numberOfOutputs: 1,
               outputChannelCount: [playbackChannels],
-              processorOptions: {
-                channels: playbackChannels,
-                sampleRate: this.options.sampleRate,
-                startFrames: this.workletStartFrames,
-              },
+              processorOptions,
             });
           this.workletNode.port.onmessage = event => {
             if (event.data && event.data.type === "queue") {
-              this.workletQueuedFrames = Math.max(0,
-                Number(event.data.frames) || 0);
+              if (!this.ring) {
+                this.workletQueuedFrames = Math.max(0,
+                  Number(event.data.frames) || 0);
+              }
               this.maybeFlushDrainCallbacks();
             } else if (event.data && event.data.type === "underrun") {
               this.underruns += 1;
@@ -282,6 +367,13 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
       if (this.context.state === "suspended" && typeof this.context.resume === "function") {
         resumeSharedAudioContext();
       }
+      if (this.ring && this.stagedByteLength === 0) {
+        // The ring is one continuous stream, so there are no resampler
+        // boundaries to coalesce away: decode straight into it.
+        this.recordPcmBytes(bytes);
+        this.scheduleWorkletBytes(bytes);
+        return;
+      }
       // Staging outlives the guest write call, whose backing byte array may
       // be reused immediately for the next mixer region.
       this.stagedChunks.push(new Uint8Array(bytes));
@@ -382,9 +474,98 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
       const bitDepth = this.options.bitDepth || 16;
       const bytesPerSample = bitDepth / 8;
       const frames = Math.floor(bytes.length / (channels * bytesPerSample));
+      if (this.ring) {
+        this.writeRingBytes(bytes, frames);
+        return;
+      }
       const playbackChannels = this.forceMono && channels > 1 ? 1 : channels;
       const samples = new Float32Array(frames * playbackChannels);
-      for (let frame = 0; frame < frames; frame++) {
+      this.decodeWorkletFrames(bytes, 0, frames, samples, 0);
+      this.workletQueuedFrames += frames;
+      this.workletNode.port.postMessage({
+        type: "pcm", generation: this.workletGeneration, frames,
+        samples: samples.buffer,
+      }, [samples.buffer]);
+    }
+
+    // Queue guest PCM behind anything already waiting for ring space, then
+    // move as much as fits. Only an overflowing remainder is copied, since
+    // the guest may reuse its array as soon as write() returns.
+    writeRingBytes(bytes, frames) {
+      const bytesPerFrame = this.bytesPerFrame;
+      let written = 0;
+      if (this.ringBacklog.length === 0) {
+        written = this.writeRingFrames(bytes, 0, frames);
+      }
+      if (written < frames) {
+        this.ringBacklog.push(new Uint8Array(bytes.subarray(
+          written * bytesPerFrame, frames * bytesPerFrame)));
+        this.ringBacklogFrames += frames - written;
+        this.scheduleRingBacklog();
+      }
+    }
+
+    writeRingFrames(bytes, firstFrame, frameCount) {
+      const ring = this.ring;
+      const read = Atomics.load(ring.header, RING_READ);
+      const write = Atomics.load(ring.header, RING_WRITE);
+      const free = ring.frames - ((write - read) >>> 0);
+      const count = Math.min(frameCount, free);
+      if (count <= 0) return 0;
+      const position = write & (ring.frames - 1);
+      const untilWrap = Math.min(count, ring.frames - position);
+      this.decodeWorkletFrames(bytes, firstFrame, untilWrap,
+        ring.samples, position * ring.channels);
+      if (count > untilWrap) {
+        this.decodeWorkletFrames(bytes, firstFrame + untilWrap,
+          count - untilWrap, ring.samples, 0);
+      }
+      // Publish only after the samples are in place.
+      Atomics.store(ring.header, RING_WRITE, (write + count) | 0);
+      return count;
+    }
+
+    scheduleRingBacklog() {
+      if (this.ringTimer !== null) return;
+      this.ringTimer = setTimeout(() => {
+        this.ringTimer = null;
+        if (!this.closed) this.drainRingBacklog();
+      }, 10);
+    }
+
+    drainRingBacklog() {
+      while (this.ringBacklog.length) {
+        const chunk = this.ringBacklog[0];
+        const frames = Math.floor(chunk.length / this.bytesPerFrame);
+        const written = this.writeRingFrames(chunk, 0, frames);
+        this.ringBacklogFrames -= written;
+        if (written < frames) {
+          this.ringBacklog[0] = chunk.subarray(written * this.bytesPerFrame);
+          this.scheduleRingBacklog();
+          return;
+        }
+        this.ringBacklog.shift();
+      }
+      this.maybeFlushDrainCallbacks();
+    }
+
+    workletQueued() {
+      if (!this.ring) return this.workletQueuedFrames;
+      return ((Atomics.load(this.ring.header, RING_WRITE) -
+        Atomics.load(this.ring.header, RING_READ)) >>> 0) +
+        this.ringBacklogFrames;
+    }
+
+    // Decode frameCount frames starting at firstFrame of bytes into samples,
+    // from index targetOffset, at the processor's channel count.
+    decodeWorkletFrames(bytes, firstFrame, frameCount, samples, targetOffset) {
+      const channels = Math.max(1, this.options.channels || 1);
+      const bitDepth = this.options.bitDepth || 16;
+      const bytesPerSample = bitDepth / 8;
+      const playbackChannels = this.forceMono && channels > 1 ? 1 : channels;
+      const lastFrame = firstFrame + frameCount;
+      for (let frame = firstFrame; frame < lastFrame; frame++) {
+        const base = targetOffset + (frame - firstFrame) * playbackChannels;
         if (playbackChannels === 1 && channels > 1) {
           let sum = 0;
           for (let channel = 0; channel < channels; channel++) {
@@ -409,7 +590,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
             }
             this.lastSamples[channel] = sample;
           }
-          samples[frame] = sum / channels;
+          samples[base] = sum / channels;
         } else {
           for (let channel = 0; channel < channels; channel++) {
             const sampleIndex =
@@ -417,7 +598,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
             const sample = decodePcmSample(bytes,
               sampleIndex, bitDepth,
               this.options.signed !== false, this.options.bigEndian === true);
-            samples[frame * channels + channel] = sample;
+            samples[base + channel] = sample;
             const amplitude = Math.abs(sample);
             if (amplitude >= 1) saturatedSampleCount += 1;
             this.channelAbsoluteSums[channel] += amplitude;
@@ -435,7 +616,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
           }
         }
         if (frame % 128 === 0) {
-          const diagnosticSample = samples[frame * playbackChannels];
+          const diagnosticSample = samples[base];
           const amplitude = Math.abs(diagnosticSample);
           sampledFrames += 1;
           if (amplitude > 1 / 32768) nonSilentSampledFrames += 1;
@@ -444,12 +625,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
           }
         }
       }
-      this.decodedFrames += frames;
-      this.workletQueuedFrames += frames;
-      this.workletNode.port.postMessage({
-        type: "pcm", generation: this.workletGeneration, frames,
-        samples: samples.buffer,
-      }, [samples.buffer]);
+      this.decodedFrames += frameCount;
     }
 
     scheduleBytes(bytes) {
@@ -560,7 +736,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
         this.context.sampleRate ||
         44100;
       const queuedFrames = this.workletNode
-        ? this.workletQueuedFrames + this.stagedFrames
+        ? this.workletQueued() + this.stagedFrames
         : Math.ceil(
           Math.max(0, this.scheduledTime - this.context.currentTime) * sampleRate,
         ) + this.stagedFrames;
@@ -579,7 +755,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
 
     maybeFlushDrainCallbacks() {
       const drained = this.workletNode
-        ? this.stagedFrames === 0 && this.workletQueuedFrames === 0
+        ? this.stagedFrames === 0 && this.workletQueued() === 0
         : this.pendingSources === 0;
       if (drained) this.flushDrainCallbacks();
     }
@@ -594,7 +770,7 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
         this.context.sampleRate ||
         44100;
       if (this.workletNode) {
-        return (this.workletQueuedFrames + this.stagedFrames) / sampleRate;
+        return (this.workletQueued() + this.stagedFrames) / sampleRate;
       }
       return Math.max(0, this.scheduledTime - this.context.currentTime) +
         this.stagedFrames / sampleRate;
@@ -608,12 +784,23 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
       this.stagedChunks = [];
       this.stagedByteLength = 0;
       this.stagedFrames = 0;
+      if (this.ringTimer !== null) {
+        clearTimeout(this.ringTimer);
+        this.ringTimer = null;
+      }
+      this.ringBacklog = [];
+      this.ringBacklogFrames = 0;
       if (this.workletNode) {
         this.workletGeneration += 1;
         this.workletQueuedFrames = 0;
-        this.workletNode.port.postMessage({
+        const message = {
           type: "flush", generation: this.workletGeneration,
-        });
+        };
+        // The processor owns the read index, so it does the skipping.
+        if (this.ring) {
+          message.ringWrite = Atomics.load(this.ring.header, RING_WRITE);
+        }
+        this.workletNode.port.postMessage(message);
       }
       for (const source of this.sources) {
         source.onended = null;
@@ -731,7 +918,8 @@ registerProcessor("jvm-source-data-line", JVMSourceDataLineProcessor);`;
             ? 1
             : output.options.channels,
         forceMono: output.forceMono,
-        backend: output.workletNode ? "audio-worklet" : "buffer-sources",
+        backend: output.ring ? "audio-worklet-ring"
+          : output.workletNode ? "audio-worklet" : "buffer-sources",
         coalesceFrames: output.coalesceFrames,
         coalesceDelayMs: output.coalesceDelayMs,
         workletStartFrames: output.workletStartFrames,
@@ -1018,7 +1018,9 @@
       if (typeof window.runProgram !== "function") {
         throw new Error("The JVM Run action is not initialized");
       }
-      await window.runProgram();
+      await window.runProgram({
+        classes: result.artifacts.map((artifact) => artifact.bytes),
+      });
     } catch (error) {
       setToolStatus("compileStatus", error.message, "error");
     } finally {
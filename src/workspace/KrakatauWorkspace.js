@@ -7,6 +7,15 @@ const { assembleClasses } = require('./assembleAndRun');
 const { renameMethod } = require('./renameMethod');
 const { renameField } = require('./renameField');
 const { renameClass } = require('./renameClass');
+const {
+  hashBytes,
+  indexClass,
+  applyRefs,
+  removeRefs,
+  indexFileFor,
+  loadIndex,
+  saveIndex,
+} = require('./workspaceIndex');
 
 const {
   SymbolIdentifier,
@@ -18,64 +27,250 @@ const {
   Diagnostic
 } = require('./symbols');
 
+// Every AST stays resident unless the caller sets a bound. Under a bound an
+// AST handed out by workspaceASTs or getClassAST may be dropped and re-parsed
+// from its file, so in-place edits must go through the workspace
+// (applyEdit, the rename refactorings) or be assigned back to
+// workspaceASTs[className], which pins the AST; an edit made any other way
+// can be lost on eviction.
+function residentLimit(value) {
+  const limit = value === undefined || value === '' ? Infinity : Number(value);
+  return limit > 0 ? limit : Infinity;
+}
+
+// The parts of an index entry an in-memory edit can change.
+function indexedSymbols(entry) {
+  return [entry.superClassName, entry.interfaces, entry.flags, entry.members, entry.refs];
+}
+
 /**
  * Main workspace class for Java bytecode analysis and refactoring
  */
 class KrakatauWorkspace {
   constructor() {
-    this.workspaceASTs = {}; // className -> { ast, constantPool }
+    this.workspaceASTs = {}; // className -> { ast, constantPool }, parsed on first access
     this.referenceObj = {}; // Master reference graph
     this.classFilePaths = {}; // className -> file path
+    this.classIndex = {}; // className -> index entry (see workspaceIndex.js)
+    this.classPaths = [];
+    this.indexFile = null;
+    this.indexStats = { reused: 0, parsed: 0 };
+    this.maxResidentASTs = Infinity;
+    this.lazyCode = false;
+    this._resident = new Map(); // className -> { ast, constantPool }, least recently used first
+    this._pinned = new Set(); // classes edited in memory: never evicted
+    this._holds = 0;
+    this._queryIndex = null; // derived from referenceObj and the class index, see _referenceIndex()
+    this._watchers = [];
   }
 
   /**
    * Creates and initializes a workspace instance.
    * @param {string|string[]} classPath - A single path or an array of paths to search for .class files.
+   * @param {object} [options] - { index: true to persist the index under the OS temp dir
+   *   (false never persists it), indexDir: persist it there (default KRAKATAU_INDEX_DIR;
+   *   with neither, the index lives in memory only),
+   *   maxResidentASTs: how many full ASTs stay in memory (default KRAKATAU_AST_CACHE, else
+   *   all; see residentLimit for what a bound means for edits), lazyCode: re-parse evicted classes with method bodies
+   *   converted on first access (default KRAKATAU_LAZY_CODE=1) }.
    * @returns {Promise<KrakatauWorkspace>} A fully initialized KrakatauWorkspace instance.
    */
-  static async create(classPath) {
+  static async create(classPath, options = {}) {
     const workspace = new KrakatauWorkspace();
-    await workspace._initialize(classPath);
+    await workspace._initialize(classPath, options);
     return workspace;
   }
 
   /**
-   * Internal method to initialize the workspace
+   * Internal method to initialize the workspace. Classes whose file still
+   * matches the persisted index (mtime and size, else content hash) are not
+   * parsed: their index entry feeds the reference graph and their AST is
+   * parsed on first access.
    * @private
    */
-  async _initialize(classPath) {
+  async _initialize(classPath, options = {}) {
     const classPaths = Array.isArray(classPath) ? classPath : [classPath];
     const classFiles = [];
+    this.classPaths = classPaths;
+    this.maxResidentASTs = residentLimit(options.maxResidentASTs ?? process.env.KRAKATAU_AST_CACHE);
+    this.lazyCode = options.lazyCode ?? process.env.KRAKATAU_LAZY_CODE === '1';
 
     // Find all .class files in the provided paths
     for (const cp of classPaths) {
       this._findClassFiles(cp, classFiles);
     }
 
-    // Load all class files
+    this.indexFile = indexFileFor(classPaths, options);
+    const saved = loadIndex(this.indexFile);
+    let changed = saved.size !== classFiles.length;
     for (const classFile of classFiles) {
-      // We need to get the raw parser output before it's converted
-      // but loadClassByPathSync does both. Let's get the raw content and parse it here.
-      const fs = require('fs');
-      const { getAST } = require('jvm_parser');
-      const { convertJson } = require('../parsing/convert_tree');
-
-      const classFileContent = fs.readFileSync(classFile);
-      const rawAst = getAST(classFileContent);
-      const convertedAst = convertJson(rawAst.ast, rawAst.constantPool);
-
-      if (convertedAst) {
-        const className = convertedAst.classes[0].className;
-        this.workspaceASTs[className] = {
-          ast: convertedAst,
-          constantPool: rawAst.constantPool,
-        };
-        this.classFilePaths[className] = classFile;
+      const stat = fs.statSync(classFile);
+      let entry = saved.get(classFile);
+      if (!entry || entry.mtimeMs !== stat.mtimeMs || entry.size !== stat.size) {
+        const bytes = fs.readFileSync(classFile);
+        if (entry && entry.hash === hashBytes(bytes)) {
+          entry = { ...entry, mtimeMs: stat.mtimeMs, size: stat.size };
+        } else {
+          entry = this._loadClassBytes(classFile, bytes, stat);
+          this.indexStats.parsed += 1;
+        }
+        changed = true;
+      } else {
+        this.indexStats.reused += 1;
+      }
+      if (!entry) continue;
+      if (this.classFilePaths[entry.className] !== classFile) {
+        // same class name in two files: the later one wins, as it always has
+        this._resident.delete(entry.className);
+        this._defineLazyAST(entry.className, classFile);
       }
+      this.classIndex[entry.className] = entry;
+      this.classFilePaths[entry.className] = classFile;
+    }
+
+    this._applyIndexToGraph();
+    if (changed) this.saveIndex();
+  }
+
+  /**
+   * Parses class bytes into workspaceASTs and returns the class's index entry.
+   * @private
+   */
+  _loadClassBytes(classFile, bytes, stat) {
+    const { getAST } = require('jvm_parser');
+    const { convertJson } = require('../parsing/convert_tree');
+
+    const rawAst = getAST(bytes);
+    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool);
+    if (!convertedAst) return null;
+    const className = convertedAst.classes[0].className;
+    this.classFilePaths[className] = classFile;
+    this._defineLazyAST(className, classFile);
+    this._resident.set(className, { ast: convertedAst, constantPool: rawAst.constantPool });
+    this._pinned.delete(className);
+    this._evictASTs();
+    return {
+      file: classFile,
+      mtimeMs: stat.mtimeMs,
+      size: stat.size,
+      hash: hashBytes(bytes),
+      ...indexClass(convertedAst),
+    };
+  }
+
+  /**
+   * Makes workspaceASTs[className] an accessor over the resident-AST cache:
+   * a read returns the cached AST or parses classFile again, and an
+   * assignment replaces the AST and pins it (it no longer matches the file).
+   * @private
+   */
+  _defineLazyAST(className, classFile) {
+    const workspace = this;
+    Object.defineProperty(this.workspaceASTs, className, {
+      enumerable: true,
+      configurable: true,
+      get() {
+        return workspace._residentAST(className, classFile);
+      },
+      set(workspaceEntry) {
+        workspace._resident.set(className, workspaceEntry);
+        workspace._pinned.add(className);
+      },
+    });
+  }
+
+  _residentAST(className, classFile) {
+    let workspaceEntry = this._resident.get(className);
+    if (workspaceEntry) {
+      // most recently used goes last
+      this._resident.delete(className);
+      this._resident.set(className, workspaceEntry);
+      return workspaceEntry;
+    }
+    const { getAST } = require('jvm_parser');
+    const { convertJson } = require('../parsing/convert_tree');
+    const rawAst = getAST(fs.readFileSync(classFile));
+    // The index already holds this class's references, so a re-parse only
+    // needs the bodies a caller goes on to read.
+    workspaceEntry = {
+      ast: convertJson(rawAst.ast, rawAst.constantPool, { lazyCode: this.lazyCode }),
+      constantPool: rawAst.constantPool,
+    };
+    this._resident.set(className, workspaceEntry);
+    this._evictASTs();
+    return workspaceEntry;
+  }
+
+  /**
+   * Drops least recently used ASTs over maxResidentASTs. Pinned (edited)
+   * ASTs stay, and nothing is dropped while a refactoring holds the cache.
+   * @private
+   */
+  _evictASTs() {
+    if (this._holds > 0 || this._resident.size <= this.maxResidentASTs) return;
+    for (const className of this._resident.keys()) {
+      if (this._resident.size <= this.maxResidentASTs) break;
+      if (!this._pinned.has(className)) this._resident.delete(className);
     }
+  }
+
+  /**
+   * Runs fn with eviction suspended, so ASTs it edits in place stay the ones
+   * the workspace hands out; afterwards every AST whose symbols or references
+   * changed is pinned and the reference graph is rebuilt.
+   * @private
+   */
+  _withResidentASTs(fn) {
+    this._holds += 1;
+    try {
+      return fn();
+    } finally {
+      this._holds -= 1;
+      this._buildBasicReferenceGraph();
+    }
+  }
+
+  _isASTLoaded(className) {
+    const descriptor = Object.getOwnPropertyDescriptor(this.workspaceASTs, className);
+    return !!descriptor && (!descriptor.get || this._resident.has(className));
+  }
+
+  /**
+   * The index entry of a workspace class: header, members and reference
+   * records. Answered from the index without loading the AST, unless the AST
+   * was edited in memory (or never had a file), in which case it is derived
+   * from the AST.
+   * @private
+   */
+  _classSummary(className) {
+    const entry = this.classIndex[className];
+    const descriptor = Object.getOwnPropertyDescriptor(this.workspaceASTs, className);
+    if (!descriptor) return null;
+    if (entry && descriptor.get && !this._pinned.has(className)) return entry;
+    return indexClass(this.workspaceASTs[className].ast);
+  }
+
+  _classHeader(className) {
+    return this._classSummary(className);
+  }
+
+  /**
+   * Calls fn(kind, name, descriptor, flags, itemIndex) for each field and
+   * method of a workspace class, in item order.
+   * @private
+   */
+  _forEachMember(className, fn) {
+    const summary = this._classSummary(className);
+    if (summary) summary.members.forEach((member) => fn(...member));
+  }
 
-    // Build a basic reference object without using traverseAST for now
-    this._buildBasicReferenceGraph();
+  /**
+   * Writes the index of every class whose entry still describes its file on
+   * disk (entries rebuilt from edited in-memory ASTs are left out).
+   */
+  saveIndex() {
+    const entries = Object.values(this.classIndex).filter((entry) => entry.file && !entry.edited);
+    return saveIndex(this.indexFile, entries);
   }
 
   /**
@@ -111,19 +306,44 @@ class KrakatauWorkspace {
    * @private
    */
   _buildBasicReferenceGraph() {
+    // Loaded ASTs may have been edited since they were indexed; classes never
+    // loaded are exactly as indexed.
+    Object.keys(this.workspaceASTs).forEach(className => {
+      if (!this._isASTLoaded(className)) return;
+      const previous = this.classIndex[className] || {};
+      const entry = indexClass(this.workspaceASTs[className].ast);
+      const edited = previous.edited || !previous.refs ||
+        JSON.stringify(indexedSymbols(previous)) !== JSON.stringify(indexedSymbols(entry));
+      this.classIndex[className] = { ...previous, ...entry, edited };
+      if (edited) this._pinned.add(className);
+    });
+    Object.keys(this.classIndex).forEach(className => {
+      if (!Object.prototype.hasOwnProperty.call(this.workspaceASTs, className)) {
+        delete this.classIndex[className];
+      }
+    });
+    this._applyIndexToGraph();
+    this._evictASTs();
+  }
+
+  /**
+   * Rebuilds referenceObj from the class index alone.
+   * @private
+   */
+  _applyIndexToGraph() {
     this.referenceObj = {};
-    
+    this._queryIndex = null;
+
     // First, initialize the basic structure for all known classes
     Object.keys(this.workspaceASTs).forEach(className => {
       if (!this.referenceObj[className]) {
         this.referenceObj[className] = { children: new Map(), referees: [] };
       }
     });
-    
-    // Build comprehensive reference graph using traverseAST functionality
-    // Process each class in the workspace to find all cross-references
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      this._buildReferencesForClass(className, workspaceEntry.ast);
+
+    Object.keys(this.workspaceASTs).forEach(className => {
+      const entry = this.classIndex[className];
+      if (entry) applyRefs(this.referenceObj, className, entry.refs);
     });
   }
 
@@ -148,7 +368,8 @@ class KrakatauWorkspace {
         }
         this.referenceObj[className].children.get(methodName).referees.push({
           className, 
-          astPath: `classes.0.items.${itemIndex}.method` 
+          astPath: `classes.0.items.${itemIndex}.method`,
+          descriptor: item.method.descriptor
         });
       } else if (item.type === 'field') {
         const fieldName = item.field.name;
@@ -160,101 +381,8 @@ class KrakatauWorkspace {
         }
         this.referenceObj[className].children.get(fieldName).referees.push({
           className, 
-          astPath: `classes.0.items.${itemIndex}.field` 
-        });
-      }
-    });
-  }
-
-  /**
-   * Builds references for a single class with proper context tracking
-   * @private
-   */
-  _buildReferencesForClass(className, ast) {
-    const cls = ast.classes[0];
-    const classIndex = 0; // Always 0 since each AST contains one class
-    
-    // Initialize reference object for this class
-    if (!this.referenceObj[cls.className]) {
-      this.referenceObj[cls.className] = { children: new Map(), referees: [] };
-    }
-        this.referenceObj[cls.className].referees.push({
-          className: cls.className,
-          astPath: `classes.${classIndex}`
-    });
-
-    cls.items.forEach((item, itemIndex) => {
-      if (item.type === 'method') {
-        const methodName = item.method.name;
-        const methodDescriptor = item.method.descriptor;
-
-        if (!this.referenceObj[cls.className].children.has(methodName)) {
-          this.referenceObj[cls.className].children.set(methodName, {
-            descriptor: methodDescriptor,
-            referees: []
-          });
-        }
-        this.referenceObj[cls.className].children.get(methodName).referees.push({
-          className: cls.className,
-          astPath: `classes.${classIndex}.items.${itemIndex}.method`
-        });
-
-        item.method.attributes.forEach((attr, attrIndex) => {
-          if (attr.type === "code") {
-            attr.code.codeItems.forEach((codeItem, codeItemIndex) => {
-              if (codeItem.instruction && codeItem.instruction.arg) {
-                const instruction = codeItem.instruction;
-                const op = instruction.op;
-                const arg = instruction.arg;
-
-                if (op === 'new' || op === 'instanceof' || op === 'checkcast' || op === 'anewarray') {
-                    const referencedClass = arg;
-                    if (!this.referenceObj[referencedClass]) {
-                        this.referenceObj[referencedClass] = { children: new Map(), referees: [] };
-                    }
-                    this.referenceObj[referencedClass].referees.push({
-                        className: cls.className,
-                        astPath: `classes.${classIndex}.items.${itemIndex}.method.attributes.${attrIndex}.code.codeItems.${codeItemIndex}`
-                    });
-                } else if (op === 'multianewarray') {
-                    const referencedClass = arg[0];
-                    if (!this.referenceObj[referencedClass]) {
-                        this.referenceObj[referencedClass] = { children: new Map(), referees: [] };
-                    }
-                    this.referenceObj[referencedClass].referees.push({
-                        className: cls.className,
-                        astPath: `classes.${classIndex}.items.${itemIndex}.method.attributes.${attrIndex}.code.codeItems.${codeItemIndex}`
-                    });
-                } else if (Array.isArray(arg) && arg.length > 2 && Array.isArray(arg[2]) && arg[2].length >= 2) {
-                  const parentClass = arg[1];
-                  if (!this.referenceObj[parentClass]) {
-                      this.referenceObj[parentClass] = { children: new Map(), referees: [] };
-                  }
-                  this.referenceObj[parentClass].referees.push({
-                      className: cls.className,
-                      astPath: `classes.${classIndex}.items.${itemIndex}.method.attributes.${attrIndex}.code.codeItems.${codeItemIndex}`
-                  });
-
-                  const [fieldNameOrMethodName, descriptor] = arg[2];
-                  if (!this.referenceObj[parentClass].children.has(fieldNameOrMethodName)) {
-                    this.referenceObj[parentClass].children.set(fieldNameOrMethodName, {
-                      descriptor: descriptor,
-                      referees: []
-                    });
-                  }
-                  
-                  const targetRef = this.referenceObj[parentClass].children.get(fieldNameOrMethodName);
-                  if (targetRef && Array.isArray(targetRef.referees)) {
-                    targetRef.referees.push({
-                      className: cls.className,
-                      astPath: `classes.${classIndex}.items.${itemIndex}.method.attributes.${attrIndex}.code.codeItems.${codeItemIndex}`,
-                      op: op,
-                    });
-                  }
-                }
-              }
-            });
-          }
+          astPath: `classes.0.items.${itemIndex}.field`,
+          descriptor: item.field.descriptor
         });
       }
     });
@@ -267,38 +395,26 @@ class KrakatauWorkspace {
   getSymbolTree() {
     const rootChildren = [];
 
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      const ast = workspaceEntry.ast;
+    Object.keys(this.workspaceASTs).forEach((className) => {
       const classSymbol = new SymbolDefinition(
         new SymbolIdentifier(className),
         new SymbolLocation(className, `classes.0`),
         'class',
-        ast.classes[0].flags
+        this._classSummary(className).flags
       );
 
       const methodChildren = [];
       const fieldChildren = [];
 
-      ast.classes[0].items.forEach((item, itemIndex) => {
-        if (item.type === 'method') {
-          const methodSymbol = new SymbolDefinition(
-            new SymbolIdentifier(className, item.method.name, item.method.descriptor),
-            new SymbolLocation(className, `classes.0.items.${itemIndex}.method`),
-            'method',
-            item.method.flags,
-            item.method.descriptor
-          );
-          methodChildren.push(new SymbolTree(methodSymbol));
-        } else if (item.type === 'field') {
-          const fieldSymbol = new SymbolDefinition(
-            new SymbolIdentifier(className, item.field.name, item.field.descriptor),
-            new SymbolLocation(className, `classes.0.items.${itemIndex}.field`),
-            'field',
-            item.field.flags,
-            item.field.descriptor
-          );
-          fieldChildren.push(new SymbolTree(fieldSymbol));
-        }
+      this._forEachMember(className, (kind, name, descriptor, flags, itemIndex) => {
+        const symbol = new SymbolDefinition(
+          new SymbolIdentifier(className, name, descriptor),
+          new SymbolLocation(className, `classes.0.items.${itemIndex}.${kind}`),
+          kind,
+          flags,
+          descriptor
+        );
+        (kind === 'method' ? methodChildren : fieldChildren).push(new SymbolTree(symbol));
       });
 
       const classTree = new SymbolTree(classSymbol, [...methodChildren, ...fieldChildren]);
@@ -315,13 +431,13 @@ class KrakatauWorkspace {
   listClasses() {
     const classes = [];
 
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      const ast = workspaceEntry.ast;
+    Object.keys(this.workspaceASTs).forEach((className) => {
+      const { flags } = this._classSummary(className);
       const classDef = new SymbolDefinition(
         new SymbolIdentifier(className),
         new SymbolLocation(className, `classes.0`),
-        ast.classes[0].flags.includes('interface') ? 'interface' : 'class',
-        ast.classes[0].flags
+        flags.includes('interface') ? 'interface' : 'class',
+        flags
       );
       classes.push(classDef);
     });
@@ -338,22 +454,15 @@ class KrakatauWorkspace {
    * @returns {SymbolDefinition[]} An array of SymbolDefinitions for each symbol of the specified type.
    */
   _listSymbols(className, itemType, symbolKind) {
-    const workspaceEntry = this.workspaceASTs[className];
-    if (!workspaceEntry) {
-      return [];
-    }
-    const ast = workspaceEntry.ast;
-
     const symbols = [];
-    ast.classes[0].items.forEach((item, itemIndex) => {
-      if (item.type === itemType) {
-        const member = item[itemType]; // e.g., item.method or item.field
+    this._forEachMember(className, (kind, name, descriptor, flags, itemIndex) => {
+      if (kind === itemType) {
         const symbol = new SymbolDefinition(
-          new SymbolIdentifier(className, member.name, member.descriptor),
+          new SymbolIdentifier(className, name, descriptor),
           new SymbolLocation(className, `classes.0.items.${itemIndex}.${itemType}`),
           symbolKind,
-          member.flags,
-          member.descriptor
+          flags,
+          descriptor
         );
         symbols.push(symbol);
       }
@@ -380,6 +489,17 @@ class KrakatauWorkspace {
     return this._listSymbols(className, 'field', 'field');
   }
 
+  /**
+   * The index entry of a class: header, members and reference records (see
+   * workspaceIndex.js). Read from the index unless the class was edited in
+   * memory, so it does not load the AST.
+   * @param {string} className - The fully qualified name of the class.
+   * @returns {object|null} The entry, or null if the class is not in the workspace.
+   */
+  getClassSummary(className) {
+    return this._classSummary(className);
+  }
+
   /**
    * Retrieves the full AST for a specific class file.
    * @param {string} className - The fully qualified name of the class.
@@ -393,6 +513,104 @@ class KrakatauWorkspace {
     return workspaceEntry.ast;
   }
 
+  /**
+   * Lookup tables derived from the reference graph and the class index,
+   * rebuilt on first use after any change to either:
+   *   subtypesOf   class -> direct subtypes (extends or implements), in
+   *                workspace order
+   *   allSubtypes  class -> transitive subtypes, breadth first (memoized)
+   *   ranks        class -> { class -> position in its findReferences
+   *                search order } (memoized)
+   *   usesByName   member name -> descriptor -> [[target class, referee,
+   *                index in the target's referee list]]
+   *   definitionsByName  member name -> descriptor -> [[class, kind,
+   *                itemIndex, order]]
+   * @private
+   */
+  _referenceIndex() {
+    if (this._queryIndex) return this._queryIndex;
+    const subtypesOf = new Map();
+    const definitionsByName = new Map();
+    const addTo = (map, key, value) => {
+      if (!map.has(key)) map.set(key, []);
+      map.get(key).push(value);
+    };
+    const addMember = (map, name, descriptor, value) => {
+      if (!map.has(name)) map.set(name, new Map());
+      addTo(map.get(name), descriptor, value);
+    };
+    Object.keys(this.workspaceASTs).forEach((className) => {
+      const summary = this._classSummary(className);
+      if (!summary) return;
+      if (summary.superClassName && summary.superClassName !== className) {
+        addTo(subtypesOf, summary.superClassName, className);
+      }
+      (summary.interfaces || []).forEach((iface) => {
+        if (iface !== className) addTo(subtypesOf, iface, className);
+      });
+      summary.members.forEach(([kind, name, descriptor, , itemIndex], order) => {
+        addMember(definitionsByName, name, descriptor, [className, kind, itemIndex, order]);
+      });
+    });
+    const usesByName = new Map();
+    Object.entries(this.referenceObj).forEach(([target, classRef]) => {
+      classRef.children.forEach((memberRef, name) => {
+        memberRef.referees.forEach((referee, index) => addMember(usesByName, name,
+          referee.descriptor || memberRef.descriptor, [target, referee, index]));
+      });
+    });
+    this._queryIndex = { subtypesOf, allSubtypes: new Map(), ranks: new Map(), usesByName, definitionsByName };
+    return this._queryIndex;
+  }
+
+  _allSubtypeNames(className) {
+    const index = this._referenceIndex();
+    let names = index.allSubtypes.get(className);
+    if (names) return names;
+    names = [];
+    const seen = new Set();
+    const queue = [className];
+    const processed = new Set();
+    while (queue.length > 0) {
+      const current = queue.shift();
+      if (processed.has(current)) continue;
+      processed.add(current);
+      for (const subtype of index.subtypesOf.get(current) || []) {
+        if (!seen.has(subtype)) {
+          seen.add(subtype);
+          names.push(subtype);
+        }
+        queue.push(subtype);
+      }
+    }
+    index.allSubtypes.set(className, names);
+    return names;
+  }
+
+  /**
+   * Classes findReferences searches for a symbol of className, mapped to
+   * their position in the search order: the class, its superclasses, then
+   * every subtype of each of those.
+   * @private
+   */
+  _hierarchyRanks(className) {
+    const index = this._referenceIndex();
+    let ranks = index.ranks.get(className);
+    if (ranks) return ranks;
+    ranks = new Map([[className, 0]]);
+    const roots = [className, ...this.getSupertypeHierarchy(className).map((s) => s.identifier.className)];
+    roots.forEach((root) => {
+      if (!ranks.has(root)) ranks.set(root, ranks.size);
+    });
+    roots.forEach((root) => {
+      this._allSubtypeNames(root).forEach((subtype) => {
+        if (!ranks.has(subtype)) ranks.set(subtype, ranks.size);
+      });
+    });
+    index.ranks.set(className, ranks);
+    return ranks;
+  }
+
   /**
    * Finds all references (callers) for a given symbol.
    * @param {SymbolIdentifier} symbolIdentifier - The symbol to find references for.
@@ -400,75 +618,54 @@ class KrakatauWorkspace {
    */
   findReferences(symbolIdentifier) {
     const allReferences = [];
-    const classesToSearch = new Set([symbolIdentifier.className]);
-
-    // Go up the hierarchy
-    const supertypes = this.getSupertypeHierarchy(symbolIdentifier.className);
-    supertypes.forEach(s => classesToSearch.add(s.identifier.className));
-
-    // For each class in the hierarchy (original + supertypes), find all subtypes
-    const hierarchyAndSubtypes = new Set(classesToSearch);
-    for (const c of classesToSearch) {
-        const subtypes = this.getAllSubtypes(c);
-        subtypes.forEach(s => hierarchyAndSubtypes.add(s.identifier.className));
-    }
-
     const processedRefs = new Set();
+    const add = (className, astPath) => {
+      const refKey = `${className}:${astPath}`;
+      if (!processedRefs.has(refKey)) {
+        allReferences.push(new SymbolLocation(className, astPath));
+        processedRefs.add(refKey);
+      }
+    };
 
-    for (const className of hierarchyAndSubtypes) { // Use the expanded set of classes
-        const classRef = this.referenceObj[className];
-        if (!classRef) {
-            continue;
-        }
+    // Every class in the symbol's hierarchy (the class, its supertypes and all
+    // of their subtypes), ranked in search order.
+    const ranks = this._hierarchyRanks(symbolIdentifier.className);
 
-        if (symbolIdentifier.memberName) {
-            // Looking for method or field references
-            const memberRef = classRef.children.get(symbolIdentifier.memberName);
-            if (memberRef) {
-                memberRef.referees.forEach(referee => {
-                    const refKey = `${referee.className}:${referee.astPath}`;
-                    if (!processedRefs.has(refKey)) {
-                        allReferences.push(new SymbolLocation(referee.className, referee.astPath));
-                        processedRefs.add(refKey);
-                    }
-                });
-            }
-        } else {
-            // Looking for class references
-            classRef.referees.forEach(referee => {
-                const refKey = `${referee.className}:${referee.astPath}`;
-                if (!processedRefs.has(refKey)) {
-                    allReferences.push(new SymbolLocation(referee.className, referee.astPath));
-                    processedRefs.add(refKey);
-                }
-            });
+    if (!symbolIdentifier.memberName) {
+      // Looking for class references
+      for (const className of ranks.keys()) {
+        const classRef = this.referenceObj[className];
+        if (classRef) {
+          classRef.referees.forEach(referee => add(referee.className, referee.astPath));
         }
+      }
+      return allReferences;
     }
 
-    // The above logic finds references TO the members of the hierarchy.
-    // We also need to include the definitions of the members in the hierarchy as "references" to themselves,
-    // so that rename can find and rename them.
-    for (const className of hierarchyAndSubtypes) { // Use the expanded set of classes
-        const workspaceEntry = this.workspaceASTs[className];
-        if (workspaceEntry) {
-            const ast = workspaceEntry.ast;
-            ast.classes[0].items.forEach((item, itemIndex) => {
-                if (item.type === 'method' && item.method.name === symbolIdentifier.memberName) {
-                    const refKey = `${className}:classes.0.items.${itemIndex}.method`;
-                     if (!processedRefs.has(refKey)) {
-                        allReferences.push(new SymbolLocation(className, `classes.0.items.${itemIndex}.method`));
-                        processedRefs.add(refKey);
-                    }
-                } else if (item.type === 'field' && item.field.name === symbolIdentifier.memberName) {
-                    const refKey = `${className}:classes.0.items.${itemIndex}.field`;
-                     if (!processedRefs.has(refKey)) {
-                        allReferences.push(new SymbolLocation(className, `classes.0.items.${itemIndex}.field`));
-                        processedRefs.add(refKey);
-                    }
-                }
-            });
-        }
-    }
+    // Looking for method or field references: only use sites and definitions
+    // carrying the member's name (and descriptor, when the identifier has
+    // one, so overloads stay apart) are visited, then put in search order.
+    const index = this._referenceIndex();
+    const { memberName, descriptor } = symbolIdentifier;
+    const entries = (map) => {
+      const byDescriptor = map.get(memberName);
+      if (!byDescriptor) return [];
+      if (descriptor) return byDescriptor.get(descriptor) || [];
+      return [].concat(...byDescriptor.values());
+    };
+    const byRank = (a, b) => ranks.get(a[0]) - ranks.get(b[0]) || a[a.length - 1] - b[b.length - 1];
+    entries(index.usesByName)
+      .filter(([target]) => ranks.has(target))
+      .sort(byRank)
+      .forEach(([, referee]) => add(referee.className, referee.astPath));
+
+    // The above finds references TO the members of the hierarchy. The
+    // definitions of the members in the hierarchy count as references to
+    // themselves too, so that rename can find and rename them.
+    entries(index.definitionsByName)
+      .filter(([className]) => ranks.has(className))
+      .sort(byRank)
+      .forEach(([className, kind, itemIndex]) => add(className, `classes.0.items.${itemIndex}.${kind}`));
 
     return allReferences;
   }
@@ -506,68 +703,50 @@ class KrakatauWorkspace {
    */
   findCallees(methodIdentifier) {
     const callees = [];
-    const workspaceEntry = this.workspaceASTs[methodIdentifier.className];
-    if (!workspaceEntry) {
+    const summary = this._classSummary(methodIdentifier.className);
+    if (!summary) {
       return callees;
     }
-    const ast = workspaceEntry.ast;
 
-    // Find the method in the AST
-    const methodItem = ast.classes[0].items.find(item => 
-      item.type === 'method' && 
-      item.method.name === methodIdentifier.memberName &&
-      (methodIdentifier.descriptor ? item.method.descriptor === methodIdentifier.descriptor : true)
+    // Find the method among the class's members
+    const methodMember = summary.members.find(([kind, name, descriptor]) =>
+      kind === 'method' &&
+      name === methodIdentifier.memberName &&
+      (methodIdentifier.descriptor ? descriptor === methodIdentifier.descriptor : true)
     );
 
-    if (!methodItem) {
+    if (!methodMember) {
       return callees;
     }
+    const itemIndex = methodMember[4];
 
-    // Look for code attribute
-    const codeAttribute = methodItem.method.attributes.find(attr => attr.type === 'code');
-    if (!codeAttribute) {
-      return callees;
-    }
+    // Member uses recorded for that method's code, in instruction order
+    summary.refs.forEach(([targetClass, refItem, attrIndex, codeIndex, memberName, descriptor, op]) => {
+      if (refItem !== itemIndex || attrIndex < 0 || op === undefined) {
+        return;
+      }
 
-    // Traverse code items to find method and field references
-    codeAttribute.code.codeItems.forEach(codeItem => {
-      if (codeItem.instruction && codeItem.instruction.arg) {
-        const instruction = codeItem.instruction;
-        
-        // Check for method invocations
-        if (instruction.op && instruction.op.includes('invoke')) {
-          if (Array.isArray(instruction.arg) && instruction.arg.length >= 3) {
-            const targetClass = instruction.arg[1];
-            const [methodName, descriptor] = instruction.arg[2];
-            
-            const callee = new SymbolDefinition(
-              new SymbolIdentifier(targetClass, methodName, descriptor),
-              new SymbolLocation(targetClass, 'method_call'), // This would need to be more specific
-              'method',
-              [], // We don't have flags information from the call site
-              descriptor
-            );
-            callees.push(callee);
-          }
-        }
-        
-        // Check for field access
-        if (instruction.op && (instruction.op.includes('getfield') || instruction.op.includes('putfield') || 
-                              instruction.op.includes('getstatic') || instruction.op.includes('putstatic'))) {
-          if (Array.isArray(instruction.arg) && instruction.arg.length >= 3) {
-            const targetClass = instruction.arg[1];
-            const [fieldName, descriptor] = instruction.arg[2];
-            
-            const callee = new SymbolDefinition(
-              new SymbolIdentifier(targetClass, fieldName, descriptor),
-              new SymbolLocation(targetClass, 'field_access'),
-              'field',
-              [],
-              descriptor
-            );
-            callees.push(callee);
-          }
-        }
+      // Check for method invocations
+      if (op.includes('invoke')) {
+        callees.push(new SymbolDefinition(
+          new SymbolIdentifier(targetClass, memberName, descriptor),
+          new SymbolLocation(targetClass, 'method_call'), // This would need to be more specific
+          'method',
+          [], // We don't have flags information from the call site
+          descriptor
+        ));
+      }
+
+      // Check for field access
+      if (op.includes('getfield') || op.includes('putfield') ||
+          op.includes('getstatic') || op.includes('putstatic')) {
+        callees.push(new SymbolDefinition(
+          new SymbolIdentifier(targetClass, memberName, descriptor),
+          new SymbolLocation(targetClass, 'field_access'),
+          'field',
+          [],
+          descriptor
+        ));
       }
     });
 
@@ -584,29 +763,27 @@ class KrakatauWorkspace {
     let currentClass = className;
 
     while (currentClass) {
-        const workspaceEntry = this.workspaceASTs[currentClass];
-        if (!workspaceEntry) {
+        const header = this._classHeader(currentClass);
+        if (!header) {
             if (currentClass !== className) {
                 hierarchy.push(new SymbolDefinition(new SymbolIdentifier(currentClass), null, 'class', []));
             }
             break;
         }
-        const ast = workspaceEntry.ast;
-        const superClass = ast.classes[0].superClassName;
+        const superClass = header.superClassName;
         if (!superClass) {
             break;
         }
 
-        const superWorkspaceEntry = this.workspaceASTs[superClass];
-        const superAst = superWorkspaceEntry ? superWorkspaceEntry.ast : null;
+        const superHeader = this._classHeader(superClass);
         hierarchy.push(new SymbolDefinition(
             new SymbolIdentifier(superClass),
-            superAst ? new SymbolLocation(superClass, 'classes.0') : null,
+            superHeader ? new SymbolLocation(superClass, 'classes.0') : null,
             'class',
-            superAst ? superAst.classes[0].flags : []
+            superHeader ? superHeader.flags : []
         ));
 
-        if (!superAst) {
+        if (!superHeader) {
             break;
         }
 
@@ -622,37 +799,12 @@ class KrakatauWorkspace {
    * @returns {SymbolDefinition[]} An array of SymbolDefinitions for all classes that extend or implement the given type.
    */
   getSubtypeHierarchy(className) {
-    const subtypes = [];
-
-    Object.entries(this.workspaceASTs).forEach(([subClassName, workspaceEntry]) => {
-      if (subClassName === className) {
-        return; // Skip self
-      }
-
-      const cls = workspaceEntry.ast.classes[0];
-      
-      // Check if this class extends the target class
-      if (cls.superClassName === className) {
-        subtypes.push(new SymbolDefinition(
-          new SymbolIdentifier(subClassName),
-          new SymbolLocation(subClassName, 'classes.0'),
-          'class',
-          cls.flags
-        ));
-      }
-
-      // Check if this class implements the target interface
-      if (cls.interfaces && cls.interfaces.includes(className)) {
-        subtypes.push(new SymbolDefinition(
-          new SymbolIdentifier(subClassName),
-          new SymbolLocation(subClassName, 'classes.0'),
-          'class',
-          cls.flags
-        ));
-      }
-    });
-
-    return subtypes;
+    return (this._referenceIndex().subtypesOf.get(className) || []).map((subClassName) => new SymbolDefinition(
+      new SymbolIdentifier(subClassName),
+      new SymbolLocation(subClassName, 'classes.0'),
+      'class',
+      this._classSummary(subClassName).flags
+    ));
   }
 
   /**
@@ -661,26 +813,12 @@ class KrakatauWorkspace {
    * @returns {SymbolDefinition[]} An array of SymbolDefinitions for all classes that extend or implement the given type.
    */
   getAllSubtypes(className) {
-    const allSubtypes = [];
-    const subtypesToProcess = [className];
-    const processed = new Set();
-
-    while (subtypesToProcess.length > 0) {
-        const currentClass = subtypesToProcess.shift();
-        if (processed.has(currentClass)) {
-            continue;
-        }
-        processed.add(currentClass);
-
-        const directSubtypes = this.getSubtypeHierarchy(currentClass);
-        for (const subtype of directSubtypes) {
-            if (!allSubtypes.some(s => s.identifier.className === subtype.identifier.className)) {
-                allSubtypes.push(subtype);
-            }
-            subtypesToProcess.push(subtype.identifier.className);
-        }
-    }
-    return allSubtypes;
+    return this._allSubtypeNames(className).map((subClassName) => new SymbolDefinition(
+      new SymbolIdentifier(subClassName),
+      new SymbolLocation(subClassName, 'classes.0'),
+      'class',
+      this._classSummary(subClassName).flags
+    ));
   }
 
   /**
@@ -690,10 +828,10 @@ class KrakatauWorkspace {
   getCallGraph() {
     const callGraph = new Map();
 
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      workspaceEntry.ast.classes[0].items.forEach(item => {
-        if (item.type === 'method') {
-          const methodId = new SymbolIdentifier(className, item.method.name, item.method.descriptor);
+    Object.keys(this.workspaceASTs).forEach((className) => {
+      this._forEachMember(className, (kind, name, descriptor) => {
+        if (kind === 'method') {
+          const methodId = new SymbolIdentifier(className, name, descriptor);
           const callees = this.findCallees(methodId);
           callGraph.set(methodId, callees.map(callee => callee.identifier));
         }
@@ -713,35 +851,26 @@ class KrakatauWorkspace {
     const lowerQuery = query.toLowerCase();
 
     // Search through all classes
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      const ast = workspaceEntry.ast;
+    Object.keys(this.workspaceASTs).forEach((className) => {
       // Check class name
       if (className.toLowerCase().includes(lowerQuery)) {
         results.push(new SymbolDefinition(
           new SymbolIdentifier(className),
           new SymbolLocation(className, `classes.0`),
           'class',
-          ast.classes[0].flags
+          this._classSummary(className).flags
         ));
       }
 
       // Check methods and fields
-      ast.classes[0].items.forEach((item, itemIndex) => {
-        if (item.type === 'method' && item.method.name.toLowerCase().includes(lowerQuery)) {
-          results.push(new SymbolDefinition(
-            new SymbolIdentifier(className, item.method.name, item.method.descriptor),
-            new SymbolLocation(className, `classes.0.items.${itemIndex}.method`),
-            'method',
-            item.method.flags,
-            item.method.descriptor
-          ));
-        } else if (item.type === 'field' && item.field.name.toLowerCase().includes(lowerQuery)) {
+      this._forEachMember(className, (kind, name, descriptor, flags, itemIndex) => {
+        if (name.toLowerCase().includes(lowerQuery)) {
           results.push(new SymbolDefinition(
-            new SymbolIdentifier(className, item.field.name, item.field.descriptor),
-            new SymbolLocation(className, `classes.0.items.${itemIndex}.field`),
-            'field',
-            item.field.flags,
-            item.field.descriptor
+            new SymbolIdentifier(className, name, descriptor),
+            new SymbolLocation(className, `classes.0.items.${itemIndex}.${kind}`),
+            kind,
+            flags,
+            descriptor
           ));
         }
       });
@@ -799,15 +928,15 @@ class KrakatauWorkspace {
    * @param {WorkspaceEdit} edit - The WorkspaceEdit plan to apply.
    */
   applyEdit(edit) {
-    edit.operations.forEach(operation => {
-      const ast = this.getClassAST(operation.className);
+    this._withResidentASTs(() => {
+      edit.operations.forEach(operation => {
+        const ast = this.getClassAST(operation.className);
 
-      // Navigate to the AST node and apply the change
-      this._applyOperationToAST(ast, operation);
+        // Navigate to the AST node and apply the change
+        this._applyOperationToAST(ast, operation);
+        this._pinned.add(operation.className);
+      });
     });
-
-    // Rebuild the reference graph after applying changes
-    this._buildBasicReferenceGraph();
   }
 
   /**
@@ -818,96 +947,102 @@ class KrakatauWorkspace {
    * @param {string} outputDir - The directory to save the modified .class files.
    */
   applyRenameAndSave(symbolIdentifier, newName, outputDir = '.') {
-    // Step 1: Identify which class files will be modified by finding all references.
-    const modifiedClasses = new Set([symbolIdentifier.className]);
-    const refs = this.findReferences(symbolIdentifier);
-    refs.forEach(ref => modifiedClasses.add(ref.className));
-
-    // Step 2: Apply the rename operation to the in-memory ASTs.
-    renameMethod(this, symbolIdentifier.className, symbolIdentifier.memberName, newName,
-      symbolIdentifier.descriptor);
-
-    // Step 3: Reassemble only the affected classes
-    const modifiedAsts = { classes: [], constantPools: [] };
-    for (const className of modifiedClasses) {
-      if (this.workspaceASTs[className]) {
-        modifiedAsts.classes.push(this.workspaceASTs[className].ast.classes[0]);
-        modifiedAsts.constantPools.push(this.workspaceASTs[className].constantPool);
+    this._withResidentASTs(() => {
+      // Step 1: Identify which class files will be modified by finding all references.
+      const modifiedClasses = new Set([symbolIdentifier.className]);
+      const refs = this.findReferences(symbolIdentifier);
+      refs.forEach(ref => modifiedClasses.add(ref.className));
+
+      // Step 2: Apply the rename operation to the in-memory ASTs.
+      renameMethod(this, symbolIdentifier.className, symbolIdentifier.memberName, newName,
+        symbolIdentifier.descriptor);
+
+      // Step 3: Reassemble only the affected classes
+      const modifiedAsts = { classes: [], constantPools: [] };
+      for (const className of modifiedClasses) {
+        if (this.workspaceASTs[className]) {
+          modifiedAsts.classes.push(this.workspaceASTs[className].ast.classes[0]);
+          modifiedAsts.constantPools.push(this.workspaceASTs[className].constantPool);
+        }
       }
-    }
     
-    // Assemble the modified classes
-    assembleClasses(modifiedAsts, outputDir);
+      // Assemble the modified classes
+      assembleClasses(modifiedAsts, outputDir);
 
-    console.log(`Successfully renamed ${symbolIdentifier.memberName} to ${newName} and saved ${modifiedClasses.size} affected files.`);
+      console.log(`Successfully renamed ${symbolIdentifier.memberName} to ${newName} and saved ${modifiedClasses.size} affected files.`);
+    });
   }
 
   applyFieldRenameAndSave(symbolIdentifier, newName, outputDir = '.') {
-    // Step 1: Identify which class files will be modified by finding all references.
-    const modifiedClasses = new Set([symbolIdentifier.className]);
-    const refs = this.findReferences(symbolIdentifier);
-    refs.forEach(ref => modifiedClasses.add(ref.className));
-
-    // Step 2: Apply the rename operation to the in-memory ASTs.
-    renameField(this, symbolIdentifier.className, symbolIdentifier.memberName, newName,
-      symbolIdentifier.descriptor);
-
-    // Step 3: Reassemble only the affected classes
-    const modifiedAsts = { classes: [], constantPools: [] };
-    for (const className of modifiedClasses) {
-      if (this.workspaceASTs[className]) {
-        modifiedAsts.classes.push(this.workspaceASTs[className].ast.classes[0]);
-        modifiedAsts.constantPools.push(this.workspaceASTs[className].constantPool);
+    this._withResidentASTs(() => {
+      // Step 1: Identify which class files will be modified by finding all references.
+      const modifiedClasses = new Set([symbolIdentifier.className]);
+      const refs = this.findReferences(symbolIdentifier);
+      refs.forEach(ref => modifiedClasses.add(ref.className));
+
+      // Step 2: Apply the rename operation to the in-memory ASTs.
+      renameField(this, symbolIdentifier.className, symbolIdentifier.memberName, newName,
+        symbolIdentifier.descriptor);
+
+      // Step 3: Reassemble only the affected classes
+      const modifiedAsts = { classes: [], constantPools: [] };
+      for (const className of modifiedClasses) {
+        if (this.workspaceASTs[className]) {
+          modifiedAsts.classes.push(this.workspaceASTs[className].ast.classes[0]);
+          modifiedAsts.constantPools.push(this.workspaceASTs[className].constantPool);
+        }
       }
-    }
 
-    // Assemble the modified classes
-    assembleClasses(modifiedAsts, outputDir);
+      // Assemble the modified classes
+      assembleClasses(modifiedAsts, outputDir);
 
-    console.log(`Successfully renamed ${symbolIdentifier.memberName} to ${newName} and saved ${modifiedClasses.size} affected files.`);
+      console.log(`Successfully renamed ${symbolIdentifier.memberName} to ${newName} and saved ${modifiedClasses.size} affected files.`);
+    });
   }
 
   applyClassRenameAndSave(oldClassName, newClassName, outputDir = '.') {
-    // Step 1: Identify which class files will be modified by finding all references.
-    const modifiedClasses = new Set([oldClassName]);
-    const classRefs = this.findReferences(new SymbolIdentifier(oldClassName));
-    classRefs.forEach(ref => modifiedClasses.add(ref.className));
-    const constructorRefs = this.findReferences(new SymbolIdentifier(oldClassName, '<init>'));
-    constructorRefs.forEach(ref => modifiedClasses.add(ref.className));
-
-    // Step 2: Apply the rename operation to the in-memory ASTs.
-    renameClass(this, oldClassName, newClassName);
-
-    // Step 3: Reassemble the modified classes
-    const modifiedAsts = { classes: [], constantPools: [] };
-    for (const className of modifiedClasses) {
-      const astData = this.workspaceASTs[className] || this.workspaceASTs[newClassName];
-      if (astData) {
-        modifiedAsts.classes.push(astData.ast.classes[0]);
-        modifiedAsts.constantPools.push(astData.constantPool);
+    this._withResidentASTs(() => {
+      // Step 1: Identify which class files will be modified by finding all references.
+      const modifiedClasses = new Set([oldClassName]);
+      const classRefs = this.findReferences(new SymbolIdentifier(oldClassName));
+      classRefs.forEach(ref => modifiedClasses.add(ref.className));
+      const constructorRefs = this.findReferences(new SymbolIdentifier(oldClassName, '<init>'));
+      constructorRefs.forEach(ref => modifiedClasses.add(ref.className));
+
+      // Step 2: Apply the rename operation to the in-memory ASTs.
+      renameClass(this, oldClassName, newClassName);
+
+      // Step 3: Reassemble the modified classes
+      const modifiedAsts = { classes: [], constantPools: [] };
+      for (const className of modifiedClasses) {
+        const astData = this.workspaceASTs[className] || this.workspaceASTs[newClassName];
+        if (astData) {
+          modifiedAsts.classes.push(astData.ast.classes[0]);
+          modifiedAsts.constantPools.push(astData.constantPool);
+        }
       }
-    }
-    assembleClasses(modifiedAsts, outputDir);
+      assembleClasses(modifiedAsts, outputDir);
 
-    // Step 4: Update workspace data structures and filesystem
-    const oldFilePath = this.classFilePaths[oldClassName];
-    if (oldFilePath && fs.existsSync(oldFilePath)) {
-        fs.unlinkSync(oldFilePath); // Delete the old class file
-    }
-
-    if (this.workspaceASTs[oldClassName]) {
-        this.workspaceASTs[newClassName] = this.workspaceASTs[oldClassName];
-        delete this.workspaceASTs[oldClassName];
-    }
-    if (this.classFilePaths[oldClassName]) {
-        const newFilePath = this.classFilePaths[oldClassName].replace(oldClassName + '.class', newClassName + '.class');
-        this.classFilePaths[newClassName] = newFilePath;
-        delete this.classFilePaths[oldClassName];
-    }
+      // Step 4: Update workspace data structures and filesystem
+      const oldFilePath = this.classFilePaths[oldClassName];
+      if (oldFilePath && fs.existsSync(oldFilePath)) {
+          fs.unlinkSync(oldFilePath); // Delete the old class file
+      }
 
-    this._buildBasicReferenceGraph();
+      if (this.workspaceASTs[oldClassName]) {
+          this.workspaceASTs[newClassName] = this.workspaceASTs[oldClassName];
+          delete this.workspaceASTs[oldClassName];
+          this._resident.delete(oldClassName);
+          this._pinned.delete(oldClassName);
+      }
+      if (this.classFilePaths[oldClassName]) {
+          const newFilePath = this.classFilePaths[oldClassName].replace(oldClassName + '.class', newClassName + '.class');
+          this.classFilePaths[newClassName] = newFilePath;
+          delete this.classFilePaths[oldClassName];
+      }
 
-    console.log(`Successfully renamed class ${oldClassName} to ${newClassName} and saved ${modifiedClasses.size} affected files.`);
+      console.log(`Successfully renamed class ${oldClassName} to ${newClassName} and saved ${modifiedClasses.size} affected files.`);
+    });
   }
 
   /**
@@ -917,36 +1052,23 @@ class KrakatauWorkspace {
   findUnusedSymbols() {
     const unusedSymbols = [];
 
-    Object.entries(this.workspaceASTs).forEach(([className, workspaceEntry]) => {
-      workspaceEntry.ast.classes[0].items.forEach((item, itemIndex) => {
-        if (item.type === 'method' && item.method.flags.includes('private')) {
-          const methodId = new SymbolIdentifier(className, item.method.name, item.method.descriptor);
-          const references = this.findReferences(methodId);
-          
-          // If only one reference (the definition itself), it's unused
-          if (references.length <= 1) {
-            unusedSymbols.push(new SymbolDefinition(
-              methodId,
-              new SymbolLocation(className, `classes.0.items.${itemIndex}.method`),
-              'method',
-              item.method.flags,
-              item.method.descriptor
-            ));
-          }
-        } else if (item.type === 'field' && item.field.flags.includes('private')) {
-          const fieldId = new SymbolIdentifier(className, item.field.name, item.field.descriptor);
-          const references = this.findReferences(fieldId);
-          
-          // If only one reference (the definition itself), it's unused
-          if (references.length <= 1) {
-            unusedSymbols.push(new SymbolDefinition(
-              fieldId,
-              new SymbolLocation(className, `classes.0.items.${itemIndex}.field`),
-              'field',
-              item.field.flags,
-              item.field.descriptor
-            ));
-          }
+    Object.keys(this.workspaceASTs).forEach((className) => {
+      this._forEachMember(className, (kind, name, descriptor, flags, itemIndex) => {
+        if (!flags.includes('private')) {
+          return;
+        }
+        const memberId = new SymbolIdentifier(className, name, descriptor);
+        const references = this.findReferences(memberId);
+
+        // If only one reference (the definition itself), it's unused
+        if (references.length <= 1) {
+          unusedSymbols.push(new SymbolDefinition(
+            memberId,
+            new SymbolLocation(className, `classes.0.items.${itemIndex}.${kind}`),
+            kind,
+            flags,
+            descriptor
+          ));
         }
       });
     });
@@ -984,20 +1106,19 @@ class KrakatauWorkspace {
         let memberDef = null;
 
         while (classToInspect) {
-          const workspaceEntry = this.workspaceASTs[classToInspect];
-          if (workspaceEntry) {
-            const ast = workspaceEntry.ast;
-            memberDef = ast.classes[0].items.find(item =>
-              item.type === memberType &&
-              item[memberType].name === memberName &&
-              item[memberType].descriptor === memberRef.descriptor
+          const summary = this._classSummary(classToInspect);
+          if (summary) {
+            memberDef = summary.members.find(([kind, name, descriptor]) =>
+              kind === memberType &&
+              name === memberName &&
+              descriptor === memberRef.descriptor
             );
 
             if (memberDef) {
               isDefined = true;
               break;
             }
-            classToInspect = ast.classes[0].superClassName;
+            classToInspect = summary.superClassName;
           } else {
             classToInspect = null;
           }
@@ -1025,7 +1146,7 @@ class KrakatauWorkspace {
 
     // Check for missing class dependencies
     Object.entries(this.referenceObj).forEach(([className, classRef]) => {
-      if (!this.workspaceASTs[className] && !className.startsWith('java/')) {
+      if (!(className in this.workspaceASTs) && !className.startsWith('java/')) {
         diagnostics.push(new Diagnostic(
           new SymbolLocation(className, 'undefined'),
           `Referenced class ${className} is not found in workspace`,
@@ -1042,63 +1163,173 @@ class KrakatauWorkspace {
    * @param {string} filePath - The path to the .class file that has changed.
    */
   async reloadFile(filePath) {
-    // This needs to be updated to match the logic in _initialize
-    const fs = require('fs');
-    const { getAST } = require('jvm_parser');
-    const { convertJson } = require('../parsing/convert_tree');
-
-    const classFileContent = fs.readFileSync(filePath);
-    const rawAst = getAST(classFileContent);
-    const convertedAst = convertJson(rawAst.ast, rawAst.constantPool);
-
-    if (convertedAst) {
-      const className = convertedAst.classes[0].className;
-      this.workspaceASTs[className] = {
-        ast: convertedAst,
-        constantPool: rawAst.constantPool,
-      };
-      this.classFilePaths[className] = filePath;
-      
-      // Rebuild the reference graph
-      this._buildBasicReferenceGraph();
+    const className = this._reloadFile(filePath);
+    if (className) {
+      this.saveIndex();
     }
+    return className;
   }
 
-  // Helper methods
+  _reloadFile(filePath) {
+    const previousName = this._classNameForFile(filePath);
+    const entry = this._loadClassBytes(filePath, fs.readFileSync(filePath), fs.statSync(filePath));
+    if (!entry) {
+      return null;
+    }
+    if (previousName && previousName !== entry.className) {
+      this._forgetClass(previousName);
+    }
+    this._replaceIndexEntry(entry.className, entry);
+    this.classFilePaths[entry.className] = filePath;
+    return entry.className;
+  }
 
   /**
-   * Finds the AST location of a symbol definition
-   * @private
+   * Drops the class loaded from a deleted .class file.
+   * @param {string} filePath - The path the class was loaded from.
+   * @returns {string|null} The class name that was removed, if any.
    */
-  _findSymbolDefinitionLocation(symbolIdentifier) {
-    const workspaceEntry = this.workspaceASTs[symbolIdentifier.className];
-    if (!workspaceEntry) {
-      return null;
+  removeFile(filePath) {
+    const className = this._classNameForFile(filePath);
+    if (className) {
+      this._forgetClass(className);
+      this.saveIndex();
     }
-    const ast = workspaceEntry.ast;
+    return className;
+  }
 
-    const itemIndex = ast.classes[0].items.findIndex(item => {
-      if (item.type === 'method') {
-        return item.method.name === symbolIdentifier.memberName &&
-               (symbolIdentifier.descriptor ? item.method.descriptor === symbolIdentifier.descriptor : true);
-      } else if (item.type === 'field') {
-        return item.field.name === symbolIdentifier.memberName &&
-               (symbolIdentifier.descriptor ? item.field.descriptor === symbolIdentifier.descriptor : true);
+  /**
+   * Rescans the classpath and reloads or drops whatever changed on disk since
+   * the workspace last looked (by mtime and size).
+   * @returns {{ changed: string[], removed: string[] }} Affected files.
+   */
+  refresh() {
+    const classFiles = [];
+    for (const cp of this.classPaths) {
+      this._findClassFiles(cp, classFiles);
+    }
+    const known = new Map(Object.values(this.classIndex)
+      .filter((entry) => entry.file)
+      .map((entry) => [entry.file, entry]));
+    const changed = [];
+    for (const classFile of classFiles) {
+      const entry = known.get(classFile);
+      known.delete(classFile);
+      const stat = fs.statSync(classFile);
+      if (entry && entry.mtimeMs === stat.mtimeMs && entry.size === stat.size) {
+        continue;
       }
-      return false;
+      this._reloadFile(classFile);
+      changed.push(classFile);
+    }
+    const removed = [...known.keys()];
+    removed.forEach((classFile) => {
+      const className = this._classNameForFile(classFile);
+      if (className) this._forgetClass(className);
     });
+    if (changed.length || removed.length) {
+      this.saveIndex();
+    }
+    return { changed, removed };
+  }
 
-    if (itemIndex >= 0) {
-      const item = ast.classes[0].items[itemIndex];
-      return new SymbolLocation(
-        symbolIdentifier.className,
-        `classes.0.items.${itemIndex}.${item.type}`
-      );
+  /**
+   * Watches the classpath directories and applies .class file changes as
+   * they happen (debounced), keeping the index on disk current.
+   * @param {object} [options] - { onChange({ changed, removed }), onError(err), debounceMs }.
+   * @returns {{ close: function }} Handle that stops watching.
+   */
+  watch(options = {}) {
+    const debounceMs = options.debounceMs ?? 50;
+    let timer = null;
+    const flush = () => {
+      timer = null;
+      let result;
+      try {
+        result = this.refresh();
+      } catch (err) {
+        if (options.onError) options.onError(err);
+        return;
+      }
+      if ((result.changed.length || result.removed.length) && options.onChange) {
+        options.onChange(result);
+      }
+    };
+    const schedule = (eventType, fileName) => {
+      if (fileName && !String(fileName).endsWith('.class')) return;
+      if (timer) clearTimeout(timer);
+      timer = setTimeout(flush, debounceMs);
+    };
+    const watchers = this.classPaths
+      .filter((cp) => fs.existsSync(cp) && fs.statSync(cp).isDirectory())
+      .map((cp) => {
+        const watcher = fs.watch(cp, { recursive: true }, schedule);
+        // a watcher alone should not keep the process alive
+        watcher.unref();
+        watcher.on('error', (err) => {
+          if (options.onError) options.onError(err);
+        });
+        return watcher;
+      });
+    this._watchers.push(...watchers);
+    return {
+      close: () => {
+        if (timer) clearTimeout(timer);
+        watchers.forEach((watcher) => watcher.close());
+        this._watchers = this._watchers.filter((watcher) => !watchers.includes(watcher));
+      },
+    };
+  }
+
+  /**
+   * Stops every watcher started by watch().
+   */
+  close() {
+    this._watchers.forEach((watcher) => watcher.close());
+    this._watchers = [];
+  }
+
+  _classNameForFile(filePath) {
+    return Object.keys(this.classFilePaths).find((name) => this.classFilePaths[name] === filePath) || null;
+  }
+
+  /**
+   * Swaps one class's contribution to the reference graph without touching
+   * any other class.
+   * @private
+   */
+  _replaceIndexEntry(className, entry) {
+    this._queryIndex = null;
+    const isWorkspaceClass = (name) => Object.prototype.hasOwnProperty.call(this.workspaceASTs, name);
+    const previous = this.classIndex[className];
+    if (previous) {
+      removeRefs(this.referenceObj, className, previous.refs, isWorkspaceClass);
     }
+    if (entry) {
+      this.classIndex[className] = entry;
+      if (!this.referenceObj[className]) {
+        this.referenceObj[className] = { children: new Map(), referees: [] };
+      }
+      applyRefs(this.referenceObj, className, entry.refs);
+    } else {
+      delete this.classIndex[className];
+    }
+  }
 
-    return null;
+  _forgetClass(className) {
+    delete this.workspaceASTs[className];
+    this._resident.delete(className);
+    this._pinned.delete(className);
+    delete this.classFilePaths[className];
+    this._replaceIndexEntry(className, null);
+    const node = this.referenceObj[className];
+    if (node && !node.referees.length && !node.children.size) {
+      delete this.referenceObj[className];
+    }
   }
 
+  // Helper methods
+
   /**
    * Calculates the changes needed to move a static method from one class to another.
    * @param {SymbolIdentifier} methodIdentifier - The static method to move.
@@ -1130,7 +1361,7 @@ class KrakatauWorkspace {
     }
     
     // Check if target class exists
-    if (!this.workspaceASTs[targetClassName]) {
+    if (!(targetClassName in this.workspaceASTs)) {
       throw new Error(`Target class ${targetClassName} not found`);
     }
     
@@ -1233,27 +1464,20 @@ class KrakatauWorkspace {
    * @private
    */
   _findSymbolDefinitionLocation(symbolIdentifier) {
-    const ast = this.workspaceASTs[symbolIdentifier.className];
-    if (!ast) {
+    const summary = this._classSummary(symbolIdentifier.className);
+    if (!summary) {
       return null;
     }
 
-    const itemIndex = ast.classes[0].items.findIndex(item => {
-      if (item.type === 'method') {
-        return item.method.name === symbolIdentifier.memberName &&
-               (symbolIdentifier.descriptor ? item.method.descriptor === symbolIdentifier.descriptor : true);
-      } else if (item.type === 'field') {
-        return item.field.name === symbolIdentifier.memberName &&
-               (symbolIdentifier.descriptor ? item.field.descriptor === symbolIdentifier.descriptor : true);
-      }
-      return false;
-    });
+    const member = summary.members.find(([kind, name, descriptor]) =>
+      name === symbolIdentifier.memberName &&
+      (symbolIdentifier.descriptor ? descriptor === symbolIdentifier.descriptor : true)
+    );
 
-    if (itemIndex >= 0) {
-      const item = ast.classes[0].items[itemIndex];
+    if (member) {
       return new SymbolLocation(
         symbolIdentifier.className,
-        `classes.0.items.${itemIndex}.${item.type}`
+        `classes.0.items.${member[4]}.${member[0]}`
       );
     }
 
@@ -1334,20 +1558,19 @@ class KrakatauWorkspace {
         let classToInspect = called.className;
 
         while (classToInspect) {
-            const workspaceEntry = this.workspaceASTs[classToInspect];
-            if (workspaceEntry) {
-                const ast = workspaceEntry.ast;
-                const memberDef = ast.classes[0].items.find(item =>
-                    item.type === 'method' &&
-                    item.method.name === called.methodName &&
-                    item.method.descriptor === called.descriptor
+            const summary = this._classSummary(classToInspect);
+            if (summary) {
+                const memberDef = summary.members.find(([kind, name, descriptor]) =>
+                    kind === 'method' &&
+                    name === called.methodName &&
+                    descriptor === called.descriptor
                 );
 
                 if (memberDef) {
                     isDefined = true;
                     break;
                 }
-                classToInspect = ast.classes[0].superClassName;
+                classToInspect = summary.superClassName;
             } else {
                 // Class not in workspace, so we can't resolve it further up the hierarchy
                 classToInspect = null;
@@ -252,7 +252,8 @@ async function applyRenameMap(inputDir, outputDir, rawMap, options = {}) {
   measure('normalizeMap', phaseStartedAt);
 
   phaseStartedAt = performance.now();
-  const workspace = await KrakatauWorkspace.create(resolvedInput);
+  // every class is rewritten in place and written out at the end: keep all resident
+  const workspace = await KrakatauWorkspace.create(resolvedInput, { maxResidentASTs: Infinity });
   measure('loadWorkspace', phaseStartedAt);
 
   phaseStartedAt = performance.now();
@@ -1,7 +1,7 @@
 const fs = require('fs');
 const { execSync } = require('child_process');
 const { unparseDataStructures } = require('../parsing/convert_tree');
-const { writeClassAstToClassFile } = require('../parsing/classAstToClassFile');
+const { assembleClass, writeClassAstToClassFile } = require('../parsing/classAstToClassFile');
 const path = require('path');
  
 function assembleClasses(root, baseOutputDir = '.') {
@@ -31,4 +31,21 @@ function runClass(startingClassName) {
   execSync(`java ${startingClassName}`, { stdio: 'inherit' });
 }
 
-module.exports = { assembleClasses, runClass };
+// In-memory counterpart of assembleClasses: no .j or .class files. Each class
+// is still assembled and parsed back, so an edited AST reaches the JVM in the
+// same normalized form it would have had on disk.
+function defineClasses(jvm, root) {
+  return root.classes.map((cls) => jvm.defineClass(assembleClass(cls)));
+}
+
+// In-memory counterpart of runClass: run on this repository's JVM instead of
+// spawning a host `java` over written class files.
+async function runClassInMemory(root, startingClassName, options = {}) {
+  const { JVM } = require('../core/jvm');
+  const jvm = options.jvm || new JVM(options.jvmOptions || {});
+  defineClasses(jvm, root);
+  await jvm.run(startingClassName);
+  return jvm;
+}
+
+module.exports = { assembleClasses, runClass, defineClasses, runClassInMemory };
@@ -0,0 +1,165 @@
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const crypto = require('crypto');
+
+// Persisted per-class index for KrakatauWorkspace.
+//
+// Every class contributes one entry, a pure function of its AST:
+//   header  { className, superClassName, interfaces, flags }
+//   members [[kind, name, descriptor, flags, itemIndex]] in item order
+//   refs    every record the class pushes into the reference graph, in AST
+//           order, with AST paths kept as indexes:
+//             [cls, -1]                                class definition
+//             [cls, item, -1, -1, name, desc]          method definition
+//             [target, item, attr, code]               class use in code
+//           [target, item, attr, code, name, desc, op] member use in code
+//
+// plus the file identity it was read from (file, mtimeMs, size, hash). At open
+// a workspace reuses an entry when the file's mtime and size still match, or
+// when they changed but the sha1 of the bytes did not; only the rest are
+// parsed. The reference graph is rebuilt from entries without touching ASTs.
+
+const INDEX_VERSION = 2;
+
+function hashBytes(bytes) {
+  return crypto.createHash('sha1').update(bytes).digest('hex');
+}
+
+function indexClass(ast) {
+  const cls = ast.classes[0];
+  const members = [];
+  const refs = [[cls.className, -1]];
+  (cls.items || []).forEach((item, itemIndex) => {
+    if (item.type === 'field') {
+      members.push(['field', item.field.name, item.field.descriptor, item.field.flags || [], itemIndex]);
+      return;
+    }
+    if (item.type !== 'method') return;
+    const method = item.method;
+    members.push(['method', method.name, method.descriptor, method.flags || [], itemIndex]);
+    refs.push([cls.className, itemIndex, -1, -1, method.name, method.descriptor]);
+    (method.attributes || []).forEach((attr, attrIndex) => {
+      if (attr.type !== 'code') return;
+      attr.code.codeItems.forEach((codeItem, codeIndex) => {
+        const instruction = codeItem.instruction;
+        if (!instruction || !instruction.arg) return;
+        const { op, arg } = instruction;
+        if (op === 'new' || op === 'instanceof' || op === 'checkcast' || op === 'anewarray') {
+          refs.push([arg, itemIndex, attrIndex, codeIndex]);
+        } else if (op === 'multianewarray') {
+          refs.push([arg[0], itemIndex, attrIndex, codeIndex]);
+        } else if (Array.isArray(arg) && arg.length > 2 && Array.isArray(arg[2]) && arg[2].length >= 2) {
+          refs.push([arg[1], itemIndex, attrIndex, codeIndex, arg[2][0], arg[2][1], op]);
+        }
+      });
+    });
+  });
+  return {
+    className: cls.className,
+    superClassName: cls.superClassName || null,
+    interfaces: (cls.interfaces || []).slice(),
+    flags: (cls.flags || []).slice(),
+    members,
+    refs,
+  };
+}
+
+function refPath(ref) {
+  if (ref[1] < 0) return 'classes.0';
+  if (ref[2] < 0) return `classes.0.items.${ref[1]}.method`;
+  return `classes.0.items.${ref[1]}.method.attributes.${ref[2]}.code.codeItems.${ref[3]}`;
+}
+
+function classNode(referenceObj, className) {
+  let node = referenceObj[className];
+  if (!node) referenceObj[className] = (node = { children: new Map(), referees: [] });
+  return node;
+}
+
+// Push one class's records into the graph (AST paths rebuilt from indexes).
+function applyRefs(referenceObj, className, refs) {
+  for (const ref of refs) {
+    const target = classNode(referenceObj, ref[0]);
+    const astPath = refPath(ref);
+    const isDefinition = ref[1] >= 0 && ref[2] < 0;
+    if (!isDefinition) target.referees.push({ className, astPath });
+    if (ref.length <= 4) continue;
+    const name = ref[4];
+    if (!target.children.has(name)) target.children.set(name, { descriptor: ref[5], referees: [] });
+    const referee = { className, astPath, descriptor: ref[5] };
+    if (!isDefinition) referee.op = ref[6];
+    target.children.get(name).referees.push(referee);
+  }
+}
+
+// Drop every referee `className` contributed through `refs`, and graph nodes
+// left empty by that (unless they are workspace classes).
+function removeRefs(referenceObj, className, refs, isWorkspaceClass) {
+  const touched = new Set(refs.map((ref) => ref[0]));
+  for (const target of touched) {
+    const node = referenceObj[target];
+    if (!node) continue;
+    node.referees = node.referees.filter((referee) => referee.className !== className);
+    for (const [name, child] of node.children) {
+      child.referees = child.referees.filter((referee) => referee.className !== className);
+      if (!child.referees.length) node.children.delete(name);
+    }
+    if (!node.referees.length && !node.children.size && !isWorkspaceClass(target)) {
+      delete referenceObj[target];
+    }
+  }
+}
+
+// Where the index for this classpath lives: one JSON file per classpath under
+// options.indexDir, KRAKATAU_INDEX_DIR, or (for options.index === true) the OS
+// temp dir. Persistence is opt-in: null, the default, keeps the index in
+// memory only, as does options.index === false or having no filesystem.
+function indexFileFor(classPaths, options = {}) {
+  if (typeof window !== 'undefined' || options.index === false) return null;
+  const dir = options.indexDir || process.env.KRAKATAU_INDEX_DIR ||
+    (options.index === true ? path.join(os.tmpdir(), 'java-tools-workspace-index') : null);
+  if (!dir) return null;
+  const key = hashBytes(classPaths.map((entry) => path.resolve(entry)).join(path.delimiter));
+  return path.join(dir, `${key}.json`);
+}
+
+// { file -> entry } from a saved index, or an empty map when it is missing,
+// unreadable, or from another index version.
+function loadIndex(indexFile) {
+  const byFile = new Map();
+  if (!indexFile) return byFile;
+  try {
+    const saved = JSON.parse(fs.readFileSync(indexFile, 'utf8'));
+    if (saved.version !== INDEX_VERSION) return byFile;
+    for (const entry of saved.entries) byFile.set(entry.file, entry);
+  } catch (err) {
+    // no index yet, or a partial write: start fresh
+  }
+  return byFile;
+}
+
+function saveIndex(indexFile, entries) {
+  if (!indexFile) return false;
+  try {
+    fs.mkdirSync(path.dirname(indexFile), { recursive: true });
+    const tmp = `${indexFile}.${process.pid}.tmp`;
+    fs.writeFileSync(tmp, JSON.stringify({ version: INDEX_VERSION, entries }));
+    fs.renameSync(tmp, indexFile);
+    return true;
+  } catch (err) {
+    return false;
+  }
+}
+
+module.exports = {
+  INDEX_VERSION,
+  hashBytes,
+  indexClass,
+  refPath,
+  applyRefs,
+  removeRefs,
+  indexFileFor,
+  loadIndex,
+  saveIndex,
+};
@@ -198,4 +198,70 @@ test('KrakatauWorkspace error handling', async function(t) {
   const sourcesPath = path.join(__dirname, '..', 'sources');
   const workspace = await KrakatauWorkspace.create(sourcesPath);
   t.throws(() => workspace.getClassAST('NonExistentClass'), /not found in workspace/, 'getClassAST should throw for non-existent class');
-});
\ No newline at end of file
+});
+test('KrakatauWorkspace bounded AST residency', async function(t) {
+  const sourcesPath = path.join(__dirname, '..', 'sources');
+  const full = await KrakatauWorkspace.create(sourcesPath, { index: false, maxResidentASTs: Infinity });
+  const bounded = await KrakatauWorkspace.create(sourcesPath, { index: false, maxResidentASTs: 2 });
+  t.ok(bounded._resident.size <= 2, 'at most two full ASTs stay resident after open');
+  if (process.env.KRAKATAU_AST_CACHE === undefined) {
+    const unbounded = await KrakatauWorkspace.create(sourcesPath, { index: false });
+    t.equal(unbounded.maxResidentASTs, Infinity, 'ASTs are only evicted when the caller sets a bound');
+  }
+
+  const query = (workspace) => JSON.stringify([
+    workspace.listClasses(),
+    workspace.listMethods('TestMethods'),
+    workspace.findReferences(new SymbolIdentifier('TestMethods', 'publicMethod1')),
+    [...workspace.getCallGraph()],
+    workspace.findUnusedSymbols(),
+    workspace.getClassSummary('TestMethods'),
+  ]);
+  t.equal(query(bounded), query(full), 'index-backed queries match the fully resident workspace');
+  t.ok(bounded._resident.size <= 2, 'queries answered from the index do not load ASTs');
+
+  const edit = new WorkspaceEdit();
+  const methodPath = bounded.listMethods('TestMethods')[0].location.astPath;
+  edit.addOperation(new RefactorOperation('TestMethods', `${methodPath}.name`, 'rename', 'renamedInMemory'));
+  bounded.applyEdit(edit);
+  bounded.listClasses().forEach(({ identifier }) => bounded.getClassAST(identifier.className));
+  t.ok(bounded.listMethods('TestMethods').some((m) => m.identifier.memberName === 'renamedInMemory'),
+    'an edited AST is pinned, not reloaded from disk');
+  t.end();
+});
+
+test('KrakatauWorkspace reference index follows edits', async function(t) {
+  const sourcesPath = path.join(__dirname, '..', 'sources');
+  const workspace = await KrakatauWorkspace.create(sourcesPath, { index: false });
+  const methodId = new SymbolIdentifier('TestMethods', 'publicMethod1');
+  const before = workspace.findReferences(methodId);
+  t.ok(before.length > 0, 'finds the definition and its uses');
+  t.deepEqual(workspace.findReferences(methodId), before, 'repeated queries answer from the cached index');
+
+  const edit = new WorkspaceEdit();
+  before.forEach((location) => {
+    if (location.astPath.endsWith('.method')) {
+      edit.addOperation(new RefactorOperation(location.className, `${location.astPath}.name`, 'rename', 'indexRenamed'));
+    }
+  });
+  workspace.applyEdit(edit);
+  t.ok(workspace.findReferences(new SymbolIdentifier('TestMethods', 'indexRenamed')).length > 0,
+    'the renamed definition is found under its new name');
+  t.ok(workspace.findReferences(methodId).every((location) => !location.astPath.endsWith('.method')),
+    'and no longer under the old one');
+  t.end();
+});
+
+test('KrakatauWorkspace member references keep overloads apart', async function(t) {
+  const sourcesPath = path.join(__dirname, '..', 'sources');
+  const workspace = await KrakatauWorkspace.create(sourcesPath, { index: false });
+  const println = (descriptor) => workspace.findReferences(
+    new SymbolIdentifier('java/io/PrintStream', 'println', descriptor)).map((l) => `${l.className}:${l.astPath}`);
+  const all = println(null);
+  const strings = println('(Ljava/lang/String;)V');
+  const ints = println('(I)V');
+  t.ok(strings.length > 0 && ints.length > 0, 'both overloads have call sites');
+  t.ok(strings.every((key) => !ints.includes(key)), 'a descriptor selects only its own overload');
+  t.ok([...strings, ...ints].every((key) => all.includes(key)), 'without a descriptor every overload matches');
+  t.end();
+});
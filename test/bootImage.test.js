@@ -0,0 +1,89 @@
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { execFileSync } = require('child_process');
+const {
+  encodeBootImage,
+  decodeBootImage,
+  isBootImageBytes,
+  IMAGE_FORMAT,
+} = require('../src/core/bootImage');
+
+const SAMPLE = {
+  format: IMAGE_FORMAT,
+  version: 1,
+  mainClass: 'Demo',
+  state: { format: 'jvmjs-save-state', version: 1, graph: { root: 'x'.repeat(4096), nodes: [] } },
+  jitProfile: [['Demo', 'main', '([Ljava/lang/String;)V', 3]],
+};
+
+test('boot images round-trip through their binary framing', async (t) => {
+  const bytes = await encodeBootImage(SAMPLE);
+  t.ok(isBootImageBytes(bytes), 'starts with the boot image magic');
+  t.ok(bytes.length < 1024, 'the payload is compressed');
+  t.deepEqual(await decodeBootImage(bytes), SAMPLE);
+  t.deepEqual(await decodeBootImage(bytes.buffer.slice(bytes.byteOffset, bytes.byteOffset + bytes.length)),
+    SAMPLE, 'an ArrayBuffer decodes too');
+
+  const raw = await encodeBootImage(SAMPLE, { compress: false });
+  t.ok(raw.length > 4096, 'compression can be turned off');
+  t.deepEqual(await decodeBootImage(raw), SAMPLE);
+  t.end();
+});
+
+test('boot image decoding rejects other data', async (t) => {
+  t.notOk(isBootImageBytes(new TextEncoder().encode('{"format":"jvmjs-save-state"}')));
+  await decodeBootImage(new Uint8Array(4)).then(
+    () => t.fail('short input should be rejected'),
+    (error) => t.equal(error.message, 'Not a JVM boot image'));
+  const future = await encodeBootImage(SAMPLE);
+  future[8] = 99;
+  await decodeBootImage(future).then(
+    () => t.fail('unknown versions should be rejected'),
+    (error) => t.match(error.message, /version 99/));
+  await encodeBootImage({ format: 'jvmjs-save-state' }).then(
+    () => t.fail('a plain save state is not a boot image'),
+    (error) => t.equal(error.message, 'Not a JVM boot image'));
+  t.end();
+});
+
+test('a VM started from a boot image skips static initialisation', async (t) => {
+  const { JVM } = require('../src/core/jvm');
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'boot-image-fixture-'));
+  t.teardown(() => fs.rmSync(dir, { recursive: true, force: true }));
+  fs.writeFileSync(path.join(dir, 'BootImageHarness.java'), `
+public class BootImageHarness {
+  static long stamp = System.nanoTime();
+  static int[] table = new int[64];
+  static int result;
+  static {
+    for (int i = 0; i < table.length; i++) table[i] = i * i;
+  }
+  public static void main(String[] args) {
+    for (int i = 0; i < 20; i++) result += table[i];
+  }
+}
+`);
+  execFileSync('javac', ['-d', dir, path.join(dir, 'BootImageHarness.java')]);
+
+  const builder = new JVM({ classpath: [dir], fakeTime: 1 });
+  await builder.initializeMain('BootImageHarness');
+  const statics = builder.classes.BootImageHarness.staticFields;
+  const stamp = statics.get('stamp:J');
+  const bytes = await encodeBootImage(builder.createBootImage());
+  await builder.startMain();
+  const profile = builder.exportJitProfile();
+  t.ok(profile.some(([className, name]) => className === 'BootImageHarness' && name === 'main'),
+    'the run left a JIT profile for main');
+
+  const image = await decodeBootImage(bytes);
+  image.jitProfile = profile;
+  const restored = new JVM({ classpath: [dir], fakeTime: 1000 });
+  await restored.runFromBootImage(image);
+  const restoredStatics = restored.classes.BootImageHarness.staticFields;
+  t.equal(restoredStatics.get('stamp:J'), stamp, '<clinit> did not run again');
+  t.equal(restoredStatics.get('result:I'), statics.get('result:I'), 'main ran to the same result');
+  t.equal(restored.classInitializationState.get('BootImageHarness'), 'INITIALIZED');
+  t.end();
+});
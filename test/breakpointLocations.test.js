@@ -360,3 +360,68 @@ test('a condition that cannot be evaluated stops rather than being skipped',
       String(result.conditionError).slice(0, 60));
     t.end();
   });
+
+test('full-speed mode checks only frames of breakpointed methods', (t) => {
+  const manager = new DebugManager();
+  const frame = (className, name, descriptor = '()V') => ({
+    className, method: { name, descriptor },
+  });
+  manager.enable();
+  manager.setFullSpeed(true);
+  manager.setRunMode('continuing');
+  t.ok(manager.runsFullSpeed(frame('Foo', 'run')), 'no breakpoints: every frame runs free');
+  t.ok(manager.allowsCompiledRegions(), 'and compiled regions stay on');
+
+  manager.addStrictBreakpoint(6, { className: 'Foo', methodName: 'tick', descriptor: '(I)V' });
+  t.notOk(manager.runsFullSpeed(frame('Foo', 'tick', '(I)V')), 'the breakpointed method is checked');
+  t.ok(manager.runsFullSpeed(frame('Foo', 'run')), 'its siblings are not');
+  t.ok(manager.runsFullSpeed(frame('Bar', 'tick', '(I)V')), 'nor are other classes');
+  t.notOk(manager.allowsCompiledRegions(), 'code that may inline the method is held back');
+  t.ok(manager.allowsCompiledRegions(['Bar']), 'a region holding only other classes keeps running');
+  t.notOk(manager.allowsCompiledRegions(['Bar', 'Foo']), 'one holding Foo code does not');
+
+  manager.addStrictBreakpoint(9, { className: 'Baz' });
+  t.notOk(manager.runsFullSpeed(frame('Baz', 'anything')), 'a class-wide location covers all methods');
+
+  manager.setRunMode('stepping');
+  t.notOk(manager.runsFullSpeed(frame('Foo', 'run')), 'stepping checks every frame');
+  manager.setRunMode('continuing');
+
+  manager.addBreakpoint(3);
+  t.notOk(manager.runsFullSpeed(frame('Bar', 'run')), 'a bare offset can fire anywhere');
+  t.notOk(manager.allowsCompiledRegions(['Bar']), 'so every region is held back');
+  manager.removeBreakpoint(3);
+  t.ok(manager.runsFullSpeed(frame('Bar', 'run')), 'removing it restores full speed');
+
+  manager.setFullSpeed(false);
+  t.notOk(manager.runsFullSpeed(frame('Bar', 'run')), 'the mode is opt-in');
+  t.end();
+});
+
+test('a breakpoint set from the disassembly view is bound to its method', (t) => {
+  const debug = new DebugController({ classpath: [SOURCES], debugFullSpeed: true });
+  const tick = { className: 'Foo', methodName: 'tick', descriptor: '(I)V' };
+  const result = debug.setBreakpoint(6, tick);
+  const manager = debug.jvm.debugManager;
+  t.equal(result.className, 'Foo');
+  t.notOk(manager.unlocatedBreakpoints, 'full speed stays available elsewhere');
+  t.ok(manager.shouldBreakAt(6, tick));
+  t.notOk(manager.shouldBreakAt(6, { ...tick, className: 'Bar' }), 'the offset in another class does not fire');
+  t.ok(manager.allowsCompiledRegions(['Bar']));
+  t.end();
+});
+
+test('a full-speed debugger still halts at a located breakpoint', async (t) => {
+  const debug = new DebugController({
+    classpath: [SOURCES], jit: { enabled: false }, debugFullSpeed: true,
+  });
+  await debug.start('OverloadDemo', { args: [] });
+  debug.setBreakpointAt('OverloadDemo.emit(String)');
+  await debug.continue();
+
+  const state = debug.getCurrentState();
+  t.equal(state.executionState, 'paused', 'stopped rather than running to the end');
+  t.equal(state.method.name, 'emit', 'stopped inside emit');
+  t.equal(state.method.descriptor, '(Ljava/lang/String;)V', 'in the String overload');
+  t.end();
+});
@@ -0,0 +1,83 @@
+'use strict';
+
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const {
+  buildPasses,
+  processClass,
+  parseBytes,
+  assemble,
+} = require('../scripts/bulk-pipeline');
+
+const SOURCES = path.join(__dirname, '..', 'sources');
+
+function compiledSources(limit) {
+  if (!fs.existsSync(SOURCES)) return [];
+  return fs.readdirSync(SOURCES)
+    .filter((name) => name.endsWith('.class'))
+    .sort()
+    .slice(0, limit)
+    .map((name) => path.join(SOURCES, name));
+}
+
+// The pipeline as it ran before the in-memory round trip: every pass writes
+// the class to disk and parses it back.
+function onDiskPipeline(bytes, passes, dir) {
+  let { ast, cp } = parseBytes(bytes);
+  const file = path.join(dir, 'pass.class');
+  for (const p of passes) {
+    p.fn(ast);
+    fs.writeFileSync(file, assemble(ast, cp));
+    ({ ast, cp } = parseBytes(fs.readFileSync(file)));
+  }
+  return assemble(ast, cp);
+}
+
+const classFiles = compiledSources(10);
+
+test('bulk pipeline skips the re-parse when a pass leaves the bytes unchanged', (t) => {
+  if (!classFiles.length) {
+    t.skip('no compiled classes in sources/ (run npm run build:java)');
+    t.end();
+    return;
+  }
+  const bytes = fs.readFileSync(classFiles[0]);
+  const noops = Array.from({ length: 4 }, (_, i) => ({ name: `noop${i}`, fn: () => {} }));
+  const idle = processClass(bytes, noops);
+  t.equal(idle.reparsed, 1, 'only the first pass normalizes the input');
+  t.equal(idle.skipped, noops.length - 1, 'the remaining no-op passes are skipped');
+
+  const flagged = processClass(bytes, [
+    ...noops.slice(0, 2),
+    {
+      name: 'mark-synthetic',
+      fn: (ast) => {
+        const cls = ast.classes ? ast.classes[0] : ast;
+        cls.flags = [...(cls.flags || []), 'synthetic'];
+      },
+    },
+  ]);
+  t.equal(flagged.reparsed, 2, 'a pass that changes the class is re-parsed');
+  t.equal(flagged.skipped, 1);
+  t.notDeepEqual(Buffer.from(flagged.bytes), Buffer.from(idle.bytes));
+  t.end();
+});
+
+test('bulk pipeline output matches the on-disk round trip', (t) => {
+  if (!classFiles.length) {
+    t.skip('no compiled classes in sources/ (run npm run build:java)');
+    t.end();
+    return;
+  }
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'bulk-pipeline-'));
+  for (const file of classFiles) {
+    const bytes = fs.readFileSync(file);
+    const expected = onDiskPipeline(bytes, buildPasses(false), dir);
+    const { bytes: actual } = processClass(bytes, buildPasses(false));
+    t.deepEqual(Buffer.from(actual), Buffer.from(expected), path.basename(file));
+  }
+  fs.rmSync(dir, { recursive: true, force: true });
+  t.end();
+});
@@ -0,0 +1,100 @@
+'use strict';
+
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { execFileSync } = require('child_process');
+const { decompilePath } = require('../src/decompiler/cfr');
+const { LazyClassInfo, decompileWorkerCount } = require('../src/decompiler/decompilePool');
+
+test('worker-pool decompilation matches the serial path in order and content', async (t) => {
+  const root = fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-cfr-parallel-'));
+  const classes = path.join(root, 'classes');
+  fs.mkdirSync(classes, { recursive: true });
+  const sources = [];
+  for (let i = 0; i < 6; i += 1) {
+    const file = path.join(root, `P${i}.java`);
+    fs.writeFileSync(file, [
+      `class P${i} ${i ? `extends P${i - 1} ` : ''}{`,
+      '  enum Mode { ON { int weight() { return 2; } }, OFF; int weight() { return 1; } }',
+      `  static int sum(int[] values) { int s = ${i}; for (int v : values) s += v; return s; }`,
+      '  int pick(Mode mode) throws java.io.IOException {',
+      '    if (mode == Mode.OFF) throw new java.io.IOException("off");',
+      '    return mode.weight();',
+      '  }',
+      '}',
+      '',
+    ].join('\n'));
+    sources.push(file);
+  }
+  execFileSync('javac', ['-d', classes, ...sources]);
+  try {
+    const serial = await decompilePath(classes, {});
+    const streamed = [];
+    const pooled = await decompilePath(classes, {
+      workers: 3,
+      onOutput: (output, index) => streamed.push([index, output.name]),
+    });
+    t.deepEqual(pooled.map((o) => o.name), serial.map((o) => o.name), 'same outputs in the same order');
+    t.deepEqual(pooled.map((o) => o.source), serial.map((o) => o.source), 'byte-identical sources');
+    t.deepEqual(pooled.map((o) => o.diagnostics), serial.map((o) => o.diagnostics), 'same diagnostics');
+    t.deepEqual(pooled.failures, serial.failures, 'same per-class failures');
+    t.deepEqual(streamed, pooled.map((o, i) => [i, o.name]), 'outputs stream in input order');
+  } catch (error) {
+    t.fail(error && error.stack ? error.stack : String(error));
+  } finally {
+    fs.rmSync(root, { recursive: true, force: true });
+  }
+  t.end();
+});
+
+test('worker-pool decompilation matches the serial path on the compiled sources', async (t) => {
+  // sources/*.class are built by `npm run build:java` (part of pretest).
+  const sourcesDir = path.join(__dirname, '..', 'sources');
+  const outers = fs.existsSync(sourcesDir)
+    ? fs.readdirSync(sourcesDir).filter((name) => name.endsWith('.class') && !name.includes('$')).sort().slice(0, 16)
+    : [];
+  if (!outers.length) {
+    t.skip('no compiled classes in sources/ (run npm run build:java)');
+    t.end();
+    return;
+  }
+  const classes = fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-cfr-parallel-sources-'));
+  const prefixes = outers.map((name) => `${name.slice(0, -'.class'.length)}$`);
+  fs.readdirSync(sourcesDir)
+    .filter((name) => outers.includes(name) || prefixes.some((prefix) => name.startsWith(prefix)))
+    .forEach((name) => fs.copyFileSync(path.join(sourcesDir, name), path.join(classes, name)));
+  try {
+    const serial = await decompilePath(classes, {});
+    const pooled = await decompilePath(classes, { workers: 4 });
+    t.ok(serial.length >= outers.length, `decompiled ${serial.length} classes`);
+    t.deepEqual(pooled.map((o) => o.name), serial.map((o) => o.name), 'same outputs in the same order');
+    t.deepEqual(pooled.map((o) => o.source), serial.map((o) => o.source), 'byte-identical sources');
+    t.deepEqual(pooled.map((o) => o.diagnostics), serial.map((o) => o.diagnostics), 'same diagnostics');
+    t.deepEqual(pooled.failures, serial.failures, 'same per-class failures');
+  } catch (error) {
+    t.fail(error && error.stack ? error.stack : String(error));
+  } finally {
+    fs.rmSync(classes, { recursive: true, force: true });
+  }
+  t.end();
+});
+
+test('worker classInfo parses siblings only when a lookup needs them', (t) => {
+  const parsed = [];
+  const info = new LazyClassInfo(new Map([['a/A', 0], ['a/B', 1]]), (slot) => {
+    parsed.push(slot);
+    return { classes: [{ className: slot ? 'a/B' : 'a/A' }] };
+  });
+  t.ok(info.has('a/B') && !info.has('a/C'), 'membership without parsing');
+  t.deepEqual([...info.keys()], ['a/A', 'a/B']);
+  t.deepEqual(parsed, [], 'nothing parsed yet');
+  t.equal(info.get('a/B').className, 'a/B');
+  t.deepEqual(parsed, [1], 'only the requested class parsed');
+  t.deepEqual([...info].map(([name]) => name), ['a/A', 'a/B'], 'iterates like a Map');
+  t.equal(decompileWorkerCount({ workers: 8 }, 3), 3, 'never more workers than classes');
+  t.equal(decompileWorkerCount({ workers: 1 }, 100), 1, 'one worker means the serial path');
+  t.ok(decompileWorkerCount({ workers: 'auto' }, 100) >= 1, 'auto sizes to the cores');
+  t.end();
+});
@@ -0,0 +1,103 @@
+'use strict';
+
+const test = require('tape');
+const {
+  convertJson,
+  materializeCode,
+  isCodePending,
+} = require('../src/parsing/convert_tree');
+
+// Constant pool and class in the shape jvm_parser's getAST produces.
+const CONSTANT_POOL = [
+  null,
+  { tag: 1, info: { bytes: 'hello' } },
+  { tag: 8, info: { string_index: 1 } },
+  { tag: 1, info: { bytes: 'java/lang/Exception' } },
+  { tag: 7, info: { name_index: 3 } },
+  { tag: 1, info: { bytes: 'LineNumberTable' } },
+];
+
+function parsedClass() {
+  const method = (name, instructions, extra = {}) => ({
+    accessFlags: 0x0009,
+    name,
+    descriptor: '()Ljava/lang/Object;',
+    exceptions: [],
+    code: {
+      maxStack: 1,
+      maxLocals: 0,
+      codeLength: instructions.length ? instructions[instructions.length - 1].pc + 1 : 0,
+      instructions,
+      exceptionTable: [],
+      attributes: [],
+      ...extra,
+    },
+  });
+  return {
+    major_version: 52,
+    minor_version: 0,
+    accessFlags: 0x0021,
+    className: 'demo.Lazy',
+    superClassName: 'java.lang.Object',
+    interfaces: [],
+    fields: [{ accessFlags: 0x0002, name: 'count', descriptor: 'I', attributes: [] }],
+    methods: [
+      method('greet', [
+        { pc: 0, opcodeName: 'ldc', operands: { index: 2 } },
+        { pc: 2, opcodeName: 'areturn', operands: {} },
+      ], {
+        attributes: [{
+          attribute_name_index: { index: 5 },
+          info: { line_number_table: [{ start_pc: 0, line_number: 7 }] },
+        }],
+      }),
+      method('loop', [
+        { pc: 0, opcodeName: 'aconst_null', operands: {} },
+        { pc: 1, opcodeName: 'goto', operands: { branchoffset: -1 } },
+      ], {
+        exceptionTable: [{ start_pc: 0, end_pc: 1, handler_pc: 1, catch_type: 4 }],
+      }),
+      { accessFlags: 0x0401, name: 'run', descriptor: '()V', exceptions: [] },
+    ],
+    sourceFile: 'Lazy.java',
+    attributes: [],
+  };
+}
+
+const methodsOf = (ast) => ast.classes[0].items.filter((item) => item.type === 'method');
+
+test('lazy convertJson converts method bodies on first access only', (t) => {
+  const eager = convertJson(parsedClass(), CONSTANT_POOL);
+  const lazy = convertJson(parsedClass(), CONSTANT_POOL, { lazyCode: true });
+  const [greet, loop, run] = methodsOf(lazy);
+
+  t.equal(lazy.classes[0].className, 'demo/Lazy', 'the class header is converted up front');
+  t.deepEqual(methodsOf(lazy).map((item) => item.method.name), ['greet', 'loop', 'run']);
+  t.ok(isCodePending(greet) && isCodePending(loop.method), 'bodies start out unconverted');
+  t.notOk(isCodePending(run), 'a method without code has nothing pending');
+
+  const code = materializeCode(greet);
+  t.equal(code.codeItems[0].instruction.arg, 'hello', 'materializeCode converts the body');
+  t.notOk(isCodePending(greet), 'and the converted body is kept');
+  t.equal(materializeCode(greet.method), code, 'a second request returns the same object');
+  t.ok(isCodePending(loop), 'other methods are untouched');
+  t.equal(materializeCode(run), null);
+
+  t.deepEqual(lazy, eager, 'reading every body gives exactly the eager AST');
+  t.notOk(isCodePending(loop), 'deepEqual read the remaining body through the getter');
+  t.end();
+});
+
+test('lazy code serializes like eager code and can be replaced before conversion', (t) => {
+  const eager = convertJson(parsedClass(), CONSTANT_POOL);
+  const lazy = convertJson(parsedClass(), CONSTANT_POOL, { lazyCode: true });
+  t.equal(JSON.stringify(lazy), JSON.stringify(eager), 'JSON output matches eager conversion');
+
+  const other = convertJson(parsedClass(), CONSTANT_POOL, { lazyCode: true });
+  const codeAttr = methodsOf(other)[1].method.attributes.find((attr) => attr.type === 'code');
+  const replacement = { stackSize: '0', localsSize: '0', codeItems: [], exceptionTable: [], attributes: [] };
+  codeAttr.code = replacement;
+  t.equal(codeAttr.code, replacement, 'assigning replaces the pending body');
+  t.notOk(isCodePending(methodsOf(other)[1]));
+  t.end();
+});
@@ -0,0 +1,180 @@
+'use strict';
+
+const test = require('tape');
+const { buildSsa } = require('../src/analysis/opgraph/ssa');
+const { scalarReplace, summarizeConstructor } = require('../src/analysis/opgraph/escape');
+
+const POINT_X = ['Field', 'Point', ['x', 'I']];
+const POINT_Y = ['Field', 'Point', ['y', 'I']];
+const POINT_INIT = ['Method', 'Point', ['<init>', '(II)V']];
+
+const POINT_CTOR = {
+  name: '<init>',
+  descriptor: '(II)V',
+  flags: [],
+  attributes: [{
+    type: 'code',
+    code: {
+      exceptionTable: [],
+      codeItems: [
+        { pc: 0, instruction: 'aload_0' },
+        { pc: 1, instruction: { op: 'invokespecial', arg: ['Method', 'java/lang/Object', ['<init>', '()V']] } },
+        { pc: 4, instruction: 'aload_0' },
+        { pc: 5, instruction: 'iload_1' },
+        { pc: 6, instruction: { op: 'putfield', arg: POINT_X } },
+        { pc: 9, instruction: 'aload_0' },
+        { pc: 10, instruction: 'iload_2' },
+        { pc: 11, instruction: { op: 'putfield', arg: POINT_Y } },
+        { pc: 14, instruction: 'return' },
+      ],
+    },
+  }],
+};
+
+function build(codeItems, descriptor = '(II)I') {
+  return buildSsa({ codeItems, exceptionTable: [], method: { name: 'f', descriptor, flags: ['static'] } });
+}
+
+const summaries = {
+  constructorSummary: (owner, descriptor) => (owner === 'Point' && descriptor === '(II)V'
+    ? summarizeConstructor(POINT_CTOR, () => null) : null),
+};
+
+test('summarizeConstructor reduces a data-class <init> to field stores', (t) => {
+  const summary = summarizeConstructor(POINT_CTOR, () => null);
+  t.ok(summary, 'summarised');
+  t.deepEqual(summary.stores.map((s) => [s.field.name, s.param]), [['x', 0], ['y', 1]]);
+  const withCall = JSON.parse(JSON.stringify(POINT_CTOR));
+  withCall.attributes[0].code.codeItems.splice(8, 0,
+    { pc: 13, instruction: { op: 'invokestatic', arg: ['Method', 'Log', ['hit', '()V']] } });
+  t.equal(summarizeConstructor(withCall, () => null), null, 'any other effect refuses');
+  t.end();
+});
+
+test('scalarReplace turns a constructed, read-back object into SSA values', (t) => {
+  const fn = build([
+    { pc: 0, instruction: { op: 'new', arg: 'Point' } },
+    { pc: 3, instruction: 'dup' },
+    { pc: 4, instruction: 'iload_0' },
+    { pc: 5, instruction: 'iload_1' },
+    { pc: 6, instruction: { op: 'invokespecial', arg: POINT_INIT } },
+    { pc: 9, instruction: 'astore_2' },
+    { pc: 10, instruction: 'aload_2' },
+    { pc: 11, instruction: { op: 'getfield', arg: POINT_X } },
+    { pc: 14, instruction: 'aload_2' },
+    { pc: 15, instruction: { op: 'getfield', arg: POINT_Y } },
+    { pc: 18, instruction: 'iadd' },
+    { pc: 19, instruction: 'ireturn' },
+  ]);
+  t.notOk(fn.rejected, 'accepted');
+  const result = scalarReplace(fn, summaries);
+  t.equal(result.replaced, 1, 'one allocation replaced');
+  const body = fn.blocks[0].body.map((node) => node.op);
+  t.notOk(body.includes('new'), 'allocation removed');
+  t.notOk(body.includes('getfield'), 'field reads removed');
+  t.notOk(body.includes('invokespecial'), 'constructor call removed');
+  const sum = fn.blocks[0].term.args[0];
+  t.equal(sum.op, 'iadd');
+  t.deepEqual(sum.args.map((a) => a.op), ['param', 'param'], 'reads forward the constructor arguments');
+  t.equal(fn.virtualObjects.size, 1);
+  t.end();
+});
+
+test('scalarReplace keeps objects that escape', (t) => {
+  const fn = build([
+    { pc: 0, instruction: { op: 'new', arg: 'Point' } },
+    { pc: 3, instruction: 'dup' },
+    { pc: 4, instruction: 'iload_0' },
+    { pc: 5, instruction: 'iload_1' },
+    { pc: 6, instruction: { op: 'invokespecial', arg: POINT_INIT } },
+    { pc: 9, instruction: { op: 'invokestatic', arg: ['Method', 'Sink', ['take', '(LPoint;)I']] } },
+    { pc: 12, instruction: 'ireturn' },
+  ]);
+  const result = scalarReplace(fn, summaries);
+  t.equal(result.replaced, 0);
+  t.match(result.escapes.values().next().value, /invokestatic/, 'reason names the escaping use');
+  t.ok(fn.blocks[0].body.some((node) => node.op === 'new'), 'IR unchanged');
+  t.end();
+});
+
+test('scalarReplace rematerialisation state at a throwing call', (t) => {
+  const fn = build([
+    { pc: 0, instruction: { op: 'new', arg: 'Point' } },
+    { pc: 3, instruction: 'dup' },
+    { pc: 4, instruction: 'iload_0' },
+    { pc: 5, instruction: 'iload_1' },
+    { pc: 6, instruction: { op: 'invokespecial', arg: POINT_INIT } },
+    { pc: 9, instruction: 'astore_2' },
+    { pc: 10, instruction: 'aload_2' },
+    { pc: 11, instruction: 'iconst_5' },
+    { pc: 12, instruction: { op: 'putfield', arg: POINT_X } },
+    { pc: 15, instruction: { op: 'invokestatic', arg: ['Method', 'Log', ['tick', '()V']] } },
+    { pc: 18, instruction: 'aload_2' },
+    { pc: 19, instruction: { op: 'getfield', arg: POINT_X } },
+    { pc: 22, instruction: 'ireturn' },
+  ]);
+  t.equal(scalarReplace(fn, summaries).replaced, 1);
+  const call = fn.blocks[0].body.find((node) => node.op === 'invokestatic');
+  t.ok(call.virtualState, 'the call site carries virtual object state');
+  const [[alloc, fields]] = [...call.virtualState];
+  t.equal(call.slotState.get(2), alloc, 'slot 2 still names the virtual object');
+  t.equal(fields.get('x:I').op, 'iconst_5', 'x as of the call');
+  t.equal(fields.get('y:I').op, 'param', 'y from the constructor');
+  t.equal(fn.blocks[0].term.args[0].op, 'iconst_5', 'read after the call sees the store');
+  t.end();
+});
+
+test('scalarReplace drops a dead loop-header join and replaces small arrays', (t) => {
+  // for (i = 0; i < n; i++) { int[] a = new int[2]; a[1] = i; s += a[1] + a.length; }
+  const fn = build([
+    { pc: 0, instruction: 'iconst_0' },
+    { pc: 1, instruction: 'istore_1' },
+    { pc: 2, instruction: 'iconst_0' },
+    { pc: 3, instruction: 'istore_2' },
+    { pc: 4, labelDef: 'Lhead:', instruction: 'iload_2' },
+    { pc: 5, instruction: 'iload_0' },
+    { pc: 6, instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+    { pc: 9, instruction: 'iconst_2' },
+    { pc: 10, instruction: { op: 'newarray', arg: 'int' } },
+    { pc: 12, instruction: 'astore_3' },
+    { pc: 13, instruction: 'aload_3' },
+    { pc: 14, instruction: 'iconst_1' },
+    { pc: 15, instruction: 'iload_2' },
+    { pc: 16, instruction: 'iastore' },
+    { pc: 17, instruction: 'iload_1' },
+    { pc: 18, instruction: 'aload_3' },
+    { pc: 19, instruction: 'iconst_1' },
+    { pc: 20, instruction: 'iaload' },
+    { pc: 21, instruction: 'aload_3' },
+    { pc: 22, instruction: 'arraylength' },
+    { pc: 23, instruction: 'iadd' },
+    { pc: 24, instruction: 'iadd' },
+    { pc: 25, instruction: 'istore_1' },
+    { pc: 26, instruction: { op: 'iinc', arg: [2, 1] } },
+    { pc: 29, instruction: { op: 'goto', arg: 'Lhead' } },
+    { pc: 32, labelDef: 'Ldone:', instruction: 'iload_1' },
+    { pc: 33, instruction: 'ireturn' },
+  ], '(I)I');
+  t.notOk(fn.rejected, 'accepted');
+  const result = scalarReplace(fn);
+  t.equal(result.replaced, 1, 'array replaced despite the slot-3 header phi');
+  t.notOk(fn.values.some((v) => v.op === 'newarray' || v.op === 'iaload' || v.op === 'iastore'),
+    'no array ops left');
+  const header = fn.blocks.find((b) => b.phis.some((phi) => phi.origin.slot === 1));
+  t.notOk(header.phis.some((phi) => phi.origin.slot === 3), 'dead slot-3 join removed');
+  t.end();
+});
+
+test('scalarReplace refuses variable array indices', (t) => {
+  const fn = build([
+    { pc: 0, instruction: 'iconst_4' },
+    { pc: 1, instruction: { op: 'newarray', arg: 'int' } },
+    { pc: 3, instruction: 'iload_0' },
+    { pc: 4, instruction: 'iaload' },
+    { pc: 5, instruction: 'ireturn' },
+  ]);
+  const result = scalarReplace(fn);
+  t.equal(result.replaced, 0);
+  t.equal([...result.escapes.values()][0], 'non-constant index');
+  t.end();
+});
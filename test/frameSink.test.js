@@ -0,0 +1,151 @@
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const zlib = require('zlib');
+const { encodePng, ApngEncoder } = require('../src/io/pngEncoder');
+const { createFrameSink, frameSinkOptionsFromEnv } = require('../src/io/frameSink');
+
+function chunks(png) {
+  const out = [];
+  for (let at = 8; at < png.length;) {
+    const length = png.readUInt32BE(at);
+    const type = png.toString('ascii', at + 4, at + 8);
+    const data = png.subarray(at + 8, at + 8 + length);
+    const crc = png.readUInt32BE(at + 8 + length);
+    out.push({ type, data, crcOk: zlib.crc32(png.subarray(at + 4, at + 8 + length)) === crc });
+    at += 12 + length;
+  }
+  return out;
+}
+
+// Inverse of the encoder's Up-filtered RGB scanlines.
+function unfilter(deflated, width, height) {
+  const raw = zlib.inflateSync(deflated);
+  const rowBytes = 1 + width * 3;
+  const pixels = [];
+  for (let row = 0; row < height; row++) {
+    for (let i = 1; i < rowBytes; i++) {
+      const at = row * rowBytes + i;
+      if (row > 0) raw[at] += raw[at - rowBytes];
+    }
+    for (let col = 0; col < width; col++) {
+      const at = row * rowBytes + 1 + col * 3;
+      pixels.push(raw[at] << 16 | raw[at + 1] << 8 | raw[at + 2]);
+    }
+  }
+  return pixels;
+}
+
+// Composite every APNG frame; returns the full canvas after each one.
+function decodeApng(png) {
+  const list = chunks(png);
+  const ihdr = list.find((chunk) => chunk.type === 'IHDR').data;
+  const width = ihdr.readUInt32BE(0), height = ihdr.readUInt32BE(4);
+  const canvas = new Array(width * height).fill(0);
+  const frames = [];
+  let control = null;
+  for (const chunk of list) {
+    if (chunk.type === 'fcTL') control = chunk.data;
+    if (chunk.type !== 'IDAT' && chunk.type !== 'fdAT') continue;
+    const fw = control.readUInt32BE(4), fh = control.readUInt32BE(8);
+    const fx = control.readUInt32BE(12), fy = control.readUInt32BE(16);
+    const region = unfilter(chunk.type === 'IDAT' ? chunk.data : chunk.data.subarray(4), fw, fh);
+    for (let row = 0; row < fh; row++) {
+      for (let col = 0; col < fw; col++) canvas[(fy + row) * width + fx + col] = region[row * fw + col];
+    }
+    frames.push(canvas.slice());
+  }
+  return { list, width, height, frames };
+}
+
+function gradient(width, height, shift) {
+  return Array.from({ length: width * height }, (_, i) => ((i * 0x10305 + shift) & 0xffffff));
+}
+
+function tempDir() {
+  return fs.mkdtempSync(path.join(os.tmpdir(), 'frame-sink-'));
+}
+
+test('PNG frames carry valid chunks and round-trip their pixels', (t) => {
+  const pixels = gradient(7, 5, 3);
+  const png = encodePng(pixels, 7, 5);
+  const list = chunks(png);
+  t.deepEqual(list.map((chunk) => chunk.type), ['IHDR', 'IDAT', 'IEND']);
+  t.ok(list.every((chunk) => chunk.crcOk), 'every CRC matches');
+  t.deepEqual(unfilter(list[1].data, 7, 5), pixels);
+  t.ok(encodePng(pixels, 7, 5, { level: 9 }).length <= png.length, 'the level is configurable');
+  t.end();
+});
+
+test('APNG frames store only the changed rectangle', (t) => {
+  const encoder = new ApngEncoder(6, 4, { fps: 25 });
+  const first = gradient(6, 4, 0);
+  const second = first.slice();
+  second[14] = 0xffffff;
+  second[15] = 0xff00ff;
+  const png = Buffer.concat([
+    encoder.header(), encoder.frame(first), encoder.frame(second), encoder.frame(second), encoder.trailer(),
+  ]);
+  const patched = Buffer.concat([png.subarray(0, 33), encoder.actlChunk(), png.subarray(33 + 20)]);
+  const { list, frames } = decodeApng(patched);
+  t.ok(list.every((chunk) => chunk.crcOk), 'every CRC matches');
+  t.equal(list[1].type, 'acTL');
+  t.equal(list[1].data.readUInt32BE(0), 3, 'acTL counts the frames');
+  const controls = list.filter((chunk) => chunk.type === 'fcTL');
+  t.deepEqual(Array.from(controls[1].data.subarray(4, 20)), [0, 0, 0, 2, 0, 0, 0, 1, 0, 0, 0, 2, 0, 0, 0, 2],
+    'the second frame is the 2x1 rectangle at (2, 2)');
+  t.equal(controls[0].data.readUInt16BE(22), 25, 'the delay is 1/fps');
+  const sequence = list.filter((chunk) => chunk.type === 'fcTL' || chunk.type === 'fdAT')
+    .map((chunk) => chunk.data.readUInt32BE(0));
+  t.deepEqual(sequence, [0, 1, 2, 3, 4], 'sequence numbers are consecutive');
+  t.deepEqual(frames, [first, second, second]);
+  t.end();
+});
+
+test('the frame sink writes APNG and raw RGBA streams from its worker', async (t) => {
+  const dir = tempDir();
+  const frames = [gradient(4, 3, 0), gradient(4, 3, 9), gradient(4, 3, 9)];
+  const apng = createFrameSink(frameSinkOptionsFromEnv({ JVM_FRAME_DIR: dir, JVM_FRAME_FORMAT: 'apng' }));
+  t.ok(apng.worker, 'encoding runs on a worker thread');
+  const live = Int32Array.from(frames[0]);
+  apng.write(live, 4, 3, 0);
+  live.fill(0);
+  apng.write(frames[1], 4, 3, 1);
+  apng.write(gradient(2, 2, 0), 2, 2, 2);
+  apng.write(Int32Array.from(frames[2]), 4, 3, 3);
+  await apng.close();
+  const decoded = decodeApng(fs.readFileSync(path.join(dir, 'frames.png')));
+  t.deepEqual(decoded.frames, frames, 'frames are copied on write and a resized frame is skipped');
+  t.equal(decoded.list.find((chunk) => chunk.type === 'acTL').data.readUInt32BE(0), 3);
+  t.equal(decoded.list[decoded.list.length - 1].type, 'IEND');
+
+  const output = path.join(dir, 'out.rgba');
+  const rgba = createFrameSink(frameSinkOptionsFromEnv({ JVM_FRAME_OUT: output, JVM_FRAME_FORMAT: 'rgba' }));
+  rgba.write([0x112233, 0x445566], 2, 1, 0);
+  rgba.write([0x778899, 0xaabbcc], 2, 1, 1);
+  await rgba.close();
+  t.deepEqual(Array.from(fs.readFileSync(output)),
+    [0x11, 0x22, 0x33, 0xff, 0x44, 0x55, 0x66, 0xff, 0x77, 0x88, 0x99, 0xff, 0xaa, 0xbb, 0xcc, 0xff]);
+  fs.rmSync(dir, { recursive: true, force: true });
+  t.end();
+});
+
+test('PNG frame directories match with and without the worker', async (t) => {
+  const withWorker = tempDir();
+  const inline = tempDir();
+  for (const [dir, worker] of [[withWorker, '1'], [inline, '0']]) {
+    const sink = createFrameSink(frameSinkOptionsFromEnv({ JVM_FRAME_DIR: dir, JVM_FRAME_WORKER: worker }));
+    t.equal(Boolean(sink.worker), worker === '1');
+    t.equal(sink.write(gradient(3, 3, 1), 3, 3, 4), path.join(dir, 'frame-00004.png'));
+    await sink.close();
+  }
+  t.deepEqual(fs.readFileSync(path.join(withWorker, 'frame-00004.png')),
+    fs.readFileSync(path.join(inline, 'frame-00004.png')));
+  t.throws(() => frameSinkOptionsFromEnv({ JVM_FRAME_FORMAT: 'mp4', JVM_FRAME_DIR: inline }), /JVM_FRAME_FORMAT/);
+  t.throws(() => createFrameSink(frameSinkOptionsFromEnv({ JVM_FRAME_FORMAT: 'apng', JVM_FRAME_OUT: '-' })),
+    /stdout/);
+  fs.rmSync(withWorker, { recursive: true, force: true });
+  fs.rmSync(inline, { recursive: true, force: true });
+  t.end();
+});
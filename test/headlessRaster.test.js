@@ -0,0 +1,115 @@
+const test = require('tape');
+const { HeadlessRaster } = require('../src/platform/headlessRaster');
+const Graphics = require('../src/jre/java/awt/Graphics');
+
+function rows(raster) {
+  const out = [];
+  for (let y = 0; y < raster.height; y++) {
+    out.push(Array.from(raster.pixels.subarray(y * raster.width, (y + 1) * raster.width),
+      (pixel) => (pixel ? '#' : '.')).join(''));
+  }
+  return out;
+}
+
+test('the Wasm span fill clips to the surface', (t) => {
+  const raster = new HeadlessRaster(5, 3);
+  t.ok(raster.wasmFill, 'the rasteriser module compiles');
+  t.equal(raster.pixels.buffer, raster.memory.buffer, 'pixels live in the Wasm memory');
+  raster.fillRect(-2, -2, 4, 3, 0x123456);
+  raster.fillRect(4, 2, 10, 10, 7);
+  raster.fillRect(1, 1, 0, 5, 9);
+  t.deepEqual(rows(raster), ['##...', '.....', '....#']);
+  t.equal(raster.pixels[0], 0x123456);
+  raster.fill(0, 0, 5, 1, -1);
+  t.deepEqual(Array.from(raster.pixels.subarray(0, 5)), [-1, -1, -1, -1, -1],
+    'odd-length rows end with a single-pixel store');
+  t.end();
+});
+
+test('outlines and lines follow the AWT pixel rules', (t) => {
+  const raster = new HeadlessRaster(9, 7);
+  raster.drawRect(1, 1, 3, 2, 1);
+  raster.drawLine(8, 0, 5, 6, 1);
+  t.deepEqual(rows(raster), [
+    '........#',
+    '.####..#.',
+    '.#..#..#.',
+    '.####.#..',
+    '......#..',
+    '.....#...',
+    '.....#...',
+  ]);
+  const oval = new HeadlessRaster(9, 7);
+  oval.drawOval(0, 0, 8, 6, 1);
+  t.deepEqual(rows(oval), [
+    '..#####..',
+    '.#.....#.',
+    '#.......#',
+    '#.......#',
+    '#.......#',
+    '.#.....#.',
+    '..#####..',
+  ]);
+  t.end();
+});
+
+test('filled shapes are scan-converted at pixel centres', (t) => {
+  const raster = new HeadlessRaster(8, 8);
+  raster.fillPolygon([0, 8, 0], [0, 0, 8], 3, 1);
+  t.deepEqual(rows(raster).slice(0, 3), ['#######.', '######..', '#####...'],
+    'a pixel whose centre is on the edge is outside');
+  t.equal(rows(raster)[7], '........');
+
+  const arc = new HeadlessRaster(8, 8);
+  arc.fillArc(0, 0, 8, 8, 0, 90, 1);
+  t.deepEqual(rows(arc).slice(2, 6), ['....####', '....####', '........', '........'],
+    'a quarter arc covers the upper right quadrant');
+  const circle = new HeadlessRaster(8, 8);
+  circle.fillOval(0, 0, 8, 8, 1);
+  const full = new HeadlessRaster(8, 8);
+  full.fillArc(0, 0, 8, 8, 30, -360, 1);
+  t.deepEqual(rows(full), rows(circle), 'a full sweep is the oval');
+  t.end();
+});
+
+test('the JavaScript fallback draws the same pixels', (t) => {
+  const draw = (raster) => {
+    raster.fillRect(-3, 2, 40, 9, 0x203040);
+    raster.drawLine(0, 29, 31, 0, 0xff0000);
+    raster.fillOval(4, 4, 20, 13, 0x00ff00);
+    raster.drawOval(2, 3, 25, 19, 0x0000ff);
+    raster.fillPolygon([3, 30, 15, 28], [1, 5, 28, 25], 4, 0x777777);
+    raster.drawPolygon([3, 30, 15], [1, 5, 28], 3, 0x888888);
+    raster.fillArc(6, 6, 22, 18, 45, 200, 0x999999);
+    raster.drawRect(10, 10, 30, 30, 0xaaaaaa);
+    return Array.from(raster.pixels);
+  };
+  t.deepEqual(draw(new HeadlessRaster(32, 30)), draw(new HeadlessRaster(32, 30, { wasm: false })));
+  t.end();
+});
+
+test('headless Graphics draws primitives into the component surface', (t) => {
+  const component = { _width: 6, _height: 4 };
+  const graphics = { _component: component, _softColor: 0x00ff00 };
+  const jvm = {};
+  Graphics.methods['fillRect(IIII)V'](jvm, graphics, [0, 0, 6, 4]);
+  const pixels = component._pixels;
+  t.ok(pixels instanceof Int32Array && component._pixelsWidth === 6, 'the surface is a raster view');
+  graphics._softColor = 0xff0000;
+  Graphics.methods['drawLine(IIII)V'](jvm, graphics, [0, 3, 5, 3]);
+  Graphics.methods['fillOval(IIII)V'](jvm, graphics, [0, 0, 2, 2]);
+  Graphics.methods['fillPolygon([I[II)V'](jvm, graphics, [[4, 6, 6], [0, 0, 2], 3]);
+  t.equal(component._pixels, pixels, 'later draws reuse the surface');
+  t.deepEqual(Array.from(pixels.subarray(18, 24)), Array(6).fill(0xff0000), 'drawLine');
+  t.equal(pixels[0], 0xff0000, 'fillOval');
+  t.equal(pixels[5], 0xff0000, 'fillPolygon');
+  t.equal(pixels[8], 0x00ff00);
+  t.ok(jvm._softCanvases.has(component), 'the component is registered for dumps');
+
+  const frame = new Int32Array(24).fill(0x0000ff);
+  component._pixels = frame;
+  Graphics.methods['drawRect(IIII)V'](jvm, graphics, [1, 1, 2, 1]);
+  t.equal(component._pixels[0], 0x0000ff, 'an assigned framebuffer is kept under new draws');
+  t.equal(component._pixels[7], 0xff0000);
+  t.end();
+});
@@ -122,6 +122,18 @@ test('JavaFrontend.compile compiles an AST document and preserves serializable m
   t.end();
 });
 
+test('classfile model renders Jasmin only when it is read', (t) => {
+  const result = frontend.compileJavaSource(HELLO_WORLD_SOURCE, { sourceFileName: 'Hello.java' });
+  const model = result.classFileModel.classes[0];
+  t.equal(typeof Object.getOwnPropertyDescriptor(model, 'jasmin').get, 'function', 'jasmin is a getter, not eager text');
+  t.equal(model.jasmin, frontend.jasminFromClassIr(result.bytecodeIr.classes[0]), 'the getter renders the class IR');
+  t.equal(result.classes[0].jasmin, model.jasmin, 'compile result entries share the rendered text');
+  t.ok(JSON.parse(JSON.stringify(result.classFileModel)).classes[0].jasmin.includes('.end class'),
+    'serialized models still carry the text');
+  t.equal(frontend.assembleClassModel(model).length > 0, true, 'the model assembles straight from its IR');
+  t.end();
+});
+
 test('frontend emits verifier StackMapTable frames for branches and exception handlers', (t) => {
   const outputDir = fs.mkdtempSync(path.join(os.tmpdir(), 'java-frontend-stackmaps-'));
   try {
@@ -0,0 +1,74 @@
+'use strict';
+
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const test = require('tape');
+const {
+  compileJavaFilesIncremental, compileWorkerCount, BUILD_RECORD_FILE,
+} = require('../src/java-frontend/incrementalBuild');
+
+const SOURCES = {
+  'p/A.java': 'package p;\npublic class A {\n  public String value() { return "a"; }\n}\n',
+  'p/B.java': 'package p;\npublic class B {\n  public int use() { return new A().value().length(); }\n}\n',
+  'p/C.java': 'package p;\npublic class C {\n  public static int seven() { return 7; }\n}\n',
+};
+
+test('incremental compile reuses unchanged units and follows API changes', async (t) => {
+  const root = fs.mkdtempSync(path.join(os.tmpdir(), 'java-frontend-incremental-'));
+  const sourceDir = path.join(root, 'src');
+  const outputDir = path.join(root, 'out');
+  const inputPaths = Object.keys(SOURCES).map((name) => {
+    const file = path.join(sourceDir, name);
+    fs.mkdirSync(path.dirname(file), { recursive: true });
+    fs.writeFileSync(file, SOURCES[name]);
+    return file;
+  });
+  const [aPath, bPath, cPath] = inputPaths;
+  const names = (list) => list.map((file) => path.basename(file)).sort();
+  const build = () => compileJavaFilesIncremental(inputPaths, { outputDir });
+
+  try {
+    let result = await build();
+    t.deepEqual(names(result.incremental.compiled), ['A.java', 'B.java', 'C.java'], 'first build compiles everything');
+    t.ok(fs.existsSync(path.join(outputDir, BUILD_RECORD_FILE)), 'build record is written next to the output');
+
+    result = await build();
+    t.deepEqual(result.incremental.compiled, [], 'nothing changed, nothing compiles');
+    t.equal(result.classes.length, 3, 'reused units still report their classes');
+
+    fs.writeFileSync(aPath, SOURCES['p/A.java'].replace('"a"', '"aa"'));
+    result = await build();
+    t.deepEqual(names(result.incremental.compiled), ['A.java'], 'a body-only change leaves dependents alone');
+
+    fs.writeFileSync(aPath, SOURCES['p/A.java'].replace('}\n}', '}\n  public int extra() { return 1; }\n}'));
+    result = await build();
+    t.deepEqual(names(result.incremental.compiled), ['A.java', 'B.java'], 'an API change recompiles dependents only');
+
+    fs.unlinkSync(path.join(outputDir, 'p', 'C.class'));
+    result = await build();
+    t.deepEqual(names(result.incremental.compiled), ['C.java'], 'a missing output is rebuilt');
+
+    result = await compileJavaFilesIncremental([aPath, bPath], { outputDir });
+    t.deepEqual(names(result.incremental.removed), ['C.java'], 'a source leaving the build is reported');
+    t.notOk(fs.existsSync(path.join(outputDir, 'p', 'C.class')), 'and its class file is deleted');
+    t.ok(result.incremental.rebuiltAll, 'a class disappearing rebuilds everything');
+  } finally {
+    fs.rmSync(root, { recursive: true, force: true });
+  }
+  t.end();
+});
+
+test('compile rounds use the cores unless they are small or a count is given', (t) => {
+  const previous = process.env.JAVA_FRONTEND_WORKERS;
+  delete process.env.JAVA_FRONTEND_WORKERS;
+  try {
+    t.equal(compileWorkerCount({}, 3), 1, 'a small round compiles in-process');
+    t.equal(compileWorkerCount({}, 200), Math.min(200, os.availableParallelism()), 'a large one uses every core');
+    t.equal(compileWorkerCount({ workers: 1 }, 200), 1, 'an explicit count wins');
+    t.equal(compileWorkerCount({ workers: 16 }, 3), 3, 'never more workers than files');
+  } finally {
+    if (previous !== undefined) process.env.JAVA_FRONTEND_WORKERS = previous;
+  }
+  t.end();
+});
@@ -2378,6 +2378,45 @@ test('generated call sites execute proven synchronous JRE leaves directly', (t)
   t.end();
 });
 
+test('a fast JRE call site retrying a blocked DataInputStream read loses no bytes', async (t) => {
+  const { EventEmitter } = require('events');
+  const { register, allocId } = require('../src/jre/java/net/socketRegistry');
+  const jvm = new JVM({ jit: { warmupThreshold: 0 } });
+  const nativeSocket = new EventEmitter();
+  const socketId = allocId();
+  register(socketId, nativeSocket);
+  const input = { type: 'java/net/SocketInputStream', socketId };
+  const data = { type: 'java/io/DataInputStream', in: input };
+  const instruction = {
+    op: 'invokevirtual',
+    arg: ['Method', 'java/io/DataInputStream', ['readInt', '()I']],
+  };
+  const siteId = jvm.jit.registerSyncCallSite('invokevirtual', instruction);
+  const method = {
+    name: 'arbitraryReader', descriptor: '(Ljava/io/DataInputStream;)I',
+    attributes: [{ type: 'code', code: {
+      codeItems: [], exceptionTable: [], localsSize: '1', stackSize: '1',
+    } }],
+  };
+  const frame = new Frame(method);
+  const thread = { status: 'runnable', callStack: new Stack() };
+  const available = () => jvm._jreFindMethod('java/net/SocketInputStream', 'available', '()I')(jvm, input, []);
+
+  nativeSocket.emit('data', Buffer.from([0, 0, 0, 7, 0, 0]));
+  frame.stack.items.push(data);
+  t.equal(jvm.jit.tryInvokeSyncAt(siteId, frame, thread), 7,
+    'a fully buffered read completes in the generated caller');
+  frame.stack.items.push(data);
+  t.equal(jvm.jit.tryInvokeSyncAt(siteId, frame, thread), jvm.jit.asyncInvokeSentinel(),
+    'a read that would block hands off to the canonical path');
+  t.deepEqual(frame.stack.items, [data], 'the receiver is left for the retry');
+  t.equal(available(), 2, 'the abandoned fast call took no bytes');
+  const retried = jvm._jreFindMethod('java/io/DataInputStream', 'readInt', '()I')(jvm, data, []);
+  nativeSocket.emit('data', Buffer.from([1, 2]));
+  t.equal(await retried, 0x0102, 'the retry reads the whole int in order');
+  t.end();
+});
+
 test('generated call sites share resolved positional ABI templates', (t) => {
   const jvm = new JVM({ jit: { warmupThreshold: 0 } });
   const method = {
@@ -11330,6 +11369,43 @@ test('JIT bytecode safe point deopts at breakpoint with materialized frame state
   t.end();
 });
 
+test('a breakpoint in one class leaves other classes on compiled code', (t) => {
+  const jvm = new JVM({ jit: { warmupThreshold: 0 } });
+  const jit = jvm.jit;
+  const debug = jvm.debugManager;
+  const tick = { name: 'tick', descriptor: '()V', attributes: [] };
+  const run = { name: 'run', descriptor: '()V', attributes: [] };
+  const inA = { method: tick, className: 'A' };
+  const inB = { method: run, className: 'B' };
+  const thread = { id: 0, status: 'runnable' };
+  jvm.threads = [thread];
+  jvm.clock = null;
+  jvm._nextEventLoopYieldAt = Infinity;
+  debug.enable();
+  debug.setFullSpeed(true);
+  debug.setRunMode('continuing');
+  debug.addStrictBreakpoint(6, { className: 'A', methodName: 'tick', descriptor: '()V' });
+
+  t.ok(jit.needsBytecodeChecks(inA), 'code of the breakpointed class is checked');
+  t.notOk(jit.needsBytecodeChecks(inB), 'code of another class stays compiled');
+  t.ok(jit.continueQuantum(thread, jit.frameCodeOwners(inB)),
+    'and keeps running through its safe points');
+  t.notOk(jit.continueQuantum(thread, jit.frameCodeOwners(inA)));
+  t.ok(jvm.debugManager.allowsCompiledRegions(jit.frameCodeOwners(inB)),
+    'the inline-loop gate admits the other class');
+
+  jit.noteInlinedCodeOwners(run, ['A']);
+  t.deepEqual(jit.frameCodeOwners(inB), ['B', 'A'], 'inlined code counts as its class');
+  t.ok(jit.needsBytecodeChecks(inB), 'so B code carrying A code is checked');
+  t.notOk(jit.continueStructuredQuantum(thread, jit.frameCodeOwners(inB)));
+  t.ok(jit.needsBytecodeChecks(), 'a gate that names no owner still stops');
+
+  debug.clearBreakpoints();
+  t.notOk(jit.needsBytecodeChecks(inB), 'clearing the breakpoint reopens every tier');
+  debug.disable();
+  t.end();
+});
+
 test('generated JIT runs numeric hotpaths', async (t) => {
   const classpath = compileJavaFixture(t, 'GeneratedNumericHarness', `
 public class GeneratedNumericHarness {
@@ -0,0 +1,70 @@
+'use strict';
+
+const test = require('tape');
+const { JitTelemetry } = require('../src/jit/jitTelemetry');
+
+test('jit telemetry ring buffer keeps the newest events and filters by seq', (t) => {
+  const telemetry = new JitTelemetry({ enabled: true, capacity: 16 });
+  for (let i = 0; i < 20; i += 1) {
+    telemetry.record('compile-start', { method: `A.m${i}()V`, tier: 'structured' });
+  }
+  const all = telemetry.events();
+  t.equal(all.length, 16, 'buffer holds capacity events');
+  t.equal(all[0].seq, 5, 'oldest events were overwritten');
+  t.equal(all[15].seq, 20, 'newest event is last');
+  t.deepEqual(telemetry.events({ since: 18 }).map((e) => e.seq), [19, 20], 'since filter');
+  t.deepEqual(telemetry.events({ limit: 3 }).map((e) => e.seq), [18, 19, 20], 'limit keeps newest');
+  t.equal(telemetry.events({ method: 'm12' }).length, 1, 'method substring filter');
+  t.end();
+});
+
+test('jit telemetry folds compiles, rejects and deopts per method', (t) => {
+  const telemetry = new JitTelemetry({ enabled: true, importCounts: true });
+  const seen = [];
+  const unsubscribe = telemetry.subscribe((event) => seen.push(event.kind));
+  telemetry.record('compile-end', { method: 'A.hot()V', tier: 'structured', ms: 4, demoted: [] });
+  telemetry.record('deopt', { method: 'A.hot()V', tier: 'structured', pc: 12, reason: 'exception' });
+  telemetry.record('deopt', { method: 'A.hot()V', tier: 'structured', pc: 17, reason: 'fuel or call exit' });
+  telemetry.record('reject', { method: 'A.cold()V', tier: 'structured', ms: 1, reason: 'monitorenter' });
+  unsubscribe();
+  telemetry.record('osr-entry', { method: 'A.hot()V', tier: 'structured', block: 3 });
+  telemetry.registerImportStats('A.hot()V', new Map([['invoke', 7], ['getfield', 2]]));
+
+  t.deepEqual(seen, ['compile-end', 'deopt', 'deopt', 'reject'], 'listener saw events until unsubscribed');
+  const hot = telemetry.method('A.hot()V');
+  t.equal(hot.summary.deopts, 2, 'deopts counted');
+  t.equal(hot.summary.lastDeoptPc, 17, 'last deopt pc kept');
+  t.equal(hot.summary.osrEntries, 1, 'osr entries counted');
+  t.equal(hot.events.length, 4, 'per-method events');
+  const summary = telemetry.summary();
+  t.deepEqual(summary.tiers, { structured: 1, interpreter: 1 }, 'tier mix');
+  t.equal(summary.mostDeopts[0].method, 'A.hot()V', 'deopt ranking');
+  t.deepEqual(summary.rejected.map((row) => row.method), ['A.cold()V'], 'rejected methods');
+  t.deepEqual(summary.imports[0], { name: 'invoke', calls: 7 }, 'import call counts');
+  t.ok(telemetry.format().includes('2 deopt A.hot()V last@17'), 'stderr report lists deopts');
+  telemetry.clear();
+  t.equal(telemetry.summary().imports.length, 0, 'clear resets import call counts');
+  t.end();
+});
+
+test('jit telemetry is opt-in', (t) => {
+  const previous = process.env.JVM_JIT_TELEMETRY;
+  delete process.env.JVM_JIT_TELEMETRY;
+  try {
+    t.equal(new JitTelemetry().enabled, false, 'off by default');
+    process.env.JVM_JIT_TELEMETRY = '1';
+    t.equal(new JitTelemetry().enabled, true, 'JVM_JIT_TELEMETRY=1 turns it on');
+    t.equal(new JitTelemetry({ enabled: false }).enabled, false, 'options win over the environment');
+  } finally {
+    if (previous === undefined) delete process.env.JVM_JIT_TELEMETRY;
+    else process.env.JVM_JIT_TELEMETRY = previous;
+  }
+  t.end();
+});
+
+test('disabled jit telemetry records nothing', (t) => {
+  const telemetry = new JitTelemetry({ enabled: false });
+  t.equal(telemetry.record('compile-start', { method: 'A.m()V' }), null);
+  t.equal(telemetry.events().length, 0);
+  t.end();
+});
@@ -24,6 +24,7 @@ const Toolkit = require('../src/jre/java/awt/Toolkit');
 const ImageClass = require('../src/jre/java/awt/Image');
 const PixelGrabber = require('../src/jre/java/awt/image/PixelGrabber');
 const Graphics = require('../src/jre/java/awt/Graphics');
+const awt = require('../src/platform/awt');
 const { setAudioOutputFactory } = require('../src/platform/audio');
 const { encodePng } = require('../src/io/pngEncoder');
 const jpeg = require('jpeg-js');
@@ -1270,6 +1271,68 @@ test('AWT full-frame presentation uses exact Wasm RGB swizzle', (t) => {
   t.end();
 });
 
+test('AWT presentation uploads only the rectangle that changed', (t) => {
+  const previousRaf = global.requestAnimationFrame;
+  const callbacks = [];
+  global.requestAnimationFrame = (callback) => {
+    callbacks.push(callback);
+    return callbacks.length;
+  };
+  const width = 8;
+  const height = 6;
+  const uploads = [];
+  const context = {
+    createImageData(w, h) {
+      return { width: w, height: h, data: new Uint8ClampedArray(w * h * 4) };
+    },
+    putImageData(image, dx, dy, ...dirty) {
+      uploads.push({ dirty, data: Array.from(image.data) });
+    },
+  };
+  const target = {
+    _width: width,
+    _height: height,
+    _canvasElement: { width, height, getContext: () => context },
+  };
+  const jvm = {};
+  const graphics = { _component: target };
+  const sourcePixels = new Int32Array(width * height).fill(0x204060);
+  const image = { _producer: { width, height, pixels: sourcePixels } };
+  const draw = Graphics.methods['drawImage(Ljava/awt/Image;IILjava/awt/image/ImageObserver;)Z'];
+  const present = () => {
+    draw(jvm, graphics, [image, 0, 0, null]);
+    callbacks.shift()(0);
+  };
+
+  try {
+    present();
+    t.deepEqual(uploads[0].dirty, [], 'the first frame is uploaded whole');
+
+    sourcePixels[2 * width + 3] = 0xff0000;
+    sourcePixels[4 * width + 5] = 0x00ff00;
+    present();
+    t.deepEqual(uploads[1].dirty, [3, 2, 3, 3], 'a later frame uploads the bounds of its changes');
+    const pixel = (upload, x, y) => upload.data.slice((y * width + x) * 4, (y * width + x) * 4 + 4);
+    t.deepEqual(pixel(uploads[1], 3, 2), [0xff, 0, 0, 0xff]);
+    t.deepEqual(pixel(uploads[1], 5, 4), [0, 0xff, 0, 0xff]);
+    t.equal(jvm._awtPresentationStats.uploadedPixels, width * height + 9);
+
+    present();
+    t.equal(uploads.length, 2, 'an unchanged frame uploads nothing');
+    t.equal(jvm._awtPresentationStats.unchangedFrames, 1);
+
+    new awt._test.CanvasGraphics({ font: '', fillRect() {} }).fillRect(0, 0, 1, 1);
+    sourcePixels[0] = 0x123456;
+    present();
+    t.deepEqual(uploads[2].dirty, [], 'a direct canvas draw in between forces a whole upload');
+    t.equal(jvm._awtPresentationStats.partialUploads, 1);
+  } finally {
+    if (previousRaf === undefined) delete global.requestAnimationFrame;
+    else global.requestAnimationFrame = previousRaf;
+  }
+  t.end();
+});
+
 test('String.format supports javac varargs object array hex formatting', (t) => {
   const jvm = jvmStub();
   const result = StringClass.staticMethods['format(Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/String;'](jvm, null, [
@@ -0,0 +1,103 @@
+const test = require('tape');
+const fs = require('fs');
+const path = require('path');
+const jreIndex = require('../src/jre');
+const { JreBootstrap } = require('../src/core/jre-bootstrap');
+const { ClassHierarchy } = require('../src/analysis/closedWorld/classHierarchy');
+const { jreClassParents } = require('../src/core/jreParents');
+
+// Just the parts of a JVM the bootstrap touches.
+function bootstrapWorld() {
+  const jvm = {
+    classes: {},
+    jre: jreIndex,
+    fs,
+    path,
+    classEpoch: 0,
+    bumpClassEpoch() { this.classEpoch += 1; },
+    internString: (value) => value,
+  };
+  JreBootstrap.preloadAllJreClasses(jvm);
+  return jvm;
+}
+
+test('JRE stubs are registered by name and built on first access', (t) => {
+  const jvm = bootstrapWorld();
+  t.ok(jvm.pendingJreClasses.has('java/util/ArrayList'), 'ArrayList starts pending');
+  t.ok('java/util/ArrayList' in jvm.classes, 'but is already visible to `in`');
+  t.notOk(Object.keys(jvm.classes).includes('java/util/ArrayList'), 'and not enumerated');
+
+  const epoch = jvm.classEpoch;
+  const list = jvm.classes['java/util/ArrayList'];
+  t.equal(list.ast.classes[0].superClassName, 'java/util/AbstractCollection',
+    'the stub carries the shim superclass');
+  t.ok(list.isJreStub && list.ast.classes[0].items.length > 0, 'and its methods');
+  t.equal(jvm.classes['java/util/ArrayList'], list, 'later reads return the same stub');
+  t.notOk(jvm.pendingJreClasses.has('java/util/ArrayList'));
+  t.ok(Object.keys(jvm.classes).includes('java/util/ArrayList'), 'a built stub is enumerable');
+  t.equal(jvm.classEpoch, epoch + 1, 'building a stub is a class registration');
+  t.equal(jvm.classes['java/lang/Object'].ast.classes[0].superClassName, null);
+
+  const replacement = { ast: { classes: [{ className: 'java/awt/Frame', items: [] }] } };
+  jvm.classes['java/awt/Frame'] = replacement;
+  t.equal(jvm.classes['java/awt/Frame'], replacement, 'assigning a pending entry replaces it');
+  t.notOk(jvm.pendingJreClasses.has('java/awt/Frame'));
+  t.end();
+});
+
+test('the closed-world hierarchy sees JRE classes nothing has touched', (t) => {
+  const jvm = bootstrapWorld();
+  jvm.classes.Demo = {
+    ast: { classes: [{ className: 'Demo', superClassName: 'java/util/AbstractCollection', items: [], interfaces: [] }] },
+  };
+  const pendingBefore = jvm.pendingJreClasses.size;
+  const hierarchy = new ClassHierarchy(jvm);
+  hierarchy.refresh();
+  t.ok(jvm.pendingJreClasses.has('java/util/ArrayList'), 'refresh does not build pending stubs');
+  t.equal(jvm.pendingJreClasses.size, pendingBefore, 'nor any other shim');
+  t.ok(hierarchy.subclasses.get('java/util/AbstractCollection').has('java/util/ArrayList'),
+    'a JRE subclass is part of the cone');
+  t.ok(hierarchy.subclasses.get('java/util/List').has('java/util/ArrayList'), 'and of its interfaces');
+  t.ok(hierarchy.subclasses.get('java/util/AbstractCollection').has('Demo'));
+
+  const dispatch = hierarchy.resolveDispatch('java/util/AbstractCollection', 'size', '()I');
+  t.ok(jvm.pendingJreClasses.has('java/util/ArrayList'), 'resolving dispatch does not build them either');
+  t.notOk(dispatch && dispatch.complete, 'a pending stub in the cone leaves dispatch incomplete');
+
+  void jvm.classes['java/util/ArrayList'];
+  hierarchy.refresh();
+  t.ok(hierarchy.subclasses.get('java/util/AbstractCollection').has('java/util/ArrayList'),
+    'a built stub stays linked');
+  t.end();
+});
+
+test('the generated JRE index records parents without loading the shim', (t) => {
+  const record = jreIndex.hierarchyOf('java/util/ArrayList');
+  t.equal(record.superClassName, 'java/util/AbstractCollection');
+  t.ok(record.interfaces.includes('java/util/List'));
+  t.equal(jreIndex.hierarchyOf('java/lang/Object').superClassName, null);
+  t.notOk(Object.keys(jreIndex).includes('hierarchyOf'), 'the lookup is not listed as a class');
+  t.ok(Object.getOwnPropertyDescriptor(jreIndex, 'java/util/Vector').get, 'Vector is still unloaded');
+  t.end();
+});
+
+test('the index, the hierarchy and bootstrap stubs agree on a model\'s parents', (t) => {
+  const models = {
+    'demo/Named': { super: 'demo/Base', interfaces: ['demo/I'] },
+    'demo/Typed': { super: { type: 'demo/Base' } },
+    'demo/Bare': {},
+  };
+  const jvm = { jre: models, classes: {} };
+  const hierarchy = new ClassHierarchy(jvm);
+  for (const [name, model] of Object.entries(models)) {
+    const parents = jreClassParents(name, model);
+    t.deepEqual(hierarchy._pendingParents(name), parents, `${name}: hierarchy`);
+    t.equal(JreBootstrap.createHierarchyStub(jvm, name).ast.classes[0].superClassName,
+      parents.superClassName, `${name}: bootstrap stub`);
+  }
+  t.equal(jreClassParents('demo/Typed', models['demo/Typed']).superClassName, 'demo/Base',
+    'an object-form super is unwrapped');
+  t.equal(jreClassParents('demo/Bare', {}).superClassName, 'java/lang/Object');
+  t.equal(jreClassParents('java/lang/Object', {}).superClassName, null);
+  t.end();
+});
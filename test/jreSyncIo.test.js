@@ -0,0 +1,142 @@
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { EventEmitter } = require('events');
+const { register, allocId } = require('../src/jre/java/net/socketRegistry');
+const SocketInputStream = require('../src/jre/java/net/SocketInputStream');
+const DataInputStream = require('../src/jre/java/io/DataInputStream');
+const RandomAccessFile = require('../src/jre/java/io/RandomAccessFile');
+
+const shims = {
+  'java/net/SocketInputStream': SocketInputStream,
+  'java/io/DataInputStream': DataInputStream,
+};
+const jvm = {
+  fs,
+  _jreFindMethod: (className, name, descriptor) =>
+    shims[className] && shims[className].methods[`${name}${descriptor}`],
+  throwException(type, message) { throw { type, message }; },
+};
+
+function openSocket() {
+  const nativeSocket = new EventEmitter();
+  const socketId = allocId();
+  register(socketId, nativeSocket);
+  const input = { type: 'java/net/SocketInputStream', socketId };
+  const data = { type: 'java/io/DataInputStream' };
+  DataInputStream.methods['<init>(Ljava/io/InputStream;)V'](jvm, data, [input]);
+  return { nativeSocket, input, data };
+}
+
+test('socket reads return synchronously while bytes are buffered', async (t) => {
+  const { nativeSocket, input, data } = openSocket();
+  nativeSocket.emit('data', Buffer.from([0x12, 0x34, 0x56, 0x78, 0xff, 7, 8, 9]));
+  const read = SocketInputStream.methods['read()I'];
+  t.equal(DataInputStream.methods['readInt()I'](jvm, data, []), 0x12345678,
+    'readInt is a plain value, not a promise');
+  t.equal(read(jvm, input, []), 0xff);
+  const target = [0, 0, 0, 0];
+  t.equal(SocketInputStream.methods['read([BII)I'](jvm, input, [target, 1, 3]), 3);
+  t.deepEqual(target, [0, 7, 8, 9]);
+
+  const pending = read(jvm, input, []);
+  t.equal(typeof pending.then, 'function', 'an empty buffer suspends');
+  read(jvm, input, []); // dropped unawaited, as the JIT does before retrying
+  nativeSocket.emit('data', Buffer.from([42, 43]));
+  t.equal(await pending, 42, 'the awaited read gets the byte');
+  await new Promise((resolve) => setImmediate(resolve));
+  t.equal(read(jvm, input, []), 43, 'a read nobody awaited consumed nothing');
+  t.end();
+});
+
+test('DataInputStream continues across a wait', async (t) => {
+  const { nativeSocket, input, data } = openSocket();
+  const available = SocketInputStream.methods['available()I'];
+  nativeSocket.emit('data', Buffer.from([0, 0]));
+  const result = DataInputStream.methods['readInt()I'](jvm, data, []);
+  t.equal(typeof result.then, 'function');
+  t.equal(available(jvm, input, []), 2, 'a partial read takes nothing before it is awaited');
+  DataInputStream.methods['readInt()I'](jvm, data, []); // dropped, as the JIT does
+  nativeSocket.emit('data', Buffer.from([1, 2]));
+  t.equal(await result, 0x0102);
+  t.equal(available(jvm, input, []), 0);
+  nativeSocket.emit('data', Buffer.from([0]));
+  nativeSocket.emit('end');
+  try {
+    await DataInputStream.methods['readShort()S'](jvm, data, []);
+    t.fail('a closed stream should end the read');
+  } catch (error) {
+    t.equal(error.type, 'java/io/EOFException');
+  }
+  t.end();
+});
+
+test('RandomAccessFile reads inside the read-ahead window are synchronous', async (t) => {
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'raf-sync-'));
+  t.teardown(() => fs.rmSync(dir, { recursive: true, force: true }));
+  const file = path.join(dir, 'data.bin');
+  fs.writeFileSync(file, Buffer.from([1, 2, 3, 200, 5]));
+  const raf = {};
+  await RandomAccessFile.methods['<init>(Ljava/lang/String;Ljava/lang/String;)V'](
+    jvm, raf, [{ value: file }, { value: 'rw' }]);
+  const read = RandomAccessFile.methods['read()I'];
+  const readArray = RandomAccessFile.methods['read([BII)I'];
+
+  t.equal(await read(jvm, raf, []), 1, 'the first read fills the window');
+  t.equal(read(jvm, raf, []), 2, 'the next one is served synchronously');
+  const target = [0, 0, 0, 0];
+  t.equal(readArray(jvm, raf, [target, 0, 4]), 3, 'a read past the end is short');
+  t.deepEqual(target, [3, -56, 5, 0]);
+  t.equal(read(jvm, raf, []), -1);
+
+  RandomAccessFile.methods['seek(J)V'](jvm, raf, [1n]);
+  await RandomAccessFile.methods['write(I)V'](jvm, raf, [9]);
+  t.equal(raf.readAhead, null, 'a write drops the window');
+  t.equal(await read(jvm, raf, []), 3);
+  RandomAccessFile.methods['seek(J)V'](jvm, raf, [1n]);
+  t.equal(await read(jvm, raf, []), 9, 'seeking before the window refills it');
+  t.equal(read(jvm, raf, []), 3);
+  await RandomAccessFile.methods['close()V'](jvm, raf, []);
+  t.end();
+});
+
+test('a write through another handle makes the read-ahead window stale', async (t) => {
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'raf-stale-'));
+  t.teardown(() => fs.rmSync(dir, { recursive: true, force: true }));
+  const file = path.join(dir, 'data.bin');
+  fs.writeFileSync(file, Buffer.from([1, 2]));
+  const open = async (mode) => {
+    const raf = {};
+    await RandomAccessFile.methods['<init>(Ljava/lang/String;Ljava/lang/String;)V'](
+      jvm, raf, [{ value: file }, { value: mode }]);
+    return raf;
+  };
+  const reader = await open('r');
+  const writer = await open('rw');
+  const read = RandomAccessFile.methods['read()I'];
+  const seek = RandomAccessFile.methods['seek(J)V'];
+
+  t.equal(await read(jvm, reader, []), 1);
+  t.equal(read(jvm, reader, []), 2);
+  t.equal(read(jvm, reader, []), -1, 'the window ends at end of file');
+  seek(jvm, writer, [1n]);
+  await RandomAccessFile.methods['write([BII)V'](jvm, writer, [[7, 8], 0, 2]);
+  const afterWrite = read(jvm, reader, []);
+  t.equal(typeof afterWrite.then, 'function', 'the stale window is not used');
+  t.equal(await afterWrite, 8, 'the appended byte is seen instead of a stale end of file');
+  seek(jvm, reader, [1n]);
+  t.equal(await read(jvm, reader, []), 7, 'the overwritten byte is re-read');
+
+  const FileOutputStream = require('../src/jre/java/io/FileOutputStream');
+  const output = {};
+  FileOutputStream.methods['<init>(Ljava/io/File;)V'](jvm, output, [{ path: file }]);
+  FileOutputStream.methods['write([B)V'](jvm, output, [{ array: [5] }]);
+  FileOutputStream.methods['close()V'](jvm, output, []);
+  seek(jvm, reader, [0n]);
+  t.equal(await read(jvm, reader, []), 5, 'a FileOutputStream write is seen too');
+  t.equal(read(jvm, reader, []), -1);
+  await RandomAccessFile.methods['close()V'](jvm, reader, []);
+  await RandomAccessFile.methods['close()V'](jvm, writer, []);
+  t.end();
+});
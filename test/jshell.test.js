@@ -4,6 +4,7 @@ const path = require('path');
 const { spawnSync } = require('child_process');
 const test = require('tape');
 const {
+  JShellSession,
   candidateKinds,
   classifyMember,
   sourceForCandidate,
@@ -110,6 +111,24 @@ test('JShell CLI retains variables, mutations, and methods across snippets', (t)
   t.end();
 });
 
+test('JShell session defines snippet classes in memory', async (t) => {
+  const session = new JShellSession({ jit: false });
+  try {
+    const method = await session.evaluate('int twice(int input) { return input * 2; }');
+    const call = await session.evaluate('twice(21)');
+    t.equal(session.workspace, null, 'no workspace directory without keepWorkspace');
+    t.deepEqual(method.written, [], 'nothing is written to disk');
+    t.deepEqual(call.classes, ['JShellSnippet2']);
+    t.ok(session.jvm.classes.JShellSnippet1 && session.jvm.classes.JShellSnippet2,
+      'both snippet classes live in the session JVM');
+    t.throws(() => session.jvm.defineClass(session.jvm.classes.JShellSnippet1.ast),
+      /Duplicate class definition/, 'a loaded class is not silently redefined');
+  } finally {
+    session.close();
+  }
+  t.end();
+});
+
 test('JShell CLI supports imports and reset', (t) => {
   const result = runShell([
     'import /* a parsed comment */ java.util.*',
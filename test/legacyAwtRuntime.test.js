@@ -382,6 +382,72 @@ test('Canvas fillArc clamps full sweeps and preserves direction', (t) => {
   t.end();
 });
 
+test('buffered Canvas draw calls replay once per frame with state coalesced', (t) => {
+  const calls = [];
+  const context = {
+    canvas: { width: 64, height: 64 },
+    set font(value) { calls.push(['font', value]); },
+    set fillStyle(value) { calls.push(['fillStyle', value]); },
+    set strokeStyle(value) { calls.push(['strokeStyle', value]); },
+    fillRect(...args) { calls.push(['fillRect', ...args]); },
+    strokeRect(...args) { calls.push(['strokeRect', ...args]); },
+    fillText(...args) { calls.push(['fillText', ...args]); },
+    drawImage(source, x, y) { calls.push(['drawImage', source.id, x, y]); },
+    beginPath() {},
+    moveTo(...args) { calls.push(['moveTo', ...args]); },
+    lineTo(...args) { calls.push(['lineTo', ...args]); },
+    closePath() {},
+    fill() { calls.push(['fill']); },
+    stroke() { calls.push(['stroke']); },
+  };
+  const frames = [];
+  const commands = awt.setDrawCommandBuffering(true, { schedule: (flush) => frames.push(flush) });
+  try {
+    const graphics = new awt._test.CanvasGraphics(context);
+    const other = new awt._test.CanvasGraphics(context);
+    const red = { r: 255, g: 0, b: 0 };
+    for (let tile = 0; tile < 3; tile++) {
+      graphics.setColor(red);
+      graphics.fillRect(tile * 8, 0, 8, 8);
+    }
+    other.setColor({ r: 0, g: 0, b: 255 });
+    other.drawRect(1, 2, 3, 4);
+    graphics.drawString('score', 4, 60);
+    graphics.fillPolygon([0, 4, 8], [0, 8, 0]);
+    t.equal(graphics.drawImage({ id: 'tiles', getCanvasElement() { return { id: 'tiles' }; } }, 5, 6), true,
+      'drawImage reports a drawable image at record time');
+    t.equal(graphics.drawImage({}, 0, 0), false, 'and rejects anything else without recording it');
+    t.deepEqual(calls, [], 'nothing reaches the context while recording');
+    t.equal(frames.length, 1, 'one replay is scheduled per frame');
+
+    frames[0]();
+    t.deepEqual(calls, [
+      ['fillStyle', 'rgb(255, 0, 0)'], ['strokeStyle', 'rgb(255, 0, 0)'],
+      ['fillRect', 0, 0, 8, 8], ['fillRect', 8, 0, 8, 8], ['fillRect', 16, 0, 8, 8],
+      ['fillStyle', 'rgb(0, 0, 255)'], ['strokeStyle', 'rgb(0, 0, 255)'],
+      ['strokeRect', 1, 2, 3, 4],
+      ['fillStyle', 'rgb(255, 0, 0)'], ['strokeStyle', 'rgb(255, 0, 0)'],
+      ['font', '12px sans-serif'], ['fillText', 'score', 4, 60],
+      ['moveTo', 0, 0], ['lineTo', 4, 8], ['lineTo', 8, 0], ['fill'],
+      ['drawImage', 'tiles', 5, 6],
+    ], 'replay keeps call order and each Graphics keeps its own colour');
+    t.equal(commands.stats.stateCoalesced, 4, 'draws in an unchanged colour write no state');
+
+    calls.length = 0;
+    graphics.fillRect(0, 0, 1, 1);
+    t.equal(frames.length, 2, 'the next draw schedules the next frame');
+    awt.flushDrawCommands();
+    t.deepEqual(calls, [
+      ['fillStyle', 'rgb(255, 0, 0)'], ['strokeStyle', 'rgb(255, 0, 0)'], ['fillRect', 0, 0, 1, 1],
+    ], 'state is written again after a flush');
+    frames[1]();
+    t.equal(calls.length, 3, 'a stale scheduled frame replays nothing');
+  } finally {
+    awt.setDrawCommandBuffering(false);
+  }
+  t.end();
+});
+
 test('Applet backdrop remains visible inside its stacking context', (t) => {
   const oldDocument = global.document;
   const container = element();
@@ -0,0 +1,117 @@
+'use strict';
+
+const test = require('tape');
+const { buildSsa } = require('../src/analysis/opgraph/ssa');
+const { findCountedLoops, analyzeArrayRanges } = require('../src/analysis/opgraph/loops');
+
+function build(codeItems, descriptor = '([II)I') {
+  return buildSsa({ codeItems, exceptionTable: [], method: { name: 'f', descriptor, flags: ['static'] } });
+}
+
+// static int f(int[] a, int n) { int s = 0; for (int i = 0; i < a.length; i++) s += a[i]; return s; }
+const SUM = [
+  { pc: 0, instruction: 'iconst_0' },
+  { pc: 1, instruction: 'istore_2' },
+  { pc: 2, instruction: 'iconst_0' },
+  { pc: 3, instruction: 'istore_3' },
+  { pc: 4, labelDef: 'Lhead:', instruction: 'iload_3' },
+  { pc: 5, instruction: 'aload_0' },
+  { pc: 6, instruction: 'arraylength' },
+  { pc: 7, instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+  { pc: 10, instruction: 'iload_2' },
+  { pc: 11, instruction: 'aload_0' },
+  { pc: 12, instruction: 'iload_3' },
+  { pc: 13, instruction: 'iaload' },
+  { pc: 14, instruction: 'iadd' },
+  { pc: 15, instruction: 'istore_2' },
+  { pc: 16, instruction: { op: 'iinc', arg: [3, 1] } },
+  { pc: 19, instruction: { op: 'goto', arg: 'Lhead' } },
+  { pc: 22, labelDef: 'Ldone:', instruction: 'iload_2' },
+  { pc: 23, instruction: 'ireturn' },
+];
+
+test('findCountedLoops recognises i < a.length with a unit step', (t) => {
+  const fn = build(SUM, '([II)I');
+  t.notOk(fn.rejected, 'accepted');
+  const loops = [...findCountedLoops(fn).values()];
+  t.equal(loops.length, 1, 'one counted loop');
+  const [loop] = loops;
+  t.equal(loop.step, 1);
+  t.deepEqual(loop.init, { constant: 0 });
+  t.equal(loop.bound.lengthOf.op, 'param', 'bound is the parameter array length');
+  t.notOk(loop.inclusive);
+  t.ok(loop.inner);
+  t.end();
+});
+
+test('analyzeArrayRanges covers a[i] and a[i + 1] with one guard per array', (t) => {
+  // for (i = 0; i < n; i++) a[i] = a[i + 1];
+  const fn = build([
+    { pc: 0, instruction: 'iconst_0' },
+    { pc: 1, instruction: 'istore_2' },
+    { pc: 2, labelDef: 'Lhead:', instruction: 'iload_2' },
+    { pc: 3, instruction: 'iload_1' },
+    { pc: 4, instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+    { pc: 7, instruction: 'aload_0' },
+    { pc: 8, instruction: 'iload_2' },
+    { pc: 9, instruction: 'aload_0' },
+    { pc: 10, instruction: 'iload_2' },
+    { pc: 11, instruction: 'iconst_1' },
+    { pc: 12, instruction: 'iadd' },
+    { pc: 13, instruction: 'iaload' },
+    { pc: 14, instruction: 'iastore' },
+    { pc: 15, instruction: { op: 'iinc', arg: [2, 1] } },
+    { pc: 18, instruction: { op: 'goto', arg: 'Lhead' } },
+    { pc: 21, labelDef: 'Ldone:', instruction: 'return' },
+  ], '([II)V');
+  t.notOk(fn.rejected, 'accepted');
+  const plans = analyzeArrayRanges(fn);
+  t.equal(plans.size, 1, 'one versionable loop');
+  const [plan] = plans.values();
+  t.equal(plan.accesses.size, 2, 'load and store covered');
+  t.equal(plan.arrays.size, 1, 'single array');
+  t.deepEqual([...plan.arrays.values()][0], { minOffset: 0, maxOffset: 1 });
+  t.equal(plan.loop.bound.value.op, 'param', 'bound is n');
+  t.end();
+});
+
+test('analyzeArrayRanges skips loops with a second exit or a variant index', (t) => {
+  // for (i = 0; i < n; i++) { if (a[i] == 0) break; }
+  const early = build([
+    { pc: 0, instruction: 'iconst_0' },
+    { pc: 1, instruction: 'istore_2' },
+    { pc: 2, labelDef: 'Lhead:', instruction: 'iload_2' },
+    { pc: 3, instruction: 'iload_1' },
+    { pc: 4, instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+    { pc: 7, instruction: 'aload_0' },
+    { pc: 8, instruction: 'iload_2' },
+    { pc: 9, instruction: 'iaload' },
+    { pc: 10, instruction: { op: 'ifeq', arg: 'Ldone' } },
+    { pc: 13, instruction: { op: 'iinc', arg: [2, 1] } },
+    { pc: 16, instruction: { op: 'goto', arg: 'Lhead' } },
+    { pc: 19, labelDef: 'Ldone:', instruction: 'return' },
+  ], '([II)V');
+  t.equal(analyzeArrayRanges(early).size, 0, 'break leaves the loop outside the header test');
+
+  // for (i = 0; i < n; i++) s += a[a[i]];
+  const indirect = build([
+    { pc: 0, instruction: 'iconst_0' },
+    { pc: 1, instruction: 'istore_2' },
+    { pc: 2, labelDef: 'Lhead:', instruction: 'iload_2' },
+    { pc: 3, instruction: 'iload_1' },
+    { pc: 4, instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+    { pc: 7, instruction: 'aload_0' },
+    { pc: 8, instruction: 'aload_0' },
+    { pc: 9, instruction: 'iload_2' },
+    { pc: 10, instruction: 'iaload' },
+    { pc: 11, instruction: 'iaload' },
+    { pc: 12, instruction: 'pop' },
+    { pc: 13, instruction: { op: 'iinc', arg: [2, 1] } },
+    { pc: 16, instruction: { op: 'goto', arg: 'Lhead' } },
+    { pc: 19, labelDef: 'Ldone:', instruction: 'return' },
+  ], '([II)V');
+  const plans = analyzeArrayRanges(indirect);
+  t.equal(plans.size, 1);
+  t.equal([...plans.values()][0].accesses.size, 1, 'only the a[i] access is covered');
+  t.end();
+});
@@ -0,0 +1,90 @@
+'use strict';
+
+const test = require('tape');
+const { buildSsa } = require('../src/analysis/opgraph/ssa');
+const { analyzeArrayRanges } = require('../src/analysis/opgraph/loops');
+const { vectorizeLoop } = require('../src/analysis/opgraph/vectorize');
+
+function build(codeItems, descriptor) {
+  return buildSsa({ codeItems, exceptionTable: [], method: { name: 'f', descriptor, flags: ['static'] } });
+}
+
+function vectorOf(fn) {
+  const plans = [...analyzeArrayRanges(fn).values()];
+  return plans.length === 1 ? vectorizeLoop(fn, plans[0]) : null;
+}
+
+// for (i = 0; i < n; i++) <body>; with a = slot 0, b = slot 1, n = slot 2, i = slot 3
+function loopOver(body, tail = 'return', prefix = []) {
+  const items = [
+    ...prefix.map((instruction) => ({ instruction })),
+    { instruction: 'iconst_0' },
+    { instruction: 'istore_3' },
+    { labelDef: 'Lhead:', instruction: 'iload_3' },
+    { instruction: 'iload_2' },
+    { instruction: { op: 'if_icmpge', arg: 'Ldone' } },
+    ...body.map((instruction) => ({ instruction })),
+    { instruction: { op: 'iinc', arg: [3, 1] } },
+    { instruction: { op: 'goto', arg: 'Lhead' } },
+    { labelDef: 'Ldone:', instruction: tail },
+  ];
+  return items.map((item, pc) => ({ pc, ...item }));
+}
+
+test('vectorizeLoop lowers a[i] = b[i] * 3 + i to i32x4 lanes', (t) => {
+  const fn = build(loopOver([
+    'aload_0', 'iload_3',
+    'aload_1', 'iload_3', 'iaload', 'iconst_3', 'imul', 'iload_3', 'iadd',
+    'iastore',
+  ]), '([I[II)V');
+  t.notOk(fn.rejected, 'accepted');
+  const vec = vectorOf(fn);
+  t.ok(vec, 'vectorised');
+  t.equal(vec.lane, 'i32');
+  t.equal(vec.width, 4);
+  t.deepEqual(vec.steps.map((s) => s.how), ['load', 'scalar', 'op', 'op', 'store', 'skip']);
+  t.deepEqual(vec.steps[3].operands, ['vector', 'iota'], 'i itself becomes the lane iota');
+  t.end();
+});
+
+test('vectorizeLoop handles byte[] blends through i2b', (t) => {
+  const fn = build(loopOver([
+    'aload_0', 'iload_3',
+    'aload_0', 'iload_3', 'baload', 'aload_1', 'iload_3', 'baload', 'ixor', 'i2b',
+    'bastore',
+  ]), '([B[BI)V');
+  const vec = vectorOf(fn);
+  t.ok(vec, 'vectorised');
+  t.equal(vec.lane, 'i8');
+  t.equal(vec.width, 16);
+  t.end();
+});
+
+test('vectorizeLoop refuses carried values, shifted indices and mixed lanes', (t) => {
+  // s += a[i]; a[i] = s: the running sum is a second header phi
+  const carried = build(loopOver([
+    'iload', 'aload_0', 'iload_3', 'iaload', 'iadd', 'istore', 'aload_0', 'iload_3', 'iload', 'iastore',
+  ].map((op) => (op === 'iload' || op === 'istore' ? { op, arg: 4 } : op)), 'return', ['iconst_0', { op: 'istore', arg: 4 }]),
+  '([I[II)V');
+  t.notOk(carried.rejected, 'accepted');
+  t.equal(analyzeArrayRanges(carried).size, 1, 'bounds still provable');
+  t.equal(vectorOf(carried), null, 'loop-carried sum is not vectorised');
+
+  const shifted = build(loopOver([
+    'aload_0', 'iload_3',
+    'aload_0', 'iload_3', 'iconst_1', 'iadd', 'iaload',
+    'iastore',
+  ]), '([I[II)V');
+  t.equal(vectorOf(shifted), null, 'a[i] = a[i + 1] carries a dependence across lanes');
+
+  const mixed = build(loopOver([
+    'aload_0', 'iload_3',
+    'aload_1', 'iload_3', 'baload',
+    'iastore',
+  ]), '([I[BI)V');
+  t.equal(vectorOf(mixed), null, 'int and byte lanes do not mix');
+
+  const fill = build(loopOver(['aload_0', 'iload_3', 'iconst_m1', 'iastore']), '([I[II)V');
+  t.deepEqual(vectorOf(fill).steps.map((s) => s.how), ['scalar', 'store', 'skip'], 'constant fill splats');
+  t.end();
+});
@@ -0,0 +1,147 @@
+'use strict';
+
+const test = require('tape');
+const { createInProcessLspHarness } = require('../src/lsp/inProcessHarness');
+const { JasminLspServer } = require('../src/lsp/JasminLspServer');
+const { LineDocument } = require('../src/lsp/lineDocument');
+
+const SOURCE = `
+.class public Sample
+.super java/lang/Object
+.field private count I
+
+.method public <init> : ()V
+    .code stack 1 locals 1
+L0:     aload_0
+L1:     invokespecial Method java/lang/Object <init> ()V
+L4:     return
+    .end code
+.end method
+
+.method public static first : (I)I
+    .code stack 2 locals 1
+L0:     iload_0
+L1:     iconst_1
+L2:     iadd
+L3:     ireturn
+    .end code
+.end method
+
+.field public static flag Z
+
+.method public static second : ()V
+    .code stack 0 locals 0
+L0:     return
+    .end code
+.end method
+.end class
+`.trim();
+
+const SNIPPETS = [
+  '',
+  'x',
+  '\n',
+  '\r\n',
+  'L9:     nop\n',
+  '.end method\n',
+  '.method public static extra : ()V\n',
+  '.method public static extra : ()V\n    .code stack 0 locals 0\nL0:     return\n    .end code\n.end method\n',
+  '.field public other J\n',
+];
+
+// Deterministic so a failure reproduces.
+function random(seed) {
+  let state = seed;
+  return () => {
+    state = (state * 1103515245 + 12345) % 2147483648;
+    return state / 2147483648;
+  };
+}
+
+function snapshot(info) {
+  const method = (entry) => ({
+    key: entry.key,
+    range: entry.range,
+    bodyRange: entry.bodyRange,
+    labels: [...entry.labels.entries()],
+  });
+  return {
+    className: info.className,
+    classLines: info.classLines,
+    methods: info.methodList.map(method),
+    methodKeys: [...info.methods.entries()].map(([key, entry]) => [key, entry.range.start.line]),
+    fields: info.fieldList.map((entry) => ({ key: entry.key, range: entry.range })),
+    fieldKeys: [...info.fields.keys()],
+  };
+}
+
+test('LineDocument applies ranged edits across line breaks', (t) => {
+  const document = new LineDocument('a\r\nbc\nd');
+  t.deepEqual(document.applyChange({
+    range: { start: { line: 0, character: 1 }, end: { line: 1, character: 1 } },
+    text: 'X\nY',
+  }), { startLine: 0, oldEndLine: 1, newEndLine: 1 });
+  t.equal(document.getText(), 'aX\nYc\nd');
+  document.applyChange({ range: { start: { line: 2, character: 1 }, end: { line: 2, character: 1 } }, text: '\r\n' });
+  t.equal(document.getText(), 'aX\nYc\nd\r\n');
+  t.equal(document.lineCount, 4);
+  t.equal(document.applyChange({ text: 'whole' }), null, 'a change without a range replaces everything');
+  t.equal(document.getText(), 'whole');
+  t.end();
+});
+
+test('LineDocument takes a paste with more lines than a call has arguments', (t) => {
+  const document = new LineDocument('head\ntail');
+  const pasted = Array.from({ length: 300000 }, (_, i) => `l${i}`).join('\n');
+  t.deepEqual(document.applyChange({
+    range: { start: { line: 0, character: 4 }, end: { line: 1, character: 0 } },
+    text: `\n${pasted}\n`,
+  }), { startLine: 0, oldEndLine: 1, newEndLine: 300001 });
+  t.equal(document.lineCount, 300002);
+  t.equal(document.getText(), `head\n${pasted}\ntail`);
+  t.end();
+});
+
+test('incremental didChange keeps the symbol index equal to a full rescan', async (t) => {
+  const harness = createInProcessLspHarness({
+    createServer: (connection) => new JasminLspServer(connection),
+  });
+  const init = await harness.initialize({});
+  t.equal(init.capabilities.textDocumentSync, 2, 'server advertises incremental sync');
+  const server = harness.server;
+  const uri = 'file:///Sample.j';
+  harness.notify('textDocument/didOpen', {
+    textDocument: { uri, languageId: 'jasmin', version: 1, text: SOURCE },
+  });
+
+  const next = random(7);
+  const pick = (count) => Math.floor(next() * count);
+  let mismatches = 0;
+  for (let step = 0; step < 2000; step += 1) {
+    const lines = server.documents.get(uri).lines;
+    const startLine = pick(lines.length);
+    const endLine = Math.min(lines.length - 1, startLine + pick(4));
+    const start = { line: startLine, character: pick(lines[startLine].length + 1) };
+    const end = endLine === startLine
+      ? { line: endLine, character: start.character + pick(lines[endLine].length - start.character + 1) }
+      : { line: endLine, character: pick(lines[endLine].length + 1) };
+    harness.notify('textDocument/didChange', {
+      textDocument: { uri, version: step + 2 },
+      contentChanges: [{ range: { start, end }, text: SNIPPETS[pick(SNIPPETS.length)] }],
+    });
+    const incremental = snapshot(server.symbolIndex.get(uri));
+    server._updateSymbolIndex(uri, server.documents.get(uri).getText());
+    if (JSON.stringify(incremental) !== JSON.stringify(snapshot(server.symbolIndex.get(uri)))) {
+      mismatches += 1;
+    }
+  }
+  t.equal(mismatches, 0, 'every edit re-indexes to the same symbols as a full scan');
+
+  harness.notify('textDocument/didChange', {
+    textDocument: { uri, version: 1000 },
+    contentChanges: [{ text: SOURCE }],
+  });
+  t.equal(server.symbolIndex.get(uri).methodList.length, 3, 'a full-text change still replaces the document');
+  await harness.shutdown();
+  t.end();
+});
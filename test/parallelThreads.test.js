@@ -0,0 +1,214 @@
+const test = require('tape');
+const { spawnSync } = require('child_process');
+const { decodeGraph } = require('../src/core/stateCodec');
+const { WasmHeap } = require('../src/core/wasmHeap');
+const {
+  parseParallelThreadSelection,
+  planParallelThread,
+  reviveCapture,
+} = require('../src/core/parallelThreads');
+
+function method(name, descriptor, instructions, flags = ['public']) {
+  return {
+    name,
+    descriptor,
+    flags,
+    attributes: [{ type: 'code', code: { localsSize: '2', codeItems: instructions.map((instruction) => ({ instruction })) } }],
+  };
+}
+
+function guestClass(className, methods, options = {}) {
+  return {
+    ast: {
+      classes: [{
+        className,
+        superClassName: options.superClassName || 'java/lang/Object',
+        interfaces: options.interfaces || [],
+        items: [
+          ...(options.fields || []).map((field) => ({ type: 'field', field })),
+          ...methods.map((item) => ({ type: 'method', method: item })),
+        ],
+      }],
+    },
+  };
+}
+
+function invoke(op, owner, name, descriptor) {
+  return { op, arg: ['Method', owner, [name, descriptor]] };
+}
+
+function field(op, owner, name, descriptor) {
+  return { op, arg: ['Field', owner, [name, descriptor]] };
+}
+
+// The parts of a JVM the planner reads; `run` is the body of Summer.run()V.
+function plannerWorld(run, extraClasses = {}) {
+  const heap = new WasmHeap(1, { shared: true, reclaim: false });
+  const jvm = {
+    parallelThreads: parseParallelThreadSelection('*'),
+    classes: {
+      'java/lang/Object': { isJreStub: true, ast: { classes: [{ className: 'java/lang/Object', items: [] }] } },
+      Summer: guestClass('Summer', [method('run', '()V', run)], {
+        interfaces: ['java/lang/Runnable'],
+        fields: [
+          { name: 'SCALE', descriptor: 'I', flags: ['static', 'final'] },
+          { name: 'TABLE', descriptor: '[I', flags: ['static', 'final'] },
+        ],
+      }),
+      ...extraClasses,
+    },
+    classInitializationState: new Map([['Summer', 'INITIALIZED']]),
+    findStaticInitializer: (classData) => classData.ast.classes[0].items.find((item) =>
+      item.type === 'method' && item.method.name === '<clinit>') || null,
+    jre: { 'java/lang/Object': {}, 'java/lang/Thread': {} },
+    classpath: ['.'],
+    nextHashCode: 40,
+    wasmHeap: heap,
+    loadClassByName: async () => null,
+  };
+  jvm.classes.Summer.staticFields = new Map([['SCALE:I', 3], ['TABLE:[I', heap.alloc('[I', 4)]]);
+  const data = heap.alloc('[I', 4);
+  data.type = '[I';
+  data.elementType = 'int';
+  data.hashCode = 7;
+  data.set([1, 2, 3, 4]);
+  const label = new String('sum');
+  label.type = 'java/lang/String';
+  const target = {
+    type: 'Summer',
+    _className: 'Summer',
+    cidx: 3,
+    fields: { data, label, scale: { type: 'java/lang/Integer', value: 2 }, result: heap.alloc('[J', 1) },
+  };
+  target.fields.result.type = '[J';
+  target.fields.result.elementType = 'long';
+  const threadObject = { type: 'java/lang/Thread', name: 'worker-1', runnable: target };
+  return { jvm, heap, target, threadObject };
+}
+
+test('the parallel thread selection parses class lists and wildcards', (t) => {
+  t.equal(parseParallelThreadSelection(undefined), null);
+  t.equal(parseParallelThreadSelection(''), null, 'an empty environment value is off');
+  t.deepEqual([...parseParallelThreadSelection('demo.Summer, Other').classes], ['demo/Summer', 'Other']);
+  t.notOk(parseParallelThreadSelection(['Summer']).all);
+  t.ok(parseParallelThreadSelection('*').all);
+  t.end();
+});
+
+test('a thread touching only shared primitive arrays runs in a worker', async (t) => {
+  const { jvm, heap, target, threadObject } = plannerWorld([
+    'aload_0', field('getfield', 'Summer', 'data', '[I'), 'iconst_0', 'iaload',
+    field('getstatic', 'Summer', 'SCALE', 'I'), 'imul',
+    field('getstatic', 'java/lang/System', 'out', 'Ljava/io/PrintStream;'),
+    invoke('invokestatic', 'java/lang/Thread', 'sleep', '(J)V'),
+    'return',
+  ]);
+  const plan = await planParallelThread(jvm, threadObject, target);
+  t.ok(plan, 'the Runnable qualifies');
+  t.equal(plan.name, 'worker-1');
+  t.equal(plan.memory, heap.memory, 'the worker maps the shared heap');
+  t.deepEqual(plan.classes, ['Summer']);
+  t.deepEqual(plan.statics, [['Summer', [['SCALE:I', 3]]]],
+    'initialized static final primitives ship with the plan');
+  t.ok(plan.retained.has(target.fields.data), 'the main thread keeps the shared arrays alive');
+
+  const worker = { classes: { Summer: jvm.classes.Summer }, internString: (value) => `interned:${value}` };
+  const copy = reviveCapture(worker, decodeGraph(plan.graph), heap.memory);
+  t.notEqual(copy, target, 'the Runnable itself is copied');
+  t.equal(copy.fields.label, 'interned:sum', 'strings are interned in the worker');
+  t.equal(copy.fields.scale.value, 2);
+  t.equal(typeof copy.cidx, 'number');
+  const view = copy.fields.data;
+  t.ok(view instanceof Int32Array && view.buffer === heap.memory.buffer, 'arrays become views over the same memory');
+  t.equal(view.type, '[I');
+  t.equal(view.hashCode, 7, 'identity hash codes survive the crossing');
+  view[2] = 99;
+  t.equal(target.fields.data[2], 99, 'a store in the worker is visible to the main thread');
+  t.ok(copy.fields.result instanceof BigInt64Array);
+  t.end();
+});
+
+test('threads that share mutable state stay on the scheduler', async (t) => {
+  const cases = [
+    ['a monitor', ['aload_0', 'monitorenter', 'return']],
+    ['a static write', ['iconst_0', field('putstatic', 'Summer', 'count', 'I'), 'return']],
+    ['a mutable static read', [field('getstatic', 'Summer', 'count', 'I'), 'return']],
+    ['a static final array read', [field('getstatic', 'Summer', 'TABLE', '[I'), 'return']],
+    ['a write to the shared Runnable', ['aload_0', 'aconst_null', field('putfield', 'Summer', 'label', 'Ljava/lang/String;'), 'return']],
+    ['wait()', ['aload_0', invoke('invokevirtual', 'java/lang/Object', 'wait', '()V'), 'return']],
+    ['starting another thread', ['aconst_null', invoke('invokevirtual', 'java/lang/Thread', 'start', '()V'), 'return']],
+    ['a helper that writes a static', ['aload_0', invoke('invokevirtual', 'Summer', 'helper', '()V'), 'return']],
+    ['an override of a JRE method that locks', ['aload_0', invoke('invokevirtual', 'java/lang/Object', 'toString', '()Ljava/lang/String;'), 'return']],
+  ];
+  for (const [label, run] of cases) {
+    const { jvm, target, threadObject } = plannerWorld(run);
+    const summer = jvm.classes.Summer.ast.classes[0];
+    summer.items.push(
+      { type: 'field', field: { name: 'count', descriptor: 'I', flags: ['static'] } },
+      { type: 'method', method: method('helper', '()V', ['iconst_1', field('putstatic', 'Summer', 'count', 'I'), 'return']) },
+      { type: 'method', method: method('toString', '()Ljava/lang/String;', ['aconst_null', 'areturn'], ['public', 'synchronized']) });
+    t.equal(await planParallelThread(jvm, threadObject, target), null, label);
+  }
+
+  const { jvm, target, threadObject } = plannerWorld(['return']);
+  target.fields.list = { type: 'java/util/ArrayList', fields: {} };
+  t.equal(await planParallelThread(jvm, threadObject, target), null, 'a captured JRE object');
+
+  const unshared = plannerWorld(['return']);
+  unshared.target.fields.data = new Int32Array(4);
+  t.equal(await planParallelThread(unshared.jvm, unshared.threadObject, unshared.target), null,
+    'a primitive array outside the shared heap');
+
+  const lambda = plannerWorld(['return']);
+  lambda.threadObject.runnable = { type: 'Summer$$Lambda', methodHandle: {} };
+  t.equal(await planParallelThread(lambda.jvm, lambda.threadObject, lambda.threadObject.runnable), null,
+    'a lambda Runnable');
+
+  const uninitialized = plannerWorld([invoke('invokestatic', 'Helper', 'twice', '(I)I'), 'return'], {
+    Helper: guestClass('Helper', [
+      method('twice', '(I)I', ['iload_0', 'iconst_2', 'imul', 'ireturn'], ['static']),
+      method('<clinit>', '()V', ['return'], ['static']),
+    ]),
+  });
+  t.equal(await planParallelThread(uninitialized.jvm, uninitialized.threadObject, uninitialized.target), null,
+    'a class whose <clinit> would have to run in the worker');
+  uninitialized.jvm.classInitializationState.set('Helper', 'INITIALIZED');
+  uninitialized.jvm.classes.Helper.staticFields = new Map();
+  t.ok(await planParallelThread(uninitialized.jvm, uninitialized.threadObject, uninitialized.target),
+    'and once the main thread initialized it, the thread qualifies');
+
+  const unselected = plannerWorld(['return']);
+  unselected.jvm.parallelThreads = parseParallelThreadSelection('Other');
+  t.equal(await planParallelThread(unselected.jvm, unselected.threadObject, unselected.target), null,
+    'a class outside the selection');
+  t.end();
+});
+
+test('subclass overrides are part of the reachable code', async (t) => {
+  const { jvm, target, threadObject } = plannerWorld([
+    'aload_0', field('getfield', 'Summer', 'shape', 'LShape;'),
+    invoke('invokevirtual', 'Shape', 'area', '()I'), 'pop', 'return',
+  ], {
+    Shape: guestClass('Shape', [method('area', '()I', ['iconst_0', 'ireturn'])]),
+    Square: guestClass('Square', [method('area', '()I', ['aload_0', 'monitorenter', 'iconst_0', 'ireturn'])],
+      { superClassName: 'Shape' }),
+  });
+  t.equal(await planParallelThread(jvm, threadObject, target), null, 'the locking override is found');
+  delete jvm.classes.Square;
+  t.ok(await planParallelThread(jvm, threadObject, target), 'and without it the call is fine');
+  t.end();
+});
+
+test('a worker thread writes into shared arrays without re-running static initializers', (t) => {
+  const result = spawnSync(process.execPath, ['scripts/runJvm.js', '-cp', 'sources', 'ParallelSum'], {
+    encoding: 'utf-8',
+    env: { ...process.env, JVM_PARALLEL_THREADS: 'ParallelSum', JVM_DEBUG_PARALLEL: '1' },
+  });
+  t.equal(result.status, 0, result.stderr);
+  t.deepEqual(result.stdout.trim().split('\n'), ['init', '30', '139'],
+    'the worker saw SCALE without a second <clinit>, and its sum reached the main thread');
+  const stayed = result.stderr.split('\n').filter((line) => line.includes('stays on the scheduler'));
+  t.equal(stayed.length, 1, 'only the thread reading the static final array stays on the scheduler');
+  t.ok(/ParallelSum\.TABLE/.test(stayed[0]), stayed[0]);
+  t.end();
+});
@@ -0,0 +1,201 @@
+'use strict';
+
+const test = require('tape');
+const { RewindJournal } = require('../src/debug/rewindJournal');
+
+// A one-thread VM exposing just what the journal touches: frames shaped like
+// Frame, class statics in a Map, and saveState/loadState that replace the
+// whole heap the way the real ones do.
+const LOOP = [
+  { instruction: { op: 'aload', arg: 0 } },
+  { instruction: 'inext' },
+  { instruction: { op: 'putfield', arg: [null, 'Demo', ['x', 'I']] } },
+  { instruction: { op: 'aload', arg: 1 } },
+  { instruction: { op: 'iconst', arg: 1 } },
+  { instruction: 'inext' },
+  { instruction: 'iastore' },
+  { instruction: 'inext' },
+  { instruction: { op: 'putstatic', arg: [null, 'Demo', ['count', 'I']] } },
+  { instruction: { op: 'invokestatic', arg: [null, 'Demo', ['log', '()V']] } },
+  { instruction: { op: 'goto', arg: 0 } },
+];
+
+class FakeVm {
+  constructor({ withCalls = false } = {}) {
+    const instructions = withCalls ? LOOP : LOOP.filter((item) => item.instruction.op !== 'invokestatic');
+    const frame = {
+      pc: 0,
+      instructions,
+      stack: { items: [] },
+      locals: [{ fields: { x: 0 } }, [0, 0, 0], 0],
+      monitorEntered: false,
+    };
+    this.threads = [{ id: 0, status: 'runnable', callStack: { items: [frame] } }];
+    this.classes = { Demo: { staticFields: new Map([['count:I', 0]]), ast: { classes: [{ superClassName: null }] } } };
+    this.heap = { calls: 0 };
+    this.currentThreadIndex = 0;
+    this.classInitializationEpoch = 0;
+    this.printed = [];
+    this.loads = 0;
+  }
+
+  async executeTick() {
+    const frame = this.threads[0].callStack.items[0];
+    const { instruction } = frame.instructions[frame.pc++];
+    const op = typeof instruction === 'string' ? instruction : instruction.op;
+    const items = frame.stack.items;
+    if (op === 'aload') items.push(frame.locals[instruction.arg]);
+    else if (op === 'iconst') items.push(instruction.arg);
+    else if (op === 'inext') items.push(frame.locals[2] += 1);
+    else if (op === 'putfield') { const value = items.pop(); items.pop().fields.x = value; }
+    else if (op === 'iastore') { const value = items.pop(); const index = items.pop(); items.pop()[index] = value; }
+    else if (op === 'putstatic') this.classes.Demo.staticFields.set('count:I', items.pop());
+    else if (op === 'invokestatic') {
+      this.heap.calls += 1;
+      if (!this.replayingHistory) this.printed.push(this.heap.calls);
+    } else if (op === 'goto') frame.pc = instruction.arg;
+    return { completed: false };
+  }
+
+  saveState() {
+    return { debugManager: {}, heap: structuredClone({ threads: this.threads, classes: this.classes, heap: this.heap }) };
+  }
+
+  async loadState(state) {
+    this.loads += 1;
+    Object.assign(this, structuredClone(state.heap));
+  }
+
+  view() {
+    const frame = this.threads[0].callStack.items[0];
+    return JSON.stringify({
+      pc: frame.pc,
+      stack: frame.stack.items.map((value) => (typeof value === 'object' ? '<ref>' : value)),
+      counter: frame.locals[2],
+      x: frame.locals[0].fields.x,
+      array: frame.locals[1],
+      count: this.classes.Demo.staticFields.get('count:I'),
+      calls: this.heap.calls,
+    });
+  }
+}
+
+async function record(vm, journal, steps) {
+  const views = [vm.view()];
+  for (let i = 0; i < steps; i++) {
+    await journal.recordTick(() => vm.executeTick());
+    views.push(vm.view());
+  }
+  return views;
+}
+
+test('journaled steps are undone in place without a checkpoint restore', async (t) => {
+  const vm = new FakeVm();
+  const journal = new RewindJournal(vm, { checkpointInterval: 1000 });
+  const views = await record(vm, journal, 25);
+  t.equal(journal.length, 25);
+
+  t.deepEqual(await journal.rewind(1), { replayed: 0 });
+  t.equal(vm.view(), views[24], 'one step back');
+  await journal.rewind(13);
+  t.equal(vm.view(), views[11], 'putfield, iastore and putstatic are undone');
+  t.equal(vm.loads, 0, 'no checkpoint was restored');
+  t.equal(journal.length, 11, 'the rewound steps are gone');
+
+  await journal.recordTick(() => vm.executeTick());
+  t.equal(vm.view(), views[12], 'stepping forward again reproduces the old future');
+  t.end();
+});
+
+test('opaque steps are crossed by restoring a checkpoint and replaying', async (t) => {
+  const vm = new FakeVm({ withCalls: true });
+  const journal = new RewindJournal(vm, { checkpointInterval: 7 });
+  const views = await record(vm, journal, 40);
+  const printed = vm.printed.length;
+
+  const { replayed } = await journal.rewind(20);
+  t.equal(vm.view(), views[20], 'state matches the one originally recorded');
+  t.ok(vm.loads === 1 && replayed > 0 && replayed < 7, 'restored the nearest checkpoint and replayed the rest');
+  t.equal(vm.printed.length, printed, 'replayed calls did not print again');
+
+  await journal.rewind(3);
+  t.equal(vm.view(), views[17]);
+  for (let step = 16; step >= 0; step -= 5) {
+    await journal.rewind(journal.length - step);
+    t.equal(vm.view(), views[step], `back to step ${step}`);
+  }
+  t.end();
+});
+
+test('checkpoints are thinned and history is bounded', async (t) => {
+  const vm = new FakeVm({ withCalls: true });
+  const journal = new RewindJournal(vm, { checkpointInterval: 2, maxCheckpoints: 4 });
+  const views = await record(vm, journal, 200);
+  t.ok(journal.checkpoints.length <= 4, 'no more than maxCheckpoints are kept');
+  t.ok(journal.checkpointInterval > 2, 'the interval grew as checkpoints were dropped');
+  await journal.rewind(195);
+  t.equal(vm.view(), views[5], 'an early step is still reachable');
+
+  const bounded = new FakeVm();
+  const limited = new RewindJournal(bounded, { limit: 5 });
+  await record(bounded, limited, 12);
+  t.equal(limited.length, 5);
+  try {
+    await limited.rewind(6);
+    t.fail('rewinding past the limit should throw');
+  } catch (error) {
+    t.equal(error.message, 'Cannot rewind: not enough history');
+  }
+  t.end();
+});
+
+test('a barrier is never replayed across', async (t) => {
+  const vm = new FakeVm();
+  const journal = new RewindJournal(vm, { checkpointInterval: 1000 });
+  const views = await record(vm, journal, 3);
+  await journal.recordBarrier(async () => {
+    for (let i = 0; i < 9; i++) await vm.executeTick();
+  });
+  const afterBarrier = vm.view();
+  await record(vm, journal, 4);
+
+  await journal.rewind(4);
+  t.equal(vm.view(), afterBarrier, 'steps after the barrier are undone');
+  await journal.rewind(2);
+  t.equal(vm.view(), views[2], 'the barrier itself goes back through the checkpoint before it');
+
+  journal.invalidateUndo();
+  await journal.rewind(1);
+  t.equal(vm.view(), views[1], 'after invalidation a rewind restores and replays');
+  t.end();
+});
+
+test('a rewind past trimmed history replays from the checkpoint before it', async (t) => {
+  const vm = new FakeVm();
+  const journal = new RewindJournal(vm, { limit: 5 });
+  const views = await record(vm, journal, 10);
+  journal.invalidateUndo();
+  t.deepEqual(await journal.rewind(1), { replayed: 9 }, 'replayed from the checkpoint at step 0');
+  t.equal(vm.view(), views[9]);
+  t.equal(journal.length, 5, 'the replay refilled the bounded history');
+  await journal.rewind(5);
+  t.equal(vm.view(), views[4]);
+
+  const called = new FakeVm({ withCalls: true });
+  const bounded = new RewindJournal(called, { limit: 5 });
+  await record(called, bounded, 3);
+  await bounded.recordBarrier(async () => {
+    for (let i = 0; i < 4; i++) await called.executeTick();
+  });
+  const after = await record(called, bounded, 12);
+  t.ok(bounded.checkpoints[0].position < bounded.first, 'the replay base predates the kept history');
+  await bounded.rewind(4);
+  t.equal(called.view(), after[8], 'opaque steps after the barrier replay from its checkpoint');
+  try {
+    await bounded.rewind(bounded.length + 1);
+    t.fail('rewinding past the limit should throw');
+  } catch (error) {
+    t.equal(error.message, 'Cannot rewind: not enough history');
+  }
+  t.end();
+});
@@ -8,3 +8,23 @@ test('Simple output test', async function(t) {
   const { output } = await runTest('Hello');
   t.equal(output.trim(), 'Hello, World!', 'The output should be "Hello, World!"');
 });
+
+test('System.out writes to the stdout sink passed to the JVM', async function(t) {
+  const { JVM } = require('../src/core/jvm');
+  const chunks = [];
+  const write = process.stdout.write;
+  let leaked = '';
+  process.stdout.write = function(chunk, ...rest) {
+    leaked += String(chunk);
+    return write.call(process.stdout, chunk, ...rest);
+  };
+  try {
+    const jvm = new JVM({ classpath: 'sources', stdout: (chunk) => chunks.push(chunk) });
+    await jvm.run('Hello');
+  } finally {
+    process.stdout.write = write;
+  }
+  t.equal(chunks.join('').trim(), 'Hello, World!');
+  t.notOk(leaked.includes('Hello, World!'), 'nothing reaches process.stdout');
+  t.end();
+});
@@ -0,0 +1,60 @@
+'use strict';
+
+const test = require('tape');
+const { WasmHeap, sizeClass } = require('../src/core/wasmHeap');
+
+test('wasm heap size classes round up by at most a quarter', (t) => {
+  t.deepEqual([1, 16, 17, 256].map(sizeClass), [16, 16, 32, 256], 'small classes step by 16');
+  t.deepEqual([257, 320, 321, 4097].map(sizeClass), [320, 320, 384, 5120], 'quarter powers of two');
+  for (let bytes = 1; bytes < 1 << 20; bytes = Math.ceil(bytes * 1.37)) {
+    if (sizeClass(bytes) < bytes || (bytes > 256 && sizeClass(bytes) > bytes * 1.25)) {
+      t.fail(`bad class ${sizeClass(bytes)} for ${bytes}`);
+    }
+  }
+  t.end();
+});
+
+test('released blocks are zeroed and reused by the same class', (t) => {
+  const heap = new WasmHeap(1, { reclaim: true });
+  const a = heap.alloc('[I', 10);
+  const b = heap.alloc('[I', 10);
+  a.fill(7);
+  b.fill(9);
+  heap.release(a.wasmBase, sizeClass(40));
+  t.equal(heap.freeBytes, 48, 'block below top goes on the free list');
+  const c = heap.alloc('[B', 33);
+  t.equal(c.wasmBase, a.wasmBase, 'same class reuses the freed block');
+  t.ok(c.every((v) => v === 0), 'reused block reads as zero');
+  t.equal(heap.reused, 1);
+  const top = heap.top;
+  heap.release(b.wasmBase, sizeClass(40));
+  t.equal(heap.top, top - 48, 'block at the top lowers the bump pointer');
+  t.equal(heap.alloc('[I', 12).wasmBase, b.wasmBase, 'and is handed out again zeroed');
+  t.end();
+});
+
+test('a spent heap falls back to larger free blocks, then to plain arrays', (t) => {
+  const heap = new WasmHeap(1, { reclaim: true });
+  const big = heap.alloc('[D', 64);
+  heap.alloc('[I', 4);
+  heap.top = heap.limit;
+  t.equal(heap.alloc('[I', 4).wasmBase, undefined, 'nothing free: plain typed array');
+  t.ok(heap.exhausted);
+  heap.release(big.wasmBase, sizeClass(512));
+  const view = heap.alloc('[I', 4);
+  t.equal(view.wasmBase, big.wasmBase, 'smallest larger block taken whole');
+  t.equal(heap.lastBlock, 512, 'and tracked at its real size');
+  t.end();
+});
+
+test('slab owners and array views are registered for reclamation', (t) => {
+  const heap = new WasmHeap(1, { reclaim: true });
+  const registered = [];
+  heap.registry = { register: (owner, block) => registered.push([owner, block]) };
+  const owner = {};
+  const base = heap.allocObject(24, owner);
+  const view = heap.alloc('[S', 3);
+  t.deepEqual(registered, [[owner, { base, bytes: 32 }], [view, { base: view.wasmBase, bytes: 16 }]]);
+  t.equal(new WasmHeap(1, { reclaim: false }).registry, null, 'reclaim off keeps the bump-only heap');
+  t.end();
+});
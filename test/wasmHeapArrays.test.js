@@ -136,6 +136,15 @@ public class HeapArr {
     }
     out[0] = s;
   }
+  public static void blend(int[] dst, int[] src, int n) {
+    for (int i = 0; i < n; i++) dst[i] = ((src[i] & 0xff00ff) * 3 >>> 1) | (dst[i] & 0xff00);
+  }
+  public static void xorBytes(byte[] dst, byte[] key, int n) {
+    for (int i = 0; i < n; i++) dst[i] = (byte) (dst[i] ^ key[i]);
+  }
+  public static void scale(float[] dst, float[] src, float k, int n) {
+    for (int i = 0; i < n; i++) dst[i] = src[i] * k + 1f;
+  }
   public static void chainSum(int[] out, Node h, int n) {
     int s = 0;
     for (int i = 0; i < n; i++) { s += h.v; h = h.next; }
@@ -204,6 +213,71 @@ test('out-of-bounds and null throw the guest exceptions', async (t) => {
   t.end();
 });
 
+test('counted loops hoist their bounds checks; failing guards run the checked copy', async (t) => {
+  const { jvm, thread } = await makeHarness(t, 'HeapArr', SOURCE);
+  const a = jvm.wasmHeap.alloc('[I', N);
+  a.type = '[I';
+  for (let i = 0; i < N; i += 1) a[i] = i;
+  const out = [0];
+  out.type = '[I';
+  await invoke(jvm, thread, 'HeapArr', 'oobCatch', '([I[II)V', [out, a, N]);
+  t.equal(out[0], (N * (N - 1)) / 2, 'in-range loop sums through the unchecked copy');
+  const meta = metaOf(jvm, 'HeapArr.sumInt([II)I');
+  t.ok(meta && meta.boundsChecksHoisted >= 1, 'a[i] covered by the preheader guard');
+  await invoke(jvm, thread, 'HeapArr', 'oobCatch', '([I[II)V', [out, a, N + 1]);
+  t.equal(out[0], -7, 'n past the length still throws AIOOBE at the exact access');
+  await invoke(jvm, thread, 'HeapArr', 'fill', '([II)V', [a, 0]);
+  t.equal(a[0], 0, 'zero-trip loop leaves the array alone');
+  t.end();
+});
+
+test('independent a[i] loops run as SIMD lanes with a scalar epilogue', async (t) => {
+  const { jvm, thread } = await makeHarness(t, 'HeapArr', SOURCE);
+  const n = N + 3;
+  const dst = jvm.wasmHeap.alloc('[I', n);
+  dst.type = '[I';
+  const src = jvm.wasmHeap.alloc('[I', n);
+  src.type = '[I';
+  const expect = new Int32Array(n);
+  for (let i = 0; i < n; i += 1) {
+    src[i] = i * 0x01010101;
+    dst[i] = i * 77;
+    expect[i] = ((((src[i] & 0xff00ff) * 3) | 0) >>> 1) | (dst[i] & 0xff00);
+  }
+  await invoke(jvm, thread, 'HeapArr', 'blend', '([I[II)V', [dst, src, n]);
+  t.deepEqual(Array.from(dst), Array.from(expect), 'int[] blend matches, tail included');
+  const meta = metaOf(jvm, 'HeapArr.blend([I[II)V');
+  if (!require('../src/jit/wasmShared').supportsWasmSimd()) {
+    t.skip('no wasm SIMD in this engine');
+  } else {
+    t.equal(meta && meta.vectorizedLoops, 1, 'blend loop vectorised');
+  }
+
+  const bytes = jvm.wasmHeap.alloc('[B', n);
+  bytes.type = '[B';
+  const key = jvm.wasmHeap.alloc('[B', n);
+  key.type = '[B';
+  for (let i = 0; i < n; i += 1) { bytes[i] = i; key[i] = 0x5a; }
+  await invoke(jvm, thread, 'HeapArr', 'xorBytes', '([B[BI)V', [bytes, key, n]);
+  t.ok(Array.from(bytes).every((v, i) => v === (((i ^ 0x5a) << 24) >> 24)), 'byte[] xor matches');
+
+  const fdst = jvm.wasmHeap.alloc('[F', n);
+  fdst.type = '[F';
+  const fsrc = jvm.wasmHeap.alloc('[F', n);
+  fsrc.type = '[F';
+  for (let i = 0; i < n; i += 1) fsrc[i] = i * 0.25;
+  await invoke(jvm, thread, 'HeapArr', 'scale', '([F[FFI)V', [fdst, fsrc, 2, n]);
+  t.equal(fdst[n - 1], Math.fround((n - 1) * 0.5 + 1), 'float[] scale reaches the last element');
+
+  const plain = new Array(n).fill(0);
+  plain.type = '[I';
+  const plainSrc = Array.from(src);
+  plainSrc.type = '[I';
+  await invoke(jvm, thread, 'HeapArr', 'blend', '([I[II)V', [plain, plainSrc, n]);
+  t.equal(plain[n - 1], ((((plainSrc[n - 1] & 0xff00ff) * 3) | 0) >>> 1), 'non-heap arrays take the checked loop');
+  t.end();
+});
+
 test('loop-carried array receiver: cache refills when the row changes', async (t) => {
   const { jvm, thread } = await makeHarness(t, 'HeapArr', SOURCE);
   const rows = 200;
@@ -311,3 +311,117 @@ test("WebAudio starts short effect lines after their first region", async (t) =>
   output.end();
   t.end();
 });
+
+test("WebAudio shares a sample ring with the worklet when isolated", async (t) => {
+  const listeners = new Map();
+  let factory = null;
+  let workletSource = null;
+  let workletNode = null;
+  let processor = null;
+  const posted = [];
+  const received = [];
+  class FakeAudioContext {
+    constructor() {
+      this.state = "running";
+      this.currentTime = 0;
+      this.sampleRate = 22050;
+      this.destination = {};
+      this.audioWorklet = { addModule: () => Promise.resolve() };
+    }
+    resume() { return Promise.resolve(); }
+  }
+  class FakeAudioWorkletNode {
+    constructor(_context, _name, options) {
+      workletNode = this;
+      this.port = {
+        onmessage: null,
+        postMessage(message) {
+          posted.push(message);
+          processor.port.onmessage({ data: message });
+        },
+      };
+      // Run the real processor source against this node.
+      const Processor = new Function("AudioWorkletProcessor", "registerProcessor",
+        "sampleRate", workletSource + "\nreturn JVMSourceDataLineProcessor;")(
+        class { constructor() { this.port = { postMessage: (m) => received.push(m) }; } },
+        () => {}, 22050);
+      processor = new Processor(options);
+    }
+    connect() {}
+    disconnect() {}
+  }
+  const audioPlatform = {
+    setAudioOutputFactory(value) { factory = value; },
+  };
+  const fakeWindow = {
+    document: {
+      addEventListener(type, listener) { listeners.set(type, listener); },
+    },
+    crossOriginIsolated: true,
+    SharedArrayBuffer,
+    Atomics,
+    AudioContext: FakeAudioContext,
+    AudioWorkletNode: FakeAudioWorkletNode,
+    Blob: class FakeBlob { constructor(parts) { workletSource = parts.join(""); } },
+    URL: {
+      createObjectURL() { return "blob:worklet"; },
+      revokeObjectURL() {},
+    },
+    JVMDebug: { audioPlatform },
+  };
+  const modulePath = require.resolve("../src/platform/web-audio");
+  const previousWindow = global.window;
+  global.window = fakeWindow;
+  delete require.cache[modulePath];
+  t.teardown(() => {
+    delete require.cache[modulePath];
+    if (previousWindow === undefined) delete global.window;
+    else global.window = previousWindow;
+  });
+
+  require(modulePath);
+  listeners.get("pointerdown")();
+  const output = factory({
+    channels: 1,
+    bitDepth: 16,
+    sampleRate: 22050,
+    signed: true,
+    bigEndian: false,
+    bufferSize: 64,
+    coalesceFrames: 4,
+    coalesceDelayMs: 0,
+  });
+  await new Promise(resolve => setImmediate(resolve));
+  t.equal(audioPlatform.getWebAudioDiagnostics().outputFormats[0].backend,
+    "audio-worklet-ring", "isolated pages use the shared ring");
+
+  const pcm = new Uint8Array([0, 64, 0, 192, 0, 32]);
+  output.write(pcm);
+  pcm.fill(0);
+  t.equal(posted.filter(message => message.type === "pcm").length, 0,
+    "a write is published without a message");
+  t.equal(output.queuedSeconds(), 3 / 22050,
+    "a write smaller than a coalesced region is queued at once");
+
+  const out = new Float32Array(2);
+  processor.startFrames = 2;
+  processor.process([], [[out]]);
+  t.deepEqual(Array.from(out), [0.5, -0.5], "the processor reads the decoded frames");
+  t.equal(output.queuedSeconds(), 0, "and the line sees them consumed");
+  t.equal(received.filter(message => message.type === "underrun").length, 1,
+    "running dry is still reported");
+
+  const capacity = output.ring.frames;
+  output.write(new Uint8Array((capacity + 10) * 2));
+  t.equal(output.ringBacklogFrames, 10, "frames that do not fit wait for space");
+  t.equal(output.queuedSeconds(), (capacity + 10) / 22050);
+  output.flush();
+  t.equal(posted[posted.length - 1].type, "flush");
+  t.equal(output.queuedSeconds(), 0, "flush skips both the ring and the backlog");
+  let drained = false;
+  output.once("drain", () => { drained = true; });
+  await new Promise(resolve => setTimeout(resolve, 0));
+  t.equal(drained, true, "an empty ring drains immediately");
+  output.end();
+  t.end();
+});
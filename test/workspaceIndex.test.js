@@ -0,0 +1,119 @@
+'use strict';
+
+const test = require('tape');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const {
+  indexClass,
+  applyRefs,
+  removeRefs,
+  indexFileFor,
+  loadIndex,
+  saveIndex,
+} = require('../src/workspace/workspaceIndex');
+
+function method(name, codeItems) {
+  return {
+    type: 'method',
+    method: { name, descriptor: '()V', flags: ['public'], attributes: [{ type: 'code', code: { codeItems } }] },
+  };
+}
+
+function classAst(className, superClassName, items) {
+  return { classes: [{ className, superClassName, interfaces: ['p/I'], flags: ['public'], items }] };
+}
+
+const A = classAst('p/A', 'java/lang/Object', [
+  { type: 'field', field: { name: 'x', descriptor: 'I', flags: ['private'] } },
+  method('foo', [{ instruction: 'return' }]),
+]);
+const B = classAst('p/B', 'p/A', [
+  method('bar', [
+    { label: 'L0' },
+    { instruction: { op: 'new', arg: 'p/A' } },
+    { instruction: { op: 'invokevirtual', arg: ['Method', 'p/A', ['foo', '()V']] } },
+    { instruction: { op: 'getfield', arg: ['Field', 'p/A', ['x', 'I']] } },
+    { instruction: { op: 'multianewarray', arg: ['[[Lp/C;', 2] } },
+  ]),
+]);
+
+function graph(referenceObj) {
+  return Object.keys(referenceObj).sort().map((name) =>
+    [name, referenceObj[name].referees, [...referenceObj[name].children]]);
+}
+
+test('indexClass records the header, members and reference records', (t) => {
+  const entry = indexClass(B);
+  t.equal(entry.superClassName, 'p/A');
+  t.deepEqual(entry.interfaces, ['p/I']);
+  t.deepEqual(entry.members, [['method', 'bar', '()V', ['public'], 0]]);
+  t.deepEqual(entry.refs, [
+    ['p/B', -1],
+    ['p/B', 0, -1, -1, 'bar', '()V'],
+    ['p/A', 0, 0, 1],
+    ['p/A', 0, 0, 2, 'foo', '()V', 'invokevirtual'],
+    ['p/A', 0, 0, 3, 'x', 'I', 'getfield'],
+    ['[[Lp/C;', 0, 0, 4],
+  ]);
+  t.end();
+});
+
+test('applyRefs builds the graph and removeRefs takes one class back out', (t) => {
+  const referenceObj = {};
+  applyRefs(referenceObj, 'p/A', indexClass(A).refs);
+  const onlyA = JSON.stringify(graph(referenceObj));
+  applyRefs(referenceObj, 'p/B', indexClass(B).refs);
+
+  const foo = referenceObj['p/A'].children.get('foo').referees;
+  t.deepEqual(foo, [
+    { className: 'p/A', astPath: 'classes.0.items.1.method', descriptor: '()V' },
+    { className: 'p/B', astPath: 'classes.0.items.0.method.attributes.0.code.codeItems.2', descriptor: '()V',
+      op: 'invokevirtual' },
+  ], 'definition first, then the use site with its opcode');
+  t.deepEqual(referenceObj['p/A'].referees.map((r) => r.astPath), [
+    'classes.0',
+    'classes.0.items.0.method.attributes.0.code.codeItems.1',
+    'classes.0.items.0.method.attributes.0.code.codeItems.2',
+    'classes.0.items.0.method.attributes.0.code.codeItems.3',
+  ]);
+
+  removeRefs(referenceObj, 'p/B', indexClass(B).refs, (name) => name.startsWith('p/'));
+  t.notOk(referenceObj['[[Lp/C;'], 'nodes only B referenced are pruned');
+  t.ok(referenceObj['p/B'], 'B keeps its node until the workspace forgets it');
+  delete referenceObj['p/B'];
+  t.equal(JSON.stringify(graph(referenceObj)), onlyA, 'back to the graph of A alone');
+  t.end();
+});
+
+test('the index round-trips through disk and can be switched off', (t) => {
+  const dir = fs.mkdtempSync(path.join(os.tmpdir(), 'java-tools-workspace-index-'));
+  try {
+    const file = indexFileFor(['classes'], { indexDir: dir });
+    t.equal(path.dirname(file), dir);
+    t.equal(indexFileFor(['classes'], { indexDir: dir }), file, 'stable per classpath');
+    t.notEqual(indexFileFor(['other'], { indexDir: dir }), file);
+    t.equal(indexFileFor(['classes'], { index: false }), null);
+    t.equal(indexFileFor(['classes'], { index: false, indexDir: dir }), null);
+    const savedDir = process.env.KRAKATAU_INDEX_DIR;
+    delete process.env.KRAKATAU_INDEX_DIR;
+    t.equal(indexFileFor(['classes']), null, 'persistence is opt-in');
+    t.equal(path.dirname(indexFileFor(['classes'], { index: true })),
+      path.join(os.tmpdir(), 'java-tools-workspace-index'));
+    process.env.KRAKATAU_INDEX_DIR = dir;
+    t.equal(indexFileFor(['classes']), file, 'KRAKATAU_INDEX_DIR opts in');
+    if (savedDir === undefined) delete process.env.KRAKATAU_INDEX_DIR;
+    else process.env.KRAKATAU_INDEX_DIR = savedDir;
+
+    const entry = { file: '/x/A.class', mtimeMs: 1, size: 2, hash: 'h', ...indexClass(A) };
+    t.ok(saveIndex(file, [entry]));
+    t.deepEqual(loadIndex(file).get('/x/A.class'), entry);
+    fs.writeFileSync(file, '{"version":0,"entries":[]}');
+    t.equal(loadIndex(file).size, 0, 'other index versions are ignored');
+    fs.writeFileSync(file, '{"vers');
+    t.equal(loadIndex(file).size, 0, 'a torn file is ignored');
+  } finally {
+    fs.rmSync(dir, { recursive: true, force: true });
+  }
+  t.end();
+});
@@ -42,6 +42,7 @@ const jvmDebugConfig = {
       "zlib": false,
       "dns": false,
       "net": false,
+      "worker_threads": false,
       "url": require.resolve("url/"),
       // Handle node-fetch v3 and Node.js native modules
       "node-fetch": false, // Use browser fetch instead